@@ -1,9 +1,18 @@
 package org.folio.okapi.common;
 
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Module ID: product with optional semantic version. Immutable.
+ */
 public class ModuleId implements Comparable<ModuleId> {
 
+  // interned module IDs; cleared when it grows beyond CACHE_MAX
+  private static final int CACHE_MAX = 100000;
+  private static final Map<String, ModuleId> cache = new ConcurrentHashMap<>();
+
   private final String product;
   private final SemVer semVer;
   private final String id;
@@ -29,6 +38,24 @@ public class ModuleId implements Comparable<ModuleId> {
     semVer = null;
   }
 
+  /**
+   * Return Module ID for a string, reusing an instance parsed before.
+   * May throw IllegalArgumentException for invalid syntax for semantic version.
+   * @param s Module ID or product name; see {@link #ModuleId(String)}
+   * @return module ID instance, shared and immutable
+   */
+  public static ModuleId of(String s) {
+    ModuleId m = cache.get(s);
+    if (m == null) {
+      m = new ModuleId(s);
+      if (cache.size() >= CACHE_MAX) {
+        cache.clear();
+      }
+      cache.put(s, m);
+    }
+    return m;
+  }
+
   /**
    * Returns Module ID as string.
    * @return string representation
@@ -148,8 +175,8 @@ public class ModuleId implements Comparable<ModuleId> {
    * {@link org.folio.okapi.common.ModuleId#compareTo(org.folio.okapi.common.ModuleId)}
    */
   public static int compare(String i1, String i2) {
-    ModuleId m1 = new ModuleId(i1);
-    ModuleId m2 = new ModuleId(i2);
+    ModuleId m1 = of(i1);
+    ModuleId m2 = of(i2);
     return m1.compareTo(m2);
   }
 
@@ -161,7 +188,7 @@ public class ModuleId implements Comparable<ModuleId> {
   public String getLatest(Collection<String> l) {
     ModuleId latestModule = this;
     for (String curId : l) {
-      ModuleId curModule = new ModuleId(curId);
+      ModuleId curModule = of(curId);
       if (product.equals(curModule.getProduct())
           && curModule.compareTo(latestModule) > 0) {
         latestModule = curModule;
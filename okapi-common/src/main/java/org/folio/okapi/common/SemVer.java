@@ -1,7 +1,6 @@
 package org.folio.okapi.common;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -10,38 +9,50 @@ import java.util.List;
  * but is a little liberal at the moment, eg only major component
  * is (eg 1) required or even more than 3 components for dot-separated
  * list (eg 1.2.3.4).
+ * Immutable. Numeric components are parsed once, so that comparing versions
+ * does not allocate.
  */
 public class SemVer implements Comparable<SemVer> {
 
-  private final List<String> preRelease = new LinkedList<>();
-  private final List<String> versions = new LinkedList<>();
+  // components as given, for toString
+  private final String[] versions;
+  private final String[] preRelease;
+  // numeric value of each component; NOT_NUMERIC for non-numeric
+  private final long[] versionNums;
+  private final long[] preReleaseNums;
   private final String metadata;
 
+  private static final long NOT_NUMERIC = -1;
+  private static final int MAX_DIGITS = 18; // fits in a long
+  private static final String[] EMPTY = new String[0];
+
   /**
    * Construct semantic version from string.
    * May throw IllegalArgumentException if string supplied can not be parsed
    * @param v semantic version
    */
   public SemVer(String v) {
+    List<String> vl = new ArrayList<>(3);
+    List<String> pl = new ArrayList<>(2);
     int offset = 0;
 
-    offset = parseComp(v, true, offset, versions);
+    offset = parseComp(v, true, offset, vl);
     if (offset == -1) {
       throw new IllegalArgumentException("missing major version: " + v);
     }
     while (offset < v.length() && v.charAt(offset) == '.') {
-      offset = parseComp(v, true, offset + 1, versions);
+      offset = parseComp(v, true, offset + 1, vl);
       if (offset == -1) {
         throw new IllegalArgumentException("missing version component");
       }
     }
     if (offset < v.length() && v.charAt(offset) == '-') {
-      offset = parseComp(v, false, offset + 1, preRelease);
+      offset = parseComp(v, false, offset + 1, pl);
       if (offset == -1) {
         throw new IllegalArgumentException("missing pre-release version component");
       }
       while (offset < v.length() && v.charAt(offset) == '.') {
-        offset = parseComp(v, false, offset + 1, preRelease);
+        offset = parseComp(v, false, offset + 1, pl);
         if (offset == -1) {
           throw new IllegalArgumentException("missing pre-release version component");
         }
@@ -54,15 +65,33 @@ public class SemVer implements Comparable<SemVer> {
     } else {
       throw new IllegalArgumentException("invalid semver: " + v);
     }
+    versions = vl.toArray(EMPTY);
+    preRelease = pl.isEmpty() ? EMPTY : pl.toArray(EMPTY);
+    versionNums = numbers(versions);
+    preReleaseNums = numbers(preRelease);
   }
 
-  private boolean allDigits(String s) {
+  private static long[] numbers(String[] comps) {
+    long[] nums = new long[comps.length];
+    for (int i = 0; i < comps.length; i++) {
+      nums[i] = number(comps[i]);
+    }
+    return nums;
+  }
+
+  private static long number(String s) {
+    long n = 0;
     for (int i = 0; i < s.length(); i++) {
-      if (!Character.isDigit(s.charAt(i))) {
-        return false;
+      int d = Character.digit(s.charAt(i), 10);
+      if (d < 0) {
+        return NOT_NUMERIC;
       }
+      n = n * 10 + d;
     }
-    return true;
+    if (s.length() > MAX_DIGITS) {
+      throw new IllegalArgumentException("version component too long: " + s);
+    }
+    return n;
   }
 
   /**
@@ -74,18 +103,20 @@ public class SemVer implements Comparable<SemVer> {
    * In reality not a problem because systems most likely will use a common
    * scheme for each component for some versioning system
    * @param c1 left operand
+   * @param n1 numeric value of left operand
    * @param c2 right operand
+   * @param n2 numeric value of right operand
    * @return <0 if c1 < c2, 0 if c1 == c2, >0 if c1 > c2
    */
-  private int compareComp(String c1, String c2) {
-    if (allDigits(c1)) {
-      if (allDigits(c2)) {
-        return Integer.parseInt(c1) - Integer.parseInt(c2);
+  private static int compareComp(String c1, long n1, String c2, long n2) {
+    if (n1 != NOT_NUMERIC) {
+      if (n2 != NOT_NUMERIC) {
+        return Long.compare(n1, n2);
       } else {
         return -1;
       }
     } else {
-      if (allDigits(c2)) {
+      if (n2 != NOT_NUMERIC) {
         return 1;
       } else {
         return c1.compareTo(c2);
@@ -120,7 +151,7 @@ public class SemVer implements Comparable<SemVer> {
    * @return true if it appears to be an NPM snapshot; false otherwise
    */
   public boolean hasNpmSnapshot() {
-    return versions.size() == 3 && versions.get(2).length() >= 5;
+    return versions.length == 3 && versions[2].length() >= 5;
   }
 
   /**
@@ -128,7 +159,7 @@ public class SemVer implements Comparable<SemVer> {
    * @return true if version has pre-release; false otherwise
    */
   public boolean hasPreRelease() {
-    return !preRelease.isEmpty();
+    return preRelease.length > 0;
   }
 
   /**
@@ -137,33 +168,25 @@ public class SemVer implements Comparable<SemVer> {
    * @return true if this version has prefix of other; false otherwise
    */
   public boolean hasPrefix(SemVer other) {
-    Iterator<String> i1 = this.versions.iterator();
-    Iterator<String> i2 = other.versions.iterator();
-    while (i1.hasNext() && i2.hasNext()) {
-      int v = compareComp(i1.next(), i2.next());
-      if (v != 0) {
+    int n = Math.min(versions.length, other.versions.length);
+    for (int i = 0; i < n; i++) {
+      if (compareComp(versions[i], versionNums[i],
+          other.versions[i], other.versionNums[i]) != 0) {
         return false;
       }
     }
-    if (i1.hasNext()) { // i2.hasNext is null
-      return true;
-    }
-    if (i2.hasNext()) { // i1.hasNext is null
-      return false;
+    if (versions.length != other.versions.length) {
+      return versions.length > other.versions.length;
     }
-    i1 = this.preRelease.iterator();
-    i2 = other.preRelease.iterator();
-    while (i1.hasNext() && i2.hasNext()) {
-      int v = compareComp(i1.next(), i2.next());
-      if (v != 0) {
+    n = Math.min(preRelease.length, other.preRelease.length);
+    for (int i = 0; i < n; i++) {
+      if (compareComp(preRelease[i], preReleaseNums[i],
+          other.preRelease[i], other.preReleaseNums[i]) != 0) {
         return false;
       }
     }
-    if (i1.hasNext()) {
-      return true;
-    }
-    if (i2.hasNext()) {
-      return false;
+    if (preRelease.length != other.preRelease.length) {
+      return preRelease.length > other.preRelease.length;
     }
     if (other.metadata != null) {
       if (this.metadata != null) {
@@ -187,11 +210,11 @@ public class SemVer implements Comparable<SemVer> {
    */
   @Override
   public int compareTo(SemVer other) {
-    Iterator<String> i1 = this.versions.iterator();
-    Iterator<String> i2 = other.versions.iterator();
     int level = 4; // major returns +-4, minor +-3, patch +- 2, rest +-1.
-    while (i1.hasNext() && i2.hasNext()) {
-      int v = compareComp(i1.next(), i2.next());
+    int n = Math.min(versions.length, other.versions.length);
+    for (int i = 0; i < n; i++) {
+      int v = compareComp(versions[i], versionNums[i],
+          other.versions[i], other.versionNums[i]);
       if (v > 0) {
         return level;
       } else if (v < 0) {
@@ -201,32 +224,32 @@ public class SemVer implements Comparable<SemVer> {
         level--;
       }
     }
-    if (i1.hasNext()) {
+    if (versions.length > n) {
       return level;
-    } else if (i2.hasNext()) {
+    } else if (other.versions.length > n) {
       return -level;
     }
-    i1 = this.preRelease.iterator();
-    i2 = other.preRelease.iterator();
     // omitted pre-release makes it a higher version
-    if (!i1.hasNext() && i2.hasNext()) {
+    if (preRelease.length == 0 && other.preRelease.length > 0) {
       return 1;
     }
-    if (i1.hasNext() && !i2.hasNext()) {
+    if (preRelease.length > 0 && other.preRelease.length == 0) {
       return -1;
     }
-    while (i1.hasNext() && i2.hasNext()) {
-      int v = compareComp(i1.next(), i2.next());
+    n = Math.min(preRelease.length, other.preRelease.length);
+    for (int i = 0; i < n; i++) {
+      int v = compareComp(preRelease[i], preReleaseNums[i],
+          other.preRelease[i], other.preReleaseNums[i]);
       if (v > 0) {
         return 1;
       } else if (v < 0) {
         return -1;
       }
     }
-    if (i1.hasNext()) {
+    if (preRelease.length > n) {
       return 1;
     }
-    if (i2.hasNext()) {
+    if (other.preRelease.length > n) {
       return -1;
     }
     if (this.metadata != null) {
@@ -265,35 +288,34 @@ public class SemVer implements Comparable<SemVer> {
   @Override
   public int hashCode() {
     int c = 3;
-    Iterator<String> it = versions.iterator();
-    while (it.hasNext()) {
-      c = c * 31 + it.next().hashCode();
+    for (int i = 0; i < versions.length; i++) {
+      c = c * 31 + compHash(versions[i], versionNums[i]);
     }
-    it = preRelease.iterator();
-    while (it.hasNext()) {
-      c = c * 31 + it.next().hashCode();
+    for (int i = 0; i < preRelease.length; i++) {
+      c = c * 31 + compHash(preRelease[i], preReleaseNums[i]);
     }
     return c;
   }
 
+  // numeric components that compare equal ("01" and "1") hash the same
+  private static int compHash(String c, long n) {
+    return n != NOT_NUMERIC ? Long.hashCode(n) : c.hashCode();
+  }
+
   @Override
   public String toString() {
     StringBuilder b = new StringBuilder();
     String sep = "";
-    Iterator<String> it = this.versions.iterator();
-    while (it.hasNext()) {
+    for (String c : versions) {
       b.append(sep);
-      b.append(it.next());
+      b.append(c);
       sep = ".";
     }
     sep = "-";
-    it = this.preRelease.iterator();
-    if (it.hasNext()) {
-      while (it.hasNext()) {
-        b.append(sep);
-        b.append(it.next());
-        sep = ".";
-      }
+    for (String c : preRelease) {
+      b.append(sep);
+      b.append(c);
+      sep = ".";
     }
     if (metadata != null) {
       b.append("+");
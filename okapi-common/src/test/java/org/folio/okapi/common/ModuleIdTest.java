@@ -99,4 +99,19 @@ public class ModuleIdTest {
     assertFalse(module.hasPreRelease());
     assertFalse(module.hasNpmSnapshot());
   }
+
+  @Test
+  public void testOf() {
+    ModuleId m = ModuleId.of("module-1.0.0");
+    assertSame(m, ModuleId.of("module-1.0.0"));
+    assertEquals(new ModuleId("module-1.0.0"), m);
+    assertEquals("module", m.getProduct());
+    assertNotSame(m, ModuleId.of("module-1.0.1"));
+    try {
+      ModuleId.of("module-1.x");
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("missing version component", e.getMessage());
+    }
+  }
 }
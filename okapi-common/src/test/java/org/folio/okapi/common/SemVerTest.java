@@ -146,4 +146,20 @@ public class SemVerTest {
     invalidVersion("1-123snapshot.", "missing pre-release version component");
     invalidVersion("1x+", "invalid semver: 1x+");
   }
+
+  @Test
+  public void testNumericComponents() {
+    SemVer v1 = new SemVer("1.02.3-rc.01");
+    SemVer v2 = new SemVer("1.2.3-rc.1");
+    assertEquals(0, v1.compareTo(v2));
+    assertEquals(v1, v2);
+    assertEquals(v1.hashCode(), v2.hashCode());
+    assertEquals("1.02.3-rc.01", v1.toString());
+    assertTrue(v1.hasPrefix(new SemVer("1.2")));
+
+    SemVer big = new SemVer("1.2.123456789012345678");
+    assertEquals(2, big.compareTo(new SemVer("1.2.12345678901234567")));
+    invalidVersion("1.2.1234567890123456789",
+        "version component too long: 1234567890123456789");
+  }
 }
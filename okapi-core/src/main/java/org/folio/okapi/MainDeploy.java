@@ -66,6 +66,7 @@ public class MainDeploy {
       final String mode = conf.getString("mode", "dev");
       switch (mode) {
         case "dev":
+        case "replica":
         case "initdatabase":
         case "purgedatabase":
           deploy(new MainVerticle(), Vertx.vertx(vopt), fut);
@@ -171,6 +172,7 @@ public class MainDeploy {
         + "  dev          Development mode\n"
         + "  deployment   Deployment only. Clustered mode\n"
         + "  proxy        Proxy + discovery. Clustered mode\n"
+        + "  replica      Read-only proxy, replicated from replica_source\n"
         + "Options:\n"
         + "  -conf file                    Read Okapi configuration from local file\n"
         + "  -hazelcast-config-cp file     Read Hazelcast config from class path\n"
@@ -5,11 +5,13 @@ import io.vertx.core.Context;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.Http2Settings;
 import io.vertx.core.http.HttpHeaders;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerOptions;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.net.PemKeyCertOptions;
 import io.vertx.core.spi.cluster.ClusterManager;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.handler.CorsHandler;
@@ -35,13 +37,17 @@ import org.folio.okapi.managers.InternalModule;
 import org.folio.okapi.managers.ModuleManager;
 import org.folio.okapi.managers.ProxyService;
 import org.folio.okapi.managers.PullManager;
+import org.folio.okapi.managers.ReplicaManager;
+import org.folio.okapi.managers.ReplicationManager;
 import org.folio.okapi.managers.TenantManager;
 import org.folio.okapi.service.ModuleStore;
 import org.folio.okapi.service.TenantStore;
 import org.folio.okapi.service.impl.Storage;
 import org.folio.okapi.service.impl.Storage.InitMode;
 import org.folio.okapi.service.impl.TenantStoreNull;
+import org.folio.okapi.util.LockedStringMap;
 import org.folio.okapi.util.LogHelper;
+import org.folio.okapi.util.ValueCodec;
 
 @java.lang.SuppressWarnings({"squid:S1192"})
 public class MainVerticle extends AbstractVerticle {
@@ -54,13 +60,17 @@ public class MainVerticle extends AbstractVerticle {
   private ProxyService proxyService;
   private DeploymentManager deploymentManager;
   private DiscoveryManager discoveryManager;
+  private ReplicationManager replicationManager;
+  private ReplicaManager replicaManager;
   private ClusterManager clusterManager;
   private Storage storage;
   private Storage.InitMode initMode = InitMode.NORMAL;
   private int port;
+  private HttpServerOptions serverOptions;
   private String okapiVersion = null;
   private final Messages messages = Messages.getInstance();
   boolean enableProxy = false;
+  private boolean replica = false;
 
   public void setClusterManager(ClusterManager mgr) {
     clusterManager = mgr;
@@ -80,6 +90,7 @@ public class MainVerticle extends AbstractVerticle {
 
     JsonObject config = context.config();
     port = Integer.parseInt(Config.getSysConf("port", "9130", config));
+    serverOptions = createServerOptions(config);
     String okapiVersion2 = Config.getSysConf("okapiVersion", null, config);
     if (okapiVersion2 != null) {
       okapiVersion = okapiVersion2;
@@ -95,6 +106,9 @@ public class MainVerticle extends AbstractVerticle {
     okapiUrl = OkapiStringUtil.trimTrailingSlashes(okapiUrl);
     final String nodeName = Config.getSysConf("nodename", null, config);
     String storageType = Config.getSysConf("storage", "inmemory", config);
+    // only when all nodes of the cluster read what the codec writes
+    LockedStringMap.setDefaultCodec(ValueCodec.create(
+        Config.getSysConf("shared_map_codec", "json", config)));
     String loglevel = Config.getSysConf("loglevel", null, config);
     if (loglevel != null) {
       LogHelper.setRootLogLevel(loglevel);
@@ -112,6 +126,11 @@ public class MainVerticle extends AbstractVerticle {
       case "proxy":
         enableProxy = true;
         break;
+      case "replica":
+        enableProxy = true;
+        replica = true;
+        storageType = "inmemory"; // all is replicated from replica_source
+        break;
       case "purgedatabase":
         initMode = InitMode.PURGE;
         enableProxy = true; // so we get to initialize the database. We exit soon after anyway
@@ -158,6 +177,9 @@ public class MainVerticle extends AbstractVerticle {
       moduleManager = new ModuleManager(moduleStore);
       TenantStore tenantStore = storage.getTenantStore();
       tenantManager = new TenantManager(moduleManager, tenantStore);
+      if (clusterManager != null) {
+        tenantManager.setClusterManager(clusterManager);
+      }
       moduleManager.setTenantManager(tenantManager);
       discoveryManager.setModuleManager(moduleManager);
       logger.info("Proxy using {} storage", storageType);
@@ -165,6 +187,15 @@ public class MainVerticle extends AbstractVerticle {
       InternalModule internalModule = new InternalModule(moduleManager,
           tenantManager, deploymentManager, discoveryManager,
           envManager, pullManager,okapiVersion);
+      if (replica) {
+        internalModule.setReadOnly(true);
+        replicaManager = new ReplicaManager(vertx, moduleManager, tenantManager,
+            discoveryManager, config);
+      } else {
+        replicationManager = new ReplicationManager(moduleManager, tenantManager,
+            discoveryManager);
+        internalModule.setReplicationManager(replicationManager);
+      }
       proxyService = new ProxyService(vertx,
           moduleManager, tenantManager, discoveryManager,
           internalModule, okapiUrl, config);
@@ -186,6 +217,45 @@ public class MainVerticle extends AbstractVerticle {
     }
   }
 
+  /**
+   * Create options for the inbound HTTP server.
+   * HTTP/2 over clear text (h2c) is always accepted, both with prior knowledge
+   * and by upgrade from HTTP/1.1. If a TLS key and certificate are configured,
+   * the server listens with TLS and negotiates HTTP/2 with ALPN.
+   * @param config configuration
+   * @return server options
+   * @throws IllegalArgumentException if only one of key and certificate is given
+   */
+  static HttpServerOptions createServerOptions(JsonObject config) {
+    HttpServerOptions so = new HttpServerOptions()
+        .setHandle100ContinueAutomatically(true);
+    Http2Settings settings = new Http2Settings()
+        .setMaxConcurrentStreams(Long.parseLong(Config.getSysConf(
+            "http2_max_concurrent_streams",
+            Long.toString(HttpServerOptions.DEFAULT_INITIAL_SETTINGS_MAX_CONCURRENT_STREAMS),
+            config)))
+        .setInitialWindowSize(Integer.parseInt(Config.getSysConf(
+            "http2_initial_window_size",
+            Integer.toString(Http2Settings.DEFAULT_INITIAL_WINDOW_SIZE), config)));
+    so.setInitialSettings(settings);
+    so.setHttp2ConnectionWindowSize(Integer.parseInt(Config.getSysConf(
+        "http2_connection_window_size",
+        Integer.toString(HttpServerOptions.DEFAULT_HTTP2_CONNECTION_WINDOW_SIZE), config)));
+    String keyPath = Config.getSysConf("tls_key_path", null, config);
+    String certPath = Config.getSysConf("tls_cert_path", null, config);
+    if ((keyPath == null) != (certPath == null)) {
+      throw new IllegalArgumentException(Messages.getInstance().getMessage("10002"));
+    }
+    if (keyPath != null) {
+      so.setSsl(true)
+          .setUseAlpn(true)
+          .setPemKeyCertOptions(new PemKeyCertOptions()
+              .setKeyPath(keyPath)
+              .setCertPath(certPath));
+    }
+    return so;
+  }
+
   @Override
   public void start(Promise<Void> promise) {
     Future<Void> fut = startDatabases();
@@ -195,6 +265,7 @@ public class MainVerticle extends AbstractVerticle {
       fut = fut.compose(x -> checkInternalModules());
       fut = fut.compose(x -> startEnv());
       fut = fut.compose(x -> startDiscovery());
+      fut = fut.compose(x -> startReplication());
       fut = fut.compose(x -> startDeployment());
       fut = fut.compose(x -> startListening());
       fut = fut.compose(x -> startRedeploy());
@@ -338,6 +409,20 @@ public class MainVerticle extends AbstractVerticle {
     return promise.future();
   }
 
+  private Future<Void> startReplication() {
+    Promise<Void> promise = Promise.promise();
+    if (replicaManager != null) {
+      logger.info("Starting replica");
+      replicaManager.init(promise::handle);
+    } else {
+      if (replicationManager != null) {
+        replicationManager.init(vertx);
+      }
+      promise.complete();
+    }
+    return promise.future();
+  }
+
   private Future<Void> startDeployment() {
     Promise<Void> promise = Promise.promise();
     if (deploymentManager == null) {
@@ -389,9 +474,7 @@ public class MainVerticle extends AbstractVerticle {
 
     Promise<Void> promise = Promise.promise();
     logger.debug("About to start HTTP server");
-    HttpServerOptions so = new HttpServerOptions()
-        .setHandle100ContinueAutomatically(true);
-    vertx.createHttpServer(so)
+    vertx.createHttpServer(serverOptions)
         .requestHandler(router)
         .listen(port,
             result -> {
@@ -416,7 +499,7 @@ public class MainVerticle extends AbstractVerticle {
         // not reporting failure if re-deploy fails
         logger.info("Deploy failed", res.cause());
       }
-      if (enableProxy) {
+      if (enableProxy && !replica) { // timers run on full nodes
         tenantManager.startTimers(promise, discoveryManager);
       } else {
         promise.complete();
@@ -0,0 +1,36 @@
+package org.folio.okapi.bean;
+
+/**
+ * Routing table of discovery on a node compared with the deployments that
+ * are shared by all nodes.
+ */
+public class DeploymentTableStatus {
+
+  private int instances;
+  private int sharedInstances;
+  private boolean consistent;
+
+  public int getInstances() {
+    return instances;
+  }
+
+  public void setInstances(int instances) {
+    this.instances = instances;
+  }
+
+  public int getSharedInstances() {
+    return sharedInstances;
+  }
+
+  public void setSharedInstances(int sharedInstances) {
+    this.sharedInstances = sharedInstances;
+  }
+
+  public boolean getConsistent() {
+    return consistent;
+  }
+
+  public void setConsistent(boolean consistent) {
+    this.consistent = consistent;
+  }
+}
@@ -0,0 +1,85 @@
+package org.folio.okapi.bean;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+
+/**
+ * Install job for a tenant: an install run in the background. Progress of
+ * each module is in the stage of the module entries.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class InstallJob {
+
+  private String id;
+  private String tenant;
+  private Boolean complete;
+  private String startDate;
+  private String endDate;
+  private String message;
+  private String nodeId;
+  private List<TenantModuleDescriptor> modules;
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId(String id) {
+    this.id = id;
+  }
+
+  public String getTenant() {
+    return tenant;
+  }
+
+  public void setTenant(String tenant) {
+    this.tenant = tenant;
+  }
+
+  public Boolean getComplete() {
+    return complete;
+  }
+
+  public void setComplete(Boolean complete) {
+    this.complete = complete;
+  }
+
+  public String getStartDate() {
+    return startDate;
+  }
+
+  public void setStartDate(String startDate) {
+    this.startDate = startDate;
+  }
+
+  public String getEndDate() {
+    return endDate;
+  }
+
+  public void setEndDate(String endDate) {
+    this.endDate = endDate;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public void setMessage(String message) {
+    this.message = message;
+  }
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  public void setNodeId(String nodeId) {
+    this.nodeId = nodeId;
+  }
+
+  public List<TenantModuleDescriptor> getModules() {
+    return modules;
+  }
+
+  public void setModules(List<TenantModuleDescriptor> modules) {
+    this.modules = modules;
+  }
+}
@@ -62,7 +62,7 @@ public class ModuleDescriptor implements Comparable<ModuleDescriptor> {
    * @param s module ID
    */
   public void setId(String s) {
-    this.id = new ModuleId(s);
+    this.id = ModuleId.of(s);
     if (!this.id.hasSemVer()) {
       throw new IllegalArgumentException("Missing semantic version for: " + s);
     }
@@ -316,7 +316,7 @@ public class ModuleDescriptor implements Comparable<ModuleDescriptor> {
     } else {
       this.replaces = new ModuleId[replaces.length];
       for (int i = 0; i < replaces.length; i++) {
-        final ModuleId pId = new ModuleId(replaces[i]);
+        final ModuleId pId = ModuleId.of(replaces[i]);
         if (pId.hasSemVer()) {
           throw new IllegalArgumentException("No semantic version for: " + replaces[i]);
         }
@@ -393,4 +393,9 @@ public class ModuleDescriptor implements Comparable<ModuleDescriptor> {
   public String getProduct() {
     return id.getProduct();
   }
+
+  @JsonIgnore
+  public ModuleId getModuleId() {
+    return id;
+  }
 }
@@ -5,6 +5,8 @@ import com.fasterxml.jackson.annotation.JsonInclude;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.Json;
+import java.util.ArrayList;
+import java.util.List;
 import org.folio.okapi.util.ProxyContext;
 
 /**
@@ -282,10 +284,11 @@ public class RoutingEntry {
   }
 
   static boolean fastMatch(String pathPattern, String uri) {
-    return fastMatch(pathPattern, 0, uri, 0, cutUri(uri));
+    return fastMatch(pathPattern, 0, uri, 0, cutUri(uri), null);
   }
 
-  static boolean fastMatch(String pathPattern, int patternI, String uri, int uriI, int uriLength) {
+  static boolean fastMatch(String pathPattern, int patternI, String uri, int uriI, int uriLength,
+                           List<String> params) {
     while (patternI < pathPattern.length()) {
       char patternC = pathPattern.charAt(patternI);
       patternI++;
@@ -297,24 +300,30 @@ public class RoutingEntry {
           }
           patternI++;
         }
-        boolean empty = true;
+        final int start = uriI;
         while (uriI < uriLength && uri.charAt(uriI) != '/') {
           uriI++;
-          empty = false;
         }
-        if (empty) {
+        if (start == uriI) {
           return false;
         }
+        if (params != null) {
+          params.add(uri.substring(start, uriI));
+        }
       } else if (patternC != '*') {
         if (uriI == uriLength || patternC != uri.charAt(uriI)) {
           return false;
         }
         uriI++;
       } else {
+        final int mark = params == null ? 0 : params.size();
         do {
-          if (fastMatch(pathPattern, patternI, uri, uriI, uriLength)) {
+          if (fastMatch(pathPattern, patternI, uri, uriI, uriLength, params)) {
             return true;
           }
+          if (params != null) {
+            params.subList(mark, params.size()).clear();
+          }
           uriI++;
         } while (uriI <= uriLength);
         return false;
@@ -323,6 +332,23 @@ public class RoutingEntry {
     return uriI == uriLength;
   }
 
+  /**
+   * Match uri against the path pattern and return values of {}-constructs.
+   * Values are returned as found in the uri; that is, not URL decoded.
+   * @param uri path in fact
+   * @return values in order of appearance in pattern; null if there's no match
+   */
+  public List<String> getPathParameters(String uri) {
+    if (pathPattern == null) {
+      return null;
+    }
+    List<String> params = new ArrayList<>();
+    if (!fastMatch(pathPattern, 0, uri, 0, cutUri(uri), params)) {
+      return null;
+    }
+    return params;
+  }
+
   private boolean matchUri(String uri) {
     if (uri == null) {
       return true;
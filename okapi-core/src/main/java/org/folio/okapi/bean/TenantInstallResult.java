@@ -0,0 +1,39 @@
+package org.folio.okapi.bean;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+
+/**
+ * Outcome of a bulk install for one tenant.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TenantInstallResult {
+
+  private String tenant;
+  private String message;
+  private List<TenantModuleDescriptor> modules;
+
+  public String getTenant() {
+    return tenant;
+  }
+
+  public void setTenant(String tenant) {
+    this.tenant = tenant;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public void setMessage(String message) {
+    this.message = message;
+  }
+
+  public List<TenantModuleDescriptor> getModules() {
+    return modules;
+  }
+
+  public void setModules(List<TenantModuleDescriptor> modules) {
+    this.modules = modules;
+  }
+}
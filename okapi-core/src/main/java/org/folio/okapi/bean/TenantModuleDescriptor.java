@@ -25,7 +25,17 @@ public class TenantModuleDescriptor {
 
   private Action action;
 
+  // progress of install jobs
+  @java.lang.SuppressWarnings({"squid:S00115"})
+  public enum Stage {
+    pending, deploy, invoke, undeploy, done
+  }
+
+  private Stage stage;
+
   private String message;
+  private Long deployTime;
+  private Long invokeTime;
 
   public String getId() {
     return id;
@@ -58,4 +68,28 @@ public class TenantModuleDescriptor {
   public void setMessage(String message) {
     this.message = message;
   }
+
+  public Long getDeployTime() {
+    return deployTime;
+  }
+
+  public void setDeployTime(Long deployTime) {
+    this.deployTime = deployTime;
+  }
+
+  public Long getInvokeTime() {
+    return invokeTime;
+  }
+
+  public void setInvokeTime(Long invokeTime) {
+    this.invokeTime = invokeTime;
+  }
+
+  public Stage getStage() {
+    return stage;
+  }
+
+  public void setStage(Stage stage) {
+    this.stage = stage;
+  }
 }
@@ -8,15 +8,20 @@ import io.vertx.core.http.HttpClient;
 import io.vertx.core.http.HttpClientRequest;
 import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.spi.cluster.ClusterManager;
 import io.vertx.core.spi.cluster.NodeListener;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.bean.DeploymentDescriptor;
+import org.folio.okapi.bean.DeploymentTableStatus;
 import org.folio.okapi.bean.HealthDescriptor;
 import org.folio.okapi.bean.LaunchDescriptor;
 import org.folio.okapi.bean.ModuleDescriptor;
@@ -29,7 +34,11 @@ import org.folio.okapi.common.OkapiLogger;
 import org.folio.okapi.common.Success;
 import org.folio.okapi.common.XOkapiHeaders;
 import org.folio.okapi.service.DeploymentStore;
+import org.folio.okapi.service.StoreListener;
+import org.folio.okapi.util.ChangeVersion;
 import org.folio.okapi.util.CompList;
+import org.folio.okapi.util.DeploymentTable;
+import org.folio.okapi.util.DropwizardHelper;
 import org.folio.okapi.util.LockedTypedMap1;
 import org.folio.okapi.util.LockedTypedMap2;
 
@@ -54,6 +63,23 @@ public class DiscoveryManager implements NodeListener {
   private final DeploymentStore deploymentStore;
   private final Messages messages = Messages.getInstance();
   private DeliveryOptions deliveryOptions;
+  static final String NODES_EVENT_NAME = "discoveryNodes";
+  static final String DEPLOYMENTS_EVENT_NAME = "discoveryDeployments";
+  private static final String VERSION_NAME = "okapi.deployments.version";
+  // bumped when deployments or live nodes change
+  private final ChangeVersion version = new ChangeVersion();
+  // live nodes by node ID; updated when nodes are added, changed or leave
+  private final Map<String, NodeDescriptor> liveNodes = new ConcurrentHashMap<>();
+  // routing table replicated from the deployments map; replaced on change
+  private volatile DeploymentTable table = new DeploymentTable();
+  // deltas received while a snapshot is being read; null when not reading
+  private List<JsonObject> pendingDeltas;
+  // instances replicated from the store; their nodes are not known here
+  private final Set<String> storeInstances = ConcurrentHashMap.newKeySet();
+  // callers of resyncTable waiting for the snapshot being read
+  private List<Handler<ExtendedAsyncResult<Void>>> resyncWaiters;
+  private static final long TABLE_CHECK_MS = 60000;
+  private Handler<String> nodeLeftHandler = id -> { };
 
   /**
    * Initialize discovery manager.
@@ -71,14 +97,306 @@ public class DiscoveryManager implements NodeListener {
         nodes.init(vertx, "discoveryNodes", res2 -> {
           if (res2.failed()) {
             fut.handle(new Failure<>(res2.getType(), res2.cause()));
-          } else {
-            fut.handle(new Success<>());
+            return;
           }
+          version.init(vertx, VERSION_NAME, vres -> {
+            if (vres.failed()) {
+              fut.handle(vres);
+              return;
+            }
+            consumeNodesUpdated();
+            consumeDeploymentsUpdated();
+            vertx.setPeriodic(TABLE_CHECK_MS, id -> checkTable(true, cres -> { }));
+            loadNodes(lres -> {
+              if (lres.failed()) {
+                fut.handle(lres);
+              } else {
+                listenStore();
+                resyncTable(fut);
+              }
+            });
+          });
         });
       }
     });
   }
 
+  /**
+   * Follow deployments that other nodes add to or remove from the store.
+   * Needed when nodes share the database, but not a cluster.
+   */
+  private void listenStore() {
+    if (deploymentStore == null || vertx.isClustered()) {
+      return;
+    }
+    deploymentStore.listen(new StoreListener<DeploymentDescriptor>() {
+      @Override
+      public void changed(String instId, DeploymentDescriptor dd) {
+        DeploymentDescriptor d = dd;
+        if (d == null) {
+          d = findInstance(instId);
+          if (d == null) {
+            return;
+          }
+        }
+        replicateStoreDeployment(d, dd == null);
+      }
+
+      @Override
+      public void reload() {
+        reloadDeployments();
+      }
+    });
+  }
+
+  private void replicateStoreDeployment(DeploymentDescriptor dd, boolean removed) {
+    String instId = dd.getInstId();
+    if (removed) {
+      storeInstances.remove(instId);
+    } else {
+      storeInstances.add(instId);
+    }
+    replicateDeployment(dd, removed, res -> {
+      if (res.failed()) {
+        logger.warn("Deployment {} from store not applied: {}", instId,
+            res.cause().getMessage());
+      }
+    });
+  }
+
+  private DeploymentDescriptor findInstance(String instId) {
+    for (DeploymentDescriptor dd : table.getAll()) {
+      if (dd.getInstId().equals(instId)) {
+        return dd;
+      }
+    }
+    return null;
+  }
+
+  private void reloadDeployments() {
+    deploymentStore.getAll(res -> {
+      if (res.failed()) {
+        logger.warn("Reloading deployments failed: {}", res.cause().getMessage());
+        return;
+      }
+      Map<String, DeploymentDescriptor> old = new HashMap<>();
+      for (DeploymentDescriptor dd : table.getAll()) {
+        old.put(dd.getInstId(), dd);
+      }
+      for (DeploymentDescriptor dd : res.result()) {
+        if (old.remove(dd.getInstId()) == null) {
+          replicateStoreDeployment(dd, false);
+        }
+      }
+      for (DeploymentDescriptor dd : old.values()) {
+        replicateStoreDeployment(dd, true);
+      }
+    });
+  }
+
+  private void loadNodes(Handler<ExtendedAsyncResult<Void>> fut) {
+    nodes.getAll(res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      liveNodes.putAll(res.result());
+      fut.handle(new Success<>());
+    });
+  }
+
+  private void consumeNodesUpdated() {
+    vertx.eventBus().consumer(NODES_EVENT_NAME, res -> {
+      version.refresh(vres -> { });
+      String nodeId = (String) res.body();
+      nodes.get(nodeId, gres -> {
+        if (gres.succeeded()) {
+          liveNodes.put(nodeId, gres.result());
+        } else if (gres.getType() == ErrorType.NOT_FOUND) {
+          liveNodes.remove(nodeId);
+        }
+      });
+    });
+  }
+
+  private void consumeDeploymentsUpdated() {
+    vertx.eventBus().consumer(DEPLOYMENTS_EVENT_NAME, res -> {
+      JsonObject delta = (JsonObject) res.body();
+      version.refresh(vres -> { });
+      if (pendingDeltas != null) {
+        pendingDeltas.add(delta);
+      } else {
+        applyDelta(delta);
+      }
+    });
+  }
+
+  // deltas are idempotent, so a delta may be applied to a table that has it
+  private void applyDelta(JsonObject delta) {
+    DeploymentDescriptor dd = delta.getJsonObject("deployment").mapTo(DeploymentDescriptor.class);
+    if (delta.getBoolean("removed", false)) {
+      table = table.without(dd.getSrvcId(), dd.getInstId());
+    } else {
+      table = table.with(dd);
+    }
+  }
+
+  private void publishDelta(DeploymentDescriptor dd, boolean removed) {
+    JsonObject delta = new JsonObject()
+        .put("deployment", JsonObject.mapFrom(dd))
+        .put("removed", removed);
+    applyDelta(delta); // visible on this node at once
+    version.bump(res -> vertx.eventBus().publish(DEPLOYMENTS_EVENT_NAME, delta));
+  }
+
+  /**
+   * Return version of the deployments, bumped on each change of a deployment
+   * or of the live nodes.
+   * @return time of last change in milliseconds since epoch
+   */
+  long getVersion() {
+    return version.get();
+  }
+
+  DeploymentTable getTable() {
+    return table;
+  }
+
+  NodeDescriptor getLiveNode(String nodeId) {
+    return liveNodes.get(nodeId);
+  }
+
+  Collection<NodeDescriptor> getLiveNodes() {
+    return liveNodes.values();
+  }
+
+  /**
+   * Set handler called with the ID of a node that has left the cluster.
+   * @param handler handler
+   */
+  void setNodeLeftHandler(Handler<String> handler) {
+    this.nodeLeftHandler = handler;
+  }
+
+  /**
+   * Add or remove a deployment as replicated from another node, without
+   * deploying or undeploying. The change is published as other deployment
+   * changes are.
+   * @param dd deployment
+   * @param removed whether the deployment is removed
+   * @param fut async result
+   */
+  void replicateDeployment(DeploymentDescriptor dd, boolean removed,
+                           Handler<ExtendedAsyncResult<Void>> fut) {
+    Handler<ExtendedAsyncResult<Void>> done = res -> {
+      if (res.failed() && res.getType() != ErrorType.NOT_FOUND) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      publishDelta(dd, removed); // also to the replication log
+      fut.handle(new Success<>());
+    };
+    if (removed) {
+      deployments.remove(dd.getSrvcId(), dd.getInstId(), res -> done.handle(res.failed()
+          ? new Failure<>(res.getType(), res.cause()) : new Success<>()));
+    } else {
+      deployments.put(dd.getSrvcId(), dd.getInstId(), dd, done);
+    }
+  }
+
+  /**
+   * Add, update or remove a live node as replicated from another node.
+   * @param nodeId node ID
+   * @param nd node; null if the node has left
+   * @param fut async result
+   */
+  void replicateNode(String nodeId, NodeDescriptor nd, Handler<ExtendedAsyncResult<Void>> fut) {
+    version.bump(res -> { });
+    if (nd == null) {
+      liveNodes.remove(nodeId);
+      nodes.remove(nodeId, res -> {
+        if (res.failed() && res.getType() != ErrorType.NOT_FOUND) {
+          fut.handle(new Failure<>(res.getType(), res.cause()));
+        } else {
+          fut.handle(new Success<>());
+        }
+      });
+      return;
+    }
+    nodes.put(nodeId, nd, res -> {
+      if (res.succeeded()) {
+        liveNodes.put(nodeId, nd);
+      }
+      fut.handle(res);
+    });
+  }
+
+  /**
+   * Replace the routing table with a snapshot of the deployments map.
+   * Deltas received while reading are applied to the snapshot. A call made
+   * while a snapshot is being read waits for that snapshot, which with the
+   * deltas is as recent as a new one.
+   * @param fut async result
+   */
+  void resyncTable(Handler<ExtendedAsyncResult<Void>> fut) {
+    if (pendingDeltas != null) {
+      resyncWaiters.add(fut);
+      return;
+    }
+    pendingDeltas = new LinkedList<>();
+    resyncWaiters = new LinkedList<>();
+    resyncWaiters.add(fut);
+    deployments.getAll(res -> {
+      List<JsonObject> deltas = pendingDeltas;
+      List<Handler<ExtendedAsyncResult<Void>>> waiters = resyncWaiters;
+      pendingDeltas = null;
+      resyncWaiters = null;
+      ExtendedAsyncResult<Void> result;
+      if (res.failed()) {
+        result = new Failure<>(res.getType(), res.cause());
+      } else {
+        table = new DeploymentTable(res.result());
+        version.bump(vres -> { });
+        result = new Success<>();
+      }
+      deltas.forEach(this::applyDelta);
+      waiters.forEach(w -> w.handle(result));
+    });
+  }
+
+  /**
+   * Compare the routing table with the deployments map.
+   * @param resync whether to resync the table if it differs
+   * @param fut async result with status of the table before any resync
+   */
+  void checkTable(boolean resync, Handler<ExtendedAsyncResult<DeploymentTableStatus>> fut) {
+    deployments.getAll(res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      DeploymentTable shared = new DeploymentTable(res.result());
+      DeploymentTableStatus status = new DeploymentTableStatus();
+      status.setInstances(table.size());
+      status.setSharedInstances(shared.size());
+      status.setConsistent(table.sameRoutes(shared));
+      if (status.getConsistent() || !resync) {
+        fut.handle(new Success<>(status));
+        return;
+      }
+      logger.warn("Discovery table has {} instances, deployments map has {}; resyncing",
+          status.getInstances(), status.getSharedInstances());
+      DropwizardHelper.markEvent("discovery.table.resync");
+      resyncTable(rres -> {
+        if (rres.failed()) {
+          fut.handle(new Failure<>(rres.getType(), rres.cause()));
+        } else {
+          fut.handle(new Success<>(status));
+        }
+      });
+    });
+  }
+
   /**
    * Restart modules that were persisted in storage.
    * @param fut async result
@@ -135,7 +453,12 @@ public class DiscoveryManager implements NodeListener {
           fut.handle(new Failure<>(ErrorType.USER, messages.getMessage("10809", md.getInstId())));
           return;
         }
-        deployments.add(md.getSrvcId(), md.getInstId(), md, fut);
+        deployments.add(md.getSrvcId(), md.getInstId(), md, ares -> {
+          if (ares.succeeded()) {
+            publishDelta(md, false);
+          }
+          fut.handle(ares);
+        });
       });
     });
   }
@@ -352,23 +675,26 @@ public class DiscoveryManager implements NodeListener {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
       } else {
+        publishDelta(new DeploymentDescriptor(instId, srvcId, null), true);
         fut.handle(new Success<>());
       }
     });
   }
 
-  private boolean isAlive(DeploymentDescriptor md, Collection<NodeDescriptor> nodes) {
+  private boolean isAlive(DeploymentDescriptor md) {
     final String id = md.getNodeId();
     if (id == null) {
       return true;
     }
-    boolean found = false;
-    for (NodeDescriptor node : nodes) {
-      final String nodeName = node.getNodeName();
-      final String nodeId = node.getNodeId();
-      if (id.equals(nodeId) || id.equals(nodeName)) {
-        found = true;
-        break;
+    // nodes that share only the database do not know each other's nodes
+    boolean found = liveNodes.containsKey(id)
+        || (md.getUrl() != null && storeInstances.contains(md.getInstId()));
+    if (!found) {
+      for (NodeDescriptor node : liveNodes.values()) {
+        if (id.equals(node.getNodeName())) {
+          found = true;
+          break;
+        }
       }
     }
     logger.debug("isAlive nodeId={} {}", id, found);
@@ -463,28 +789,18 @@ public class DiscoveryManager implements NodeListener {
   void getNonEmpty(String srvcId,
                    Handler<ExtendedAsyncResult<List<DeploymentDescriptor>>> fut) {
 
-    deployments.get(srvcId, res -> {
-      if (res.failed()) {
-        fut.handle(new Failure<>(res.getType(), res.cause()));
-        return;
+    List<DeploymentDescriptor> l = table.get(srvcId);
+    if (l == null) {
+      fut.handle(new Failure<>(ErrorType.NOT_FOUND, srvcId));
+      return;
+    }
+    List<DeploymentDescriptor> result = new LinkedList<>();
+    for (DeploymentDescriptor md : l) {
+      if (isAlive(md)) {
+        result.add(md);
       }
-      List<DeploymentDescriptor> result = res.result();
-      nodes.getAll(nodeRes -> {
-        if (nodeRes.failed()) {
-          fut.handle(new Failure<>(nodeRes.getType(), nodeRes.cause()));
-          return;
-        }
-        Collection<NodeDescriptor> nodesCollection = nodeRes.result().values();
-        Iterator<DeploymentDescriptor> it = result.iterator();
-        while (it.hasNext()) {
-          DeploymentDescriptor md = it.next();
-          if (!isAlive(md, nodesCollection)) {
-            it.remove();
-          }
-        }
-        fut.handle(new Success<>(result));
-      });
-    });
+    }
+    fut.handle(new Success<>(result));
   }
 
   void get(String srvcId, Handler<ExtendedAsyncResult<List<DeploymentDescriptor>>> fut) {
@@ -501,50 +817,24 @@ public class DiscoveryManager implements NodeListener {
    * Get all known DeploymentDescriptors (all services on all nodes).
    */
   public void get(Handler<ExtendedAsyncResult<List<DeploymentDescriptor>>> fut) {
-    deployments.getKeys(resGet -> {
-      if (resGet.failed()) {
-        fut.handle(new Failure<>(resGet.getType(), resGet.cause()));
-      } else {
-        Collection<String> keys = resGet.result();
-        List<DeploymentDescriptor> all = new LinkedList<>();
-        CompList<List<DeploymentDescriptor>> futures = new CompList<>(ErrorType.INTERNAL);
-        for (String s : keys) {
-          Promise<List<DeploymentDescriptor>> promise = Promise.promise();
-          this.get(s, res -> {
-            if (res.succeeded()) {
-              all.addAll(res.result());
-            }
-            promise.handle(res);
-          });
-          futures.add(promise);
-        }
-        futures.all(all, fut);
-      }
-    });
+    List<DeploymentDescriptor> all = table.getAll();
+    all.removeIf(md -> !isAlive(md));
+    fut.handle(new Success<>(all));
   }
 
   void get(String srvcId, String instId, Handler<ExtendedAsyncResult<DeploymentDescriptor>> fut) {
-
-    deployments.get(srvcId, instId, resGet -> {
-      if (resGet.failed()) {
-        fut.handle(new Failure<>(resGet.getType(), resGet.cause()));
-        return;
-      }
-      DeploymentDescriptor md = resGet.result();
-      nodes.getAll(nodeRes -> {
-        if (nodeRes.failed()) {
-          fut.handle(new Failure<>(nodeRes.getType(), nodeRes.cause()));
-          return;
-        }
-        Collection<NodeDescriptor> nodesCollection = nodeRes.result().values();
-        // check that the node is alive, but only on non-url instances
-        if (!isAlive(md, nodesCollection)) {
-          fut.handle(new Failure<>(ErrorType.NOT_FOUND, messages.getMessage("10805")));
-          return;
-        }
-        fut.handle(new Success<>(md));
-      });
-    });
+    DeploymentDescriptor md = table.get(srvcId, instId);
+    if (md == null) {
+      String msg = table.get(srvcId) == null ? srvcId : srvcId + "/" + instId;
+      fut.handle(new Failure<>(ErrorType.NOT_FOUND, msg));
+      return;
+    }
+    // check that the node is alive, but only on non-url instances
+    if (!isAlive(md)) {
+      fut.handle(new Failure<>(ErrorType.NOT_FOUND, messages.getMessage("10805")));
+      return;
+    }
+    fut.handle(new Success<>(md));
   }
 
   private void healthList(List<DeploymentDescriptor> list,
@@ -634,7 +924,17 @@ public class DiscoveryManager implements NodeListener {
     if (clusterManager != null) {
       nd.setNodeId(clusterManager.getNodeID());
     }
-    nodes.put(nd.getNodeId(), nd, fut);
+    nodes.put(nd.getNodeId(), nd, res -> {
+      if (res.succeeded()) {
+        liveNodes.put(nd.getNodeId(), nd);
+        publishNode(nd.getNodeId());
+      }
+      fut.handle(res);
+    });
+  }
+
+  private void publishNode(String nodeId) {
+    version.bump(res -> vertx.eventBus().publish(NODES_EVENT_NAME, nodeId));
   }
 
   /**
@@ -712,6 +1012,8 @@ public class DiscoveryManager implements NodeListener {
           if (pres.failed()) {
             fut.handle(new Failure<>(pres.getType(), pres.cause()));
           } else {
+            liveNodes.put(nodeId, nd);
+            publishNode(nodeId);
             fut.handle(new Success<>(nd));
           }
         });
@@ -720,29 +1022,16 @@ public class DiscoveryManager implements NodeListener {
   }
 
   void getNodes(Handler<ExtendedAsyncResult<List<NodeDescriptor>>> fut) {
-    nodes.getKeys(resGet -> {
+    nodes.getAll(resGet -> {
       if (resGet.failed()) {
         fut.handle(new Failure<>(resGet.getType(), resGet.cause()));
-      } else {
-        Collection<String> keys = resGet.result();
-        if (clusterManager != null) {
-          List<String> n = clusterManager.getNodes();
-          keys.retainAll(n);
-        }
-        List<NodeDescriptor> all = new LinkedList<>();
-        CompList<List<NodeDescriptor>> futures = new CompList<>(ErrorType.INTERNAL);
-        for (String nodeId : keys) {
-          Promise<NodeDescriptor> promise = Promise.promise();
-          getNode1(nodeId, res -> {
-            if (res.succeeded()) {
-              all.add(res.result());
-            }
-            promise.handle(res);
-          });
-          futures.add(promise);
-        }
-        futures.all(all, fut);
+        return;
+      }
+      Map<String, NodeDescriptor> all = resGet.result();
+      if (clusterManager != null) {
+        all.keySet().retainAll(clusterManager.getNodes());
       }
+      fut.handle(new Success<>(new LinkedList<>(all.values())));
     });
   }
 
@@ -753,6 +1042,9 @@ public class DiscoveryManager implements NodeListener {
 
   @Override
   public void nodeLeft(String nodeID) {
+    liveNodes.remove(nodeID);
+    version.bump(res -> { });
+    nodeLeftHandler.handle(nodeID);
     nodes.remove(nodeID, res
         -> logger.info("node.remove {} result={}", nodeID, res.result())
     );
@@ -771,4 +1063,36 @@ public class DiscoveryManager implements NodeListener {
     List<String> nodeIds = clusterManager.getNodes();
     return clusterManager.getNodeID().equals(Collections.max(nodeIds));
   }
+
+  /**
+   * Whether this node owns a key, such as a tenant timer. Keys are spread
+   * over the nodes of the cluster manager by rendezvous hashing, so that
+   * only the keys of a node that joins or leaves change owner.
+   *
+   * <p>Return true if running without cluster manager.
+   * @param key key to check
+   */
+  boolean isOwner(String key) {
+    if (clusterManager == null) {
+      return true;
+    }
+    String owner = null;
+    int ownerHash = 0;
+    for (String nodeId : clusterManager.getNodes()) {
+      int h = mixHash((nodeId + "/" + key).hashCode());
+      if (owner == null || h > ownerHash || (h == ownerHash && nodeId.compareTo(owner) > 0)) {
+        owner = nodeId;
+        ownerHash = h;
+      }
+    }
+    return clusterManager.getNodeID().equals(owner);
+  }
+
+  private static int mixHash(int h) {
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    return h ^ (h >>> 16);
+  }
 }
@@ -3,24 +3,34 @@ package org.folio.okapi.managers;
 import io.vertx.core.Handler;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
 import io.vertx.core.json.DecodeException;
 import io.vertx.core.json.Json;
 import io.vertx.ext.web.RoutingContext;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.bean.DeploymentDescriptor;
 import org.folio.okapi.bean.EnvEntry;
+import org.folio.okapi.bean.InstallJob;
 import org.folio.okapi.bean.ModuleDescriptor;
 import org.folio.okapi.bean.NodeDescriptor;
 import org.folio.okapi.bean.PullDescriptor;
+import org.folio.okapi.bean.RoutingEntry;
 import org.folio.okapi.bean.Tenant;
 import org.folio.okapi.bean.TenantDescriptor;
 import org.folio.okapi.bean.TenantModuleDescriptor;
@@ -32,6 +42,8 @@ import org.folio.okapi.common.OkapiLogger;
 import org.folio.okapi.common.Success;
 import org.folio.okapi.common.UrlDecoder;
 import org.folio.okapi.common.XOkapiHeaders;
+import org.folio.okapi.service.ModuleStoreFilter;
+import org.folio.okapi.util.EntityTag;
 import org.folio.okapi.util.GraphDot;
 import org.folio.okapi.util.ModuleUtil;
 import org.folio.okapi.util.ProxyContext;
@@ -59,6 +71,10 @@ public class InternalModule {
   private final String okapiVersion;
   private static final String INTERFACE_VERSION = "1.9";
   private final Messages messages = Messages.getInstance();
+  private final List<InternalRoute> routes = new ArrayList<>();
+  private final Map<String, InternalRoute> routeMap = new HashMap<>();
+  private ReplicationManager replicationManager;
+  private boolean readOnly;
 
   /**
    * Construct internal module.
@@ -80,9 +96,31 @@ public class InternalModule {
     this.envManager = envManager;
     this.pullManager = pullManager;
     this.okapiVersion = okapiVersion;
+    addRoutes();
     logger.info("InternalModule starting okapiversion={}", okapiVersion);
   }
 
+  /**
+   * Serve changes to replica nodes.
+   * @param replicationManager replication manager
+   */
+  public void setReplicationManager(ReplicationManager replicationManager) {
+    this.replicationManager = replicationManager;
+    addRoute(HttpMethod.GET, "/_/replication/snapshot",
+        (pc, req, a, fut) -> getReplicationSnapshot(fut));
+    addRoute(HttpMethod.GET, "/_/replication/changes",
+        (pc, req, a, fut) -> getReplicationChanges(pc, fut));
+  }
+
+  /**
+   * Refuse changes, as on a replica node, where modules, tenants and
+   * discovery are replicated from another node. Only GET is served.
+   * @param readOnly whether to refuse changes
+   */
+  public void setReadOnly(boolean readOnly) {
+    this.readOnly = readOnly;
+  }
+
   /**
    * Return module descriptor for okapi itself.
    * @param okapiVersion Okapi version; null and "0.0.0" will be assumed
@@ -175,6 +213,17 @@ public class InternalModule {
         + "    \"permissionsRequired\" : [ \"okapi.discovery.delete\" ], "
         + "    \"type\" : \"internal\" "
         + "   }, "
+        + "   {" // discovery, routing table
+        + "    \"methods\" :  [ \"GET\" ],"
+        + "    \"pathPattern\" : \"/_/discovery/table\","
+        + "    \"permissionsRequired\" : [ \"okapi.discovery.get\" ], "
+        + "    \"type\" : \"internal\" "
+        + "   }, {"
+        + "    \"methods\" :  [ \"POST\" ],"
+        + "    \"pathPattern\" : \"/_/discovery/table\","
+        + "    \"permissionsRequired\" : [ \"okapi.discovery.post\" ], "
+        + "    \"type\" : \"internal\" "
+        + "   }, "
         + "   {" // discovery, health
         + "    \"methods\" :  [ \"GET\" ],"
         + "    \"pathPattern\" : \"/_/discovery/health\","
@@ -266,6 +315,21 @@ public class InternalModule {
         + "    \"type\" : \"internal\" "
         + "   }, {"
         + "    \"methods\" :  [ \"POST\" ],"
+        + "    \"pathPattern\" : \"/_/proxy/install\","
+        + "    \"permissionsRequired\" : [ \"okapi.proxy.install.post\" ], "
+        + "    \"type\" : \"internal\" "
+        + "   }, {"
+        + "    \"methods\" :  [ \"GET\" ],"
+        + "    \"pathPattern\" : \"/_/proxy/tenants/{tenantId}/install\","
+        + "    \"permissionsRequired\" : [ ], "
+        + "    \"type\" : \"internal\" "
+        + "   }, {"
+        + "    \"methods\" :  [ \"GET\" ],"
+        + "    \"pathPattern\" : \"/_/proxy/tenants/{tenantId}/install/{jobId}\","
+        + "    \"permissionsRequired\" : [ ], "
+        + "    \"type\" : \"internal\" "
+        + "   }, {"
+        + "    \"methods\" :  [ \"POST\" ],"
         + "    \"pathPattern\" : \"/_/proxy/tenants/{tenantId}/modules\","
         + "    \"permissionsRequired\" : [ \"okapi.proxy.tenants.modules.post\" ], "
         + "    \"type\" : \"internal\" "
@@ -339,6 +403,18 @@ public class InternalModule {
         + "    \"permissionsRequired\" : [ \"okapi.env.delete\" ], "
         + "    \"type\" : \"internal\" "
         + "   },"
+        // replication service
+        + "   {"
+        + "    \"methods\" :  [ \"GET\" ],"
+        + "    \"pathPattern\" : \"/_/replication/snapshot\","
+        + "    \"permissionsRequired\" : [ \"okapi.replication.get\" ], "
+        + "    \"type\" : \"internal\" "
+        + "   }, {"
+        + "    \"methods\" :  [ \"GET\" ],"
+        + "    \"pathPattern\" : \"/_/replication/changes\","
+        + "    \"permissionsRequired\" : [ \"okapi.replication.get\" ], "
+        + "    \"type\" : \"internal\" "
+        + "   },"
         // version service
         + "   {"
         + "    \"methods\" :  [ \"GET\" ],"
@@ -429,6 +505,10 @@ public class InternalModule {
         + "   \"displayName\" : \"Okapi - Enable modules and dependencies\", "
         + "   \"description\" : \"Check dependencies and enable/disable modules as needed\" "
         + " }, { "
+        + "   \"permissionName\" : \"okapi.proxy.install.post\", "
+        + "   \"displayName\" : \"Okapi - Enable modules for many tenants\", "
+        + "   \"description\" : \"Enable modules and dependencies for a list of tenants\" "
+        + " }, { "
         + "   \"permissionName\" : \"okapi.proxy.tenants.modules.post\", "
         + "   \"displayName\" : \"Okapi - Enable a module for tenant\", "
         + "   \"description\" : \"Enable a module for the tenant\" "
@@ -458,6 +538,11 @@ public class InternalModule {
         + "   \"displayName\" : \"Okapi - Delete env variable\", "
         + "   \"description\" : \"Delete one environment variable\" "
         + " }, "
+        + " { "
+        + "   \"permissionName\" : \"okapi.replication.get\", "
+        + "   \"displayName\" : \"Okapi - replicate configuration\", "
+        + "   \"description\" : \"Get modules, tenants and discovery for a replica\" "
+        + " }, "
         // Permission sets
         + " { "
         + "   \"permissionName\" : \"okapi.deploy\", "
@@ -499,7 +584,8 @@ public class InternalModule {
         + "     \"okapi.proxy.tenants.modules.enabled.post\", "
         + "     \"okapi.proxy.tenants.modules.enabled.delete\", "
         + "     \"okapi.proxy.tenants.upgrade.post\", "
-        + "     \"okapi.proxy.tenants.install.post\" "
+        + "     \"okapi.proxy.tenants.install.post\", "
+        + "     \"okapi.proxy.install.post\" "
         + "   ]"
         + " }, "
         + " { "
@@ -518,7 +604,7 @@ public class InternalModule {
         + "   \"subPermissions\" : [ "
         + "     \"okapi.deploy\",  \"okapi.modules\", "
         + "     \"okapi.tenants\", \"okapi.tenantmodules\", "
-        + "     \"okapi.env\" "
+        + "     \"okapi.env\", \"okapi.replication.get\" "
         + "   ]"
         + " } "
         + "],"
@@ -613,7 +699,13 @@ public class InternalModule {
     }
   }
 
-  private void listTenants(Handler<ExtendedAsyncResult<String>> fut) {
+  private void listTenants(ProxyContext pc, Handler<ExtendedAsyncResult<String>> fut) {
+    long version = tenantManager.getVersion();
+    lastModified(pc, version);
+    if (notModified(pc, new EntityTag().add(version))) {
+      fut.handle(new Success<>(""));
+      return;
+    }
     tenantManager.list(res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
@@ -697,6 +789,10 @@ public class InternalModule {
           TenantModuleDescriptor[].class);
       List<TenantModuleDescriptor> tm = new LinkedList<>();
       Collections.addAll(tm, tml);
+      if (options.getAsync() && !options.getSimulate()) {
+        installModulesAsync(pc, id, options, tm, fut);
+        return;
+      }
       tenantManager.installUpgradeModules(id, pc, options, tm, res -> {
         if (res.failed()) {
           fut.handle(new Failure<>(res.getType(), res.cause()));
@@ -710,20 +806,101 @@ public class InternalModule {
     }
   }
 
-  private void upgradeModulesForTenant(ProxyContext pc, String id,
-                                       Handler<ExtendedAsyncResult<String>> fut) {
+  private void installModulesAsync(ProxyContext pc, String id, TenantInstallOptions options,
+                                   List<TenantModuleDescriptor> tm,
+                                   Handler<ExtendedAsyncResult<String>> fut) {
+    tenantManager.installUpgradeModulesAsync(id, pc, options, tm, res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      InstallJob job = res.result();
+      location(pc, job.getId(), "/_/proxy/tenants/" + id + "/install",
+          Json.encodePrettily(job), lres -> {
+            pc.getCtx().response().setStatusCode(202); // accepted, not created
+            fut.handle(lres);
+          });
+    });
+  }
 
-    TenantInstallOptions options = ModuleUtil.createTenantOptions(pc.getCtx().request());
-    tenantManager.installUpgradeModules(id, pc, options, null, res -> {
+  private void installModulesBulk(ProxyContext pc, String body,
+                                  Handler<ExtendedAsyncResult<String>> fut) {
+    try {
+      TenantInstallOptions options = ModuleUtil.createTenantOptions(pc.getCtx().request());
+      String tenantsParam = pc.getCtx().request().getParam("tenants");
+      Set<String> tenantIds = new LinkedHashSet<>();
+      if (tenantsParam != null) {
+        for (String id : tenantsParam.split(",")) {
+          if (!id.trim().isEmpty()) {
+            tenantIds.add(id.trim());
+          }
+        }
+      }
+      if (tenantIds.isEmpty()) {
+        fut.handle(new Failure<>(ErrorType.USER,
+            messages.getMessage("11608", "tenants", "Must list at least one tenant")));
+        return;
+      }
+      final TenantModuleDescriptor[] tml = Json.decodeValue(body,
+          TenantModuleDescriptor[].class);
+      List<TenantModuleDescriptor> tm = new LinkedList<>();
+      Collections.addAll(tm, tml);
+      tenantManager.installUpgradeModulesBulk(new LinkedList<>(tenantIds), pc, options, tm,
+          res -> {
+            if (res.failed()) {
+              fut.handle(new Failure<>(res.getType(), res.cause()));
+              return;
+            }
+            fut.handle(new Success<>(Json.encodePrettily(res.result())));
+          });
+    } catch (DecodeException ex) {
+      fut.handle(new Failure<>(ErrorType.USER, ex));
+    }
+  }
+
+  private void listInstallJobs(String id, Handler<ExtendedAsyncResult<String>> fut) {
+    tenantManager.listInstallJobs(id, res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
-      } else {
-        logger.info("installUpgradeModules returns: {}", Json.encodePrettily(res.result()));
-        fut.handle(new Success<>(Json.encodePrettily(res.result())));
+        return;
       }
+      fut.handle(new Success<>(Json.encodePrettily(res.result())));
     });
   }
 
+  private void getInstallJob(String id, String jobId,
+                             Handler<ExtendedAsyncResult<String>> fut) {
+    tenantManager.getInstallJob(id, jobId, res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      fut.handle(new Success<>(Json.encodePrettily(res.result())));
+    });
+  }
+
+  private void upgradeModulesForTenant(ProxyContext pc, String id,
+                                       Handler<ExtendedAsyncResult<String>> fut) {
+
+    try {
+      TenantInstallOptions options = ModuleUtil.createTenantOptions(pc.getCtx().request());
+      if (options.getAsync() && !options.getSimulate()) {
+        installModulesAsync(pc, id, options, null, fut);
+        return;
+      }
+      tenantManager.installUpgradeModules(id, pc, options, null, res -> {
+        if (res.failed()) {
+          fut.handle(new Failure<>(res.getType(), res.cause()));
+        } else {
+          logger.info("installUpgradeModules returns: {}", Json.encodePrettily(res.result()));
+          fut.handle(new Success<>(Json.encodePrettily(res.result())));
+        }
+      });
+    } catch (DecodeException ex) {
+      fut.handle(new Failure<>(ErrorType.USER, ex));
+    }
+  }
+
   private void upgradeModuleForTenant(ProxyContext pc, String id, String mod,
                                       String body, Handler<ExtendedAsyncResult<String>> fut) {
     TenantInstallOptions options = ModuleUtil.createTenantOptions(pc.getCtx().request());
@@ -750,6 +927,13 @@ public class InternalModule {
   private void listModulesForTenant(ProxyContext pc, String id,
                                     Handler<ExtendedAsyncResult<String>> fut) {
 
+    // enabled modules change with the tenant; their descriptors with modules
+    EntityTag tag = new EntityTag().add(id).add(tenantManager.getVersion())
+        .add(moduleManager.getVersion());
+    if (notModified(pc, tag)) {
+      fut.handle(new Success<>(""));
+      return;
+    }
     try {
       tenantManager.listModules(id, res -> {
         if (res.failed()) {
@@ -886,31 +1070,96 @@ public class InternalModule {
                            String body,
                            Handler<ExtendedAsyncResult<String>> fut) {
 
-    String [] skipModules = new String [0];
-    if (!body.isEmpty()) {
-      skipModules = Json.decodeValue(body, skipModules.getClass());
+    long version = moduleManager.getVersion();
+    lastModified(pc, version);
+    if (notModified(pc, new EntityTag().add(version).add(body))) {
+      fut.handle(new Success<>(""));
+      return;
     }
-    moduleManager.getModulesWithFilter(true, true, Arrays.asList(skipModules), res -> {
-      if (res.failed()) {
-        fut.handle(new Failure<>(res.getType(), res.cause()));
+    try {
+      String [] skipModules = new String [0];
+      if (!body.isEmpty()) {
+        skipModules = Json.decodeValue(body, skipModules.getClass());
+      }
+      HttpServerRequest req = pc.getCtx().request();
+      ModuleStoreFilter storeFilter = skipModules.length == 0 ? ModuleUtil.storeFilter(req) : null;
+      if (storeFilter != null) {
+        moduleManager.getModulesFiltered(storeFilter, res -> {
+          if (res.failed()) {
+            fut.handle(new Failure<>(res.getType(), res.cause()));
+          } else if (storeFilter.getFull()) {
+            streamList(pc, res.result(), fut);
+          } else {
+            fut.handle(new Success<>(Json.encodePrettily(res.result())));
+          }
+        });
         return;
       }
-      try {
-        List<ModuleDescriptor> mdl = res.result();
-        final boolean dot = ModuleUtil.getParamBoolean(pc.getCtx().request(), "dot", false);
-        mdl = ModuleUtil.filter(pc.getCtx().request(), mdl, dot, true);
-        if (dot) {
-          String s = GraphDot.report(mdl);
-          pc.getCtx().response().putHeader("Content-Type", "text/plain");
-          fut.handle(new Success<>(s));
-        } else {
-          String s = Json.encodePrettily(mdl);
-          fut.handle(new Success<>(s));
-        }
-      } catch (DecodeException ex) {
-        fut.handle(new Failure<>(ErrorType.USER, ex));
+      List<ModuleDescriptor> mdl = moduleManager.getModulesIndexed(req.getParam("filter"),
+          req.getParam("provide"), req.getParam("require"), Arrays.asList(skipModules));
+      final boolean dot = ModuleUtil.getParamBoolean(req, "dot", false);
+      mdl = ModuleUtil.filter(req, mdl, dot, true);
+      if (dot) {
+        String s = GraphDot.report(mdl);
+        pc.getCtx().response().putHeader("Content-Type", "text/plain");
+        fut.handle(new Success<>(s));
+      } else if (ModuleUtil.getParamBoolean(req, "full", false)) {
+        streamList(pc, mdl, fut);
+      } else {
+        String s = Json.encodePrettily(mdl);
+        fut.handle(new Success<>(s));
       }
-    });
+    } catch (DecodeException ex) {
+      fut.handle(new Failure<>(ErrorType.USER, ex));
+    }
+  }
+
+  /**
+   * Set Last-Modified header of response from a version.
+   * @param pc proxy context
+   * @param version version; time of last change in milliseconds since epoch
+   */
+  private static void lastModified(ProxyContext pc, long version) {
+    pc.getCtx().response().putHeader("Last-Modified", DateTimeFormatter.RFC_1123_DATE_TIME
+        .format(Instant.ofEpochMilli(version).atOffset(ZoneOffset.UTC)));
+  }
+
+  /**
+   * Set ETag header of response, which also covers the request URI. If the
+   * client already has it (If-None-Match), status 304 is set. The tag is
+   * made from versions, so this is checked before the content is read.
+   * @param pc proxy context
+   * @param tag entity tag for the content
+   * @return true if not modified; response body should be empty
+   */
+  private static boolean notModified(ProxyContext pc, EntityTag tag) {
+    HttpServerRequest req = pc.getCtx().request();
+    HttpServerResponse res = pc.getCtx().response();
+    String etag = tag.add(req.uri()).build();
+    res.putHeader("ETag", etag);
+    if (EntityTag.matches(req.getHeader("If-None-Match"), etag)) {
+      res.setStatusCode(304);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Return a list which may be large. Unless pretty printing is requested
+   * with parameter pretty=true, the list is streamed as compact JSON by the
+   * proxy.
+   * @param pc proxy context
+   * @param list list to return
+   * @param fut response body, which is empty when list is streamed
+   */
+  private void streamList(ProxyContext pc, Collection<?> list,
+                          Handler<ExtendedAsyncResult<String>> fut) {
+    if (ModuleUtil.getParamBoolean(pc.getCtx().request(), "pretty", false)) {
+      fut.handle(new Success<>(Json.encodePrettily(list)));
+      return;
+    }
+    pc.setStreamBody(list);
+    fut.handle(new Success<>(""));
   }
 
   private void deleteModule(ProxyContext pc, String id,
@@ -939,14 +1188,13 @@ public class InternalModule {
     });
   }
 
-  private void listDeployments(Handler<ExtendedAsyncResult<String>> fut) {
+  private void listDeployments(ProxyContext pc, Handler<ExtendedAsyncResult<String>> fut) {
     deploymentManager.list(res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
         return;
       }
-      final String s = Json.encodePrettily(res.result());
-      fut.handle(new Success<>(s));
+      streamList(pc, res.result(), fut);
     });
   }
 
@@ -1018,14 +1266,17 @@ public class InternalModule {
     });
   }
 
-  private void listDiscoveryModules(Handler<ExtendedAsyncResult<String>> fut) {
+  private void listDiscoveryModules(ProxyContext pc, Handler<ExtendedAsyncResult<String>> fut) {
+    if (notModified(pc, new EntityTag().add(discoveryManager.getVersion()))) {
+      fut.handle(new Success<>(""));
+      return;
+    }
     discoveryManager.get(res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
         return;
       }
-      final String s = Json.encodePrettily(res.result());
-      fut.handle(new Success<>(s));
+      streamList(pc, res.result(), fut);
     });
   }
 
@@ -1114,14 +1365,33 @@ public class InternalModule {
   }
 
 
-  private void discoveryHealthAll(Handler<ExtendedAsyncResult<String>> fut) {
+  private void discoveryCheckTable(Handler<ExtendedAsyncResult<String>> fut) {
+    discoveryManager.checkTable(false, res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      fut.handle(new Success<>(Json.encodePrettily(res.result())));
+    });
+  }
+
+  private void discoveryResyncTable(Handler<ExtendedAsyncResult<String>> fut) {
+    discoveryManager.resyncTable(res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      discoveryCheckTable(fut);
+    });
+  }
+
+  private void discoveryHealthAll(ProxyContext pc, Handler<ExtendedAsyncResult<String>> fut) {
     discoveryManager.health(res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
         return;
       }
-      final String s = Json.encodePrettily(res.result());
-      fut.handle(new Success<>(s));
+      streamList(pc, res.result(), fut);
     });
   }
 
@@ -1221,6 +1491,43 @@ public class InternalModule {
     }
   }
 
+  private void getReplicationSnapshot(Handler<ExtendedAsyncResult<String>> fut) {
+    replicationManager.getSnapshot(res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      fut.handle(new Success<>(res.result().encode()));
+    });
+  }
+
+  private void getReplicationChanges(ProxyContext pc, Handler<ExtendedAsyncResult<String>> fut) {
+    HttpServerRequest req = pc.getCtx().request();
+    long since;
+    long wait;
+    String param = "since";
+    try {
+      since = Long.parseLong(req.getParam(param));
+      param = "wait";
+      String w = req.getParam(param);
+      wait = w == null ? 0 : Long.parseLong(w);
+    } catch (NumberFormatException ex) {
+      fut.handle(new Failure<>(ErrorType.USER,
+          messages.getMessage("11608", param, ex.getMessage())));
+      return;
+    }
+    Runnable cancel = replicationManager.getChanges(req.getParam("epoch"), since, wait,
+        res -> {
+          if (res.failed()) {
+            fut.handle(new Failure<>(res.getType(), res.cause()));
+            return;
+          }
+          fut.handle(new Success<>(res.result().encode()));
+        });
+    // stop waiting for a client that has gone
+    pc.getCtx().response().closeHandler(x -> cancel.run());
+  }
+
   /**
    * Pretty simplistic health check.
    */
@@ -1247,258 +1554,201 @@ public class InternalModule {
    * at least the (normalized) path and method, but the previous filters may
    * have done something to them already.
    *
+   * <p>The routing entry is the one that the proxy matched for the request. Its
+   * method and path pattern is looked up in the route table and the path
+   * parameters are extracted by the routing entry itself. If the entry is not
+   * in the table (or null), the route table is searched instead.
+   *
    * @param req The request body
    * @param pc Proxy context, gives a ctx, path, and method
+   * @param re routing entry that matched; null if unknown
    * @param fut Callback with the response body
    */
-  // Cognitive Complexity of methods should not be too high
-  // but this function is really just a big switch
-  @java.lang.SuppressWarnings({"squid:S3776"})
-  public void internalService(String req, ProxyContext pc,
+  public void internalService(String req, ProxyContext pc, RoutingEntry re,
                               Handler<ExtendedAsyncResult<String>> fut) {
 
     RoutingContext ctx = pc.getCtx();
-    String p = ctx.normalisedPath();
-    String[] segments = p.split("/");
-    int n = segments.length;
-    String[] decodedSegs = new String[n];
-    logger.debug("segment path={}", p);
-    for (int i = 0; i < n; i++) {
-      decodedSegs[i] = UrlDecoder.decode(segments[i], false);
-      logger.debug("segment {} {}->{}", i, segments[i], decodedSegs[i]);
-    }
-    HttpMethod m = ctx.request().method();
+    String uri = ctx.request().uri();
+    String m = ctx.request().method().name();
     // default to json replies, error code overrides to text/plain
-    pc.getCtx().response().putHeader("Content-Type", "application/json");
-    if (n >= 4 && p.startsWith("/_/proxy/")) { // need at least /_/proxy/something
-      if (segments[3].equals("modules")
-          && moduleManager != null) {
-        // /_/proxy/modules
-        if (n == 4 && m.equals(HttpMethod.GET)) {
-          listModules(pc, req, fut);
-          return;
-        }
-        if (n == 4 && m.equals(HttpMethod.POST)) {
-          createModule(pc, req, fut);
-          return;
-        }
-        // /_/proxy/modules/:id
-        if (n == 5 && m.equals(HttpMethod.GET)) {
-          getModule(decodedSegs[4], fut);
-          return;
-        }
-        if (n == 5 && m.equals(HttpMethod.DELETE)) {
-          deleteModule(pc, decodedSegs[4], fut);
-          return;
-        }
-      } // /_/proxy/modules
-
-      if (segments[3].equals("tenants")
-          && tenantManager != null) {
-        // /_/proxy/tenants
-        if (n == 4 && m.equals(HttpMethod.GET)) {
-          listTenants(fut);
-          return;
-        }
-        if (n == 4 && m.equals(HttpMethod.POST)) {
-          createTenant(pc, req, fut);
-          return;
-        }
-        // /_/proxy/tenants/:id
-        if (n == 5 && m.equals(HttpMethod.GET)) {
-          getTenant(decodedSegs[4], fut);
-          return;
-        }
-        if (n == 5 && m.equals(HttpMethod.PUT)) {
-          updateTenant(decodedSegs[4], req, fut);
-          return;
-        }
-        if (n == 5 && m.equals(HttpMethod.DELETE)) {
-          deleteTenant(decodedSegs[4], fut);
-          return;
-        }
-        // /_/proxy/tenants/:id/modules
-        if (n == 6 && m.equals(HttpMethod.GET) && segments[5].equals("modules")) {
-          listModulesForTenant(pc, decodedSegs[4], fut);
-          return;
-        }
-        if (n == 6 && m.equals(HttpMethod.POST) && segments[5].equals("modules")) {
-          enableModuleForTenant(pc, decodedSegs[4], req, fut);
-          return;
-        }
-        if (n == 6 && m.equals(HttpMethod.DELETE) && segments[5].equals("modules")) {
-          disableModulesForTenant(pc, decodedSegs[4], fut);
-          return;
-        }
-        // /_/proxy/tenants/:id/modules/:mod
-        if (n == 7 && m.equals(HttpMethod.GET) && segments[5].equals("modules")) {
-          getModuleForTenant(decodedSegs[4], decodedSegs[6], fut);
-          return;
-        }
-        if (n == 7 && m.equals(HttpMethod.POST) && segments[5].equals("modules")) {
-          upgradeModuleForTenant(pc, decodedSegs[4], decodedSegs[6], req, fut);
-          return;
-        }
-        if (n == 7 && m.equals(HttpMethod.DELETE) && segments[5].equals("modules")) {
-          disableModuleForTenant(pc, decodedSegs[4], decodedSegs[6], fut);
-          return;
-        }
-        // /_/proxy/tenants/:id/install
-        if (n == 6 && m.equals(HttpMethod.POST) && segments[5].equals("install")) {
-          installModulesForTenant(pc, decodedSegs[4], req, fut);
-          return;
-        }
-        // /_/proxy/tenants/:id/upgrade
-        if (n == 6 && m.equals(HttpMethod.POST) && segments[5].equals("upgrade")) {
-          upgradeModulesForTenant(pc, decodedSegs[4], fut);
-          return;
-        }
-        // /_/proxy/tenants/:id/interfaces
-        if (n == 6 && m.equals(HttpMethod.GET) && segments[5].equals("interfaces")) {
-          listInterfaces(pc, decodedSegs[4], fut);
-          return;
-        }
-
-        // /_/proxy/tenants/:id/interfaces/:int
-        if (n == 7 && m.equals(HttpMethod.GET) && segments[5].equals("interfaces")) {
-          listModulesFromInterface(pc, decodedSegs[4], decodedSegs[6], fut);
-          return;
-        }
-      } // /_/proxy/tenants
-
-      // /_/proxy/pull/modules
-      if (n == 5 && segments[3].equals("pull") && segments[4].equals("modules")
-          && m.equals(HttpMethod.POST) && pullManager != null) {
-        pullModules(req, fut);
-        return;
+    ctx.response().putHeader("Content-Type", "application/json");
+    InternalRoute route = null;
+    List<String> params = null;
+    if (re != null && re.getPathPattern() != null) {
+      route = routeMap.get(routeKey(m, re.getPathPattern()));
+      if (route != null) {
+        params = re.getPathParameters(uri);
       }
-      // /_/proxy/health
-      if (n == 4 && segments[3].equals("health") && m.equals(HttpMethod.GET)) {
-        getHealth(fut);
-        return;
+    }
+    if (params == null) {
+      route = null;
+      for (InternalRoute r : routes) {
+        if (r.entry.match(uri, m)) {
+          params = r.entry.getPathParameters(uri);
+          route = r;
+          break;
+        }
       }
+    }
+    if (route == null || params == null) {
+      fut.handle(new Failure<>(ErrorType.INTERNAL,
+          messages.getMessage("11607", ctx.normalisedPath())));
+      return;
+    }
+    if (readOnly && ctx.request().method() != HttpMethod.GET) {
+      fut.handle(new Failure<>(ErrorType.FORBIDDEN,
+          messages.getMessage("11609", m, ctx.normalisedPath())));
+      return;
+    }
+    String[] args = new String[params.size()];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = UrlDecoder.decode(params.get(i), false);
+    }
+    logger.debug("internalService {} {} {}", m, route.entry.getPathPattern(),
+        Arrays.toString(args));
+    route.handler.handle(pc, req, args, fut);
+  }
 
-    } // _/proxy
-
-    // deployment
-    if (n >= 4 && p.startsWith("/_/deployment/")
-        && segments[3].equals("modules")
-        && deploymentManager != null) {
-      // /_/deployment/modules
-      if (n == 4 && m.equals(HttpMethod.GET)) {
-        listDeployments(fut);
-        return;
-      }
-      if (n == 4 && m.equals(HttpMethod.POST)) {
-        createDeployment(pc, req, fut);
-        return;
-      }
-      // /_/deployment/modules/:id:
-      if (n == 5 && m.equals(HttpMethod.GET)) {
-        getDeployment(decodedSegs[4], fut);
-        return;
-      }
-      if (n == 5 && m.equals(HttpMethod.DELETE)) {
-        deleteDeployment(decodedSegs[4], fut);
-        return;
-      }
-    } // deployment
+  private interface InternalHandler {
+    void handle(ProxyContext pc, String req, String[] args,
+                Handler<ExtendedAsyncResult<String>> fut);
+  }
 
-    if (n >= 4 && p.startsWith("/_/discovery/")
-        && discoveryManager != null) {
-      // /_/discovery/nodes
-      if (n == 4 && segments[3].equals("nodes") && m.equals(HttpMethod.GET)) {
-        listDiscoveryNodes(fut);
-        return;
-      }
-      // /_/discovery/nodes/:nodeid
-      if (n == 5 && segments[3].equals("nodes") && m.equals(HttpMethod.GET)) {
-        getDiscoveryNode(decodedSegs[4], fut);
-        return;
-      }
-      // /_/discovery/nodes/:nodeid
-      if (n == 5 && segments[3].equals("nodes") && m.equals(HttpMethod.PUT)) {
-        putDiscoveryNode(decodedSegs[4], req, fut);
-        return;
-      }
+  private static class InternalRoute {
+    final RoutingEntry entry;
+    final InternalHandler handler;
 
-      // /_/discovery/modules
-      if (n == 4 && segments[3].equals("modules") && m.equals(HttpMethod.GET)) {
-        listDiscoveryModules(fut);
-        return;
-      }
-      if (n == 4 && segments[3].equals("modules") && m.equals(HttpMethod.POST)) {
-        discoveryDeploy(pc, req, fut);
-        return;
-      }
-      // /_/discovery/modules/:srvcid
-      if (n == 5 && segments[3].equals("modules") && m.equals(HttpMethod.GET)) {
-        discoveryGetSrvcId(decodedSegs[4], fut);
-        return;
-      }
-      // /_/discovery/modules/:srvcid/:instid"
-      if (n == 6 && segments[3].equals("modules") && m.equals(HttpMethod.GET)) {
-        discoveryGetInstId(decodedSegs[4], decodedSegs[5], fut);
-        return;
-      }
-      if (n == 6 && segments[3].equals("modules") && m.equals(HttpMethod.DELETE)) {
-        discoveryUndeploy(decodedSegs[4], decodedSegs[5], fut);
-        return;
-      }
-      if (n == 5 && segments[3].equals("modules") && m.equals(HttpMethod.DELETE)) {
-        discoveryUndeploy(decodedSegs[4], fut);
-        return;
-      }
-      if (n == 4 && segments[3].equals("modules") && m.equals(HttpMethod.DELETE)) {
-        discoveryUndeploy(fut);
-        return;
-      }
-      // /_/discovery/health
-      if (n == 4 && segments[3].equals("health") && m.equals(HttpMethod.GET)) {
-        discoveryHealthAll(fut);
-        return;
-      }
-      // /_/discovery/health/:srvcId
-      if (n == 5 && segments[3].equals("health") && m.equals(HttpMethod.GET)) {
-        discoveryHealthSrvcId(decodedSegs[4], fut);
-        return;
-      }
-      // /_/discovery/health/:srvcId/:instid
-      if (n == 6 && segments[3].equals("health") && m.equals(HttpMethod.GET)) {
-        discoveryHealthOne(decodedSegs[4], decodedSegs[5], fut);
-        return;
-      }
-    } // discovery
-
-    if (n >= 2 && p.startsWith("/_/env")
-        && segments[2].equals("env")) { // not envXX or such
+    InternalRoute(RoutingEntry entry, InternalHandler handler) {
+      this.entry = entry;
+      this.handler = handler;
+    }
+  }
 
-      // /_/env
-      if (n == 3 && m.equals(HttpMethod.GET)) {
-        listEnv(fut);
-        return;
-      }
-      if (n == 3 && m.equals(HttpMethod.POST)) {
-        createEnv(pc, req, fut);
-        return;
-      }
-      // /_/env/name
-      if (n == 4 && m.equals(HttpMethod.GET)) {
-        getEnv(decodedSegs[3], fut);
-        return;
-      }
-      if (n == 4 && m.equals(HttpMethod.DELETE)) {
-        deleteEnv(decodedSegs[3], fut);
-        return;
-      }
+  private static String routeKey(String method, String pathPattern) {
+    return method + " " + pathPattern;
+  }
 
-    } // env
+  private void addRoute(HttpMethod method, String pathPattern, InternalHandler handler) {
+    RoutingEntry re = new RoutingEntry();
+    re.setMethods(new String[] {method.name()});
+    re.setPathPattern(pathPattern);
+    InternalRoute route = new InternalRoute(re, handler);
+    routes.add(route);
+    routeMap.put(routeKey(method.name(), pathPattern), route);
+  }
 
-    if (p.equals("/_/version") && m.equals(HttpMethod.GET)) {
-      getVersion(pc, fut);
-      return;
+  /**
+   * Build the route table. The patterns are the same as those in the
+   * module descriptor, so that the proxy's routing entry gives a direct hit.
+   * Services whose manager is not present (as in deployment mode) are left out.
+   */
+  private void addRoutes() {
+    if (moduleManager != null) {
+      addRoute(HttpMethod.GET, "/_/proxy/modules",
+          (pc, req, a, fut) -> listModules(pc, req, fut));
+      addRoute(HttpMethod.POST, "/_/proxy/modules",
+          (pc, req, a, fut) -> createModule(pc, req, fut));
+      addRoute(HttpMethod.GET, "/_/proxy/modules/{moduleId}",
+          (pc, req, a, fut) -> getModule(a[0], fut));
+      addRoute(HttpMethod.DELETE, "/_/proxy/modules/{moduleId}",
+          (pc, req, a, fut) -> deleteModule(pc, a[0], fut));
+    }
+    if (tenantManager != null) {
+      addRoute(HttpMethod.GET, "/_/proxy/tenants",
+          (pc, req, a, fut) -> listTenants(pc, fut));
+      addRoute(HttpMethod.POST, "/_/proxy/tenants",
+          (pc, req, a, fut) -> createTenant(pc, req, fut));
+      addRoute(HttpMethod.GET, "/_/proxy/tenants/{tenantId}",
+          (pc, req, a, fut) -> getTenant(a[0], fut));
+      addRoute(HttpMethod.PUT, "/_/proxy/tenants/{tenantId}",
+          (pc, req, a, fut) -> updateTenant(a[0], req, fut));
+      addRoute(HttpMethod.DELETE, "/_/proxy/tenants/{tenantId}",
+          (pc, req, a, fut) -> deleteTenant(a[0], fut));
+      addRoute(HttpMethod.GET, "/_/proxy/tenants/{tenantId}/modules",
+          (pc, req, a, fut) -> listModulesForTenant(pc, a[0], fut));
+      addRoute(HttpMethod.POST, "/_/proxy/tenants/{tenantId}/modules",
+          (pc, req, a, fut) -> enableModuleForTenant(pc, a[0], req, fut));
+      addRoute(HttpMethod.DELETE, "/_/proxy/tenants/{tenantId}/modules",
+          (pc, req, a, fut) -> disableModulesForTenant(pc, a[0], fut));
+      addRoute(HttpMethod.GET, "/_/proxy/tenants/{tenantId}/modules/{moduleId}",
+          (pc, req, a, fut) -> getModuleForTenant(a[0], a[1], fut));
+      addRoute(HttpMethod.POST, "/_/proxy/tenants/{tenantId}/modules/{moduleId}",
+          (pc, req, a, fut) -> upgradeModuleForTenant(pc, a[0], a[1], req, fut));
+      addRoute(HttpMethod.DELETE, "/_/proxy/tenants/{tenantId}/modules/{moduleId}",
+          (pc, req, a, fut) -> disableModuleForTenant(pc, a[0], a[1], fut));
+      addRoute(HttpMethod.POST, "/_/proxy/tenants/{tenantId}/install",
+          (pc, req, a, fut) -> installModulesForTenant(pc, a[0], req, fut));
+      addRoute(HttpMethod.POST, "/_/proxy/install",
+          (pc, req, a, fut) -> installModulesBulk(pc, req, fut));
+      addRoute(HttpMethod.GET, "/_/proxy/tenants/{tenantId}/install",
+          (pc, req, a, fut) -> listInstallJobs(a[0], fut));
+      addRoute(HttpMethod.GET, "/_/proxy/tenants/{tenantId}/install/{jobId}",
+          (pc, req, a, fut) -> getInstallJob(a[0], a[1], fut));
+      addRoute(HttpMethod.POST, "/_/proxy/tenants/{tenantId}/upgrade",
+          (pc, req, a, fut) -> upgradeModulesForTenant(pc, a[0], fut));
+      addRoute(HttpMethod.GET, "/_/proxy/tenants/{tenantId}/interfaces",
+          (pc, req, a, fut) -> listInterfaces(pc, a[0], fut));
+      addRoute(HttpMethod.GET, "/_/proxy/tenants/{tenantId}/interfaces/{interfaceId}",
+          (pc, req, a, fut) -> listModulesFromInterface(pc, a[0], a[1], fut));
+    }
+    if (pullManager != null) {
+      addRoute(HttpMethod.POST, "/_/proxy/pull/modules",
+          (pc, req, a, fut) -> pullModules(req, fut));
+    }
+    addRoute(HttpMethod.GET, "/_/proxy/health",
+        (pc, req, a, fut) -> getHealth(fut));
+    if (deploymentManager != null) {
+      addRoute(HttpMethod.GET, "/_/deployment/modules",
+          (pc, req, a, fut) -> listDeployments(pc, fut));
+      addRoute(HttpMethod.POST, "/_/deployment/modules",
+          (pc, req, a, fut) -> createDeployment(pc, req, fut));
+      addRoute(HttpMethod.GET, "/_/deployment/modules/{instanceId}",
+          (pc, req, a, fut) -> getDeployment(a[0], fut));
+      addRoute(HttpMethod.DELETE, "/_/deployment/modules/{instanceId}",
+          (pc, req, a, fut) -> deleteDeployment(a[0], fut));
+    }
+    if (discoveryManager != null) {
+      addRoute(HttpMethod.GET, "/_/discovery/nodes",
+          (pc, req, a, fut) -> listDiscoveryNodes(fut));
+      addRoute(HttpMethod.GET, "/_/discovery/nodes/{nodeId}",
+          (pc, req, a, fut) -> getDiscoveryNode(a[0], fut));
+      addRoute(HttpMethod.PUT, "/_/discovery/nodes/{nodeId}",
+          (pc, req, a, fut) -> putDiscoveryNode(a[0], req, fut));
+      addRoute(HttpMethod.GET, "/_/discovery/modules",
+          (pc, req, a, fut) -> listDiscoveryModules(pc, fut));
+      addRoute(HttpMethod.POST, "/_/discovery/modules",
+          (pc, req, a, fut) -> discoveryDeploy(pc, req, fut));
+      addRoute(HttpMethod.DELETE, "/_/discovery/modules",
+          (pc, req, a, fut) -> discoveryUndeploy(fut));
+      addRoute(HttpMethod.GET, "/_/discovery/modules/{serviceId}",
+          (pc, req, a, fut) -> discoveryGetSrvcId(a[0], fut));
+      addRoute(HttpMethod.DELETE, "/_/discovery/modules/{serviceId}",
+          (pc, req, a, fut) -> discoveryUndeploy(a[0], fut));
+      addRoute(HttpMethod.GET, "/_/discovery/modules/{serviceId}/{instanceId}",
+          (pc, req, a, fut) -> discoveryGetInstId(a[0], a[1], fut));
+      addRoute(HttpMethod.DELETE, "/_/discovery/modules/{serviceId}/{instanceId}",
+          (pc, req, a, fut) -> discoveryUndeploy(a[0], a[1], fut));
+      addRoute(HttpMethod.GET, "/_/discovery/table",
+          (pc, req, a, fut) -> discoveryCheckTable(fut));
+      addRoute(HttpMethod.POST, "/_/discovery/table",
+          (pc, req, a, fut) -> discoveryResyncTable(fut));
+      addRoute(HttpMethod.GET, "/_/discovery/health",
+          (pc, req, a, fut) -> discoveryHealthAll(pc, fut));
+      addRoute(HttpMethod.GET, "/_/discovery/health/{serviceId}",
+          (pc, req, a, fut) -> discoveryHealthSrvcId(a[0], fut));
+      addRoute(HttpMethod.GET, "/_/discovery/health/{serviceId}/{instanceId}",
+          (pc, req, a, fut) -> discoveryHealthOne(a[0], a[1], fut));
     }
-    fut.handle(new Failure<>(ErrorType.INTERNAL, messages.getMessage("11607", p)));
+    addRoute(HttpMethod.GET, "/_/env",
+        (pc, req, a, fut) -> listEnv(fut));
+    addRoute(HttpMethod.POST, "/_/env",
+        (pc, req, a, fut) -> createEnv(pc, req, fut));
+    addRoute(HttpMethod.GET, "/_/env/{id}",
+        (pc, req, a, fut) -> getEnv(a[0], fut));
+    addRoute(HttpMethod.DELETE, "/_/env/{id}",
+        (pc, req, a, fut) -> deleteEnv(a[0], fut));
+    addRoute(HttpMethod.GET, "/_/version",
+        (pc, req, a, fut) -> getVersion(pc, fut));
   }
 
 }
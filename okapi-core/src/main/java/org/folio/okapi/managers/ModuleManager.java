@@ -5,6 +5,7 @@ import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -23,9 +24,14 @@ import org.folio.okapi.common.ModuleId;
 import org.folio.okapi.common.OkapiLogger;
 import org.folio.okapi.common.Success;
 import org.folio.okapi.service.ModuleStore;
+import org.folio.okapi.service.ModuleStoreFilter;
+import org.folio.okapi.service.StoreListener;
+import org.folio.okapi.util.AvailableModules;
+import org.folio.okapi.util.ChangeVersion;
 import org.folio.okapi.util.CompList;
 import org.folio.okapi.util.DepResolution;
 import org.folio.okapi.util.LockedTypedMap1;
+import org.folio.okapi.util.ModuleIndex;
 
 /**
  * Manages a list of modules known to Okapi's "/_/proxy". Maintains consistency
@@ -37,10 +43,15 @@ public class ModuleManager {
   private final Logger logger = OkapiLogger.get();
   private TenantManager tenantManager = null;
   private String mapName = "modules";
-  private static final String EVENT_NAME = "moduleUpdate";
+  static final String EVENT_NAME = "moduleUpdate";
+  private static final String VERSION_NAME = "okapi.modules.version";
   private final LockedTypedMap1<ModuleDescriptor> modules
       = new LockedTypedMap1<>(ModuleDescriptor.class);
   private final Map<String,ModuleDescriptor> enabledModulesCache = new HashMap<>();
+  private final ChangeVersion version = new ChangeVersion();
+  private final ModuleIndex moduleIndex = new ModuleIndex();
+  private final Map<String, AvailableModules> availableModules = new HashMap<>();
+  private long availableGeneration;
   private final ModuleStore moduleStore;
   private Vertx vertx;
   private final Messages messages = Messages.getInstance();
@@ -74,22 +85,151 @@ public class ModuleManager {
     modules.init(vertx, mapName, ires -> {
       if (ires.failed()) {
         fut.handle(new Failure<>(ires.getType(), ires.cause()));
-      } else {
-        loadModules(fut);
+        return;
       }
+      version.init(vertx, mapName == null ? null : VERSION_NAME, vres -> {
+        if (vres.failed()) {
+          fut.handle(vres);
+          return;
+        }
+        loadModules(lres -> {
+          if (lres.failed()) {
+            fut.handle(lres);
+          } else {
+            listenStore();
+            loadIndex(fut);
+          }
+        });
+      });
+    });
+  }
+
+  /**
+   * Follow changes that other nodes make to the module store. Needed when
+   * nodes share the database, but not a cluster.
+   */
+  private void listenStore() {
+    if (moduleStore == null || vertx.isClustered()) {
+      return;
+    }
+    moduleStore.listen(new StoreListener<ModuleDescriptor>() {
+      @Override
+      public void changed(String id, ModuleDescriptor md) {
+        replicate(id, md, res -> {
+          if (res.failed()) {
+            logger.warn("Module {} from store not applied: {}", id, res.cause().getMessage());
+          }
+        });
+      }
+
+      @Override
+      public void reload() {
+        reloadModules();
+      }
+    });
+  }
+
+  private void reloadModules() {
+    moduleStore.getAll(sres -> {
+      if (sres.failed()) {
+        logger.warn("Reloading modules failed: {}", sres.cause().getMessage());
+        return;
+      }
+      modules.getAll(mres -> {
+        if (mres.failed()) {
+          logger.warn("Reloading modules failed: {}", mres.cause().getMessage());
+          return;
+        }
+        Map<String, ModuleDescriptor> old = new HashMap<>(mres.result());
+        List<String> changed = new LinkedList<>();
+        CompList<Void> futures = new CompList<>(ErrorType.INTERNAL);
+        for (ModuleDescriptor md : sres.result()) {
+          ModuleDescriptor o = old.remove(md.getId());
+          if (o == null || !Json.encode(o).equals(Json.encode(md))) {
+            changed.add(md.getId());
+            Promise<Void> promise = Promise.promise();
+            replicate(md.getId(), md, false, promise::handle);
+            futures.add(promise);
+          }
+        }
+        for (String id : old.keySet()) {
+          changed.add(id);
+          Promise<Void> promise = Promise.promise();
+          replicate(id, null, false, promise::handle);
+          futures.add(promise);
+        }
+        futures.all(res -> invalidateCacheEntries(changed));
+      });
+    });
+  }
+
+  private void loadIndex(Handler<ExtendedAsyncResult<Void>> fut) {
+    modules.getAll(res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      for (ModuleDescriptor md : res.result().values()) {
+        moduleIndex.add(md);
+      }
+      fut.handle(new Success<>());
     });
   }
 
   private void consumeModulesUpdated() {
     EventBus eb = vertx.eventBus();
     eb.consumer(EVENT_NAME, res -> {
-      String moduleId = (String) res.body();
-      enabledModulesCache.remove(moduleId);
+      invalidateAvailable();
+      version.refresh(vres -> { });
+      if (res.body() instanceof JsonArray) {
+        for (Object moduleId : (JsonArray) res.body()) {
+          moduleUpdated((String) moduleId);
+        }
+      } else {
+        moduleUpdated((String) res.body());
+      }
+    });
+  }
+
+  private void moduleUpdated(String moduleId) {
+    enabledModulesCache.remove(moduleId);
+    // the module may have been created or deleted on another node
+    modules.get(moduleId, gres -> {
+      if (gres.succeeded()) {
+        moduleIndex.add(gres.result());
+      } else if (gres.getType() == ErrorType.NOT_FOUND) {
+        moduleIndex.remove(moduleId);
+      }
     });
   }
 
+  /**
+   * Return version of the modules, bumped on each create, update or delete.
+   * @return time of last change in milliseconds since epoch
+   */
+  public long getVersion() {
+    return version.get();
+  }
+
   private void invalidateCacheEntry(String id) {
-    vertx.eventBus().publish(EVENT_NAME, id);
+    version.bump(res -> vertx.eventBus().publish(EVENT_NAME, id));
+  }
+
+  // one version and one event for a list of modules
+  private void invalidateCacheEntries(List<String> ids) {
+    if (ids.size() == 1) {
+      invalidateCacheEntry(ids.get(0));
+      return;
+    }
+    if (ids.isEmpty()) {
+      return;
+    }
+    version.bump(res -> vertx.eventBus().publish(EVENT_NAME, new JsonArray(ids)));
+  }
+
+  private void invalidateAvailable() {
+    availableModules.clear();
+    availableGeneration++;
   }
 
   /**
@@ -124,49 +264,6 @@ public class ModuleManager {
     }
   }
 
-  void enableAndDisableCheck(Tenant tenant,
-                             ModuleDescriptor modFrom, ModuleDescriptor modTo,
-                             Handler<ExtendedAsyncResult<Void>> fut) {
-
-    getEnabledModules(tenant, gres -> {
-      if (gres.failed()) {
-        fut.handle(new Failure<>(gres.getType(), gres.cause()));
-        return;
-      }
-      List<ModuleDescriptor> modlist = gres.result();
-      HashMap<String, ModuleDescriptor> mods = new HashMap<>(modlist.size());
-      for (ModuleDescriptor md : modlist) {
-        mods.put(md.getId(), md);
-      }
-      if (modTo == null) {
-        String deps = DepResolution.checkAllDependencies(mods);
-        if (!deps.isEmpty()) {
-          fut.handle(new Success<>()); // failures even before we remove a module
-          return;
-        }
-      }
-      if (modFrom != null) {
-        mods.remove(modFrom.getId());
-      }
-      if (modTo != null) {
-        ModuleDescriptor already = mods.get(modTo.getId());
-        if (already != null) {
-          fut.handle(new Failure<>(ErrorType.USER,
-              "Module " + modTo.getId() + " already provided"));
-          return;
-        }
-        mods.put(modTo.getId(), modTo);
-      }
-      String conflicts = DepResolution.checkAllConflicts(mods);
-      String deps = DepResolution.checkAllDependencies(mods);
-      if (!conflicts.isEmpty() || !deps.isEmpty()) {
-        fut.handle(new Failure<>(ErrorType.USER, conflicts + " " + deps));
-        return;
-      }
-      fut.handle(new Success<>());
-    });
-  }
-
   /**
    * Create a module.
    *
@@ -231,39 +328,75 @@ public class ModuleManager {
   }
 
   private void createList2(List<ModuleDescriptor> list, Handler<ExtendedAsyncResult<Void>> fut) {
+    if (moduleStore == null) {
+      createList3(list, fut);
+      return;
+    }
+    moduleStore.insertList(list, ires -> {
+      if (ires.failed()) {
+        fut.handle(new Failure<>(ires.getType(), ires.cause()));
+        return;
+      }
+      createList3(list, fut);
+    });
+  }
+
+  private void createList3(List<ModuleDescriptor> list, Handler<ExtendedAsyncResult<Void>> fut) {
     CompList<Void> futures = new CompList<>(ErrorType.INTERNAL);
+    List<String> added = new LinkedList<>();
     for (ModuleDescriptor md : list) {
       Promise<Void> promise = Promise.promise();
-      createList3(md, promise::handle);
+      String id = md.getId();
+      modules.add(id, md, ares -> {
+        if (ares.succeeded()) {
+          moduleIndex.add(md);
+          added.add(id);
+        }
+        promise.handle(ares);
+      });
       futures.add(promise);
     }
-    futures.all(fut);
+    futures.all(res -> {
+      invalidateAvailable();
+      invalidateCacheEntries(added);
+      fut.handle(res);
+    });
   }
 
-  private void createList3(ModuleDescriptor md, Handler<ExtendedAsyncResult<Void>> fut) {
-    String id = md.getId();
-    if (moduleStore == null) {
-      modules.add(id, md, ares -> {
-        if (ares.failed()) {
-          fut.handle(new Failure<>(ares.getType(), ares.cause()));
-          return;
-        }
-        fut.handle(new Success<>());
-      });
+  /**
+   * Replace or remove a module as replicated from another node, without
+   * checks and without storage.
+   * @param id module ID
+   * @param md module descriptor; null to remove
+   * @param fut async result
+   */
+  void replicate(String id, ModuleDescriptor md, Handler<ExtendedAsyncResult<Void>> fut) {
+    replicate(id, md, true, fut);
+  }
+
+  private void replicate(String id, ModuleDescriptor md, boolean publish,
+                         Handler<ExtendedAsyncResult<Void>> fut) {
+    Handler<ExtendedAsyncResult<Void>> done = res -> {
+      if (res.failed() && res.getType() != ErrorType.NOT_FOUND) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      if (md == null) {
+        moduleIndex.remove(id);
+      } else {
+        moduleIndex.add(md);
+      }
+      invalidateAvailable();
+      if (publish) {
+        invalidateCacheEntry(id);
+      }
+      fut.handle(new Success<>());
+    };
+    if (md == null) {
+      modules.remove(id, res -> done.handle(res.failed()
+          ? new Failure<>(res.getType(), res.cause()) : new Success<>()));
     } else {
-      moduleStore.insert(md, ires -> {
-        if (ires.failed()) {
-          fut.handle(new Failure<>(ires.getType(), ires.cause()));
-          return;
-        }
-        modules.add(id, md, ares -> {
-          if (ares.failed()) {
-            fut.handle(new Failure<>(ares.getType(), ares.cause()));
-            return;
-          }
-          fut.handle(new Success<>());
-        });
-      });
+      modules.put(id, md, done);
     }
   }
 
@@ -323,11 +456,13 @@ public class ModuleManager {
   }
 
   private void deleteInternal(String id, Handler<ExtendedAsyncResult<Void>> fut) {
-    invalidateCacheEntry(id);
     modules.remove(id, rres -> {
+      invalidateCacheEntry(id);
       if (rres.failed()) {
         fut.handle(new Failure<>(rres.getType(), rres.cause()));
       } else {
+        moduleIndex.remove(id);
+        invalidateAvailable();
         fut.handle(new Success<>());
       }
     });
@@ -348,7 +483,7 @@ public class ModuleManager {
   }
 
   void getLatest(String id, Handler<ExtendedAsyncResult<ModuleDescriptor>> fut) {
-    ModuleId moduleId = new ModuleId(id);
+    ModuleId moduleId = ModuleId.of(id);
     if (moduleId.hasSemVer()) {
       get(id, fut);
     } else {
@@ -378,7 +513,7 @@ public class ModuleManager {
         List<ModuleDescriptor> mdl = new LinkedList<>();
         for (ModuleDescriptor md : kres.result().values()) {
           String id = md.getId();
-          ModuleId idThis = new ModuleId(id);
+          ModuleId idThis = ModuleId.of(id);
           if ((npmSnapshot || !idThis.hasNpmSnapshot())
               && (preRelease || !idThis.hasPreRelease())
               && !skipIds.contains(id)) {
@@ -390,6 +525,69 @@ public class ModuleManager {
     });
   }
 
+  /**
+   * Get index of the modules available for install. The index is shared
+   * between calls and rebuilt after a module is created or deleted.
+   * @param preRelease whether pre-releases are included
+   * @param npmSnapshot whether npm snapshots are included
+   * @param fut future with index
+   */
+  void getAvailableModules(boolean preRelease, boolean npmSnapshot,
+                           Handler<ExtendedAsyncResult<AvailableModules>> fut) {
+    String key = preRelease + "-" + npmSnapshot;
+    AvailableModules available = availableModules.get(key);
+    if (available != null) {
+      fut.handle(new Success<>(available));
+      return;
+    }
+    final long generation = availableGeneration;
+    getModulesWithFilter(preRelease, npmSnapshot, null, res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      AvailableModules a = new AvailableModules(res.result());
+      if (generation == availableGeneration) {
+        availableModules.put(key, a);
+      }
+      fut.handle(new Success<>(a));
+    });
+  }
+
+  /**
+   * Get modules from the local index. Only the index lookup is done here;
+   * the caller must still apply the filters to the result.
+   * @param filter module ID or product prefix; null for no filter
+   * @param provide provided interface; null for any
+   * @param require required interface; null for any
+   * @param skipModules module IDs to leave out; null for none
+   * @return candidate modules ordered by module ID
+   */
+  List<ModuleDescriptor> getModulesIndexed(String filter, String provide, String require,
+                                           List<String> skipModules) {
+    Set<String> skipIds = null;
+    if (skipModules != null) {
+      skipIds = new TreeSet<>(skipModules);
+    }
+    return moduleIndex.lookup(filter, provide, require, skipIds);
+  }
+
+  /**
+   * Get modules that match a filter. With a module store, the store does the
+   * filtering and paging, so that only the modules returned are read.
+   * @param filter filter
+   * @param fut async result with modules ordered by module ID
+   */
+  public void getModulesFiltered(ModuleStoreFilter filter,
+                                 Handler<ExtendedAsyncResult<List<ModuleDescriptor>>> fut) {
+    if (moduleStore == null) {
+      fut.handle(new Success<>(filter.apply(getModulesIndexed(null,
+          filter.getProvides(), filter.getRequires(), null))));
+      return;
+    }
+    moduleStore.getFiltered(filter, fut);
+  }
+
   /**
    * Get all modules that are enabled for the given tenant.
    *
@@ -13,12 +13,14 @@ import io.vertx.core.http.HttpClientResponse;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.http.HttpVersion;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.streams.ReadStream;
 import io.vertx.ext.web.RoutingContext;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -45,6 +47,7 @@ import org.folio.okapi.common.OkapiToken;
 import org.folio.okapi.common.Success;
 import org.folio.okapi.common.XOkapiHeaders;
 import org.folio.okapi.util.DropwizardHelper;
+import org.folio.okapi.util.JsonStreamer;
 import org.folio.okapi.util.ProxyContext;
 
 
@@ -402,6 +405,12 @@ public class ProxyService {
     sanitizeAuthHeaders(hres.headers());
     hres.headers().remove("Content-Length");
     hres.headers().remove("Transfer-Encoding");
+    if (pc.getCtx().request().version() == HttpVersion.HTTP_2) {
+      // connection-specific headers are not allowed in HTTP/2 (RFC 7540, 8.1.2.2)
+      hres.headers().remove("Connection");
+      hres.headers().remove("Keep-Alive");
+      hres.headers().remove("Upgrade");
+    }
     if (hres.getStatusCode() != 204) {
       hres.setChunked(true);
     }
@@ -870,27 +879,47 @@ public class ProxyService {
     for (HttpClientRequest r : clientRequestList) {
       r.end(bcontent);
     }
-    internalModule.internalService(req, pc, res -> {
+    internalModule.internalService(req, pc, mi.getRoutingEntry(), res -> {
       if (res.failed()) {
         pc.responseError(res.getType(), res.cause());
         return;
       }
       String resp = res.result();
+      Collection<?> streamBody = pc.getStreamBody();
+      pc.setStreamBody(null);
       int statusCode = pc.getCtx().response().getStatusCode();
-      if (statusCode == 200 && resp.isEmpty()) {
+      if (statusCode == 200 && resp.isEmpty() && streamBody == null) {
         // Say "no content", if there isn't any
         statusCode = 204;
         pc.getCtx().response().setStatusCode(statusCode);
       }
-      Buffer respBuf = Buffer.buffer(resp);
       pc.setHandlerRes(statusCode);
       makeTraceHeader(mi, statusCode, pc);
       if (it.hasNext()) { // carry on with the pipeline
+        Buffer respBuf = streamBody == null
+            ? Buffer.buffer(resp) : Json.encodeToBuffer(streamBody);
         proxyR(it, pc, null, respBuf, new LinkedList<>());
+      } else if (streamBody != null) {
+        streamInternal(pc, streamBody);
       } else { // produce a result
         pc.closeTimer();
-        ctx.response().end(respBuf);
+        ctx.response().end(Buffer.buffer(resp));
+      }
+    });
+  }
+
+  private void streamInternal(ProxyContext pc, Collection<?> streamBody) {
+    HttpServerResponse response = pc.getCtx().response();
+    response.setChunked(true);
+    JsonStreamer.writeArray(response, streamBody.iterator(), res -> {
+      pc.closeTimer();
+      if (res.failed()) {
+        // status and headers are already sent; only way out is to close
+        pc.error("streaming response failed: " + res.cause().getMessage());
+        response.close();
+        return;
       }
+      response.end();
     });
   }
 
@@ -0,0 +1,326 @@
+package org.folio.okapi.managers;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpRequest;
+import io.vertx.ext.web.client.HttpResponse;
+import io.vertx.ext.web.client.WebClient;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.DeploymentDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.bean.NodeDescriptor;
+import org.folio.okapi.bean.Tenant;
+import org.folio.okapi.common.Config;
+import org.folio.okapi.common.ErrorType;
+import org.folio.okapi.common.ExtendedAsyncResult;
+import org.folio.okapi.common.Failure;
+import org.folio.okapi.common.OkapiLogger;
+import org.folio.okapi.common.OkapiStringUtil;
+import org.folio.okapi.common.Success;
+import org.folio.okapi.common.XOkapiHeaders;
+import org.folio.okapi.util.DropwizardHelper;
+import org.folio.okapi.util.ParallelTasks;
+
+/**
+ * Keeps modules, tenants and discovery of a replica node in line with a full
+ * node. A snapshot is taken at start, and changes are then fetched with long
+ * polling of the full node (see {@link ReplicationManager}). If the full node
+ * can not be reached, the last known state is kept and served, and fetching
+ * is retried with a growing delay. If the changes are no longer available, as
+ * when the full node has restarted, a new snapshot is taken.
+ */
+public class ReplicaManager {
+
+  private final Logger logger = OkapiLogger.get();
+  private static final long RETRY_MIN_MS = 1000;
+  private static final long RETRY_MAX_MS = 30000;
+  private static final long CLIENT_TIMEOUT_EXTRA_MS = 10000;
+
+  private final Vertx vertx;
+  private final WebClient webClient;
+  private final ModuleManager moduleManager;
+  private final TenantManager tenantManager;
+  private final DiscoveryManager discoveryManager;
+  private final String sourceUrl;
+  private final String token;
+  private final long waitMs;
+  private String epoch;
+  private long seq;
+  private long retryMs = RETRY_MIN_MS;
+
+  /**
+   * Construct replica manager.
+   * @param vertx Vert.x handle
+   * @param moduleManager module manager
+   * @param tenantManager tenant manager
+   * @param discoveryManager discovery manager
+   * @param config configuration; replica_source is the URL of the full node
+   */
+  public ReplicaManager(Vertx vertx, ModuleManager moduleManager, TenantManager tenantManager,
+                        DiscoveryManager discoveryManager, JsonObject config) {
+    this.vertx = vertx;
+    this.webClient = WebClient.create(vertx);
+    this.moduleManager = moduleManager;
+    this.tenantManager = tenantManager;
+    this.discoveryManager = discoveryManager;
+    String url = Config.getSysConf("replica_source", null, config);
+    if (url == null) {
+      throw new IllegalArgumentException("replica_source must be set for mode replica");
+    }
+    this.sourceUrl = OkapiStringUtil.trimTrailingSlashes(url);
+    this.token = Config.getSysConf("replica_token", null, config);
+    this.waitMs = Math.min(ReplicationManager.WAIT_MAX_MS,
+        Long.parseLong(Config.getSysConf("replica_wait", "30000", config)));
+  }
+
+  /**
+   * Take the first snapshot and start following changes. Completes when the
+   * snapshot is applied; a replica that can not reach the full node starts
+   * anyway, and keeps trying.
+   * @param fut async result
+   */
+  public void init(Handler<ExtendedAsyncResult<Void>> fut) {
+    snapshot(res -> {
+      if (res.failed()) {
+        logger.warn("Replica snapshot from {} failed: {}", sourceUrl, res.cause().getMessage());
+        retry();
+      } else {
+        poll();
+      }
+      fut.handle(new Success<>());
+    });
+  }
+
+  private HttpRequest<Buffer> request(String path, long timeout) {
+    HttpRequest<Buffer> req = webClient.getAbs(sourceUrl + path)
+        .timeout(timeout)
+        .putHeader(XOkapiHeaders.TENANT, XOkapiHeaders.SUPERTENANT_ID);
+    if (token != null) {
+      req.putHeader(XOkapiHeaders.TOKEN, token);
+    }
+    return req;
+  }
+
+  private void get(HttpRequest<Buffer> req, Handler<ExtendedAsyncResult<JsonObject>> fut) {
+    req.send(res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(ErrorType.INTERNAL, res.cause()));
+        return;
+      }
+      HttpResponse<Buffer> response = res.result();
+      if (response.statusCode() == 400) {
+        fut.handle(new Failure<>(ErrorType.USER, response.bodyAsString()));
+      } else if (response.statusCode() != 200) {
+        fut.handle(new Failure<>(ErrorType.INTERNAL,
+            response.statusCode() + ": " + response.bodyAsString()));
+      } else {
+        fut.handle(new Success<>(response.bodyAsJsonObject()));
+      }
+    });
+  }
+
+  private void poll() {
+    HttpRequest<Buffer> req = request("/_/replication/changes",
+        waitMs + CLIENT_TIMEOUT_EXTRA_MS)
+        .addQueryParam("epoch", epoch)
+        .addQueryParam("since", Long.toString(seq))
+        .addQueryParam("wait", Long.toString(waitMs));
+    get(req, res -> {
+      if (res.failed()) {
+        if (res.getType() == ErrorType.USER) {
+          logger.info("Replica changes not available: {}", res.cause().getMessage());
+          snapshot(sres -> {
+            if (sres.failed()) {
+              logger.warn("Replica snapshot from {} failed: {}", sourceUrl,
+                  sres.cause().getMessage());
+              retry();
+            } else {
+              poll();
+            }
+          });
+        } else {
+          logger.warn("Replica changes from {} failed: {}", sourceUrl, res.cause().getMessage());
+          retry();
+        }
+        return;
+      }
+      applyChanges(res.result(), ares -> {
+        if (ares.failed()) {
+          logger.warn("Replica changes not applied: {}", ares.cause().getMessage());
+          retry();
+          return;
+        }
+        retryMs = RETRY_MIN_MS;
+        poll();
+      });
+    });
+  }
+
+  private void retry() {
+    DropwizardHelper.markEvent("replica.sync.failure");
+    long delay = retryMs;
+    retryMs = Math.min(retryMs * 2, RETRY_MAX_MS);
+    vertx.setTimer(delay, id -> {
+      if (epoch == null) {
+        init(res -> { });
+      } else {
+        poll();
+      }
+    });
+  }
+
+  private void snapshot(Handler<ExtendedAsyncResult<Void>> fut) {
+    get(request("/_/replication/snapshot", RETRY_MAX_MS), res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      applySnapshot(res.result(), ares -> {
+        if (ares.succeeded()) {
+          epoch = res.result().getString("epoch");
+          seq = res.result().getLong("seq");
+          logger.info("Replica snapshot from {} applied, epoch {} seq {}", sourceUrl, epoch, seq);
+        }
+        fut.handle(ares);
+      });
+    });
+  }
+
+  private void applySnapshot(JsonObject snapshot, Handler<ExtendedAsyncResult<Void>> fut) {
+    moduleManager.getModulesWithFilter(true, true, null, mres -> {
+      if (mres.failed()) {
+        fut.handle(new Failure<>(mres.getType(), mres.cause()));
+        return;
+      }
+      tenantManager.getAll(tres -> {
+        if (tres.failed()) {
+          fut.handle(new Failure<>(tres.getType(), tres.cause()));
+          return;
+        }
+        JsonObject changes = new JsonObject();
+        Set<String> ids = new HashSet<>();
+        JsonArray modules = new JsonArray();
+        for (Object o : snapshot.getJsonArray(ReplicationManager.MODULES)) {
+          JsonObject md = (JsonObject) o;
+          ids.add(md.getString("id"));
+          modules.add(new JsonObject().put("id", md.getString("id")).put("value", md));
+        }
+        for (ModuleDescriptor md : mres.result()) {
+          if (!ids.contains(md.getId())) {
+            modules.add(new JsonObject().put("id", md.getId()));
+          }
+        }
+        changes.put(ReplicationManager.MODULES, modules);
+        ids.clear();
+        JsonArray tenants = new JsonArray();
+        for (Object o : snapshot.getJsonArray(ReplicationManager.TENANTS)) {
+          JsonObject t = (JsonObject) o;
+          String id = t.getJsonObject("descriptor").getString("id");
+          ids.add(id);
+          tenants.add(new JsonObject().put("id", id).put("value", t));
+        }
+        for (Tenant t : tres.result()) {
+          if (!ids.contains(t.getId())) {
+            tenants.add(new JsonObject().put("id", t.getId()));
+          }
+        }
+        changes.put(ReplicationManager.TENANTS, tenants);
+        ids.clear();
+        JsonArray nodes = new JsonArray();
+        for (Object o : snapshot.getJsonArray(ReplicationManager.NODES)) {
+          JsonObject nd = (JsonObject) o;
+          ids.add(nd.getString("nodeId"));
+          nodes.add(new JsonObject().put("id", nd.getString("nodeId")).put("value", nd));
+        }
+        for (NodeDescriptor nd : new ArrayList<>(discoveryManager.getLiveNodes())) {
+          if (!ids.contains(nd.getNodeId())) {
+            nodes.add(new JsonObject().put("id", nd.getNodeId()));
+          }
+        }
+        changes.put(ReplicationManager.NODES, nodes);
+        ids.clear();
+        JsonArray deployments = new JsonArray();
+        for (Object o : snapshot.getJsonArray(ReplicationManager.DEPLOYMENTS)) {
+          JsonObject dd = (JsonObject) o;
+          ids.add(dd.getString("srvcId") + "/" + dd.getString("instId"));
+          deployments.add(new JsonObject().put("deployment", dd).put("removed", false));
+        }
+        for (DeploymentDescriptor dd : discoveryManager.getTable().getAll()) {
+          if (!ids.contains(dd.getSrvcId() + "/" + dd.getInstId())) {
+            deployments.add(new JsonObject()
+                .put("deployment", JsonObject.mapFrom(dd)).put("removed", true));
+          }
+        }
+        changes.put(ReplicationManager.DEPLOYMENTS, deployments);
+        applyChanges(changes, fut);
+      });
+    });
+  }
+
+  /**
+   * Apply changes: modules before the tenants that enable them, and nodes
+   * before the deployments on them. Deployments are applied in order.
+   */
+  private void applyChanges(JsonObject changes, Handler<ExtendedAsyncResult<Void>> fut) {
+    List<JsonObject> modules = list(changes.getJsonArray(ReplicationManager.MODULES));
+    List<JsonObject> tenants = list(changes.getJsonArray(ReplicationManager.TENANTS));
+    List<JsonObject> nodes = list(changes.getJsonArray(ReplicationManager.NODES));
+    List<JsonObject> deployments = list(changes.getJsonArray(ReplicationManager.DEPLOYMENTS));
+    ParallelTasks.run(modules, 1, (c, done) -> {
+      JsonObject v = c.getJsonObject("value");
+      moduleManager.replicate(c.getString("id"),
+          v == null ? null : v.mapTo(ModuleDescriptor.class), done);
+    }, mres -> {
+      if (mres.failed()) {
+        fut.handle(mres);
+        return;
+      }
+      ParallelTasks.run(tenants, 1, (c, done) -> {
+        JsonObject v = c.getJsonObject("value");
+        tenantManager.replicate(c.getString("id"),
+            v == null ? null : v.mapTo(Tenant.class), done);
+      }, tres -> {
+        if (tres.failed()) {
+          fut.handle(tres);
+          return;
+        }
+        ParallelTasks.run(nodes, 1, (c, done) -> {
+          JsonObject v = c.getJsonObject("value");
+          discoveryManager.replicateNode(c.getString("id"),
+              v == null ? null : v.mapTo(NodeDescriptor.class), done);
+        }, nres -> {
+          if (nres.failed()) {
+            fut.handle(nres);
+            return;
+          }
+          ParallelTasks.run(deployments, 1, (c, done) ->
+              discoveryManager.replicateDeployment(
+                  c.getJsonObject("deployment").mapTo(DeploymentDescriptor.class),
+                  c.getBoolean("removed", false), done), dres -> {
+                if (dres.succeeded() && changes.containsKey("seq")) {
+                  seq = changes.getLong("seq");
+                }
+                fut.handle(dres);
+              });
+        });
+      });
+    });
+  }
+
+  private static List<JsonObject> list(JsonArray a) {
+    List<JsonObject> l = new ArrayList<>();
+    if (a != null) {
+      for (Object o : a) {
+        l.add((JsonObject) o);
+      }
+    }
+    return l;
+  }
+}
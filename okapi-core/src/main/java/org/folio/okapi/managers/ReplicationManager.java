@@ -0,0 +1,277 @@
+package org.folio.okapi.managers;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.DeploymentDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.bean.NodeDescriptor;
+import org.folio.okapi.bean.Tenant;
+import org.folio.okapi.common.ErrorType;
+import org.folio.okapi.common.ExtendedAsyncResult;
+import org.folio.okapi.common.Failure;
+import org.folio.okapi.common.Messages;
+import org.folio.okapi.common.OkapiLogger;
+import org.folio.okapi.common.Success;
+import org.folio.okapi.util.ParallelTasks;
+
+/**
+ * Feed of the modules, tenants, nodes and deployments of a full node for
+ * replica nodes. A replica takes a snapshot, and then asks for the changes
+ * since the snapshot, or since the changes it got last.
+ *
+ * <p>Changes are learned from the events that the managers publish to all
+ * nodes, so any full node serves the changes made on any node. A change is
+ * kept as the kind and ID of what changed, or the IDs of a list of modules
+ * added at once; the values are looked up when the changes are returned. Changes are numbered from the start of this node,
+ * which is identified by an epoch. Only the last LOG_SIZE changes are kept;
+ * a replica that is further behind, or that talks to another node, must take
+ * a new snapshot.
+ */
+public class ReplicationManager {
+
+  private final Logger logger = OkapiLogger.get();
+  private static final int LOG_SIZE = 10000;
+  private static final int LOOKUP_PARALLEL = 10;
+  static final long WAIT_MAX_MS = 60000;
+  static final String MODULES = "modules";
+  static final String TENANTS = "tenants";
+  static final String NODES = "nodes";
+  static final String DEPLOYMENTS = "deployments";
+
+  private final ModuleManager moduleManager;
+  private final TenantManager tenantManager;
+  private final DiscoveryManager discoveryManager;
+  private final String epoch = UUID.randomUUID().toString();
+  private final Deque<JsonObject> log = new ArrayDeque<>();
+  private final List<Runnable> waiting = new LinkedList<>();
+  private long seq = 0;
+  private Vertx vertx;
+  private final Messages messages = Messages.getInstance();
+
+  /**
+   * Construct replication manager.
+   * @param moduleManager module manager
+   * @param tenantManager tenant manager
+   * @param discoveryManager discovery manager
+   */
+  public ReplicationManager(ModuleManager moduleManager, TenantManager tenantManager,
+                            DiscoveryManager discoveryManager) {
+    this.moduleManager = moduleManager;
+    this.tenantManager = tenantManager;
+    this.discoveryManager = discoveryManager;
+  }
+
+  /**
+   * Start recording changes.
+   * @param vertx Vert.x handle
+   */
+  public void init(Vertx vertx) {
+    this.vertx = vertx;
+    EventBus eb = vertx.eventBus();
+    eb.consumer(ModuleManager.EVENT_NAME, res -> {
+      if (res.body() instanceof JsonArray) {
+        // one change for a list of modules, so that a long list does not
+        // push everything else out of the log
+        record(new JsonObject().put("kind", MODULES).put("ids", res.body()));
+      } else {
+        record(MODULES, (String) res.body());
+      }
+    });
+    eb.consumer(TenantManager.INDEX_EVENT_NAME, res -> record(TENANTS, (String) res.body()));
+    eb.consumer(DiscoveryManager.NODES_EVENT_NAME, res -> record(NODES, (String) res.body()));
+    discoveryManager.setNodeLeftHandler(id -> record(NODES, id));
+    eb.consumer(DiscoveryManager.DEPLOYMENTS_EVENT_NAME,
+        res -> record(((JsonObject) res.body()).copy().put("kind", DEPLOYMENTS)));
+  }
+
+  private void record(String kind, String id) {
+    record(new JsonObject().put("kind", kind).put("id", id));
+  }
+
+  private void record(JsonObject change) {
+    change.put("seq", ++seq);
+    log.addLast(change);
+    if (log.size() > LOG_SIZE) {
+      log.removeFirst();
+    }
+    List<Runnable> l = new ArrayList<>(waiting);
+    waiting.clear();
+    l.forEach(Runnable::run);
+  }
+
+  /**
+   * Get snapshot of modules, tenants, live nodes and deployments.
+   * @param fut async result with epoch, seq and the lists
+   */
+  public void getSnapshot(Handler<ExtendedAsyncResult<JsonObject>> fut) {
+    JsonObject snapshot = new JsonObject()
+        .put("epoch", epoch)
+        .put("seq", seq); // later changes are replayed on top of the snapshot
+    moduleManager.getModulesWithFilter(true, true, null, mres -> {
+      if (mres.failed()) {
+        fut.handle(new Failure<>(mres.getType(), mres.cause()));
+        return;
+      }
+      JsonArray modules = new JsonArray();
+      for (ModuleDescriptor md : mres.result()) {
+        modules.add(JsonObject.mapFrom(md));
+      }
+      snapshot.put(MODULES, modules);
+      tenantManager.getAll(tres -> {
+        if (tres.failed()) {
+          fut.handle(new Failure<>(tres.getType(), tres.cause()));
+          return;
+        }
+        JsonArray tenants = new JsonArray();
+        for (Tenant t : tres.result()) {
+          tenants.add(JsonObject.mapFrom(t));
+        }
+        snapshot.put(TENANTS, tenants);
+        JsonArray nodes = new JsonArray();
+        for (NodeDescriptor nd : discoveryManager.getLiveNodes()) {
+          nodes.add(JsonObject.mapFrom(nd));
+        }
+        snapshot.put(NODES, nodes);
+        JsonArray deployments = new JsonArray();
+        for (DeploymentDescriptor dd : discoveryManager.getTable().getAll()) {
+          deployments.add(JsonObject.mapFrom(dd));
+        }
+        snapshot.put(DEPLOYMENTS, deployments);
+        fut.handle(new Success<>(snapshot));
+      });
+    });
+  }
+
+  /**
+   * Get changes after a position. If there are none, wait for changes.
+   * @param epoch epoch of the position
+   * @param since seq of the position
+   * @param waitMs how long to wait for changes, at most WAIT_MAX_MS
+   * @param fut async result with epoch, seq and the changes, which may be
+   *     none if the wait timed out; failure with ErrorType.USER if the
+   *     position is not available
+   * @return cancels the wait, for when the client has gone; fut is not
+   *     called after that
+   */
+  public Runnable getChanges(String epoch, long since, long waitMs,
+                             Handler<ExtendedAsyncResult<JsonObject>> fut) {
+    long first = log.isEmpty() ? seq + 1 : log.getFirst().getLong("seq");
+    if (!this.epoch.equals(epoch) || since > seq || since < first - 1) {
+      fut.handle(new Failure<>(ErrorType.USER,
+          messages.getMessage("11700", Long.toString(since), epoch)));
+      return () -> { };
+    }
+    if (since < seq || waitMs <= 0) {
+      getChanges(since, fut);
+      return () -> { };
+    }
+    Runnable[] waiter = new Runnable[1];
+    long timerId = vertx.setTimer(Math.min(waitMs, WAIT_MAX_MS), id -> {
+      waiting.remove(waiter[0]);
+      getChanges(since, fut);
+    });
+    waiter[0] = () -> {
+      vertx.cancelTimer(timerId);
+      getChanges(since, fut);
+    };
+    waiting.add(waiter[0]);
+    return () -> {
+      if (waiting.remove(waiter[0])) {
+        vertx.cancelTimer(timerId);
+      }
+    };
+  }
+
+  private void getChanges(long since, Handler<ExtendedAsyncResult<JsonObject>> fut) {
+    List<JsonObject> changes = new LinkedList<>();
+    Iterator<JsonObject> it = log.descendingIterator();
+    while (it.hasNext()) {
+      JsonObject change = it.next();
+      if (change.getLong("seq") <= since) {
+        break;
+      }
+      changes.add(0, change);
+    }
+    JsonObject result = new JsonObject()
+        .put("epoch", epoch)
+        .put("seq", seq);
+    // latest value of each module, tenant and node; deployments as deltas
+    Map<String, JsonObject> lookups = new LinkedHashMap<>();
+    JsonArray deployments = new JsonArray();
+    for (JsonObject change : changes) {
+      String kind = change.getString("kind");
+      if (DEPLOYMENTS.equals(kind)) {
+        deployments.add(new JsonObject()
+            .put("deployment", change.getJsonObject("deployment"))
+            .put("removed", change.getBoolean("removed", false)));
+      } else if (change.containsKey("ids")) {
+        for (Object id : change.getJsonArray("ids")) {
+          lookups.putIfAbsent(kind + "/" + id,
+              new JsonObject().put("kind", kind).put("id", id));
+        }
+      } else {
+        lookups.putIfAbsent(kind + "/" + change.getString("id"), change);
+      }
+    }
+    result.put(MODULES, new JsonArray())
+        .put(TENANTS, new JsonArray())
+        .put(NODES, new JsonArray())
+        .put(DEPLOYMENTS, deployments);
+    ParallelTasks.run(lookups.values(), LOOKUP_PARALLEL, (change, done) -> {
+      String kind = change.getString("kind");
+      String id = change.getString("id");
+      JsonObject entry = new JsonObject().put("id", id);
+      result.getJsonArray(kind).add(entry);
+      lookup(kind, id, res -> {
+        if (res.succeeded()) {
+          entry.put("value", res.result());
+          done.handle(new Success<>());
+        } else if (res.getType() == ErrorType.NOT_FOUND) {
+          done.handle(new Success<>()); // removed
+        } else {
+          done.handle(new Failure<>(res.getType(), res.cause()));
+        }
+      });
+    }, res -> {
+      if (res.failed()) {
+        logger.warn("Getting changes since {} failed: {}", since, res.cause().getMessage());
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+      } else {
+        fut.handle(new Success<>(result));
+      }
+    });
+  }
+
+  private void lookup(String kind, String id, Handler<ExtendedAsyncResult<JsonObject>> fut) {
+    switch (kind) {
+      case MODULES:
+        moduleManager.get(id, res -> fut.handle(res.failed()
+            ? new Failure<>(res.getType(), res.cause())
+            : new Success<>(JsonObject.mapFrom(res.result()))));
+        break;
+      case TENANTS:
+        tenantManager.get(id, res -> fut.handle(res.failed()
+            ? new Failure<>(res.getType(), res.cause())
+            : new Success<>(JsonObject.mapFrom(res.result()))));
+        break;
+      default:
+        NodeDescriptor nd = discoveryManager.getLiveNode(id);
+        fut.handle(nd == null ? new Failure<>(ErrorType.NOT_FOUND, id)
+            : new Success<>(JsonObject.mapFrom(nd)));
+        break;
+    }
+  }
+}
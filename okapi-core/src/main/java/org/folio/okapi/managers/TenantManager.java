@@ -1,24 +1,34 @@
 package org.folio.okapi.managers;
 
+import com.codahale.metrics.Timer;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.MultiMap;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.EventBus;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.spi.cluster.ClusterManager;
+import java.time.Instant;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
 import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.InstallJob;
 import org.folio.okapi.bean.InterfaceDescriptor;
 import org.folio.okapi.bean.ModuleDescriptor;
 import org.folio.okapi.bean.ModuleInstance;
@@ -26,8 +36,10 @@ import org.folio.okapi.bean.PermissionList;
 import org.folio.okapi.bean.RoutingEntry;
 import org.folio.okapi.bean.Tenant;
 import org.folio.okapi.bean.TenantDescriptor;
+import org.folio.okapi.bean.TenantInstallResult;
 import org.folio.okapi.bean.TenantModuleDescriptor;
 import org.folio.okapi.bean.TenantModuleDescriptor.Action;
+import org.folio.okapi.bean.TenantModuleDescriptor.Stage;
 import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.ExtendedAsyncResult;
 import org.folio.okapi.common.Failure;
@@ -35,12 +47,21 @@ import org.folio.okapi.common.Messages;
 import org.folio.okapi.common.ModuleId;
 import org.folio.okapi.common.OkapiLogger;
 import org.folio.okapi.common.Success;
+import org.folio.okapi.service.StoreListener;
 import org.folio.okapi.service.TenantStore;
+import org.folio.okapi.util.AvailableModules;
+import org.folio.okapi.util.ChangeVersion;
 import org.folio.okapi.util.CompList;
+import org.folio.okapi.util.DepGraph;
 import org.folio.okapi.util.DepResolution;
+import org.folio.okapi.util.DropwizardHelper;
 import org.folio.okapi.util.LockedTypedMap1;
+import org.folio.okapi.util.LockedTypedMap2;
+import org.folio.okapi.util.ModuleIndex;
+import org.folio.okapi.util.ParallelTasks;
 import org.folio.okapi.util.ProxyContext;
 import org.folio.okapi.util.TenantInstallOptions;
+import org.folio.okapi.util.TimerWheel;
 
 /**
  * Manages the tenants in the shared map, and passes updates to the database.
@@ -52,11 +73,43 @@ public class TenantManager {
   private ModuleManager moduleManager;
   private ProxyService proxyService = null;
   private DiscoveryManager discoveryManager;
+  private ClusterManager clusterManager;
   private final TenantStore tenantStore;
   private LockedTypedMap1<Tenant> tenants = new LockedTypedMap1<>(Tenant.class);
   private String mapName = "tenants";
+  private final LockedTypedMap2<InstallJob> installJobs
+      = new LockedTypedMap2<>(InstallJob.class);
+  private String jobMapName = "installJobs";
+  private static final long JOB_SAVE_MS = 500;
+  // complete install jobs kept per tenant; older ones are removed
+  private static final int JOBS_RETAINED = 20;
   private static final String EVENT_NAME = "timer";
+  // _tenantPermissions from this version takes a list of permission lists
+  private static final InterfaceDescriptor PERMS_BATCH_INTERFACE
+      = new InterfaceDescriptor("_tenantPermissions", "2.0");
+  static final String INDEX_EVENT_NAME = "tenantModules";
+  private static final String INDEX_EVENT_ORIGIN = "origin";
+  private static final String VERSION_NAME = "okapi.tenants.version";
+  private final ChangeVersion version = new ChangeVersion();
   private Set<String> timers = new HashSet<>();
+  private static final long TIMER_TICK_MS = 10;
+  private static final int TIMER_WHEEL_SIZE = 1024;
+  // first call of a timer is delayed by up to this fraction of its delay
+  private static final double TIMER_JITTER = 0.1;
+  // timer calls in progress per module; more calls wait for their turn
+  private static final int TIMER_CALLS_PER_MODULE = 4;
+  // a timer call that starts this much after it was due is counted as late
+  private static final long TIMER_LATE_MS = 1000;
+  private TimerWheel timerWheel;
+  private final Random timerRandom = new Random();
+  private final Set<String> timerCallsPending = new HashSet<>();
+  private final Map<String, Integer> timerCallsRunning = new HashMap<>();
+  private final Map<String, Deque<Runnable>> timerCallsWaiting = new HashMap<>();
+  // enabled modules per tenant, indexed by interface
+  private final Map<String, ModuleIndex> interfaceIndexes = new HashMap<>();
+  private final Map<String, DepGraph> depGraphs = new HashMap<>();
+  private long indexGeneration = 0;
+  private final String nodeTag = UUID.randomUUID().toString();
   private Messages messages = Messages.getInstance();
   private Vertx vertx;
 
@@ -70,6 +123,15 @@ public class TenantManager {
     this.tenantStore = tenantStore;
   }
 
+  /**
+   * Set the cluster manager. Install jobs record the node that runs them, so
+   * that jobs of nodes that have left the cluster can be told apart.
+   * @param mgr cluster manager
+   */
+  public void setClusterManager(ClusterManager mgr) {
+    this.clusterManager = mgr;
+  }
+
   void setTenantsMap(LockedTypedMap1<Tenant> tenants) {
     this.tenants = tenants;
   }
@@ -82,6 +144,7 @@ public class TenantManager {
    */
   public void forceLocalMap() {
     mapName = null;
+    jobMapName = null;
   }
 
   /**
@@ -92,13 +155,34 @@ public class TenantManager {
    */
   public void init(Vertx vertx, Handler<ExtendedAsyncResult<Void>> fut) {
     this.vertx = vertx;
+    this.timerWheel = new TimerWheel(vertx, TIMER_TICK_MS, TIMER_WHEEL_SIZE);
+    consumeInterfaceIndexUpdates();
 
     tenants.init(vertx, mapName, ires -> {
       if (ires.failed()) {
         fut.handle(new Failure<>(ires.getType(), ires.cause()));
-      } else {
-        loadTenants(fut);
+        return;
       }
+      installJobs.init(vertx, jobMapName, jres -> {
+        if (jres.failed()) {
+          fut.handle(new Failure<>(jres.getType(), jres.cause()));
+          return;
+        }
+        version.init(vertx, mapName == null ? null : VERSION_NAME, vres -> {
+          if (vres.failed()) {
+            fut.handle(vres);
+            return;
+          }
+          loadTenants(lres -> {
+            if (lres.failed()) {
+              fut.handle(lres);
+            } else {
+              listenStore();
+              loadInstallJobs(fut);
+            }
+          });
+        });
+      });
     });
   }
 
@@ -117,6 +201,7 @@ public class TenantManager {
       if (ares.failed()) {
         fut.handle(new Failure<>(ares.getType(), ares.cause()));
       } else {
+        updateInterfaceIndex(id, null, null, null);
         fut.handle(new Success<>(id));
       }
     });
@@ -168,34 +253,69 @@ public class TenantManager {
           logger.warn("TenantManager: Updating database for {} failed: {}", id, upres);
           fut.handle(new Failure<>(ErrorType.INTERNAL, upres.cause()));
         } else {
-          tenants.add(id, t, fut); // handles success
+          tenants.add(id, t, ares -> {
+            if (ares.succeeded()) {
+              updateInterfaceIndex(id, null, null, null);
+            }
+            fut.handle(ares);
+          });
         }
       });
     });
   }
 
   void list(Handler<ExtendedAsyncResult<List<TenantDescriptor>>> fut) {
-    tenants.getKeys(lres -> {
+    tenants.getAll(lres -> {
       if (lres.failed()) {
         fut.handle(new Failure<>(ErrorType.INTERNAL, lres.cause()));
       } else {
-        CompList<List<TenantDescriptor>> futures = new CompList<>(ErrorType.INTERNAL);
         List<TenantDescriptor> tdl = new LinkedList<>();
-        for (String s : lres.result()) {
-          Promise<Tenant> promise = Promise.promise();
-          tenants.get(s, res -> {
-            if (res.succeeded()) {
-              tdl.add(res.result().getDescriptor());
-            }
-            promise.handle(res);
-          });
-          futures.add(promise);
+        for (Tenant t : lres.result().values()) {
+          tdl.add(t.getDescriptor());
         }
-        futures.all(tdl, fut);
+        fut.handle(new Success<>(tdl));
+      }
+    });
+  }
+
+  /**
+   * Get all tenants with their enabled modules.
+   * @param fut async result with tenants ordered by ID
+   */
+  void getAll(Handler<ExtendedAsyncResult<Collection<Tenant>>> fut) {
+    tenants.getAll(res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+      } else {
+        fut.handle(new Success<>(res.result().values()));
       }
     });
   }
 
+  /**
+   * Replace or remove a tenant as replicated from another node, without
+   * storage and without calling modules.
+   * @param id tenant ID
+   * @param t tenant; null to remove
+   * @param fut async result
+   */
+  void replicate(String id, Tenant t, Handler<ExtendedAsyncResult<Void>> fut) {
+    Handler<ExtendedAsyncResult<Void>> done = res -> {
+      if (res.failed() && res.getType() != ErrorType.NOT_FOUND) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      updateInterfaceIndex(id, null, null, null);
+      fut.handle(new Success<>());
+    };
+    if (t == null) {
+      tenants.remove(id, res -> done.handle(res.failed()
+          ? new Failure<>(res.getType(), res.cause()) : new Success<>()));
+    } else {
+      tenants.put(id, t, done);
+    }
+  }
+
   /**
    * Get a tenant.
    *
@@ -218,7 +338,20 @@ public class TenantManager {
         logger.warn("TenantManager: Deleting {} failed: {}", id, dres);
         fut.handle(new Failure<>(ErrorType.INTERNAL, dres.cause()));
       } else {
-        tenants.remove(id, fut);
+        tenants.remove(id, rres -> {
+          updateInterfaceIndex(id, null, null, null);
+          if (rres.failed()) {
+            fut.handle(rres);
+            return;
+          }
+          removeInstallJobs(id, 0, jres -> {
+            if (jres.failed()) {
+              logger.warn("Removing install jobs of {} failed: {}", id,
+                  jres.cause().getMessage());
+            }
+            fut.handle(rres);
+          });
+        });
       }
     });
   }
@@ -244,6 +377,16 @@ public class TenantManager {
     });
   }
 
+  /**
+   * Copy tenant for modification. Tenants read from a local tenants map are
+   * shared with the map.
+   * @param t tenant
+   * @return copy with its own set of enabled modules
+   */
+  private static Tenant copyOf(Tenant t) {
+    return new Tenant(t.getDescriptor(), new TreeMap<>(t.getEnabled()));
+  }
+
   /**
    * Update module for tenant and commit to storage.
    * @param t tenant
@@ -254,6 +397,12 @@ public class TenantManager {
   public void updateModuleCommit(Tenant t,
                                  String moduleFrom, String moduleTo,
                                  Handler<ExtendedAsyncResult<Void>> fut) {
+    updateModuleCommit(copyOf(t), moduleFrom, moduleTo, null, fut);
+  }
+
+  private void updateModuleCommit(Tenant t,
+                                  String moduleFrom, String moduleTo, ModuleDescriptor mdTo,
+                                  Handler<ExtendedAsyncResult<Void>> fut) {
     String id = t.getId();
     if (moduleFrom != null) {
       t.disableModule(moduleFrom);
@@ -265,11 +414,126 @@ public class TenantManager {
       if (ures.failed()) {
         fut.handle(new Failure<>(ures.getType(), ures.cause()));
       } else {
-        tenants.put(id, t, fut);
+        tenants.put(id, t, pres -> {
+          if (pres.succeeded()) {
+            updateInterfaceIndex(id, moduleFrom, moduleTo, mdTo);
+          }
+          fut.handle(pres);
+        });
       }
     });
   }
 
+  private void consumeInterfaceIndexUpdates() {
+    vertx.eventBus().consumer(INDEX_EVENT_NAME, res -> {
+      version.refresh(vres -> { });
+      if (!nodeTag.equals(res.headers().get(INDEX_EVENT_ORIGIN))) {
+        indexGeneration++;
+        interfaceIndexes.remove((String) res.body());
+        depGraphs.remove((String) res.body());
+      }
+    });
+  }
+
+  /**
+   * Update interface index and dependency graph of tenant after a change of
+   * the tenant or its enabled modules. These are updated in place if the
+   * descriptor of the enabled module is known; otherwise they are dropped and
+   * rebuilt on next use. The tenants version is bumped, other nodes drop
+   * theirs for the tenant, and the change is passed on to replicas.
+   * @param id tenant ID
+   * @param moduleFrom module disabled; null if none
+   * @param moduleTo module enabled; null if none
+   * @param mdTo descriptor of moduleTo; null if not known
+   */
+  private void updateInterfaceIndex(String id, String moduleFrom, String moduleTo,
+                                    ModuleDescriptor mdTo) {
+    indexGeneration++;
+    if (moduleFrom == null && moduleTo == null || moduleTo != null && mdTo == null) {
+      interfaceIndexes.remove(id);
+      depGraphs.remove(id);
+    } else {
+      ModuleIndex index = interfaceIndexes.get(id);
+      if (index != null) {
+        if (moduleFrom != null) {
+          index.remove(moduleFrom);
+        }
+        if (mdTo != null) {
+          index.add(mdTo);
+        }
+      }
+      DepGraph graph = depGraphs.get(id);
+      if (graph != null) {
+        graph.commit(moduleFrom, mdTo);
+      }
+    }
+    version.bump(res -> vertx.eventBus().publish(INDEX_EVENT_NAME, id,
+        new DeliveryOptions().addHeader(INDEX_EVENT_ORIGIN, nodeTag)));
+  }
+
+  /**
+   * Return version of the tenants, bumped on each change of a tenant or of
+   * its enabled modules.
+   * @return time of last change in milliseconds since epoch
+   */
+  public long getVersion() {
+    return version.get();
+  }
+
+  /**
+   * Get dependency graph of enabled modules for tenant.
+   * @param tenant tenant
+   * @param fut async result with graph
+   */
+  private void getDepGraph(Tenant tenant, Handler<ExtendedAsyncResult<DepGraph>> fut) {
+    DepGraph graph = depGraphs.get(tenant.getId());
+    if (graph != null) {
+      fut.handle(new Success<>(graph));
+      return;
+    }
+    final long generation = indexGeneration;
+    getInterfaceIndex(tenant, ires -> {
+      if (ires.failed()) {
+        fut.handle(new Failure<>(ires.getType(), ires.cause()));
+        return;
+      }
+      DepGraph newGraph = new DepGraph(ires.result().lookup(null, null, null, null));
+      if (generation == indexGeneration) {
+        depGraphs.put(tenant.getId(), newGraph);
+      }
+      fut.handle(new Success<>(newGraph));
+    });
+  }
+
+  /**
+   * Get index of enabled modules for tenant by interface.
+   * @param tenant tenant
+   * @param fut async result with index
+   */
+  private void getInterfaceIndex(Tenant tenant, Handler<ExtendedAsyncResult<ModuleIndex>> fut) {
+    ModuleIndex index = interfaceIndexes.get(tenant.getId());
+    if (index != null) {
+      fut.handle(new Success<>(index));
+      return;
+    }
+    final long generation = indexGeneration;
+    moduleManager.getEnabledModules(tenant, mres -> {
+      if (mres.failed()) {
+        fut.handle(new Failure<>(mres.getType(), mres.cause()));
+        return;
+      }
+      ModuleIndex newIndex = new ModuleIndex();
+      for (ModuleDescriptor md : mres.result()) {
+        newIndex.add(md);
+      }
+      // only keep it if no tenant was changed while it was built
+      if (generation == indexGeneration) {
+        interfaceIndexes.put(tenant.getId(), newIndex);
+      }
+      fut.handle(new Success<>(newIndex));
+    });
+  }
+
   void enableAndDisableModule(String tenantId, TenantInstallOptions options,
                               String moduleFrom, TenantModuleDescriptor td, ProxyContext pc,
                               Handler<ExtendedAsyncResult<String>> fut) {
@@ -278,7 +542,7 @@ public class TenantManager {
         fut.handle(new Failure<>(tres.getType(), tres.cause()));
         return;
       }
-      Tenant tenant = tres.result();
+      Tenant tenant = copyOf(tres.result());
       enableAndDisableModule(tenant, options, moduleFrom, td, pc, fut);
     });
   }
@@ -344,10 +608,15 @@ public class TenantManager {
       }
       ModuleDescriptor mdFrom = resFrom.result();
       if (options.getDepCheck()) {
-        moduleManager.enableAndDisableCheck(tenant, mdFrom, mdTo, cres -> {
-          if (cres.failed()) {
-            pc.debug("enableAndDisableModule: depcheck fail: " + cres.cause().getMessage());
-            fut.handle(new Failure<>(cres.getType(), cres.cause()));
+        getDepGraph(tenant, gres -> {
+          if (gres.failed()) {
+            fut.handle(new Failure<>(gres.getType(), gres.cause()));
+            return;
+          }
+          String err = gres.result().check(mdFrom, mdTo);
+          if (!err.isEmpty()) {
+            pc.debug("enableAndDisableModule: depcheck fail: " + err);
+            fut.handle(new Failure<>(ErrorType.USER, err));
             return;
           }
           enableAndDisableModule2(tenant, options, mdFrom, mdTo, pc, fut);
@@ -388,6 +657,22 @@ public class TenantManager {
   private void ead1TenantInterface(Tenant tenant, TenantInstallOptions options,
                                    ModuleDescriptor mdFrom, ModuleDescriptor mdTo,
                                    ProxyContext pc, Handler<ExtendedAsyncResult<Void>> fut) {
+    ead1TenantInterface(tenant, options, mdFrom, mdTo, true, pc, fut);
+  }
+
+  /**
+   * enableAndDisable helper 1: call the tenant interface.
+   *
+   * @param tenant tenant
+   * @param mdFrom module from
+   * @param mdTo module to
+   * @param perms whether to load permissions of mdTo; false if the caller
+   *     loads permissions for several modules at once
+   * @param fut future
+   */
+  private void ead1TenantInterface(Tenant tenant, TenantInstallOptions options,
+                                   ModuleDescriptor mdFrom, ModuleDescriptor mdTo, boolean perms,
+                                   ProxyContext pc, Handler<ExtendedAsyncResult<Void>> fut) {
 
     if (!options.getInvoke()) {
       fut.handle(new Success<>());
@@ -407,7 +692,7 @@ public class TenantManager {
         if (ires.getType() == ErrorType.NOT_FOUND) {
           logger.debug("eadTenantInterface: {} has no support for tenant init",
               (mdTo != null ? mdTo.getId() : mdFrom.getId()));
-          ead2TenantInterface(tenant, mdFrom, mdTo, pc, fut);
+          ead2TenantInterface(tenant, mdFrom, perms ? mdTo : null, pc, fut);
         } else {
           fut.handle(new Failure<>(ires.getType(), ires.cause()));
         }
@@ -420,7 +705,7 @@ public class TenantManager {
           } else {
             pc.passOkapiTraceHeaders(cres.result());
             // We can ignore the result, the call went well.
-            ead2TenantInterface(tenant, mdFrom, mdTo, pc, fut);
+            ead2TenantInterface(tenant, mdFrom, perms ? mdTo : null, pc, fut);
           }
         });
       }
@@ -449,7 +734,6 @@ public class TenantManager {
   private void ead2PermMod(Tenant tenant,
                            ModuleDescriptor mdFrom, ModuleDescriptor mdTo, ProxyContext pc,
                            Handler<ExtendedAsyncResult<Void>> fut) {
-    String moduleFrom = mdFrom != null ? mdFrom.getId() : null;
     findSystemInterface(tenant, res -> {
       if (res.failed()) {
         if (res.getType() == ErrorType.NOT_FOUND) { // no perms interface.
@@ -458,7 +742,7 @@ public class TenantManager {
             Set<String> listModules = tenant.listModules();
             pc.debug("Got a list of already-enabled moduled: " + Json.encode(listModules));
             Iterator<String> modit = listModules.iterator();
-            ead3RealoadPerms(tenant, modit, moduleFrom, mdTo, mdTo, pc, fut);
+            ead3RealoadPerms(tenant, modit, new LinkedList<>(), mdTo, mdTo, pc, fut);
             return;
           }
           pc.debug("enablePermissions: No tenantPermissions interface found. "
@@ -483,22 +767,25 @@ public class TenantManager {
    * provides the tenantPermissions interface, we may have other modules already
    * enabled, who have not got their permissions pushed. Now that we have a
    * place to push those permissions to, we do it recursively for all enabled
-   * modules.
+   * modules. The permissions of the enabled modules are gathered first, so
+   * that a permissions module that takes a list gets them in one call.
    *
    * @param tenant tenant
-   * @param moduleFrom module from
+   * @param modit enabled modules to reload
+   * @param mds modules gathered so far
    * @param mdTo module to
    * @param permsModule permissions module
    * @param pc ProxyContext
    * @param fut future
    */
   private void ead3RealoadPerms(
-      Tenant tenant, Iterator<String> modit,
-      String moduleFrom, ModuleDescriptor mdTo, ModuleDescriptor permsModule,
+      Tenant tenant, Iterator<String> modit, List<ModuleDescriptor> mds,
+      ModuleDescriptor mdTo, ModuleDescriptor permsModule,
       ProxyContext pc, Handler<ExtendedAsyncResult<Void>> fut) {
     if (!modit.hasNext()) {
       pc.debug("ead3RealoadPerms: No more modules to reload");
-      tenantPerms(tenant, mdTo, permsModule, pc, fut);
+      mds.add(mdTo);
+      tenantPerms(tenant, mds, permsModule, pc, fut);
       return;
     }
     String mdid = modit.next();
@@ -509,13 +796,38 @@ public class TenantManager {
       }
       ModuleDescriptor md = res.result();
       pc.debug("ead3RealoadPerms: Should reload perms for " + md.getName());
-      tenantPerms(tenant, md, permsModule, pc, pres -> {
-        if (pres.failed()) { // not likely to happen
-          fut.handle(pres);
-          return;
+      mds.add(md);
+      ead3RealoadPerms(tenant, modit, mds, mdTo, permsModule, pc, fut);
+    });
+  }
+
+  /**
+   * Load permissions of several modules, using the permissions module
+   * enabled for the tenant. Does nothing if there is no such module.
+   *
+   * @param tenant tenant
+   * @param mds modules to load permissions for
+   * @param pc ProxyContext
+   * @param fut future
+   */
+  private void tenantPermsModules(Tenant tenant, List<ModuleDescriptor> mds, ProxyContext pc,
+                                  Handler<ExtendedAsyncResult<Void>> fut) {
+    if (mds.isEmpty()) {
+      fut.handle(new Success<>());
+      return;
+    }
+    findSystemInterface(tenant, res -> {
+      if (res.failed()) {
+        if (res.getType() == ErrorType.NOT_FOUND) {
+          pc.debug("tenantPermsModules: No tenantPermissions interface found. "
+              + "Carrying on without it.");
+          fut.handle(new Success<>());
+        } else {
+          fut.handle(new Failure<>(res.getType(), res.cause()));
         }
-        ead3RealoadPerms(tenant, modit, moduleFrom, mdTo, permsModule, pc, fut);
-      });
+        return;
+      }
+      tenantPerms(tenant, mds, res.result(), pc, fut);
     });
   }
 
@@ -536,7 +848,7 @@ public class TenantManager {
     String moduleTo = mdTo != null ? mdTo.getId() : null;
 
     pc.debug("ead5commit: " + moduleFrom + " " + moduleTo);
-    updateModuleCommit(tenant, moduleFrom, moduleTo, ures -> {
+    updateModuleCommit(tenant, moduleFrom, moduleTo, mdTo, ures -> {
       if (ures.failed()) {
         fut.handle(new Failure<>(ures.getType(), ures.cause()));
         return;
@@ -596,6 +908,10 @@ public class TenantManager {
   }
 
   void handleTimer(String tenantId, String moduleId, int seq1) {
+    handleTimer(tenantId, moduleId, seq1, System.currentTimeMillis());
+  }
+
+  private void handleTimer(String tenantId, String moduleId, int seq1, long due) {
     logger.info("handleTimer tenant {} module {} seq1 {}", tenantId, moduleId, seq1);
     tenants.get(tenantId, tres -> {
       if (tres.failed()) {
@@ -604,14 +920,14 @@ public class TenantManager {
         return;
       }
       Tenant tenant = tres.result();
-      moduleManager.getEnabledModules(tenant, mres -> {
+      getInterfaceIndex(tenant, mres -> {
         if (mres.failed()) {
           stopTimer(tenantId, moduleId, seq1);
           return;
         }
-        List<ModuleDescriptor> mdList = mres.result();
+        List<ModuleDescriptor> mdList = mres.result().getProviders("_timer");
         try {
-          handleTimer(tenant, mdList, moduleId, seq1);
+          handleTimer(tenant, mdList, moduleId, seq1, due);
         } catch (Exception ex) {
           logger.warn("handleTimer exception {}", ex.getMessage(), ex);
         }
@@ -620,7 +936,7 @@ public class TenantManager {
   }
 
   private void handleTimer(Tenant tenant, List<ModuleDescriptor> mdList,
-                           String moduleId, int seq1) {
+                           String moduleId, int seq1, long due) {
     int noTimers = 0;
     final String tenantId = tenant.getId();
     for (ModuleDescriptor md : mdList) {
@@ -628,7 +944,7 @@ public class TenantManager {
         InterfaceDescriptor timerInt = md.getSystemInterface("_timer");
         if (timerInt != null) {
           List<RoutingEntry> routingEntries = timerInt.getAllRoutingEntries();
-          noTimers += handleTimer(tenant, md, routingEntries, seq1);
+          noTimers += handleTimer(tenant, md, routingEntries, seq1, due);
         }
       }
     }
@@ -640,7 +956,7 @@ public class TenantManager {
   }
 
   private int handleTimer(Tenant tenant, ModuleDescriptor md,
-                          List<RoutingEntry> routingEntries, int seq1) {
+                          List<RoutingEntry> routingEntries, int seq1, long due) {
     int i = 0;
     final String tenantId = tenant.getId();
     for (RoutingEntry re : routingEntries) {
@@ -652,11 +968,14 @@ public class TenantManager {
         if (seq1 == 0) {
           if (!timers.contains(key)) {
             timers.add(key);
-            waitTimer(tenantId, md, delay, seq);
+            // spread the first calls, so that timers of tenants enabled
+            // at the same time do not keep firing at the same time
+            long jitter = (long) (timerRandom.nextDouble() * delay * TIMER_JITTER);
+            waitTimer(tenantId, md, delay + jitter, seq);
           }
         } else if (seq == seq1) {
-          if (discoveryManager.isLeader()) {
-            fireTimer(tenant, md, re, path);
+          if (discoveryManager.isOwner(key)) {
+            fireTimer(tenant, md, re, path, key, due);
           }
           waitTimer(tenantId, md, delay, seq);
           return 1;
@@ -667,12 +986,63 @@ public class TenantManager {
   }
 
   private void waitTimer(String tenantId, ModuleDescriptor md, long delay, int seq) {
-    vertx.setTimer(delay, res
-        -> handleTimer(tenantId, md.getId(), seq));
+    final long due = System.currentTimeMillis() + delay;
+    timerWheel.schedule(tenantId + "_" + md.getId() + "_" + seq, delay, late
+        -> handleTimer(tenantId, md.getId(), seq, due));
+  }
+
+  /**
+   * Call timer of module, at most TIMER_CALLS_PER_MODULE at a time for each
+   * module. If the previous call of the same timer is still waiting or in
+   * progress, the call is skipped and counted as missed.
+   */
+  private void fireTimer(Tenant tenant, ModuleDescriptor md, RoutingEntry re, String path,
+                         String key, long due) {
+    if (!timerCallsPending.add(key)) {
+      logger.warn("timer call skipped for module {} for tenant {}: previous call not done",
+          md.getId(), tenant.getId());
+      DropwizardHelper.markEvent("timer." + md.getId() + ".missed");
+      return;
+    }
+    timerCallsWaiting.computeIfAbsent(md.getId(), k -> new LinkedList<>())
+        .add(() -> timerCall(tenant, md, re, path, key, due));
+    timerCallNext(md.getId());
+  }
+
+  private void timerCallNext(String moduleId) {
+    Deque<Runnable> waiting = timerCallsWaiting.get(moduleId);
+    int running = timerCallsRunning.getOrDefault(moduleId, 0);
+    if (waiting == null || running >= TIMER_CALLS_PER_MODULE) {
+      return;
+    }
+    Runnable call = waiting.poll();
+    if (waiting.isEmpty()) {
+      timerCallsWaiting.remove(moduleId);
+    }
+    timerCallsRunning.put(moduleId, running + 1);
+    call.run();
+  }
+
+  private void timerCallDone(String moduleId, String key) {
+    timerCallsPending.remove(key);
+    int running = timerCallsRunning.getOrDefault(moduleId, 1) - 1;
+    if (running == 0) {
+      timerCallsRunning.remove(moduleId);
+    } else {
+      timerCallsRunning.put(moduleId, running);
+    }
+    timerCallNext(moduleId);
   }
 
-  private void fireTimer(Tenant tenant, ModuleDescriptor md, RoutingEntry re, String path) {
+  private void timerCall(Tenant tenant, ModuleDescriptor md, RoutingEntry re, String path,
+                         String key, long due) {
     String tenantId = tenant.getId();
+    long late = System.currentTimeMillis() - due;
+    if (late > TIMER_LATE_MS) {
+      logger.warn("timer call to module {} for tenant {} is {} ms late",
+          md.getId(), tenantId, late);
+      DropwizardHelper.markEvent("timer." + md.getId() + ".late");
+    }
     HttpMethod httpMethod = HttpMethod.POST;
     String[] methods = re.getMethods();
     if (methods != null && re.getMethods().length >= 1) {
@@ -681,7 +1051,9 @@ public class TenantManager {
     ModuleInstance inst = new ModuleInstance(md, re, path, httpMethod, true);
     MultiMap headers = MultiMap.caseInsensitiveMultiMap();
     logger.info("timer call start module {} for tenant {}", md.getId(), tenantId);
+    Timer.Context tim = DropwizardHelper.getTimerContext("timer." + md.getId() + ".call");
     proxyService.callSystemInterface("supertenant", headers, tenant, inst, "", cres -> {
+      tim.close();
       if (cres.succeeded()) {
         logger.info("timer call succeeded to module {} for tenant {}",
             md.getId(), tenantId);
@@ -689,19 +1061,27 @@ public class TenantManager {
         logger.info("timer call failed to module {} for tenant {} : {}",
             md.getId(), tenantId, cres.cause().getMessage());
       }
+      timerCallDone(md.getId(), key);
     });
   }
 
   private void tenantPerms(Tenant tenant, ModuleDescriptor mdTo,
                            ModuleDescriptor permsModule, ProxyContext pc,
                            Handler<ExtendedAsyncResult<Void>> fut) {
+    List<ModuleDescriptor> mds = new LinkedList<>();
+    mds.add(mdTo);
+    tenantPerms(tenant, mds, permsModule, pc, fut);
+  }
+
+  /**
+   * Load permissions of modules into the permissions module. If it provides
+   * a version of _tenantPermissions that takes a list, this is one call for
+   * all modules; otherwise one call per module, in order.
+   */
+  private void tenantPerms(Tenant tenant, List<ModuleDescriptor> mds,
+                           ModuleDescriptor permsModule, ProxyContext pc,
+                           Handler<ExtendedAsyncResult<Void>> fut) {
 
-    pc.debug("Loading permissions for " + mdTo.getName()
-        + " (using " + permsModule.getName() + ")");
-    String moduleTo = mdTo.getId();
-    PermissionList pl = new PermissionList(moduleTo, mdTo.getPermissionSets());
-    String pljson = Json.encodePrettily(pl);
-    pc.debug("tenantPerms Req: " + pljson);
     InterfaceDescriptor permInt = permsModule.getSystemInterface("_tenantPermissions");
     String permPath = "";
     List<RoutingEntry> routingEntries = permInt.getAllRoutingEntries();
@@ -721,6 +1101,48 @@ public class TenantManager {
       return;
     }
     pc.debug("tenantPerms: " + permsModule.getId() + " and " + permPath);
+    if (!permInt.isCompatible(PERMS_BATCH_INTERFACE)) {
+      tenantPermsEach(tenant, mds.iterator(), permsModule, permInst, pc, fut);
+      return;
+    }
+    List<PermissionList> pls = new LinkedList<>();
+    List<String> moduleIds = new LinkedList<>();
+    for (ModuleDescriptor md : mds) {
+      pls.add(new PermissionList(md.getId(), md.getPermissionSets()));
+      moduleIds.add(md.getId());
+    }
+    pc.debug("Loading permissions for " + moduleIds
+        + " (using " + permsModule.getName() + ")");
+    tenantPermsCall(tenant, permsModule, permInst, Json.encodePrettily(pls),
+        String.join(", ", moduleIds), pc, fut);
+  }
+
+  private void tenantPermsEach(Tenant tenant, Iterator<ModuleDescriptor> it,
+                               ModuleDescriptor permsModule, ModuleInstance permInst,
+                               ProxyContext pc, Handler<ExtendedAsyncResult<Void>> fut) {
+    if (!it.hasNext()) {
+      fut.handle(new Success<>());
+      return;
+    }
+    ModuleDescriptor mdTo = it.next();
+    pc.debug("Loading permissions for " + mdTo.getName()
+        + " (using " + permsModule.getName() + ")");
+    String moduleTo = mdTo.getId();
+    PermissionList pl = new PermissionList(moduleTo, mdTo.getPermissionSets());
+    tenantPermsCall(tenant, permsModule, permInst, Json.encodePrettily(pl), moduleTo, pc,
+        res -> {
+          if (res.failed()) {
+            fut.handle(res);
+            return;
+          }
+          tenantPermsEach(tenant, it, permsModule, permInst, pc, fut);
+        });
+  }
+
+  private void tenantPermsCall(Tenant tenant, ModuleDescriptor permsModule,
+                               ModuleInstance permInst, String pljson, String modules,
+                               ProxyContext pc, Handler<ExtendedAsyncResult<Void>> fut) {
+    pc.debug("tenantPerms Req: " + pljson);
     proxyService.callSystemInterface(tenant, permInst,
         pljson, pc, cres -> {
           if (cres.failed()) {
@@ -728,7 +1150,7 @@ public class TenantManager {
           } else {
             pc.passOkapiTraceHeaders(cres.result());
             pc.debug("tenantPerms request to " + permsModule.getName()
-                + " succeeded for module " + moduleTo + " and tenant " + tenant.getId());
+                + " succeeded for module " + modules + " and tenant " + tenant.getId());
             fut.handle(new Success<>());
           }
         });
@@ -853,32 +1275,20 @@ public class TenantManager {
   private void findSystemInterface(Tenant tenant,
                                    Handler<ExtendedAsyncResult<ModuleDescriptor>> fut) {
 
-    Iterator<String> it = tenant.getEnabled().keySet().iterator();
-    findSystemInterfaceR(tenant, "_tenantPermissions", it, fut);
-  }
-
-  private void findSystemInterfaceR(Tenant tenant, String interfaceName,
-                                    Iterator<String> it,
-                                    Handler<ExtendedAsyncResult<ModuleDescriptor>> fut) {
-    if (!it.hasNext()) {
-      fut.handle(new Failure<>(ErrorType.NOT_FOUND, messages.getMessage("10403", interfaceName)));
-      return;
-    }
-    String mid = it.next();
-    moduleManager.get(mid, gres -> {
-      if (gres.failed()) { // should not happen
-        fut.handle(new Failure<>(gres.getType(), gres.cause()));
+    final String interfaceName = "_tenantPermissions";
+    getInterfaceIndex(tenant, ires -> {
+      if (ires.failed()) {
+        fut.handle(new Failure<>(ires.getType(), ires.cause()));
         return;
       }
-      ModuleDescriptor md = gres.result();
-      logger.debug("findSystemInterface: looking at {} system interface {}",
-          mid, md.getSystemInterface(interfaceName));
-      if (md.getSystemInterface(interfaceName) != null) {
-        logger.debug("findSystemInterface: found {}", mid);
-        fut.handle(new Success<>(md));
-        return;
+      for (ModuleDescriptor md : ires.result().getProviders(interfaceName)) {
+        if (md.getSystemInterface(interfaceName) != null) {
+          logger.debug("findSystemInterface: found {}", md.getId());
+          fut.handle(new Success<>(md));
+          return;
+        }
       }
-      findSystemInterfaceR(tenant, interfaceName, it, fut);
+      fut.handle(new Failure<>(ErrorType.NOT_FOUND, messages.getMessage("10403", interfaceName)));
     });
   }
 
@@ -898,12 +1308,12 @@ public class TenantManager {
                               Handler<ExtendedAsyncResult<List<InterfaceDescriptor>>> fut) {
 
     List<InterfaceDescriptor> intList = new LinkedList<>();
-    moduleManager.getEnabledModules(tenant, mres -> {
+    getInterfaceIndex(tenant, mres -> {
       if (mres.failed()) {
         fut.handle(new Failure<>(mres.getType(), mres.cause()));
         return;
       }
-      List<ModuleDescriptor> modlist = mres.result();
+      List<ModuleDescriptor> modlist = mres.result().lookup(null, null, null, null);
       Set<String> ids = new HashSet<>();
       for (ModuleDescriptor md : modlist) {
         for (InterfaceDescriptor provide : md.getProvidesList()) {
@@ -936,13 +1346,12 @@ public class TenantManager {
       }
       Tenant tenant = tres.result();
       List<ModuleDescriptor> mdList = new LinkedList<>();
-      moduleManager.getEnabledModules(tenant, mres -> {
+      getInterfaceIndex(tenant, mres -> {
         if (mres.failed()) {
           fut.handle(new Failure<>(mres.getType(), mres.cause()));
           return;
         }
-        List<ModuleDescriptor> modlist = mres.result();
-        for (ModuleDescriptor md : modlist) {
+        for (ModuleDescriptor md : mres.result().getProviders(interfaceName)) {
           for (InterfaceDescriptor provide : md.getProvidesList()) {
             if (interfaceName.equals(provide.getId())
                 && (interfaceType == null || provide.isType(interfaceType))) {
@@ -959,6 +1368,42 @@ public class TenantManager {
   void installUpgradeModules(String tenantId, ProxyContext pc,
                              TenantInstallOptions options, List<TenantModuleDescriptor> tml,
                              Handler<ExtendedAsyncResult<List<TenantModuleDescriptor>>> fut) {
+    installUpgradeModules(tenantId, pc, options, tml, null, fut);
+  }
+
+  /**
+   * Start install or upgrade in the background. Dependencies are resolved
+   * before the job is returned, so that problems are reported right away.
+   * @param tenantId tenant ID
+   * @param pc proxy context
+   * @param options install options
+   * @param tml install list; null for upgrade
+   * @param fut future with job, which is still running
+   */
+  void installUpgradeModulesAsync(String tenantId, ProxyContext pc,
+                                  TenantInstallOptions options, List<TenantModuleDescriptor> tml,
+                                  Handler<ExtendedAsyncResult<InstallJob>> fut) {
+    InstallJob job = new InstallJob();
+    job.setId(UUID.randomUUID().toString());
+    job.setTenant(tenantId);
+    job.setComplete(false);
+    job.setStartDate(Instant.now().toString());
+    if (clusterManager != null) {
+      job.setNodeId(clusterManager.getNodeID());
+    }
+    installUpgradeModules(tenantId, pc, options, tml, job, res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+      } else {
+        fut.handle(new Success<>(job));
+      }
+    });
+  }
+
+  private void installUpgradeModules(
+      String tenantId, ProxyContext pc, TenantInstallOptions options,
+      List<TenantModuleDescriptor> tml, InstallJob job,
+      Handler<ExtendedAsyncResult<List<TenantModuleDescriptor>>> fut) {
 
     if (tml != null) {
       for (TenantModuleDescriptor tm : tml) {
@@ -973,40 +1418,38 @@ public class TenantManager {
         fut.handle(new Failure<>(gres.getType(), gres.cause()));
         return;
       }
-      Tenant t = gres.result();
-      moduleManager.getModulesWithFilter(options.getPreRelease(),
-          options.getNpmSnapshot(), null, mres -> {
+      Tenant t = copyOf(gres.result());
+      moduleManager.getAvailableModules(options.getPreRelease(),
+          options.getNpmSnapshot(), mres -> {
             if (mres.failed()) {
               fut.handle(new Failure<>(mres.getType(), mres.cause()));
               return;
             }
-            List<ModuleDescriptor> modResult = mres.result();
-            HashMap<String, ModuleDescriptor> modsAvailable = new HashMap<>(modResult.size());
+            AvailableModules modsAvailable = mres.result();
             HashMap<String, ModuleDescriptor> modsEnabled = new HashMap<>();
-            for (ModuleDescriptor md : modResult) {
-              modsAvailable.put(md.getId(), md);
-              logger.info("mod available: {}", md.getId());
-              if (t.isEnabled(md.getId())) {
-                logger.info("mod enabled: {}", md.getId());
-                modsEnabled.put(md.getId(), md);
+            for (String id : t.getEnabled().keySet()) {
+              ModuleDescriptor md = modsAvailable.get(id);
+              if (md != null && t.isEnabled(id)) {
+                logger.info("mod enabled: {}", id);
+                modsEnabled.put(id, md);
               }
             }
             List<TenantModuleDescriptor> tml2
                 = prepareTenantModuleList(modsAvailable, modsEnabled, tml);
-            installUpgradeModules2(t, pc, options, modsAvailable, modsEnabled, tml2, fut);
+            installUpgradeModules2(t, pc, options, modsAvailable, modsEnabled, tml2, job, fut);
           });
     });
   }
 
   private List<TenantModuleDescriptor> prepareTenantModuleList(
-      Map<String, ModuleDescriptor> modsAvailable,
+      AvailableModules modsAvailable,
       Map<String, ModuleDescriptor> modsEnabled, List<TenantModuleDescriptor> tml) {
 
     if (tml == null) { // upgrade case . Mark all newer modules for install
       List<TenantModuleDescriptor> tml2 = new LinkedList<>();
       for (String id : modsEnabled.keySet()) {
-        ModuleId moduleId = new ModuleId(id);
-        String latestId = moduleId.getLatest(modsAvailable.keySet());
+        ModuleId moduleId = ModuleId.of(id);
+        String latestId = modsAvailable.getLatest(moduleId);
         if (!latestId.equals(id)) {
           TenantModuleDescriptor tmd = new TenantModuleDescriptor();
           tmd.setAction(Action.enable);
@@ -1025,9 +1468,9 @@ public class TenantManager {
   private void installUpgradeModules2(
       Tenant t, ProxyContext pc,
       TenantInstallOptions options,
-      Map<String, ModuleDescriptor> modsAvailable,
+      AvailableModules modsAvailable,
       Map<String, ModuleDescriptor> modsEnabled, List<TenantModuleDescriptor> tml,
-      Handler<ExtendedAsyncResult<List<TenantModuleDescriptor>>> fut) {
+      InstallJob job, Handler<ExtendedAsyncResult<List<TenantModuleDescriptor>>> fut) {
 
     DepResolution.installSimulate(modsAvailable, modsEnabled, tml, res -> {
       if (res.failed()) {
@@ -1036,8 +1479,32 @@ public class TenantManager {
       }
       if (options.getSimulate()) {
         fut.handle(new Success<>(tml));
+      } else if (job != null) {
+        for (TenantModuleDescriptor tm : tml) {
+          tm.setStage(Stage.pending);
+        }
+        job.setModules(tml);
+        saveInstallJob(job, sres -> {
+          if (sres.failed()) {
+            fut.handle(new Failure<>(sres.getType(), sres.cause()));
+            return;
+          }
+          fut.handle(new Success<>(tml));
+          installAutodeploy(t, pc, options, modsAvailable.getModules(), tml, res1 -> {
+            if (res1.failed()) {
+              job.setMessage(res1.cause().getMessage());
+            } else {
+              for (TenantModuleDescriptor tm : tml) {
+                tm.setStage(Stage.done);
+              }
+            }
+            job.setEndDate(Instant.now().toString());
+            job.setComplete(true);
+          });
+          saveInstallJobProgress(job);
+        });
       } else {
-        installAutodeploy(t, pc, options, modsAvailable, tml, tml.iterator(),
+        installAutodeploy(t, pc, options, modsAvailable.getModules(), tml,
             res1 -> {
               if (res1.failed()) {
                 fut.handle(new Failure<>(res1.getType(), res1.cause()));
@@ -1049,78 +1516,448 @@ public class TenantManager {
     });
   }
 
+  /**
+   * Install the same modules for many tenants. Dependencies are resolved
+   * once per distinct set of enabled modules, and modules are deployed once.
+   * Then tenants are installed, at most options.getParallel() at a time;
+   * each tenant has its modules invoked one at a time, so that no more than
+   * that number of calls to modules are in progress.
+   * @param tenantIds tenant IDs
+   * @param pc proxy context
+   * @param options install options
+   * @param tml install list; null for upgrade
+   * @param fut future with result for each tenant, in order of tenantIds
+   */
+  void installUpgradeModulesBulk(List<String> tenantIds, ProxyContext pc,
+                                 TenantInstallOptions options,
+                                 List<TenantModuleDescriptor> tml,
+                                 Handler<ExtendedAsyncResult<List<TenantInstallResult>>> fut) {
+
+    if (tml != null) {
+      for (TenantModuleDescriptor tm : tml) {
+        if (tm.getAction() == null) {
+          fut.handle(new Failure<>(ErrorType.USER, messages.getMessage("10405", tm.getId())));
+          return;
+        }
+      }
+    }
+    Map<String, TenantInstallResult> results = new HashMap<>();
+    Map<String, Tenant> found = new HashMap<>();
+    for (String id : tenantIds) {
+      TenantInstallResult r = new TenantInstallResult();
+      r.setTenant(id);
+      results.put(id, r);
+    }
+    ParallelTasks.run(results.keySet(), results.size(), (id, tfut) ->
+        tenants.get(id, res -> {
+          if (res.failed()) {
+            results.get(id).setMessage(res.cause().getMessage());
+          } else {
+            found.put(id, copyOf(res.result()));
+          }
+          tfut.handle(new Success<>());
+        }), lres ->
+        moduleManager.getAvailableModules(options.getPreRelease(),
+            options.getNpmSnapshot(), mres -> {
+              if (mres.failed()) {
+                fut.handle(new Failure<>(mres.getType(), mres.cause()));
+                return;
+              }
+              installBulkResolve(tenantIds, pc, options, mres.result(), tml, results, found, fut);
+            }));
+  }
+
+  private void installBulkResolve(List<String> tenantIds, ProxyContext pc,
+                                  TenantInstallOptions options,
+                                  AvailableModules modsAvailable,
+                                  List<TenantModuleDescriptor> tml,
+                                  Map<String, TenantInstallResult> results,
+                                  Map<String, Tenant> found,
+                                  Handler<ExtendedAsyncResult<List<TenantInstallResult>>> fut) {
+
+    // tenants with the same modules enabled share one resolution
+    Map<Set<String>, List<TenantModuleDescriptor>> resolved = new HashMap<>();
+    Map<Set<String>, String> unresolved = new HashMap<>();
+    Map<String, Tenant> ready = new HashMap<>();
+    Map<String, ModuleDescriptor> deployMods = new HashMap<>();
+    for (String id : tenantIds) {
+      Tenant t = found.get(id);
+      if (t == null) {
+        continue;
+      }
+      HashMap<String, ModuleDescriptor> modsEnabled = new HashMap<>();
+      for (String mid : t.getEnabled().keySet()) {
+        ModuleDescriptor md = modsAvailable.get(mid);
+        if (md != null && t.isEnabled(mid)) {
+          modsEnabled.put(mid, md);
+        }
+      }
+      Set<String> key = new HashSet<>(modsEnabled.keySet()); // simulation changes modsEnabled
+      if (!resolved.containsKey(key) && !unresolved.containsKey(key)) {
+        List<TenantModuleDescriptor> l
+            = copyTenantModuleList(prepareTenantModuleList(modsAvailable, modsEnabled, tml));
+        DepResolution.installSimulate(modsAvailable, modsEnabled, l, res -> {
+          if (res.failed()) {
+            unresolved.put(key, res.cause().getMessage());
+          } else {
+            resolved.put(key, l);
+          }
+        });
+      }
+      List<TenantModuleDescriptor> tml2 = resolved.get(key);
+      if (tml2 == null) {
+        results.get(id).setMessage(unresolved.get(key));
+        continue;
+      }
+      results.get(id).setModules(copyTenantModuleList(tml2));
+      ready.put(id, t);
+      for (TenantModuleDescriptor tm : tml2) {
+        if (tm.getAction() == Action.enable || tm.getAction() == Action.uptodate) {
+          deployMods.put(tm.getId(), modsAvailable.get(tm.getId()));
+        }
+      }
+    }
+    List<TenantInstallResult> resultList = new LinkedList<>();
+    for (String id : tenantIds) {
+      resultList.add(results.get(id));
+    }
+    if (options.getSimulate()) {
+      fut.handle(new Success<>(resultList));
+      return;
+    }
+    final int parallel = options.getParallel();
+    options.setParallel(1);
+    Collection<ModuleDescriptor> deployList
+        = options.getDeploy() ? deployMods.values() : new LinkedList<>();
+    ParallelTasks.run(deployList, parallel, proxyService::autoDeploy, dres -> {
+      if (dres.failed()) {
+        fut.handle(new Failure<>(dres.getType(), dres.cause()));
+        return;
+      }
+      ParallelTasks.run(ready.keySet(), parallel, (id, tfut) -> {
+        TenantInstallResult r = results.get(id);
+        installTenantPrepare(ready.get(id), pc, options, modsAvailable.getModules(),
+            r.getModules(), res -> {
+              if (res.failed()) {
+                r.setMessage(res.cause().getMessage());
+              }
+              tfut.handle(new Success<>());
+            });
+      }, res -> fut.handle(new Success<>(resultList)));
+    });
+  }
+
+  private static List<TenantModuleDescriptor> copyTenantModuleList(
+      List<TenantModuleDescriptor> tml) {
+
+    List<TenantModuleDescriptor> l = new LinkedList<>();
+    for (TenantModuleDescriptor tm : tml) {
+      TenantModuleDescriptor tm2 = new TenantModuleDescriptor();
+      tm2.setId(tm.getId());
+      tm2.setFrom(tm.getFrom());
+      tm2.setAction(tm.getAction());
+      tm2.setMessage(tm.getMessage());
+      l.add(tm2);
+    }
+    return l;
+  }
+
+  private void saveInstallJob(InstallJob job, Handler<ExtendedAsyncResult<Void>> fut) {
+    installJobs.put(job.getTenant(), job.getId(), job, res -> {
+      if (res.failed()) {
+        fut.handle(res);
+        return;
+      }
+      tenantStore.updateInstallJob(job, fut);
+    });
+  }
+
+  /**
+   * Save job regularly while it runs, one save at a time, and once more
+   * when it is complete. Then old jobs of the tenant are removed. Saving
+   * stops if the tenant is deleted meanwhile.
+   */
+  private void saveInstallJobProgress(InstallJob job) {
+    final boolean complete = job.getComplete();
+    vertx.setTimer(complete ? 1 : JOB_SAVE_MS, x -> tenants.get(job.getTenant(), tres -> {
+      if (tres.failed()) {
+        return;
+      }
+      saveInstallJob(job, res -> {
+        if (res.failed()) {
+          logger.warn("Saving install job {} failed: {}", job.getId(), res.cause().getMessage());
+        }
+        if (!complete) {
+          saveInstallJobProgress(job);
+          return;
+        }
+        removeInstallJobs(job.getTenant(), JOBS_RETAINED, rres -> {
+          if (rres.failed()) {
+            logger.warn("Removing old install jobs of {} failed: {}", job.getTenant(),
+                rres.cause().getMessage());
+          }
+        });
+      });
+    }));
+  }
+
+  /**
+   * Remove complete install jobs of a tenant from map and store, oldest
+   * first.
+   * @param tenantId tenant ID
+   * @param keep number of complete jobs to keep; 0 removes all jobs,
+   *     including any that are running
+   * @param fut async result
+   */
+  private void removeInstallJobs(String tenantId, int keep,
+                                 Handler<ExtendedAsyncResult<Void>> fut) {
+    installJobs.get(tenantId, res -> {
+      if (res.failed()) {
+        if (res.getType() == ErrorType.NOT_FOUND) {
+          fut.handle(new Success<>());
+        } else {
+          fut.handle(new Failure<>(res.getType(), res.cause()));
+        }
+        return;
+      }
+      List<InstallJob> l = res.result();
+      if (keep > 0) {
+        l.removeIf(j -> !Boolean.TRUE.equals(j.getComplete()));
+      }
+      l.sort(Comparator.comparing(j -> Instant.parse(j.getStartDate())));
+      CompList<Void> futures = new CompList<>(ErrorType.INTERNAL);
+      for (InstallJob job : l.subList(0, Math.max(0, l.size() - keep))) {
+        Promise<Void> promise = Promise.promise();
+        installJobs.remove(tenantId, job.getId(), rres -> {
+          if (rres.failed() && rres.getType() != ErrorType.NOT_FOUND) {
+            promise.handle(new Failure<>(rres.getType(), rres.cause()));
+            return;
+          }
+          tenantStore.deleteInstallJob(job.getId(), dres -> promise.handle(
+              dres.failed() && dres.getType() != ErrorType.NOT_FOUND
+                  ? new Failure<>(dres.getType(), dres.cause()) : new Success<>()));
+        });
+        futures.add(promise);
+      }
+      futures.all(fut);
+    });
+  }
+
+  /**
+   * Get install job.
+   * @param tenantId tenant ID
+   * @param jobId job ID
+   * @param fut future with job
+   */
+  void getInstallJob(String tenantId, String jobId, Handler<ExtendedAsyncResult<InstallJob>> fut) {
+    tenants.get(tenantId, tres -> {
+      if (tres.failed()) {
+        fut.handle(new Failure<>(tres.getType(), tres.cause()));
+        return;
+      }
+      installJobs.get(tenantId, jobId, res -> {
+        if (res.failed()) {
+          if (res.getType() == ErrorType.NOT_FOUND) {
+            fut.handle(new Failure<>(ErrorType.NOT_FOUND, messages.getMessage("10406", jobId)));
+          } else {
+            fut.handle(new Failure<>(res.getType(), res.cause()));
+          }
+          return;
+        }
+        fut.handle(res);
+      });
+    });
+  }
+
+  /**
+   * List install jobs of a tenant.
+   * @param tenantId tenant ID
+   * @param fut future with jobs, oldest first
+   */
+  void listInstallJobs(String tenantId, Handler<ExtendedAsyncResult<List<InstallJob>>> fut) {
+    tenants.get(tenantId, tres -> {
+      if (tres.failed()) {
+        fut.handle(new Failure<>(tres.getType(), tres.cause()));
+        return;
+      }
+      installJobs.get(tenantId, res -> {
+        if (res.failed()) {
+          if (res.getType() == ErrorType.NOT_FOUND) {
+            fut.handle(new Success<>(new LinkedList<>()));
+          } else {
+            fut.handle(new Failure<>(res.getType(), res.cause()));
+          }
+          return;
+        }
+        List<InstallJob> l = res.result();
+        l.sort(Comparator.comparing(j -> Instant.parse(j.getStartDate())));
+        fut.handle(new Success<>(l));
+      });
+    });
+  }
+
   /* phase 1 deploy modules if necessary */
   private void installAutodeploy(Tenant t, ProxyContext pc,
                                  TenantInstallOptions options,
                                  Map<String, ModuleDescriptor> modsAvailable,
                                  List<TenantModuleDescriptor> tml,
-                                 Iterator<TenantModuleDescriptor> it,
                                  Handler<ExtendedAsyncResult<Void>> fut) {
 
-    if (!it.hasNext() || !options.getDeploy()) {
-      installTenantPrepare(t, pc, options, modsAvailable, tml, tml.iterator(), fut);
+    if (!options.getDeploy()) {
+      installTenantPrepare(t, pc, options, modsAvailable, tml, fut);
       return;
     }
-    TenantModuleDescriptor tm = it.next();
-    if (tm.getAction() == Action.enable || tm.getAction() == Action.uptodate) {
+    List<TenantModuleDescriptor> deployList = new LinkedList<>();
+    for (TenantModuleDescriptor tm : tml) {
+      if (tm.getAction() == Action.enable || tm.getAction() == Action.uptodate) {
+        deployList.add(tm);
+      }
+    }
+    ParallelTasks.run(deployList, options.getParallel(), (tm, tfut) -> {
       ModuleDescriptor md = modsAvailable.get(tm.getId());
+      long startTime = System.nanoTime();
+      setStage(tm, Stage.deploy);
       proxyService.autoDeploy(md, res -> {
-        if (res.failed()) {
-          fut.handle(new Failure<>(res.getType(), res.cause()));
-        } else {
-          installAutodeploy(t, pc, options, modsAvailable, tml, it, fut);
+        if (options.getTiming()) {
+          tm.setDeployTime((System.nanoTime() - startTime) / 1000000);
         }
+        tfut.handle(res);
       });
-    } else {
-      installAutodeploy(t, pc, options, modsAvailable, tml, it, fut);
-    }
+    }, res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+      } else {
+        installTenantPrepare(t, pc, options, modsAvailable, tml, fut);
+      }
+    });
   }
 
-  /* phase 2 enable modules for tenant */
+  /* phase 2 enable modules for tenant, in waves of independent modules */
   private void installTenantPrepare(Tenant tenant, ProxyContext pc,
                                     TenantInstallOptions options,
                                     Map<String, ModuleDescriptor> modsAvailable,
                                     List<TenantModuleDescriptor> tml,
-                                    Iterator<TenantModuleDescriptor> it,
                                     Handler<ExtendedAsyncResult<Void>> fut) {
 
-    if (!it.hasNext()) {
+    List<List<TenantModuleDescriptor>> waves = DepResolution.installWaves(tml, modsAvailable);
+    installWave(tenant, pc, options, modsAvailable, tml, waves.iterator(), fut);
+  }
+
+  private void installWave(Tenant tenant, ProxyContext pc,
+                           TenantInstallOptions options,
+                           Map<String, ModuleDescriptor> modsAvailable,
+                           List<TenantModuleDescriptor> tml,
+                           Iterator<List<TenantModuleDescriptor>> waveIt,
+                           Handler<ExtendedAsyncResult<Void>> fut) {
+
+    if (!waveIt.hasNext()) {
       installUndeploy(tenant, options, modsAvailable, tml, tml.iterator(), fut);
       return;
     }
-    TenantModuleDescriptor tm = it.next();
-    ModuleDescriptor mdFrom = null;
-    ModuleDescriptor mdTo = null;
-    if (tm.getAction() == Action.enable) {
-      if (tm.getFrom() != null) {
-        mdFrom = modsAvailable.get(tm.getFrom());
-      }
-      mdTo = modsAvailable.get(tm.getId());
-    } else if (tm.getAction() == Action.disable) {
-      mdFrom = modsAvailable.get(tm.getId());
-    }
-    if (mdFrom == null && mdTo == null) {
-      installTenantPrepare(tenant, pc, options, modsAvailable, tml, it, fut);
-      return;
-    }
-    ModuleDescriptor mdFromFinal = mdFrom;
-    ModuleDescriptor mdToFinal = mdTo;
-    ead1TenantInterface(tenant, options, mdFrom, mdTo, pc, res -> {
-      if (res.failed()) {
-        tm.setMessage(res.cause().getMessage());
-        fut.handle(new Failure<>(res.getType(), res.cause()));
-        return;
+    List<TenantModuleDescriptor> wave = waveIt.next();
+    List<TenantModuleDescriptor> invoked = new LinkedList<>();
+    ParallelTasks.run(wave, options.getParallel(), (tm, tfut) -> {
+      long startTime = System.nanoTime();
+      setStage(tm, Stage.invoke);
+      ModuleDescriptor mdTo = getInstallTo(tm, modsAvailable);
+      // a permissions module loads its own permissions (and reloads others)
+      boolean perms = mdTo != null && mdTo.getSystemInterface("_tenantPermissions") != null;
+      ead1TenantInterface(tenant, options, getInstallFrom(tm, modsAvailable),
+          mdTo, perms, pc, res -> {
+            if (options.getTiming()) {
+              tm.setInvokeTime((System.nanoTime() - startTime) / 1000000);
+            }
+            if (res.failed()) {
+              tm.setMessage(res.cause().getMessage());
+            } else {
+              invoked.add(tm);
+            }
+            tfut.handle(res);
+          });
+    }, res -> {
+      // load permissions for the wave at once
+      List<TenantModuleDescriptor> permsList = new LinkedList<>();
+      List<ModuleDescriptor> permsMods = new LinkedList<>();
+      for (TenantModuleDescriptor tm : wave) {
+        ModuleDescriptor mdTo = getInstallTo(tm, modsAvailable);
+        if (options.getInvoke() && invoked.contains(tm) && mdTo != null
+            && mdTo.getSystemInterface("_tenantPermissions") == null) {
+          permsList.add(tm);
+          permsMods.add(mdTo);
+        }
       }
-      ead5commit(tenant, mdFromFinal, mdToFinal, pc, res1 -> {
-        if (res1.failed()) {
-          fut.handle(new Failure<>(res1.getType(), res1.cause()));
-          return;
+      tenantPermsModules(tenant, permsMods, pc, pres -> {
+        if (pres.failed()) {
+          for (TenantModuleDescriptor tm : permsList) {
+            tm.setMessage(pres.cause().getMessage());
+          }
+          invoked.removeAll(permsList);
         }
-        installTenantPrepare(tenant, pc, options, modsAvailable, tml, it, fut);
+        // commit in install list order what was invoked, also if some failed
+        List<TenantModuleDescriptor> commitList = new LinkedList<>(wave);
+        commitList.retainAll(invoked);
+        installCommit(tenant, pc, modsAvailable, commitList.iterator(), cres -> {
+          if (cres.failed()) {
+            fut.handle(cres);
+          } else if (res.failed()) {
+            fut.handle(new Failure<>(res.getType(), res.cause()));
+          } else if (pres.failed()) {
+            fut.handle(pres);
+          } else {
+            installWave(tenant, pc, options, modsAvailable, tml, waveIt, fut);
+          }
+        });
       });
     });
   }
 
+  private void installCommit(Tenant tenant, ProxyContext pc,
+                             Map<String, ModuleDescriptor> modsAvailable,
+                             Iterator<TenantModuleDescriptor> it,
+                             Handler<ExtendedAsyncResult<Void>> fut) {
+
+    if (!it.hasNext()) {
+      fut.handle(new Success<>());
+      return;
+    }
+    TenantModuleDescriptor tm = it.next();
+    ead5commit(tenant, getInstallFrom(tm, modsAvailable), getInstallTo(tm, modsAvailable), pc,
+        res -> {
+          if (res.failed()) {
+            fut.handle(new Failure<>(res.getType(), res.cause()));
+            return;
+          }
+          setStage(tm, Stage.done);
+          installCommit(tenant, pc, modsAvailable, it, fut);
+        });
+  }
+
+  /* stage is only tracked for install jobs */
+  private static void setStage(TenantModuleDescriptor tm, Stage stage) {
+    if (tm.getStage() != null) {
+      tm.setStage(stage);
+    }
+  }
+
+  private static ModuleDescriptor getInstallFrom(TenantModuleDescriptor tm,
+                                                 Map<String, ModuleDescriptor> modsAvailable) {
+    if (tm.getAction() == Action.enable && tm.getFrom() != null) {
+      return modsAvailable.get(tm.getFrom());
+    }
+    if (tm.getAction() == Action.disable) {
+      return modsAvailable.get(tm.getId());
+    }
+    return null;
+  }
+
+  private static ModuleDescriptor getInstallTo(TenantModuleDescriptor tm,
+                                               Map<String, ModuleDescriptor> modsAvailable) {
+    if (tm.getAction() == Action.enable) {
+      return modsAvailable.get(tm.getId());
+    }
+    return null;
+  }
+
   /* phase 4 undeploy if no longer needed */
   private void installUndeploy(Tenant tenant,
                                TenantInstallOptions options,
@@ -1154,6 +1991,7 @@ public class TenantManager {
       }
       // success means : not in use, so we can undeploy it
       logger.info("autoUndeploy mdF {}", mdF.getId());
+      setStage(tm, Stage.undeploy);
       proxyService.autoUndeploy(mdF, res -> {
         if (res.failed()) {
           fut.handle(new Failure<>(res.getType(), res.cause()));
@@ -1197,36 +2035,19 @@ public class TenantManager {
    * @param fut - Succeeds if not in use. Fails with ANY and the module name
    */
   public void getModuleUser(String mod, Handler<ExtendedAsyncResult<Void>> fut) {
-    tenants.getKeys(kres -> {
+    tenants.getAll(kres -> {
       if (kres.failed()) {
         fut.handle(new Failure<>(kres.getType(), kres.cause()));
-      } else {
-        Collection<String> tkeys = kres.result();
-        Iterator<String> it = tkeys.iterator();
-        getModuleUserR(mod, it, fut);
+        return;
       }
-    });
-  }
-
-  private void getModuleUserR(String mod, Iterator<String> it,
-                              Handler<ExtendedAsyncResult<Void>> fut) {
-    if (!it.hasNext()) { // no problems found
-      fut.handle(new Success<>());
-    } else {
-      String tid = it.next();
-      tenants.get(tid, gres -> {
-        if (gres.failed()) {
-          fut.handle(new Failure<>(gres.getType(), gres.cause()));
-        } else {
-          Tenant t = gres.result();
-          if (t.isEnabled(mod)) {
-            fut.handle(new Failure<>(ErrorType.ANY, tid));
-          } else {
-            getModuleUserR(mod, it, fut);
-          }
+      for (Map.Entry<String, Tenant> e : kres.result().entrySet()) {
+        if (e.getValue().isEnabled(mod)) {
+          fut.handle(new Failure<>(ErrorType.ANY, e.getKey()));
+          return;
         }
-      });
-    }
+      }
+      fut.handle(new Success<>());
+    });
   }
 
   /**
@@ -1261,4 +2082,124 @@ public class TenantManager {
     });
   }
 
+  /**
+   * Follow changes that other nodes make to the tenant store. Needed when
+   * nodes share the database, but not a cluster.
+   */
+  private void listenStore() {
+    if (vertx.isClustered()) {
+      return;
+    }
+    tenantStore.listen(new StoreListener<Tenant>() {
+      @Override
+      public void changed(String id, Tenant t) {
+        replicate(id, t, res -> {
+          if (res.failed()) {
+            logger.warn("Tenant {} from store not applied: {}", id, res.cause().getMessage());
+          }
+        });
+      }
+
+      @Override
+      public void reload() {
+        reloadTenants();
+      }
+    });
+  }
+
+  private void reloadTenants() {
+    tenantStore.listTenants(sres -> {
+      if (sres.failed()) {
+        logger.warn("Reloading tenants failed: {}", sres.cause().getMessage());
+        return;
+      }
+      tenants.getAll(tres -> {
+        if (tres.failed()) {
+          logger.warn("Reloading tenants failed: {}", tres.cause().getMessage());
+          return;
+        }
+        Map<String, Tenant> old = new HashMap<>(tres.result());
+        for (Tenant t : sres.result()) {
+          Tenant o = old.remove(t.getId());
+          if (o == null || !Json.encode(o).equals(Json.encode(t))) {
+            replicate(t.getId(), t, res -> { });
+          }
+        }
+        for (String id : old.keySet()) {
+          replicate(id, null, res -> { });
+        }
+      });
+    });
+  }
+
+  /**
+   * Load install jobs from the store into the shared memory map. Jobs that
+   * were running when Okapi stopped are marked as complete with an error.
+   * If other nodes are running, the jobs are in the shared map already; only
+   * those of nodes that have left the cluster are marked.
+   *
+   * @param fut future
+   */
+  private void loadInstallJobs(Handler<ExtendedAsyncResult<Void>> fut) {
+    installJobs.getKeys(gres -> {
+      if (gres.failed()) {
+        fut.handle(new Failure<>(gres.getType(), gres.cause()));
+        return;
+      }
+      if (!gres.result().isEmpty()) {
+        interruptLeftInstallJobs(fut);
+        return;
+      }
+      tenantStore.listInstallJobs(lres -> {
+        if (lres.failed()) {
+          fut.handle(new Failure<>(lres.getType(), lres.cause()));
+          return;
+        }
+        CompList<List<Void>> futures = new CompList<>(ErrorType.INTERNAL);
+        for (InstallJob job : lres.result()) {
+          Promise<Void> f = Promise.promise();
+          if (Boolean.TRUE.equals(job.getComplete())) {
+            installJobs.add(job.getTenant(), job.getId(), job, f::handle);
+          } else {
+            interruptInstallJob(job, f::handle);
+          }
+          futures.add(f);
+        }
+        futures.all(fut);
+      });
+    });
+  }
+
+  private void interruptLeftInstallJobs(Handler<ExtendedAsyncResult<Void>> fut) {
+    if (clusterManager == null) {
+      fut.handle(new Success<>());
+      return;
+    }
+    installJobs.getAll(ares -> {
+      if (ares.failed()) {
+        fut.handle(new Failure<>(ares.getType(), ares.cause()));
+        return;
+      }
+      List<String> nodes = clusterManager.getNodes();
+      CompList<List<Void>> futures = new CompList<>(ErrorType.INTERNAL);
+      for (InstallJob job : ares.result()) {
+        if (!Boolean.TRUE.equals(job.getComplete()) && job.getNodeId() != null
+            && !nodes.contains(job.getNodeId())) {
+          Promise<Void> f = Promise.promise();
+          interruptInstallJob(job, f::handle);
+          futures.add(f);
+        }
+      }
+      futures.all(fut);
+    });
+  }
+
+  private void interruptInstallJob(InstallJob job, Handler<ExtendedAsyncResult<Void>> fut) {
+    logger.warn("Install job {} for tenant {} was interrupted", job.getId(), job.getTenant());
+    job.setComplete(true);
+    job.setEndDate(Instant.now().toString());
+    job.setMessage(messages.getMessage("10407"));
+    saveInstallJob(job, fut);
+  }
+
 } // class
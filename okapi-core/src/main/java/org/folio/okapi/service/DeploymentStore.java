@@ -14,4 +14,11 @@ public interface DeploymentStore {
   void init(boolean reset, Handler<ExtendedAsyncResult<Void>> fut);
 
   void getAll(Handler<ExtendedAsyncResult<List<DeploymentDescriptor>>> fut);
+
+  /**
+   * Listen for changes that other nodes make to the store.
+   * @param listener receives the changes; not called if the store can not notify
+   */
+  default void listen(StoreListener<DeploymentDescriptor> listener) {
+  }
 }
@@ -1,9 +1,14 @@
 package org.folio.okapi.service;
 
 import io.vertx.core.Handler;
+import io.vertx.core.Promise;
 import java.util.List;
 import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.ExtendedAsyncResult;
+import org.folio.okapi.common.Failure;
+import org.folio.okapi.common.Success;
+import org.folio.okapi.util.CompList;
 
 public interface ModuleStore {
 
@@ -11,9 +16,47 @@ public interface ModuleStore {
 
   void getAll(Handler<ExtendedAsyncResult<List<ModuleDescriptor>>> fut);
 
+  /**
+   * Get the modules that match a filter.
+   * @param filter filter and page
+   * @param fut async result with the modules, sorted by module ID
+   */
+  default void getFiltered(ModuleStoreFilter filter,
+                           Handler<ExtendedAsyncResult<List<ModuleDescriptor>>> fut) {
+    getAll(res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      fut.handle(new Success<>(filter.apply(res.result())));
+    });
+  }
+
   void insert(ModuleDescriptor md, Handler<ExtendedAsyncResult<Void>> fut);
 
   void update(ModuleDescriptor md, Handler<ExtendedAsyncResult<Void>> fut);
 
   void init(boolean reset, Handler<ExtendedAsyncResult<Void>> fut);
+
+  /**
+   * Insert several values, with as few round trips as the store allows.
+   * @param list values to insert
+   * @param fut async result
+   */
+  default void insertList(List<ModuleDescriptor> list, Handler<ExtendedAsyncResult<Void>> fut) {
+    CompList<Void> futures = new CompList<>(ErrorType.INTERNAL);
+    for (ModuleDescriptor md : list) {
+      Promise<Void> promise = Promise.promise();
+      insert(md, promise::handle);
+      futures.add(promise);
+    }
+    futures.all(fut);
+  }
+
+  /**
+   * Listen for changes that other nodes make to the store.
+   * @param listener receives the changes; not called if the store can not notify
+   */
+  default void listen(StoreListener<ModuleDescriptor> listener) {
+  }
 }
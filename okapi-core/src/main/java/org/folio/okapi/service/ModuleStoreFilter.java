@@ -0,0 +1,164 @@
+package org.folio.okapi.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.folio.okapi.bean.InterfaceDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.util.DepResolution;
+
+/**
+ * Filter for modules in a module store. Modules are sorted by module ID,
+ * then paged with offset and limit.
+ */
+public class ModuleStoreFilter {
+
+  private String product;
+  private String provides;
+  private String requires;
+  private int latest = 0;
+  private int offset = 0;
+  private int limit = Integer.MAX_VALUE;
+  private boolean full = true;
+
+  /**
+   * Only modules of a product.
+   * @param v product; null for all
+   * @return this
+   */
+  public ModuleStoreFilter setProduct(String v) {
+    product = v;
+    return this;
+  }
+
+  public String getProduct() {
+    return product;
+  }
+
+  /**
+   * Only modules that provide an interface, of any version.
+   * @param v interface ID; null for any
+   * @return this
+   */
+  public ModuleStoreFilter setProvides(String v) {
+    provides = v;
+    return this;
+  }
+
+  public String getProvides() {
+    return provides;
+  }
+
+  /**
+   * Only modules that require an interface, of any version.
+   * @param v interface ID; null for any
+   * @return this
+   */
+  public ModuleStoreFilter setRequires(String v) {
+    requires = v;
+    return this;
+  }
+
+  public String getRequires() {
+    return requires;
+  }
+
+  /**
+   * Only the latest versions of each product.
+   * @param v number of versions per product; 0 for all
+   * @return this
+   */
+  public ModuleStoreFilter setLatest(int v) {
+    latest = v;
+    return this;
+  }
+
+  public int getLatest() {
+    return latest;
+  }
+
+  public ModuleStoreFilter setOffset(int v) {
+    offset = v;
+    return this;
+  }
+
+  public int getOffset() {
+    return offset;
+  }
+
+  public ModuleStoreFilter setLimit(int v) {
+    limit = v;
+    return this;
+  }
+
+  public int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Whether to return full module descriptors.
+   * @param v true for full; false for ID, name and tags only, which a store
+   *     may read without the rest of each descriptor
+   * @return this
+   */
+  public ModuleStoreFilter setFull(boolean v) {
+    full = v;
+    return this;
+  }
+
+  public boolean getFull() {
+    return full;
+  }
+
+  /**
+   * Reduce modules to the view asked for with setFull.
+   * @param list modules (not modified)
+   * @return list itself if full; otherwise new list of reduced modules
+   */
+  public List<ModuleDescriptor> view(List<ModuleDescriptor> list) {
+    if (full) {
+      return list;
+    }
+    List<ModuleDescriptor> ml = new ArrayList<>(list.size());
+    for (ModuleDescriptor md : list) {
+      ml.add(new ModuleDescriptor(md, true));
+    }
+    return ml;
+  }
+
+  private static boolean hasInterface(InterfaceDescriptor[] interfaces, String id) {
+    if (id == null) {
+      return true;
+    }
+    if (interfaces != null) {
+      for (InterfaceDescriptor i : interfaces) {
+        if (id.equals(i.getId())) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Filter, sort, page and view modules in memory.
+   * @param list modules (not modified)
+   * @return modules that match
+   */
+  public List<ModuleDescriptor> apply(List<ModuleDescriptor> list) {
+    List<ModuleDescriptor> filtered = new ArrayList<>();
+    for (ModuleDescriptor md : list) {
+      if ((product == null || product.equals(md.getProduct()))
+          && hasInterface(md.getProvides(), provides)
+          && hasInterface(md.getRequires(), requires)) {
+        filtered.add(md);
+      }
+    }
+    if (latest > 0) {
+      filtered = DepResolution.getLatestProducts(latest, filtered);
+    }
+    Collections.sort(filtered);
+    int from = Math.min(offset, filtered.size());
+    return view(filtered.subList(from, from + Math.min(limit, filtered.size() - from)));
+  }
+}
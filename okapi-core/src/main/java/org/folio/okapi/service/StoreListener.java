@@ -0,0 +1,22 @@
+package org.folio.okapi.service;
+
+/**
+ * Receives changes that other nodes make to a store they share with this
+ * node. Only stores that can notify of changes deliver them.
+ * @param <T> stored value type
+ */
+public interface StoreListener<T> {
+
+  /**
+   * A value was added, updated or removed.
+   * @param id ID of value
+   * @param value new value; null if removed
+   */
+  void changed(String id, T value);
+
+  /**
+   * Changes may have been missed, as when the connection to the store was
+   * lost; all values should be read again.
+   */
+  void reload();
+}
@@ -3,6 +3,7 @@ package org.folio.okapi.service;
 import io.vertx.core.Handler;
 import java.util.List;
 import java.util.SortedMap;
+import org.folio.okapi.bean.InstallJob;
 import org.folio.okapi.bean.Tenant;
 import org.folio.okapi.bean.TenantDescriptor;
 import org.folio.okapi.common.ExtendedAsyncResult;
@@ -22,4 +23,17 @@ public interface TenantStore {
   void listTenants(Handler<ExtendedAsyncResult<List<Tenant>>> fut);
 
   void init(boolean reset, Handler<ExtendedAsyncResult<Void>> fut);
+
+  void updateInstallJob(InstallJob job, Handler<ExtendedAsyncResult<Void>> fut);
+
+  void listInstallJobs(Handler<ExtendedAsyncResult<List<InstallJob>>> fut);
+
+  void deleteInstallJob(String id, Handler<ExtendedAsyncResult<Void>> fut);
+
+  /**
+   * Listen for changes that other nodes make to the store.
+   * @param listener receives the changes; not called if the store can not notify
+   */
+  default void listen(StoreListener<Tenant> listener) {
+  }
 }
@@ -5,6 +5,7 @@ import java.util.List;
 import org.folio.okapi.bean.DeploymentDescriptor;
 import org.folio.okapi.common.ExtendedAsyncResult;
 import org.folio.okapi.service.DeploymentStore;
+import org.folio.okapi.service.StoreListener;
 
 
 public class DeploymentStorePostgres implements DeploymentStore {
@@ -38,4 +39,9 @@ public class DeploymentStorePostgres implements DeploymentStore {
   public void getAll(Handler<ExtendedAsyncResult<List<DeploymentDescriptor>>> fut) {
     table.getAll(DeploymentDescriptor.class, fut);
   }
+
+  @Override
+  public void listen(StoreListener<DeploymentDescriptor> listener) {
+    table.listen(DeploymentDescriptor.class, listener);
+  }
 }
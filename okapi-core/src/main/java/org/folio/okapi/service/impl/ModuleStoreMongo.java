@@ -1,11 +1,16 @@
 package org.folio.okapi.service.impl;
 
 import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.mongo.MongoClient;
 import java.util.List;
+import java.util.regex.Pattern;
 import org.folio.okapi.bean.ModuleDescriptor;
 import org.folio.okapi.common.ExtendedAsyncResult;
+import org.folio.okapi.common.Failure;
+import org.folio.okapi.common.Success;
 import org.folio.okapi.service.ModuleStore;
+import org.folio.okapi.service.ModuleStoreFilter;
 
 /**
  * Stores ModuleDescriptors in a Mongo database.
@@ -31,6 +36,12 @@ public class ModuleStoreMongo implements ModuleStore {
     util.insert(md, md.getId(), fut);
   }
 
+  @Override
+  public void insertList(List<ModuleDescriptor> list,
+                         Handler<ExtendedAsyncResult<Void>> fut) {
+    util.insertList(list, ModuleDescriptor::getId, fut);
+  }
+
   @Override
   public void update(ModuleDescriptor md,
                      Handler<ExtendedAsyncResult<Void>> fut) {
@@ -43,6 +54,35 @@ public class ModuleStoreMongo implements ModuleStore {
     util.getAll(ModuleDescriptor.class, fut);
   }
 
+  @Override
+  public void getFiltered(ModuleStoreFilter filter,
+                          Handler<ExtendedAsyncResult<List<ModuleDescriptor>>> fut) {
+    JsonObject query = new JsonObject();
+    if (filter.getProduct() != null) {
+      query.put("_id", new JsonObject().put("$regex",
+          "^" + Pattern.quote(filter.getProduct()) + "(-[0-9]|$)"));
+    }
+    if (filter.getProvides() != null) {
+      query.put("provides.id", filter.getProvides());
+    }
+    if (filter.getRequires() != null) {
+      query.put("requires.id", filter.getRequires());
+    }
+    JsonObject fields = null;
+    if (!filter.getFull()) {
+      // interface IDs for the filter check in apply
+      fields = new JsonObject().put("id", 1).put("name", 1).put("tags", 1)
+          .put("provides.id", 1).put("requires.id", 1);
+    }
+    util.find(ModuleDescriptor.class, query, fields, res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      fut.handle(new Success<>(filter.apply(res.result())));
+    });
+  }
+
   @Override
   public void delete(String id, Handler<ExtendedAsyncResult<Void>> fut) {
     util.delete(id, fut);
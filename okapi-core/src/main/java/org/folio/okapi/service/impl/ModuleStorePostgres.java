@@ -1,26 +1,81 @@
 package org.folio.okapi.service.impl;
 
 import io.vertx.core.Handler;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Tuple;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
 import java.util.List;
 import org.folio.okapi.bean.ModuleDescriptor;
 import org.folio.okapi.common.ExtendedAsyncResult;
+import org.folio.okapi.common.Failure;
+import org.folio.okapi.common.ModuleId;
+import org.folio.okapi.common.Success;
 import org.folio.okapi.service.ModuleStore;
+import org.folio.okapi.service.ModuleStoreFilter;
+import org.folio.okapi.service.StoreListener;
 
+/**
+ * Stores ModuleDescriptors in Postgres. Besides the unique index on module
+ * ID, product and version numbers (parsed from the module ID) are indexed
+ * with btree, and provided and required interfaces with GIN, so that
+ * getFiltered does not read the whole table. Pages are cut from the sorted
+ * IDs of the matching modules, so that the order is that of ModuleId.
+ */
+@java.lang.SuppressWarnings({"squid:S1192"})
 public class ModuleStorePostgres implements ModuleStore {
 
   private static final String TABLE = "modules";
   private static final String JSON_COLUMN = "modulejson";
   private static final String ID_SELECT = JSON_COLUMN + "->>'id' = $1";
   private static final String ID_INDEX = JSON_COLUMN + "->'id'";
+  private static final String ID = "(" + JSON_COLUMN + "->>'id')";
+  // version: from the first hyphen-minus followed by a digit, as in ModuleId
+  private static final String VERSION = "substring(" + ID + " from '-([0-9].*)$')";
+  // compared as Java strings are, as in ModuleId
+  private static final String PRODUCT = "(COALESCE(left(" + ID + ", -length("
+      + VERSION + ") - 1), " + ID + ") COLLATE \"C\")";
+  private static final String MAJOR = "(substring(" + VERSION
+      + " from '^([0-9]+)')::numeric)";
+  private static final String MINOR = "(substring(" + VERSION
+      + " from '^[0-9]+\\.([0-9]+)')::numeric)";
+  private static final String PATCH = "(substring(" + VERSION
+      + " from '^[0-9]+\\.[0-9]+\\.([0-9]+)')::numeric)";
+  private static final String PROVIDES = JSON_COLUMN + "->'provides'";
+  private static final String REQUIRES = JSON_COLUMN + "->'requires'";
+  private final PostgresHandle pg;
   private final PostgresTable<ModuleDescriptor> pgTable;
 
   public ModuleStorePostgres(PostgresHandle pg) {
+    this.pg = pg;
     this.pgTable = new PostgresTable<>(pg, TABLE, JSON_COLUMN, ID_INDEX, ID_SELECT, "module_id");
   }
 
   @Override
   public void init(boolean reset, Handler<ExtendedAsyncResult<Void>> fut) {
-    pgTable.init(reset, fut);
+    pgTable.init(reset, res -> {
+      if (res.failed()) {
+        fut.handle(res);
+        return;
+      }
+      PostgresQuery q = pg.getQuery();
+      String sql = "CREATE INDEX IF NOT EXISTS module_version ON " + TABLE
+          + " (" + PRODUCT + ", " + MAJOR + ", " + MINOR + ", " + PATCH + ");"
+          + " CREATE INDEX IF NOT EXISTS module_provides ON " + TABLE
+          + " USING gin ((" + PROVIDES + ") jsonb_path_ops);"
+          + " CREATE INDEX IF NOT EXISTS module_requires ON " + TABLE
+          + " USING gin ((" + REQUIRES + ") jsonb_path_ops)";
+      q.query(sql, res1 -> {
+        if (res1.failed()) {
+          fut.handle(new Failure<>(res1.getType(), res1.cause()));
+          return;
+        }
+        q.close();
+        fut.handle(new Success<>());
+      });
+    });
   }
 
   @Override
@@ -28,6 +83,11 @@ public class ModuleStorePostgres implements ModuleStore {
     pgTable.insert(md, fut);
   }
 
+  @Override
+  public void insertList(List<ModuleDescriptor> list, Handler<ExtendedAsyncResult<Void>> fut) {
+    pgTable.insertList(list, fut);
+  }
+
   @Override
   public void update(ModuleDescriptor md, Handler<ExtendedAsyncResult<Void>> fut) {
     pgTable.update(md, fut);
@@ -38,8 +98,78 @@ public class ModuleStorePostgres implements ModuleStore {
     pgTable.getAll(ModuleDescriptor.class, fut);
   }
 
+  @Override
+  public void getFiltered(ModuleStoreFilter filter,
+                          Handler<ExtendedAsyncResult<List<ModuleDescriptor>>> fut) {
+    Tuple tuple = Tuple.tuple();
+    List<String> where = new LinkedList<>();
+    if (filter.getProduct() != null) {
+      tuple.addString(filter.getProduct());
+      where.add(PRODUCT + " = $" + tuple.size());
+    }
+    if (filter.getProvides() != null) {
+      tuple.addValue(interfaceArray(filter.getProvides()));
+      where.add(PROVIDES + " @> $" + tuple.size() + "::JSONB");
+    }
+    if (filter.getRequires() != null) {
+      tuple.addValue(interfaceArray(filter.getRequires()));
+      where.add(REQUIRES + " @> $" + tuple.size() + "::JSONB");
+    }
+    String clauses = where.isEmpty() ? "" : "WHERE " + String.join(" AND ", where);
+    if (filter.getLatest() > 0) {
+      // latest versions of each product are found after reading
+      pgTable.select(ModuleDescriptor.class, clauses, tuple, res -> {
+        if (res.failed()) {
+          fut.handle(new Failure<>(res.getType(), res.cause()));
+          return;
+        }
+        fut.handle(new Success<>(filter.apply(res.result())));
+      });
+      return;
+    }
+    // pre-releases do not sort in SQL as in ModuleId, so IDs are sorted and
+    // paged here, and only the modules of the page are read
+    pgTable.selectIds(clauses, tuple, res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      List<String> ids = res.result();
+      ids.sort(Comparator.comparing(ModuleId::new));
+      int from = Math.min(filter.getOffset(), ids.size());
+      int to = from + Math.min(filter.getLimit(), ids.size() - from);
+      if (from == to) {
+        fut.handle(new Success<>(new LinkedList<>()));
+        return;
+      }
+      JsonArray page = new JsonArray();
+      for (String id : ids.subList(from, to)) {
+        page.add(id);
+      }
+      pgTable.select(ModuleDescriptor.class, "WHERE " + ID_INDEX
+          + " IN (SELECT jsonb_array_elements($1::JSONB))", Tuple.of(page), sres -> {
+            if (sres.failed()) {
+              fut.handle(new Failure<>(sres.getType(), sres.cause()));
+              return;
+            }
+            List<ModuleDescriptor> l = sres.result();
+            Collections.sort(l);
+            fut.handle(new Success<>(filter.view(l)));
+          });
+    });
+  }
+
+  private static JsonArray interfaceArray(String id) {
+    return new JsonArray().add(new JsonObject().put("id", id));
+  }
+
   @Override
   public void delete(String id, Handler<ExtendedAsyncResult<Void>> fut) {
     pgTable.delete(id, fut);
   }
+
+  @Override
+  public void listen(StoreListener<ModuleDescriptor> listener) {
+    pgTable.listen(ModuleDescriptor.class, listener);
+  }
 }
@@ -1,12 +1,21 @@
 package org.folio.okapi.service.impl;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
 import io.vertx.core.Handler;
 import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.mongo.BulkOperation;
+import io.vertx.ext.mongo.BulkWriteOptions;
+import io.vertx.ext.mongo.FindOptions;
 import io.vertx.ext.mongo.MongoClient;
 import io.vertx.ext.mongo.UpdateOptions;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.function.Function;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.ExtendedAsyncResult;
@@ -17,6 +26,7 @@ import org.folio.okapi.common.Success;
 @java.lang.SuppressWarnings({"squid:S1192"})
 class MongoUtil<T> {
 
+  private static final int BATCH_SIZE = 1000;
   private final String collection;
   private final MongoClient cli;
   private final Logger logger = OkapiLogger.get();
@@ -87,23 +97,151 @@ class MongoUtil<T> {
     });
   }
 
-  public void getAll(Class<T> clazz, Handler<ExtendedAsyncResult<List<T>>> fut) {
-    final String q = "{}";
-    JsonObject jq = new JsonObject(q);
-    cli.find(collection, jq, res -> {
+  /**
+   * Insert documents, in batches of BATCH_SIZE; stops at the first failure.
+   * Documents known to be inserted before a failure are removed again, so
+   * that either all or none of the list is inserted, as for Postgres.
+   * Documents with IDs that existed before are never removed.
+   * @param list values to insert
+   * @param idOf ID of a value
+   * @param fut async result
+   */
+  public void insertList(List<T> list, Function<T, String> idOf,
+                         Handler<ExtendedAsyncResult<Void>> fut) {
+    List<BulkOperation> ops = new ArrayList<>(list.size());
+    List<String> ids = new ArrayList<>(list.size());
+    for (T t : list) {
+      JsonObject document = new JsonObject(Json.encode(t));
+      String id = idOf.apply(t);
+      encode(document, id);
+      ops.add(BulkOperation.createInsert(document));
+      ids.add(id);
+    }
+    bulkWrite(ops, 0, ids, fut);
+  }
+
+  /**
+   * Insert or replace documents, in batches of BATCH_SIZE; stops at the
+   * first failure. Documents written before a failure are kept.
+   * @param list values to insert or replace
+   * @param idOf ID of a value
+   * @param fut async result
+   */
+  public void addList(List<T> list, Function<T, String> idOf,
+                      Handler<ExtendedAsyncResult<Void>> fut) {
+    List<BulkOperation> ops = new ArrayList<>(list.size());
+    for (T t : list) {
+      JsonObject document = new JsonObject(Json.encode(t));
+      encode(document, null); // as for add
+      JsonObject jq = new JsonObject().put("_id", idOf.apply(t));
+      ops.add(BulkOperation.createUpdate(jq, new JsonObject().put("$set", document),
+          true, false));
+    }
+    bulkWrite(ops, 0, null, fut);
+  }
+
+  /**
+   * Write operations in order.
+   * @param ops operations
+   * @param offset index of first operation to write
+   * @param ids IDs of inserted documents, to remove on failure; null to keep
+   * @param fut async result
+   */
+  private void bulkWrite(List<BulkOperation> ops, int offset, List<String> ids,
+                         Handler<ExtendedAsyncResult<Void>> fut) {
+    if (offset >= ops.size()) {
+      fut.handle(new Success<>());
+      return;
+    }
+    int end = Math.min(offset + BATCH_SIZE, ops.size());
+    cli.bulkWriteWithOptions(collection, ops.subList(offset, end),
+        new BulkWriteOptions().setOrdered(true), res -> {
+          if (res.failed()) {
+            logger.warn("MongoUtil.bulkWrite {} failed: {}", collection,
+                res.cause().getMessage());
+            if (ids == null) {
+              fut.handle(new Failure<>(ErrorType.INTERNAL, res.cause()));
+              return;
+            }
+            // an ordered write stops at the failing document; if that is not
+            // known, only the earlier batches are known to be written
+            int written = offset;
+            if (res.cause() instanceof MongoBulkWriteException) {
+              List<BulkWriteError> errors = ((MongoBulkWriteException) res.cause())
+                  .getWriteErrors();
+              if (!errors.isEmpty()) {
+                written = offset + errors.get(0).getIndex();
+              }
+            }
+            removeIds(ids.subList(0, written), res.cause(), fut);
+            return;
+          }
+          bulkWrite(ops, end, ids, fut);
+        });
+  }
+
+  private void removeIds(List<String> ids, Throwable cause,
+                         Handler<ExtendedAsyncResult<Void>> fut) {
+    if (ids.isEmpty()) {
+      fut.handle(new Failure<>(ErrorType.INTERNAL, cause));
+      return;
+    }
+    JsonObject jq = new JsonObject().put("_id", new JsonObject().put("$in", new JsonArray(ids)));
+    cli.removeDocuments(collection, jq, res -> {
       if (res.failed()) {
-        fut.handle(new Failure<>(ErrorType.INTERNAL, res.cause()));
-      } else {
-        List<JsonObject> resl = res.result();
-        List<T> ml = new LinkedList<>();
-        for (JsonObject jo : resl) {
-          decode(jo);
-          T env = Json.decodeValue(jo.encode(), clazz);
-          ml.add(env);
-        }
+        logger.warn("MongoUtil.removeIds {} failed: {}", collection, res.cause().getMessage());
+      }
+      fut.handle(new Failure<>(ErrorType.INTERNAL, cause));
+    });
+  }
+
+  public void getAll(Class<T> clazz, Handler<ExtendedAsyncResult<List<T>>> fut) {
+    find(clazz, new JsonObject(), null, fut);
+  }
+
+  /**
+   * Find documents. Documents are read from a cursor, BATCH_SIZE at a time,
+   * and decoded as they arrive.
+   * @param clazz value type
+   * @param query Mongo query
+   * @param fields fields to return (projection); null for all
+   * @param fut async result with the values
+   */
+  public void find(Class<T> clazz, JsonObject query, JsonObject fields,
+                   Handler<ExtendedAsyncResult<List<T>>> fut) {
+    FindOptions options = new FindOptions().setBatchSize(BATCH_SIZE);
+    if (fields != null) {
+      options.setFields(fields);
+    }
+    ReadStream<JsonObject> stream = cli.findBatchWithOptions(collection, query, options);
+    List<T> ml = new LinkedList<>();
+    Throwable[] error = {null};
+    stream.exceptionHandler(e -> {
+      if (error[0] == null) {
+        error[0] = e;
+        fut.handle(new Failure<>(ErrorType.INTERNAL, e));
+      }
+    });
+    stream.endHandler(v -> {
+      if (error[0] == null) {
         fut.handle(new Success<>(ml));
       }
     });
+    stream.handler(jo -> {
+      // the stream can not be cancelled; after a failure it is read to the
+      // end, so that the cursor is closed rather than left open on the server
+      if (error[0] != null) {
+        return;
+      }
+      try {
+        decode(jo);
+        ml.add(jo.mapTo(clazz));
+      } catch (IllegalArgumentException e) {
+        logger.warn("MongoUtil.find {} failed: {}", collection, e.getMessage());
+        error[0] = e;
+        fut.handle(new Failure<>(ErrorType.INTERNAL, e));
+      }
+    });
   }
 
   public void encode(JsonObject j, String id) {
@@ -6,8 +6,11 @@ import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.pgclient.PgConnectOptions;
 import io.vertx.pgclient.PgPool;
+import io.vertx.pgclient.pubsub.PgChannel;
+import io.vertx.pgclient.pubsub.PgSubscriber;
 import io.vertx.sqlclient.PoolOptions;
 import io.vertx.sqlclient.SqlConnection;
+import java.util.UUID;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.common.Config;
 import org.folio.okapi.common.OkapiLogger;
@@ -39,8 +42,14 @@ class PostgresHandle {
 
   private final PgConnectOptions connectOptions;
   private final PgPool pool;
+  private final Vertx vertx;
+  // identifies notifications sent by this handle
+  private final String origin = UUID.randomUUID().toString();
+  private PgSubscriber subscriber;
+  private static final long RECONNECT_MS = 1000;
 
   PostgresHandle(Vertx vertx, JsonObject conf) {
+    this.vertx = vertx;
     String val;
 
     connectOptions = new PgConnectOptions();
@@ -81,4 +90,40 @@ class PostgresHandle {
     return new PostgresQuery(this);
   }
 
+  String getOrigin() {
+    return origin;
+  }
+
+  /**
+   * Listen for notifications on a channel. All channels share one
+   * connection, which is made on first use, and made again if lost.
+   * @param channel channel name
+   * @param subscribed called each time the channel is subscribed; more than
+   *     once if the connection was lost, and notifications may be missed
+   * @param handler called with payload of each notification
+   */
+  void listen(String channel, Handler<Void> subscribed, Handler<String> handler) {
+    boolean connect = subscriber == null;
+    if (connect) {
+      subscriber = PgSubscriber.subscriber(vertx, connectOptions)
+          .reconnectPolicy(retries -> RECONNECT_MS);
+    }
+    PgChannel ch = subscriber.channel(channel);
+    ch.subscribeHandler(subscribed);
+    ch.handler(handler);
+    if (connect) {
+      connectSubscriber();
+    }
+  }
+
+  private void connectSubscriber() {
+    subscriber.connect(res -> {
+      if (res.failed()) {
+        OkapiLogger.get().warn("Listening for notifications failed: {}",
+            res.cause().getMessage());
+        vertx.setTimer(RECONNECT_MS, id -> connectSubscriber());
+      }
+    });
+  }
+
 }
@@ -3,7 +3,9 @@ package org.folio.okapi.service.impl;
 import io.vertx.core.Handler;
 import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlClient;
 import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Transaction;
 import io.vertx.sqlclient.Tuple;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.common.ErrorType;
@@ -16,6 +18,7 @@ import org.folio.okapi.common.Success;
 public class PostgresQuery {
 
   private SqlConnection conn;
+  private Transaction tx;
   private static final Logger logger = OkapiLogger.get();
   private final PostgresHandle pg;
 
@@ -40,6 +43,39 @@ public class PostgresQuery {
     });
   }
 
+  /**
+   * Start a transaction. The following queries are made in the transaction,
+   * until commit. A query that fails rolls back the transaction.
+   * @param fut async result
+   */
+  void begin(Handler<ExtendedAsyncResult<Void>> fut) {
+    getCon(gres -> {
+      if (gres.failed()) {
+        fut.handle(new Failure<>(gres.getType(), gres.cause()));
+        return;
+      }
+      tx = conn.begin();
+      fut.handle(new Success<>());
+    });
+  }
+
+  /**
+   * Commit the transaction started with begin.
+   * @param fut async result
+   */
+  void commit(Handler<ExtendedAsyncResult<Void>> fut) {
+    tx.commit(res -> {
+      tx = null;
+      if (res.failed()) {
+        logger.fatal("commit failed: {}", res.cause().getMessage());
+        close();
+        fut.handle(new Failure<>(ErrorType.INTERNAL, res.cause()));
+        return;
+      }
+      fut.handle(new Success<>());
+    });
+  }
+
   void query(String sql, Tuple tuple,
              Handler<ExtendedAsyncResult<RowSet<Row>>> fut) {
 
@@ -49,7 +85,8 @@ public class PostgresQuery {
         return;
       }
       logger.debug("preparedQuery sql {}", sql);
-      conn.preparedQuery(sql, tuple, qres -> {
+      SqlClient client = tx != null ? tx : conn;
+      client.preparedQuery(sql, tuple, qres -> {
         if (qres.failed()) {
           logger.fatal("preparedQuery sql {} failed: {}",
               sql, qres.cause().getMessage());
@@ -85,6 +122,7 @@ public class PostgresQuery {
   }
 
   void close() {
+    tx = null;
     if (conn != null) {
       conn.close();
       conn = null;
@@ -2,27 +2,40 @@ package org.folio.okapi.service.impl;
 
 import io.vertx.core.Handler;
 import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.RowSet;
 import io.vertx.sqlclient.Tuple;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import org.apache.logging.log4j.Logger;
 import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.ExtendedAsyncResult;
 import org.folio.okapi.common.Failure;
+import org.folio.okapi.common.OkapiLogger;
 import org.folio.okapi.common.Success;
+import org.folio.okapi.service.StoreListener;
 
-
+/**
+ * Table of JSON values with an ID. Inserts, updates and deletes notify
+ * (Postgres NOTIFY) with the ID, on a channel named after the table, so that
+ * other nodes that use the same database can follow the changes. A list
+ * insert notifies once, asking other nodes to reload.
+ */
 @java.lang.SuppressWarnings({"squid:S1192"})
 class PostgresTable<T> {
 
+  private final Logger logger = OkapiLogger.get();
+  private static final int BATCH_SIZE = 1000;
   private final String table;
   private final String jsonColumn;
   private final String idIndex;
   private final String idSelect;
   private final String indexName;
   private final PostgresHandle pg;
+  private final String channel;
 
   PostgresTable(PostgresHandle pg, String table, String jsonColumn,
                 String idIndex, String idSelect, String indexName) {
@@ -32,6 +45,24 @@ class PostgresTable<T> {
     this.idIndex = idIndex;
     this.idSelect = idSelect;
     this.indexName = indexName;
+    this.channel = "okapi_" + table;
+  }
+
+  /**
+   * Wrap a statement that modifies rows of the table, so that a notification
+   * with the ID of each row is sent when the transaction commits. The result
+   * has a row for each modified row.
+   * @param sql INSERT, UPDATE or DELETE statement, without RETURNING
+   * @param tuple parameters of the statement; parameters of the
+   *     notification are added
+   * @return statement
+   */
+  String withNotify(String sql, Tuple tuple) {
+    int n = tuple.size();
+    tuple.addString(channel).addString(pg.getOrigin());
+    return "WITH w AS (" + sql + " RETURNING (" + idIndex + ") #>> '{}' AS id)"
+        + " SELECT w.id FROM w, pg_notify($" + (n + 1) + ","
+        + " json_build_object('origin', $" + (n + 2) + "::text, 'id', w.id)::text) AS n";
   }
 
   private void create(boolean reset, PostgresQuery q, Handler<ExtendedAsyncResult<Void>> fut) {
@@ -74,10 +105,12 @@ class PostgresTable<T> {
 
   void insert(T dd, Handler<ExtendedAsyncResult<Void>> fut) {
     PostgresQuery q = pg.getQuery();
-    final String sql = "INSERT INTO " + table + "(" + jsonColumn + ") VALUES ($1::JSONB)";
     String s = Json.encode(dd);
     JsonObject doc = new JsonObject(s);
-    q.query(sql, Tuple.of(doc), res -> {
+    Tuple tuple = Tuple.of(doc);
+    final String sql = withNotify("INSERT INTO " + table + "(" + jsonColumn + ")"
+        + " VALUES ($1::JSONB)", tuple);
+    q.query(sql, tuple, res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
         return;
@@ -87,13 +120,73 @@ class PostgresTable<T> {
     });
   }
 
+  /**
+   * Insert values in one transaction; none are inserted if any fails. Each
+   * statement inserts up to BATCH_SIZE values, passed as one JSON array.
+   * Other nodes get one notification to reload, rather than one per value.
+   * @param list values
+   * @param fut async result
+   */
+  void insertList(List<T> list, Handler<ExtendedAsyncResult<Void>> fut) {
+    if (list.isEmpty()) {
+      fut.handle(new Success<>());
+      return;
+    }
+    PostgresQuery q = pg.getQuery();
+    q.begin(res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      insertList(q, list, 0, fut);
+    });
+  }
+
+  private void insertList(PostgresQuery q, List<T> list, int offset,
+                          Handler<ExtendedAsyncResult<Void>> fut) {
+    if (offset >= list.size()) {
+      Tuple tuple = Tuple.of(channel, new JsonObject().put("origin", pg.getOrigin())
+          .put("reload", true).encode());
+      q.query("SELECT pg_notify($1, $2)", tuple, nres -> {
+        if (nres.failed()) {
+          fut.handle(new Failure<>(nres.getType(), nres.cause()));
+          return;
+        }
+        q.commit(res -> {
+          if (res.failed()) {
+            fut.handle(new Failure<>(res.getType(), res.cause()));
+            return;
+          }
+          q.close();
+          fut.handle(new Success<>());
+        });
+      });
+      return;
+    }
+    int end = Math.min(offset + BATCH_SIZE, list.size());
+    JsonArray docs = new JsonArray();
+    for (T t : list.subList(offset, end)) {
+      docs.add(new JsonObject(Json.encode(t)));
+    }
+    String sql = "INSERT INTO " + table + "(" + jsonColumn + ")"
+        + " SELECT jsonb_array_elements($1::JSONB)";
+    q.query(sql, Tuple.of(docs), res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      insertList(q, list, end, fut);
+    });
+  }
+
   void update(T md, Handler<ExtendedAsyncResult<Void>> fut) {
     PostgresQuery q = pg.getQuery();
-    String sql = "INSERT INTO " + table + "(" + jsonColumn + ") VALUES ($1::JSONB)"
-        + " ON CONFLICT ((" + idIndex + ")) DO UPDATE SET " + jsonColumn + "= $1::JSONB";
     String s = Json.encode(md);
     JsonObject doc = new JsonObject(s);
-    q.query(sql, Tuple.of(doc), res -> {
+    Tuple tuple = Tuple.of(doc);
+    String sql = withNotify("INSERT INTO " + table + "(" + jsonColumn + ") VALUES ($1::JSONB)"
+        + " ON CONFLICT ((" + idIndex + ")) DO UPDATE SET " + jsonColumn + "= $1::JSONB", tuple);
+    q.query(sql, tuple, res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(ErrorType.INTERNAL, res.cause()));
         return;
@@ -105,8 +198,9 @@ class PostgresTable<T> {
 
   void delete(String id, Handler<ExtendedAsyncResult<Void>> fut) {
     PostgresQuery q = pg.getQuery();
-    String sql = "DELETE FROM " + table + " WHERE " + idSelect;
-    q.query(sql, Tuple.of(id), res -> {
+    Tuple tuple = Tuple.of(id);
+    String sql = withNotify("DELETE FROM " + table + " WHERE " + idSelect, tuple);
+    q.query(sql, tuple, res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(ErrorType.INTERNAL, res.cause()));
         return;
@@ -139,4 +233,128 @@ class PostgresTable<T> {
       fut.handle(new Success<>(ml));
     });
   }
+
+  /**
+   * Get values with a WHERE, ORDER BY and similar clauses.
+   * @param clazz value type
+   * @param clauses SQL that follows FROM table
+   * @param tuple parameters of the clauses
+   * @param fut async result with the values
+   */
+  void select(Class<T> clazz, String clauses, Tuple tuple,
+              Handler<ExtendedAsyncResult<List<T>>> fut) {
+    PostgresQuery q = pg.getQuery();
+    String sql = "SELECT " + jsonColumn + " FROM " + table + " " + clauses;
+    q.query(sql, tuple, res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(ErrorType.INTERNAL, res.cause()));
+        return;
+      }
+      List<T> ml = new ArrayList<>();
+      for (Row r : res.result()) {
+        JsonObject o = (JsonObject) r.getValue(0);
+        ml.add(o.mapTo(clazz));
+      }
+      q.close();
+      fut.handle(new Success<>(ml));
+    });
+  }
+
+  /**
+   * Select IDs of values, without reading the values.
+   * @param clauses WHERE clause and the like; may be empty
+   * @param tuple parameters of clauses
+   * @param fut async result with IDs
+   */
+  void selectIds(String clauses, Tuple tuple, Handler<ExtendedAsyncResult<List<String>>> fut) {
+    PostgresQuery q = pg.getQuery();
+    String sql = "SELECT (" + idIndex + ") #>> '{}' FROM " + table + " " + clauses;
+    q.query(sql, tuple, res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(ErrorType.INTERNAL, res.cause()));
+        return;
+      }
+      List<String> ids = new ArrayList<>();
+      for (Row r : res.result()) {
+        ids.add(r.getString(0));
+      }
+      q.close();
+      fut.handle(new Success<>(ids));
+    });
+  }
+
+  void get(Class<T> clazz, String id, Handler<ExtendedAsyncResult<T>> fut) {
+    PostgresQuery q = pg.getQuery();
+    String sql = "SELECT " + jsonColumn + " FROM " + table + " WHERE " + idSelect;
+    q.query(sql, Tuple.of(id), res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(ErrorType.INTERNAL, res.cause()));
+        return;
+      }
+      q.close();
+      for (Row r : res.result()) {
+        JsonObject o = (JsonObject) r.getValue(0);
+        fut.handle(new Success<>(o.mapTo(clazz)));
+        return;
+      }
+      fut.handle(new Failure<>(ErrorType.NOT_FOUND, id));
+    });
+  }
+
+  /**
+   * Listen for changes made by other nodes. The changed row is read for each
+   * notification; rows are read one at a time, in the order notified, so
+   * that a later change is not overtaken by an earlier one. A notification
+   * to reload is passed on as such, in turn.
+   * @param clazz value type
+   * @param listener receives changes
+   */
+  void listen(Class<T> clazz, StoreListener<T> listener) {
+    LinkedList<String> pending = new LinkedList<>();
+    boolean[] subscribed = {false};
+    pg.listen(channel, v -> {
+      if (subscribed[0]) {
+        logger.info("Listening to {} again, reloading", channel);
+        listener.reload();
+      }
+      subscribed[0] = true;
+    }, payload -> {
+      JsonObject o = new JsonObject(payload);
+      if (pg.getOrigin().equals(o.getString("origin"))) {
+        return; // changed by this node
+      }
+      // null stands for reload
+      pending.add(o.getBoolean("reload", false) ? null : o.getString("id"));
+      if (pending.size() == 1) {
+        readChanged(clazz, pending, listener);
+      }
+    });
+  }
+
+  private void readChanged(Class<T> clazz, LinkedList<String> pending,
+                           StoreListener<T> listener) {
+    String id = pending.getFirst();
+    if (id == null) {
+      listener.reload();
+      pending.removeFirst();
+      if (!pending.isEmpty()) {
+        readChanged(clazz, pending, listener);
+      }
+      return;
+    }
+    get(clazz, id, res -> {
+      if (res.succeeded()) {
+        listener.changed(id, res.result());
+      } else if (res.getType() == ErrorType.NOT_FOUND) {
+        listener.changed(id, null);
+      } else {
+        logger.warn("Reading {} {} failed: {}", table, id, res.cause().getMessage());
+        listener.reload();
+      }
+      pending.removeFirst();
+      if (!pending.isEmpty()) {
+        readChanged(clazz, pending, listener);
+      }
+    });
+  }
 }
@@ -7,6 +7,7 @@ import io.vertx.ext.mongo.MongoClient;
 import java.util.List;
 import java.util.SortedMap;
 import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.InstallJob;
 import org.folio.okapi.bean.Tenant;
 import org.folio.okapi.bean.TenantDescriptor;
 import org.folio.okapi.common.ErrorType;
@@ -27,6 +28,7 @@ public class TenantStoreMongo implements TenantStore {
   private final MongoClient cli;
   private final MongoUtil<Tenant> util;
   private static final String COLLECTION = "okapi.tenants";
+  private final MongoUtil<InstallJob> jobUtil;
   private final Messages messages = Messages.getInstance();
 
   private JsonObject encodeTenant(Tenant t, String id) {
@@ -43,11 +45,33 @@ public class TenantStoreMongo implements TenantStore {
   public TenantStoreMongo(MongoClient cli) {
     this.cli = cli;
     this.util = new MongoUtil<>(COLLECTION, cli);
+    this.jobUtil = new MongoUtil<>("okapi.installjobs", cli);
   }
 
   @Override
   public void init(boolean reset, Handler<ExtendedAsyncResult<Void>> fut) {
-    util.init(reset, fut);
+    util.init(reset, res -> {
+      if (res.failed()) {
+        fut.handle(res);
+        return;
+      }
+      jobUtil.init(reset, fut);
+    });
+  }
+
+  @Override
+  public void updateInstallJob(InstallJob job, Handler<ExtendedAsyncResult<Void>> fut) {
+    jobUtil.add(job, job.getId(), fut);
+  }
+
+  @Override
+  public void listInstallJobs(Handler<ExtendedAsyncResult<List<InstallJob>>> fut) {
+    jobUtil.getAll(InstallJob.class, fut);
+  }
+
+  @Override
+  public void deleteInstallJob(String id, Handler<ExtendedAsyncResult<Void>> fut) {
+    jobUtil.delete(id, fut);
   }
 
   @Override
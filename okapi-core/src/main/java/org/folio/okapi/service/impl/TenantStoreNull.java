@@ -4,6 +4,7 @@ import io.vertx.core.Handler;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.SortedMap;
+import org.folio.okapi.bean.InstallJob;
 import org.folio.okapi.bean.Tenant;
 import org.folio.okapi.bean.TenantDescriptor;
 import org.folio.okapi.common.ExtendedAsyncResult;
@@ -42,4 +43,19 @@ public class TenantStoreNull implements TenantStore {
   public void init(boolean reset, Handler<ExtendedAsyncResult<Void>> fut) {
     fut.handle(new Success<>());
   }
+
+  @Override
+  public void updateInstallJob(InstallJob job, Handler<ExtendedAsyncResult<Void>> fut) {
+    fut.handle(new Success<>());
+  }
+
+  @Override
+  public void listInstallJobs(Handler<ExtendedAsyncResult<List<InstallJob>>> fut) {
+    fut.handle(new Success<>(new LinkedList<>()));
+  }
+
+  @Override
+  public void deleteInstallJob(String id, Handler<ExtendedAsyncResult<Void>> fut) {
+    fut.handle(new Success<>());
+  }
 }
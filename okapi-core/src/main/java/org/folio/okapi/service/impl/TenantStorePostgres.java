@@ -8,12 +8,14 @@ import io.vertx.sqlclient.Tuple;
 import java.util.Iterator;
 import java.util.List;
 import java.util.SortedMap;
+import org.folio.okapi.bean.InstallJob;
 import org.folio.okapi.bean.Tenant;
 import org.folio.okapi.bean.TenantDescriptor;
 import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.ExtendedAsyncResult;
 import org.folio.okapi.common.Failure;
 import org.folio.okapi.common.Success;
+import org.folio.okapi.service.StoreListener;
 import org.folio.okapi.service.TenantStore;
 
 /**
@@ -27,16 +29,42 @@ public class TenantStorePostgres implements TenantStore {
   private static final String JSON_COLUMN = "tenantjson";
   private static final String ID_SELECT = JSON_COLUMN + "->'descriptor'->>'id' = $1";
   private static final String ID_INDEX = JSON_COLUMN + "->'descriptor'->'id'";
+  private static final String JOB_TABLE = "install_jobs";
+  private static final String JOB_COLUMN = "jobjson";
   private final PostgresTable<Tenant> pgTable;
+  private final PostgresTable<InstallJob> jobTable;
 
   public TenantStorePostgres(PostgresHandle pg) {
     this.pg = pg;
     this.pgTable = new PostgresTable<>(pg, TABLE, JSON_COLUMN, ID_INDEX, ID_SELECT, "tenant_id");
+    this.jobTable = new PostgresTable<>(pg, JOB_TABLE, JOB_COLUMN, JOB_COLUMN + "->'id'",
+        JOB_COLUMN + "->>'id' = $1", "install_job_id");
   }
 
   @Override
   public void init(boolean reset, Handler<ExtendedAsyncResult<Void>> fut) {
-    pgTable.init(reset, fut);
+    pgTable.init(reset, res -> {
+      if (res.failed()) {
+        fut.handle(res);
+        return;
+      }
+      jobTable.init(reset, fut);
+    });
+  }
+
+  @Override
+  public void updateInstallJob(InstallJob job, Handler<ExtendedAsyncResult<Void>> fut) {
+    jobTable.update(job, fut);
+  }
+
+  @Override
+  public void listInstallJobs(Handler<ExtendedAsyncResult<List<InstallJob>>> fut) {
+    jobTable.getAll(InstallJob.class, fut);
+  }
+
+  @Override
+  public void deleteInstallJob(String id, Handler<ExtendedAsyncResult<Void>> fut) {
+    jobTable.delete(id, fut);
   }
 
   @Override
@@ -62,6 +90,11 @@ public class TenantStorePostgres implements TenantStore {
     pgTable.delete(id, fut);
   }
 
+  @Override
+  public void listen(StoreListener<Tenant> listener) {
+    pgTable.listen(Tenant.class, listener);
+  }
+
   private void updateModuleR(PostgresQuery q, String id,
                              SortedMap<String, Boolean> enabled,
                              Iterator<Row> it, Handler<ExtendedAsyncResult<Void>> fut) {
@@ -72,12 +105,14 @@ public class TenantStorePostgres implements TenantStore {
       return;
     }
     Row r = it.next();
-    String sql = "UPDATE " + TABLE + " SET " + JSON_COLUMN + " = $2 WHERE " + ID_SELECT;
     JsonObject o = (JsonObject) r.getValue(0);
     Tenant t = o.mapTo(Tenant.class);
     t.setEnabled(enabled);
     JsonObject doc = JsonObject.mapFrom(t);
-    q.query(sql, Tuple.of(id, doc), res -> {
+    Tuple tuple = Tuple.of(id, doc);
+    String sql = pgTable.withNotify("UPDATE " + TABLE + " SET " + JSON_COLUMN + " = $2"
+        + " WHERE " + ID_SELECT, tuple);
+    q.query(sql, tuple, res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(ErrorType.INTERNAL, res.cause()));
       } else {
@@ -3,7 +3,10 @@ package org.folio.okapi.util;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.shareddata.AsyncMap;
+import io.vertx.core.shareddata.Shareable;
 import io.vertx.core.shareddata.SharedData;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.ExtendedAsyncResult;
 import org.folio.okapi.common.Failure;
@@ -15,10 +18,41 @@ import org.folio.okapi.common.Success;
  */
 class AsyncMapFactory {
 
+  private static final String LOCAL_VALUES = "okapi.localValues";
+
+  static class LocalValues extends ConcurrentHashMap<String, Object> implements Shareable {
+  }
+
   private AsyncMapFactory() {
     throw new IllegalAccessError("AsyncMapFactory");
   }
 
+  /**
+   * Whether a map is local to this Vert.x instance.
+   * @param vertx Vert.x handle
+   * @param mapName name of the map; null for a local map
+   * @return true if local; false if cluster wide
+   */
+  public static boolean isLocal(Vertx vertx, String mapName) {
+    return !vertx.isClustered() || mapName == null;
+  }
+
+  /**
+   * Creates a map that holds values as objects, for local maps. Maps are
+   * separated the same way as the maps of {@link #create}.
+   * @param vertx Vert.x handle
+   * @param mapName name of the map
+   * @return map
+   */
+  public static ConcurrentMap<String, Object> createLocal(Vertx vertx, String mapName) {
+    String id = vertx.getOrCreateContext().deploymentID();
+    if (mapName != null) {
+      id = mapName + id;
+    }
+    return vertx.sharedData().<String, LocalValues>getLocalMap(LOCAL_VALUES)
+        .computeIfAbsent(String.valueOf(id), x -> new LocalValues());
+  }
+
   /**
    * Creates an AsyncMap.
    *
@@ -31,7 +65,7 @@ class AsyncMapFactory {
   public static <K, V> void create(Vertx vertx, String mapName,
                                    Handler<ExtendedAsyncResult<AsyncMap<K, V>>> fut) {
     SharedData shared = vertx.sharedData();
-    if (vertx.isClustered() && mapName != null) {
+    if (!isLocal(vertx, mapName)) {
       shared.<K, V>getClusterWideMap(mapName, res -> {
         if (res.succeeded()) {
           fut.handle(new Success<>(res.result()));
@@ -0,0 +1,108 @@
+package org.folio.okapi.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.folio.okapi.bean.InterfaceDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.common.ModuleId;
+
+/**
+ * Index of the modules available for install, as used by dependency
+ * resolution. Regular-handler providers per interface and versions per
+ * product are kept sorted by module ID, newest first. The index is never
+ * modified after construction, so it may be shared by concurrent installs;
+ * it must be rebuilt when modules are created or deleted.
+ */
+public class AvailableModules {
+
+  private final Map<String, ModuleDescriptor> modules;
+  private final Map<String, List<ModuleDescriptor>> byProvided = new HashMap<>();
+  private final Map<String, List<ModuleDescriptor>> byProduct = new HashMap<>();
+
+  /**
+   * Construct index for a set of modules.
+   * @param mods modules available
+   */
+  public AvailableModules(Collection<ModuleDescriptor> mods) {
+    Map<String, ModuleDescriptor> m = new HashMap<>(mods.size());
+    for (ModuleDescriptor md : mods) {
+      m.put(md.getId(), md);
+    }
+    modules = Collections.unmodifiableMap(m);
+    for (ModuleDescriptor md : modules.values()) {
+      byProduct.computeIfAbsent(md.getProduct(), k -> new ArrayList<>()).add(md);
+      for (InterfaceDescriptor pi : md.getProvidesList()) {
+        if (pi.isRegularHandler()) {
+          byProvided.computeIfAbsent(pi.getId(), k -> new ArrayList<>()).add(md);
+        }
+      }
+    }
+    for (List<ModuleDescriptor> l : byProvided.values()) {
+      l.sort(Collections.reverseOrder());
+    }
+    for (List<ModuleDescriptor> l : byProduct.values()) {
+      l.sort(Collections.reverseOrder());
+    }
+  }
+
+  /**
+   * Return all modules.
+   * @return unmodifiable map of module ID to module
+   */
+  public Map<String, ModuleDescriptor> getModules() {
+    return modules;
+  }
+
+  public ModuleDescriptor get(String id) {
+    return modules.get(id);
+  }
+
+  public boolean containsKey(String id) {
+    return modules.containsKey(id);
+  }
+
+  public int size() {
+    return modules.size();
+  }
+
+  /**
+   * Return modules that provide an interface as a regular handler.
+   * @param interfaceId interface ID (without version)
+   * @return unmodifiable list, newest module first
+   */
+  public List<ModuleDescriptor> getProviders(String interfaceId) {
+    List<ModuleDescriptor> l = byProvided.get(interfaceId);
+    return l == null ? Collections.emptyList() : Collections.unmodifiableList(l);
+  }
+
+  /**
+   * Return versions of a product.
+   * @param product product name
+   * @return unmodifiable list, newest module first
+   */
+  public List<ModuleDescriptor> getProduct(String product) {
+    List<ModuleDescriptor> l = byProduct.get(product);
+    return l == null ? Collections.emptyList() : Collections.unmodifiableList(l);
+  }
+
+  /**
+   * Return newest module of the product, like
+   * {@link ModuleId#getLatest(Collection)} over all modules.
+   * @param moduleId module ID
+   * @return newest module ID (possibly moduleId itself)
+   */
+  public String getLatest(ModuleId moduleId) {
+    List<ModuleDescriptor> l = byProduct.get(moduleId.getProduct());
+    if (l != null) {
+      ModuleDescriptor md = l.get(0);
+      if (md.getModuleId().compareTo(moduleId) > 0) {
+        return md.getId();
+      }
+    }
+    return moduleId.getId();
+  }
+}
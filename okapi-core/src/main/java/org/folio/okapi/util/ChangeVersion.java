@@ -0,0 +1,118 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.shareddata.Counter;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.ErrorType;
+import org.folio.okapi.common.ExtendedAsyncResult;
+import org.folio.okapi.common.Failure;
+import org.folio.okapi.common.OkapiLogger;
+import org.folio.okapi.common.Success;
+
+/**
+ * Version of a set of objects, such as all modules, kept in a counter that
+ * is shared by the nodes of a cluster. Each change moves the version on to
+ * the later of the current time and the version plus one. The version is
+ * therefore also the time of the last change, in milliseconds, and it is the
+ * same on all nodes.
+ *
+ * <p>Each node keeps the version it has seen last, so that it can be read
+ * without waiting. A node that changes the set bumps the version before it
+ * tells the other nodes, which then refresh theirs.
+ */
+public class ChangeVersion {
+
+  private final Logger logger = OkapiLogger.get();
+  private Counter counter;
+  private long version = 0;
+
+  /**
+   * Initialize version.
+   * @param vertx Vert.x handle
+   * @param name name of counter; null for a version kept on this node only
+   * @param fut async result
+   */
+  public void init(Vertx vertx, String name, Handler<ExtendedAsyncResult<Void>> fut) {
+    long now = System.currentTimeMillis();
+    if (name == null) {
+      version = now;
+      fut.handle(new Success<>());
+      return;
+    }
+    vertx.sharedData().getCounter(name, res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(ErrorType.INTERNAL, res.cause()));
+        return;
+      }
+      counter = res.result();
+      // first node to start sets the version
+      counter.compareAndSet(0, now, cres -> refresh(fut));
+    });
+  }
+
+  /**
+   * Return the version last seen by this node.
+   * @return version; time of last change in milliseconds since epoch
+   */
+  public long get() {
+    return version;
+  }
+
+  /**
+   * Move the version on after a change. The new version is seen on this node
+   * at once; it is settled with the other nodes when fut completes.
+   * @param fut async result
+   */
+  public void bump(Handler<ExtendedAsyncResult<Void>> fut) {
+    version = Math.max(System.currentTimeMillis(), version + 1);
+    if (counter == null) {
+      fut.handle(new Success<>());
+      return;
+    }
+    bumpCounter(fut);
+  }
+
+  private void bumpCounter(Handler<ExtendedAsyncResult<Void>> fut) {
+    counter.get(gres -> {
+      if (gres.failed()) {
+        logger.warn("Getting version failed: {}", gres.cause().getMessage());
+        fut.handle(new Failure<>(ErrorType.INTERNAL, gres.cause()));
+        return;
+      }
+      long old = gres.result();
+      long next = Math.max(System.currentTimeMillis(), old + 1);
+      counter.compareAndSet(old, next, cres -> {
+        if (cres.failed()) {
+          logger.warn("Setting version failed: {}", cres.cause().getMessage());
+          fut.handle(new Failure<>(ErrorType.INTERNAL, cres.cause()));
+        } else if (Boolean.FALSE.equals(cres.result())) {
+          bumpCounter(fut); // changed by another node meanwhile
+        } else {
+          version = next;
+          fut.handle(new Success<>());
+        }
+      });
+    });
+  }
+
+  /**
+   * Read the version after another node has changed it.
+   * @param fut async result
+   */
+  public void refresh(Handler<ExtendedAsyncResult<Void>> fut) {
+    if (counter == null) {
+      fut.handle(new Success<>());
+      return;
+    }
+    counter.get(res -> {
+      if (res.failed()) {
+        logger.warn("Getting version failed: {}", res.cause().getMessage());
+        fut.handle(new Failure<>(ErrorType.INTERNAL, res.cause()));
+        return;
+      }
+      version = Math.max(version, res.result());
+      fut.handle(new Success<>());
+    });
+  }
+}
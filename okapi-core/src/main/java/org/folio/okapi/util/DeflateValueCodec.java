@@ -0,0 +1,68 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.json.DecodeException;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Stores values as deflated JSON in Base64 after a prefix that no JSON
+ * text starts with. Values without the prefix are JSON.
+ */
+public class DeflateValueCodec implements ValueCodec {
+
+  static final String PREFIX = "~z";
+  private static final int BUFFER_SIZE = 4096;
+
+  @Override
+  public String encode(String json) {
+    byte[] input = json.getBytes(StandardCharsets.UTF_8);
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(input);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 4 + 16);
+      byte[] buf = new byte[BUFFER_SIZE];
+      while (!deflater.finished()) {
+        out.write(buf, 0, deflater.deflate(buf));
+      }
+      return PREFIX + Base64.getEncoder().encodeToString(out.toByteArray());
+    } finally {
+      deflater.end();
+    }
+  }
+
+  @Override
+  public String decode(String stored) {
+    return isDeflated(stored) ? inflate(stored) : stored;
+  }
+
+  static boolean isDeflated(String stored) {
+    return stored.startsWith(PREFIX);
+  }
+
+  static String inflate(String stored) {
+    Inflater inflater = new Inflater();
+    try {
+      byte[] input = Base64.getDecoder().decode(stored.substring(PREFIX.length()));
+      inflater.setInput(input);
+      ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 4);
+      byte[] buf = new byte[BUFFER_SIZE];
+      while (!inflater.finished()) {
+        int n = inflater.inflate(buf);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new DecodeException("Truncated shared map value");
+        }
+        out.write(buf, 0, n);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    } catch (DataFormatException | IllegalArgumentException e) {
+      throw new DecodeException("Bad shared map value: " + e.getMessage());
+    } finally {
+      inflater.end();
+    }
+  }
+}
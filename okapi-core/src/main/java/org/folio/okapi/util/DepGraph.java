@@ -0,0 +1,260 @@
+package org.folio.okapi.util;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.folio.okapi.bean.InterfaceDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+
+/**
+ * Dependency graph of the modules enabled for a tenant: providers per
+ * interface and dependents per interface. While the enabled set is known to
+ * be consistent (no missing dependencies and no conflicts), a change of one
+ * module is checked by looking at the affected modules only. Not thread safe;
+ * to be used from one Vert.x context.
+ */
+public class DepGraph {
+
+  private final Map<String, ModuleDescriptor> modules = new TreeMap<>();
+  private final Map<String, Set<String>> providers = new HashMap<>();
+  private final Map<String, Set<String>> dependents = new HashMap<>();
+  private Boolean consistent;
+
+  /**
+   * Construct graph for a set of modules.
+   * @param mods modules that are enabled
+   */
+  public DepGraph(Collection<ModuleDescriptor> mods) {
+    for (ModuleDescriptor md : mods) {
+      add(md);
+    }
+  }
+
+  private static void addKey(Map<String, Set<String>> index, String key, String id) {
+    index.computeIfAbsent(key, k -> new TreeSet<>()).add(id);
+  }
+
+  private static void removeKey(Map<String, Set<String>> index, String key, String id) {
+    Set<String> ids = index.get(key);
+    if (ids != null) {
+      ids.remove(id);
+      if (ids.isEmpty()) {
+        index.remove(key);
+      }
+    }
+  }
+
+  private void add(ModuleDescriptor md) {
+    String id = md.getId();
+    modules.put(id, md);
+    for (InterfaceDescriptor pi : md.getProvidesList()) {
+      addKey(providers, pi.getId(), id);
+    }
+    for (InterfaceDescriptor req : md.getRequiresOptionalList()) {
+      addKey(dependents, req.getId(), id);
+    }
+  }
+
+  private void remove(String id) {
+    ModuleDescriptor md = modules.remove(id);
+    if (md == null) {
+      return;
+    }
+    for (InterfaceDescriptor pi : md.getProvidesList()) {
+      removeKey(providers, pi.getId(), id);
+    }
+    for (InterfaceDescriptor req : md.getRequiresOptionalList()) {
+      removeKey(dependents, req.getId(), id);
+    }
+  }
+
+  /**
+   * Whether the enabled set has no dependency problems and no conflicts.
+   * Computed over all modules only when not known.
+   * @return true if consistent
+   */
+  public boolean isConsistent() {
+    if (consistent == null) {
+      consistent = DepResolution.checkAllDependencies(modules).isEmpty()
+          && DepResolution.checkAllConflicts(modules).isEmpty();
+    }
+    return consistent;
+  }
+
+  /**
+   * Check if a module may be disabled, enabled or upgraded.
+   * @param mdFrom module to be disabled; null if none
+   * @param mdTo module to be enabled; null if none
+   * @return empty string if OK; error message otherwise
+   */
+  public String check(ModuleDescriptor mdFrom, ModuleDescriptor mdTo) {
+    if (!isConsistent()) {
+      return checkAll(mdFrom, mdTo);
+    }
+    if (mdTo != null && modules.containsKey(mdTo.getId())
+        && (mdFrom == null || !mdFrom.getId().equals(mdTo.getId()))) {
+      return alreadyProvided(mdTo);
+    }
+    String conflicts = conflicts(mdFrom, mdTo);
+    String deps = dependencies(mdFrom, mdTo);
+    if (!conflicts.isEmpty() || !deps.isEmpty()) {
+      return conflicts + " " + deps;
+    }
+    return "";
+  }
+
+  private static String alreadyProvided(ModuleDescriptor md) {
+    return "Module " + md.getId() + " already provided";
+  }
+
+  /**
+   * Check over all enabled modules; used when the enabled set has problems
+   * already, so that only problems introduced by the change are reported.
+   */
+  private String checkAll(ModuleDescriptor mdFrom, ModuleDescriptor mdTo) {
+    Map<String, ModuleDescriptor> mods = new HashMap<>(modules);
+    if (mdTo == null) {
+      String deps = DepResolution.checkAllDependencies(mods);
+      if (!deps.isEmpty()) {
+        return ""; // failures even before we remove a module
+      }
+    }
+    if (mdFrom != null) {
+      mods.remove(mdFrom.getId());
+    }
+    if (mdTo != null) {
+      if (mods.containsKey(mdTo.getId())) {
+        return alreadyProvided(mdTo);
+      }
+      mods.put(mdTo.getId(), mdTo);
+    }
+    String conflicts = DepResolution.checkAllConflicts(mods);
+    String deps = DepResolution.checkAllDependencies(mods);
+    if (!conflicts.isEmpty() || !deps.isEmpty()) {
+      return conflicts + " " + deps;
+    }
+    return "";
+  }
+
+  private ModuleDescriptor getAfter(String id, ModuleDescriptor mdFrom, ModuleDescriptor mdTo) {
+    if (mdTo != null && mdTo.getId().equals(id)) {
+      return mdTo;
+    }
+    if (mdFrom != null && mdFrom.getId().equals(id)) {
+      return null;
+    }
+    return modules.get(id);
+  }
+
+  /**
+   * Add the providers of an interface after the change to a map.
+   */
+  private void addProviders(Map<String, ModuleDescriptor> mods, String interfaceId,
+                            ModuleDescriptor mdFrom, ModuleDescriptor mdTo) {
+    Set<String> ids = providers.get(interfaceId);
+    if (ids != null) {
+      for (String id : ids) {
+        ModuleDescriptor md = getAfter(id, mdFrom, mdTo);
+        if (md != null) {
+          mods.put(id, md);
+        }
+      }
+    }
+    if (mdTo != null) {
+      for (InterfaceDescriptor pi : mdTo.getProvidesList()) {
+        if (pi.getId().equals(interfaceId)) {
+          mods.put(mdTo.getId(), mdTo);
+        }
+      }
+    }
+  }
+
+  /**
+   * Conflicts after the change. With a consistent set, a conflict must
+   * involve the module being enabled.
+   */
+  private String conflicts(ModuleDescriptor mdFrom, ModuleDescriptor mdTo) {
+    if (mdTo == null) {
+      return "";
+    }
+    Map<String, ModuleDescriptor> mods = new LinkedHashMap<>();
+    mods.put(mdTo.getId(), mdTo);
+    for (InterfaceDescriptor pi : mdTo.getProvidesList()) {
+      if (pi.isRegularHandler()) {
+        addProviders(mods, pi.getId(), mdFrom, mdTo);
+      }
+    }
+    return DepResolution.checkAllConflicts(mods);
+  }
+
+  /**
+   * Add the dependents of an interface after the change to a map.
+   */
+  private void addDependents(Map<String, ModuleDescriptor> mods, String interfaceId,
+                             ModuleDescriptor mdFrom, ModuleDescriptor mdTo) {
+    Set<String> ids = dependents.get(interfaceId);
+    if (ids != null) {
+      for (String id : ids) {
+        ModuleDescriptor md = getAfter(id, mdFrom, mdTo);
+        if (md != null) {
+          mods.put(id, md);
+        }
+      }
+    }
+  }
+
+  /**
+   * Dependency problems after the change. With a consistent set, only the
+   * module being enabled and the modules that depend on interfaces of the
+   * modules being disabled or enabled can have problems; the latter because
+   * optional interfaces must match if provided.
+   */
+  private String dependencies(ModuleDescriptor mdFrom, ModuleDescriptor mdTo) {
+    Map<String, ModuleDescriptor> testList = new LinkedHashMap<>();
+    if (mdTo != null) {
+      testList.put(mdTo.getId(), mdTo);
+      for (InterfaceDescriptor pi : mdTo.getProvidesList()) {
+        addDependents(testList, pi.getId(), mdFrom, mdTo);
+      }
+    }
+    if (mdFrom != null) {
+      for (InterfaceDescriptor pi : mdFrom.getProvidesList()) {
+        addDependents(testList, pi.getId(), mdFrom, mdTo);
+      }
+    }
+    Map<String, ModuleDescriptor> available = new LinkedHashMap<>();
+    for (ModuleDescriptor md : testList.values()) {
+      for (InterfaceDescriptor req : md.getRequiresOptionalList()) {
+        addProviders(available, req.getId(), mdFrom, mdTo);
+      }
+    }
+    return DepResolution.checkDependencies(available.values(), testList.values());
+  }
+
+  /**
+   * Update graph with a change that has been committed. Only the affected
+   * modules are checked to keep track of consistency.
+   * @param moduleFrom module disabled; null if none
+   * @param mdTo module enabled; null if none
+   */
+  public void commit(String moduleFrom, ModuleDescriptor mdTo) {
+    ModuleDescriptor mdFrom = moduleFrom == null ? null : modules.get(moduleFrom);
+    if (!Boolean.TRUE.equals(consistent)
+        || moduleFrom != null && mdFrom == null
+        || mdTo != null && modules.containsKey(mdTo.getId())) {
+      consistent = null; // a change may also fix problems
+    } else {
+      consistent = conflicts(mdFrom, mdTo).isEmpty() && dependencies(mdFrom, mdTo).isEmpty();
+    }
+    if (moduleFrom != null) {
+      remove(moduleFrom);
+    }
+    if (mdTo != null) {
+      add(mdTo);
+    }
+  }
+}
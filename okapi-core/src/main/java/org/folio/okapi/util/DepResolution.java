@@ -1,6 +1,7 @@
 package org.folio.okapi.util;
 
 import io.vertx.core.Handler;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -239,14 +240,28 @@ public class DepResolution {
                                      Map<String, ModuleDescriptor> modsEnabled,
                                      List<TenantModuleDescriptor> tml,
                                      Handler<ExtendedAsyncResult<Boolean>> fut) {
+    installSimulate(new AvailableModules(modsAvailable.values()), modsEnabled, tml, fut);
+  }
+
+  /**
+   * Install modules with dependency checking only.
+   * @param modsAvailable index of available modules
+   * @param modsEnabled enabled modules (for some tenant)
+   * @param tml install list with actions
+   * @param fut future
+   */
+  public static void installSimulate(AvailableModules modsAvailable,
+                                     Map<String, ModuleDescriptor> modsEnabled,
+                                     List<TenantModuleDescriptor> tml,
+                                     Handler<ExtendedAsyncResult<Boolean>> fut) {
 
     List<String> errors = new LinkedList<>();
     for (TenantModuleDescriptor tm : tml) {
       String id = tm.getId();
-      ModuleId moduleId = new ModuleId(id);
+      ModuleId moduleId = ModuleId.of(id);
       if (tm.getAction() == TenantModuleDescriptor.Action.enable) {
         if (!moduleId.hasSemVer()) {
-          id = moduleId.getLatest(modsAvailable.keySet());
+          id = modsAvailable.getLatest(moduleId);
           tm.setId(id);
         }
         if (!modsAvailable.containsKey(id)) {
@@ -293,7 +308,7 @@ public class DepResolution {
   }
 
   private static boolean tmAction(TenantModuleDescriptor tm,
-                                  Map<String, ModuleDescriptor> modsAvailable,
+                                  AvailableModules modsAvailable,
                                   Map<String, ModuleDescriptor> modsEnabled,
                                   List<TenantModuleDescriptor> tml,
                                   Handler<ExtendedAsyncResult<Boolean>> fut) {
@@ -320,7 +335,7 @@ public class DepResolution {
   }
 
   private static boolean tmEnable(
-      String id, Map<String, ModuleDescriptor> modsAvailable,
+      String id, AvailableModules modsAvailable,
       Map<String, ModuleDescriptor> modsEnabled, List<TenantModuleDescriptor> tml,
       Handler<ExtendedAsyncResult<Boolean>> fut) {
 
@@ -335,7 +350,7 @@ public class DepResolution {
     return true;
   }
 
-  private static boolean tmDisable(String id, Map<String, ModuleDescriptor> modsAvailable,
+  private static boolean tmDisable(String id, AvailableModules modsAvailable,
                                    Map<String, ModuleDescriptor> modsEnabled,
                                    List<TenantModuleDescriptor> tml,
                                    Handler<ExtendedAsyncResult<Boolean>> fut) {
@@ -350,7 +365,7 @@ public class DepResolution {
   }
 
   private static List<String> checkInterfaceDependency(ModuleDescriptor md, InterfaceDescriptor req,
-                                                       Map<String, ModuleDescriptor> modsAvailable,
+                                                       AvailableModules modsAvailable,
                                                        Map<String, ModuleDescriptor> modsEnabled,
                                                        List<TenantModuleDescriptor> tml) {
     List<String> ret = new LinkedList<>();
@@ -379,25 +394,17 @@ public class DepResolution {
   }
 
   private static Map<String, ModuleDescriptor> checkInterfaceDepAvailable(
-      Map<String, ModuleDescriptor> modsAvailable, InterfaceDescriptor req) {
+      AvailableModules modsAvailable, InterfaceDescriptor req) {
     Set<String> replaceProducts = new HashSet<>();
     Map<String, ModuleDescriptor> productMd = new HashMap<>();
-    for (Map.Entry<String, ModuleDescriptor> entry : modsAvailable.entrySet()) {
-      ModuleDescriptor md = entry.getValue();
-      String product = md.getProduct();
+    // providers are newest first, so the first one seen for a product is kept
+    for (ModuleDescriptor md : modsAvailable.getProviders(req.getId())) {
       for (InterfaceDescriptor pi : md.getProvidesList()) {
         if (pi.isRegularHandler() && pi.isCompatible(req)) {
           if (md.getReplaces() != null) {
             Collections.addAll(replaceProducts, md.getReplaces());
           }
-          if (productMd.containsKey(product)) {
-            ModuleDescriptor md2 = productMd.get(product);
-            if (md.compareTo(md2) > 0) {
-              productMd.put(product, md);
-            }
-          } else {
-            productMd.put(product, md);
-          }
+          productMd.putIfAbsent(md.getProduct(), md);
         }
       }
     }
@@ -408,7 +415,7 @@ public class DepResolution {
   }
 
   private static ModuleDescriptor checkInterfaceDepOtherInstall(
-      List<TenantModuleDescriptor> tml, Map<String, ModuleDescriptor> modsAvailable,
+      List<TenantModuleDescriptor> tml, AvailableModules modsAvailable,
       InterfaceDescriptor req) {
     ModuleDescriptor foundMd = null;
     Iterator<TenantModuleDescriptor> it = tml.iterator();
@@ -518,7 +525,7 @@ public class DepResolution {
   }
 
   private static void upgradeLeafs(
-      ModuleDescriptor md, Map<String, ModuleDescriptor> modsAvailable,
+      ModuleDescriptor md, AvailableModules modsAvailable,
       Map<String, ModuleDescriptor> modsEnabled, List<TenantModuleDescriptor> tml) {
     Iterator<ModuleDescriptor> it = modsEnabled.values().iterator();
     while (it.hasNext()) {
@@ -542,15 +549,16 @@ public class DepResolution {
   }
 
   private static ModuleDescriptor lookupAvailableForProvided(
-      Map<String, ModuleDescriptor> modsAvailable,
+      AvailableModules modsAvailable,
       ModuleDescriptor me, InterfaceDescriptor prov, ModuleDescriptor mdTo) {
-    for (ModuleDescriptor ma : modsAvailable.values()) {
-      if (!me.getProduct().equals(ma.getProduct())) {
-        continue;
+    // versions are newest first, so the first match is the newest
+    for (ModuleDescriptor ma : modsAvailable.getProduct(me.getProduct())) {
+      if (mdTo != null && ma.compareTo(mdTo) <= 0) {
+        break;
       }
       for (InterfaceDescriptor re1 : ma.getRequiresOptionalList()) {
-        if (prov.isCompatible(re1) && (mdTo == null || ma.compareTo(mdTo) > 0)) {
-          mdTo = ma;
+        if (prov.isCompatible(re1)) {
+          return ma;
         }
       }
     }
@@ -558,7 +566,7 @@ public class DepResolution {
   }
 
   private static List<String> addModuleDependencies(
-      ModuleDescriptor md, Map<String, ModuleDescriptor> modsAvailable,
+      ModuleDescriptor md, AvailableModules modsAvailable,
       Map<String, ModuleDescriptor> modsEnabled, List<TenantModuleDescriptor> tml) {
     List<String> ret = new LinkedList<>();
     logger.info("addModuleDependencies {}", md.getId());
@@ -618,6 +626,96 @@ public class DepResolution {
     return ret;
   }
 
+  private static void addInstallInterfaces(ModuleDescriptor md, Set<String> provides,
+                                           Set<String> requires) {
+    if (md == null) {
+      return;
+    }
+    for (InterfaceDescriptor pi : md.getProvidesList()) {
+      if (!pi.isType("system")) {
+        provides.add(pi.getId());
+      }
+    }
+    for (InterfaceDescriptor req : md.getRequiresOptionalList()) {
+      requires.add(req.getId());
+    }
+  }
+
+  private static boolean isPermissionsModule(ModuleDescriptor md) {
+    return md != null && md.getSystemInterface("_tenantPermissions") != null;
+  }
+
+  /**
+   * Split an install list into waves that may be run one after the other,
+   * with the entries of a wave run concurrently. An entry is put in a later
+   * wave than each earlier entry it is related to: same product, or one
+   * provides an interface that the other provides or requires. A module
+   * providing _tenantPermissions gets a wave of its own, so that permissions
+   * are pushed to it for all modules enabled after it. Entries that do not
+   * change modules (such as uptodate) are left out.
+   * @param tml install list as returned by installSimulate
+   * @param modsAvailable available modules
+   * @return waves in order; entries in a wave keep install list order
+   */
+  public static List<List<TenantModuleDescriptor>> installWaves(
+      List<TenantModuleDescriptor> tml, Map<String, ModuleDescriptor> modsAvailable) {
+
+    List<TenantModuleDescriptor> entries = new ArrayList<>();
+    List<Set<String>> products = new ArrayList<>();
+    List<Set<String>> provides = new ArrayList<>();
+    List<Set<String>> requires = new ArrayList<>();
+    List<Boolean> barriers = new ArrayList<>();
+    for (TenantModuleDescriptor tm : tml) {
+      ModuleDescriptor mdFrom = null;
+      ModuleDescriptor mdTo = null;
+      if (tm.getAction() == TenantModuleDescriptor.Action.enable) {
+        if (tm.getFrom() != null) {
+          mdFrom = modsAvailable.get(tm.getFrom());
+        }
+        mdTo = modsAvailable.get(tm.getId());
+      } else if (tm.getAction() == TenantModuleDescriptor.Action.disable) {
+        mdFrom = modsAvailable.get(tm.getId());
+      }
+      if (mdFrom == null && mdTo == null) {
+        continue;
+      }
+      Set<String> p = new HashSet<>();
+      Set<String> pr = new HashSet<>();
+      Set<String> re = new HashSet<>();
+      for (ModuleDescriptor md : new ModuleDescriptor[] {mdFrom, mdTo}) {
+        if (md != null) {
+          p.add(md.getProduct());
+        }
+        addInstallInterfaces(md, pr, re);
+      }
+      entries.add(tm);
+      products.add(p);
+      provides.add(pr);
+      requires.add(re);
+      barriers.add(isPermissionsModule(mdFrom) || isPermissionsModule(mdTo));
+    }
+    List<List<TenantModuleDescriptor>> waves = new ArrayList<>();
+    int[] level = new int[entries.size()];
+    for (int j = 0; j < entries.size(); j++) {
+      int l = 0;
+      for (int i = 0; i < j; i++) {
+        if (level[i] >= l && (barriers.get(i) || barriers.get(j)
+            || !Collections.disjoint(products.get(i), products.get(j))
+            || !Collections.disjoint(provides.get(i), provides.get(j))
+            || !Collections.disjoint(provides.get(i), requires.get(j))
+            || !Collections.disjoint(requires.get(i), provides.get(j)))) {
+          l = level[i] + 1;
+        }
+      }
+      level[j] = l;
+      if (l == waves.size()) {
+        waves.add(new LinkedList<>());
+      }
+      waves.get(l).add(entries.get(j));
+    }
+    return waves;
+  }
+
   /**
    * Return top-N set of modules - in order of module ID.
    * @param limit max number for each module (Top-N)
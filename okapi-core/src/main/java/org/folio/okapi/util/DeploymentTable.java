@@ -0,0 +1,159 @@
+package org.folio.okapi.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.folio.okapi.bean.DeploymentDescriptor;
+
+/**
+ * Deployments by service ID, as used for routing. The table is never
+ * modified; a change returns a new table, so that readers need no locking
+ * while changes are applied.
+ */
+public class DeploymentTable {
+
+  private final SortedMap<String, List<DeploymentDescriptor>> services;
+  private final int size;
+
+  public DeploymentTable() {
+    this(Collections.emptySortedMap(), 0);
+  }
+
+  /**
+   * Construct table for a set of deployments.
+   * @param dds deployments; order within a service is kept
+   */
+  public DeploymentTable(Collection<DeploymentDescriptor> dds) {
+    SortedMap<String, List<DeploymentDescriptor>> m = new TreeMap<>();
+    for (DeploymentDescriptor dd : dds) {
+      m.computeIfAbsent(dd.getSrvcId(), k -> new ArrayList<>()).add(dd);
+    }
+    for (Map.Entry<String, List<DeploymentDescriptor>> e : m.entrySet()) {
+      e.setValue(Collections.unmodifiableList(e.getValue()));
+    }
+    this.services = Collections.unmodifiableSortedMap(m);
+    this.size = dds.size();
+  }
+
+  private DeploymentTable(SortedMap<String, List<DeploymentDescriptor>> services, int size) {
+    this.services = services;
+    this.size = size;
+  }
+
+  /**
+   * Return deployments of a service.
+   * @param srvcId service ID
+   * @return unmodifiable list; null if service has no deployments
+   */
+  public List<DeploymentDescriptor> get(String srvcId) {
+    return services.get(srvcId);
+  }
+
+  /**
+   * Return deployment of a service.
+   * @param srvcId service ID
+   * @param instId instance ID
+   * @return deployment; null if not found
+   */
+  public DeploymentDescriptor get(String srvcId, String instId) {
+    List<DeploymentDescriptor> l = services.get(srvcId);
+    if (l != null) {
+      for (DeploymentDescriptor dd : l) {
+        if (dd.getInstId().equals(instId)) {
+          return dd;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Return all deployments.
+   * @return new list ordered by service ID
+   */
+  public List<DeploymentDescriptor> getAll() {
+    List<DeploymentDescriptor> all = new ArrayList<>(size);
+    for (List<DeploymentDescriptor> l : services.values()) {
+      all.addAll(l);
+    }
+    return all;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Return table with a deployment added. A deployment of the service with
+   * the same instance ID is replaced.
+   * @param dd deployment
+   * @return new table
+   */
+  public DeploymentTable with(DeploymentDescriptor dd) {
+    List<DeploymentDescriptor> l = new ArrayList<>();
+    List<DeploymentDescriptor> old = services.get(dd.getSrvcId());
+    if (old != null) {
+      l.addAll(old);
+    }
+    int n = size + 1;
+    Iterator<DeploymentDescriptor> it = l.iterator();
+    while (it.hasNext()) {
+      if (it.next().getInstId().equals(dd.getInstId())) {
+        it.remove();
+        n--;
+      }
+    }
+    l.add(dd);
+    SortedMap<String, List<DeploymentDescriptor>> m = new TreeMap<>(services);
+    m.put(dd.getSrvcId(), Collections.unmodifiableList(l));
+    return new DeploymentTable(Collections.unmodifiableSortedMap(m), n);
+  }
+
+  /**
+   * Return table with a deployment removed.
+   * @param srvcId service ID
+   * @param instId instance ID
+   * @return new table; this table if deployment is not present
+   */
+  public DeploymentTable without(String srvcId, String instId) {
+    List<DeploymentDescriptor> old = services.get(srvcId);
+    if (old == null || get(srvcId, instId) == null) {
+      return this;
+    }
+    List<DeploymentDescriptor> l = new ArrayList<>(old);
+    l.removeIf(dd -> dd.getInstId().equals(instId));
+    SortedMap<String, List<DeploymentDescriptor>> m = new TreeMap<>(services);
+    if (l.isEmpty()) {
+      m.remove(srvcId);
+    } else {
+      m.put(srvcId, Collections.unmodifiableList(l));
+    }
+    return new DeploymentTable(Collections.unmodifiableSortedMap(m), size - 1);
+  }
+
+  /**
+   * Whether two tables route the same: same instances of each service, with
+   * the same URL and node. Order within a service is not considered.
+   * @param other other table
+   * @return true if same; false otherwise
+   */
+  public boolean sameRoutes(DeploymentTable other) {
+    if (size != other.size || !services.keySet().equals(other.services.keySet())) {
+      return false;
+    }
+    for (DeploymentDescriptor dd : getAll()) {
+      DeploymentDescriptor o = other.get(dd.getSrvcId(), dd.getInstId());
+      if (o == null || !Objects.equals(dd.getUrl(), o.getUrl())
+          || !Objects.equals(dd.getNodeId(), o.getNodeId())) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
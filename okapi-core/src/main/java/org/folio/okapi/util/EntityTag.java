@@ -0,0 +1,95 @@
+package org.folio.okapi.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes an HTTP entity tag from values that identify the content of a
+ * response, such as versions, so that a response can be validated without
+ * reading or serializing the content.
+ */
+public class EntityTag {
+
+  private static final char[] HEX = "0123456789abcdef".toCharArray();
+  private static final int TAG_BYTES = 16;
+  private final MessageDigest digest;
+
+  /**
+   * Construct empty entity tag.
+   */
+  public EntityTag() {
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Add value to the tag.
+   * @param value value; null is allowed and differs from empty string
+   * @return this
+   */
+  public EntityTag add(String value) {
+    if (value == null) {
+      digest.update((byte) 1);
+    } else {
+      digest.update(value.getBytes(StandardCharsets.UTF_8));
+    }
+    digest.update((byte) 0);
+    return this;
+  }
+
+  /**
+   * Add long value to the tag.
+   * @param value value
+   * @return this
+   */
+  public EntityTag add(long value) {
+    return add(Long.toString(value));
+  }
+
+  /**
+   * Return the tag in header form (quoted). The tag can not be added to after
+   * this call.
+   * @return quoted tag
+   */
+  public String build() {
+    byte[] b = digest.digest();
+    StringBuilder s = new StringBuilder(2 * TAG_BYTES + 2);
+    s.append('"');
+    for (int i = 0; i < TAG_BYTES; i++) {
+      s.append(HEX[(b[i] >> 4) & 15]);
+      s.append(HEX[b[i] & 15]);
+    }
+    s.append('"');
+    return s.toString();
+  }
+
+  /**
+   * Check whether If-None-Match header matches entity tag. Uses weak
+   * comparison as required for If-None-Match.
+   * @param ifNoneMatch header value; null if not given
+   * @param tag quoted entity tag
+   * @return true if tag matches
+   */
+  public static boolean matches(String ifNoneMatch, String tag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (String t : ifNoneMatch.split(",")) {
+      t = t.trim();
+      if (t.equals("*")) {
+        return true;
+      }
+      if (t.startsWith("W/")) {
+        t = t.substring(2);
+      }
+      if (t.equals(tag)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
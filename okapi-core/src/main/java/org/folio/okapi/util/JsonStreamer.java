@@ -0,0 +1,102 @@
+package org.folio.okapi.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.jackson.DatabindCodec;
+import io.vertx.core.streams.WriteStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+
+/**
+ * Writes compact JSON arrays to a stream, one element at a time.
+ * Output is written in chunks and honors back pressure of the stream, so that
+ * large lists are not materialized as one string.
+ */
+public class JsonStreamer {
+
+  static final int CHUNK_SIZE = 8192;
+
+  private JsonStreamer() {
+    throw new IllegalAccessError("JsonStreamer");
+  }
+
+  private static class BufferOutputStream extends OutputStream {
+    private Buffer buffer = Buffer.buffer();
+
+    @Override
+    public void write(int b) {
+      buffer.appendByte((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) {
+      buffer.appendBytes(b, off, len);
+    }
+
+    int size() {
+      return buffer.length();
+    }
+
+    Buffer take() {
+      Buffer b = buffer;
+      buffer = Buffer.buffer();
+      return b;
+    }
+  }
+
+  /**
+   * Write JSON array to stream. The stream is not ended.
+   * @param ws stream to write to
+   * @param it elements of array
+   * @param fut async result; failure if an element could not be encoded or
+   *     written
+   */
+  public static void writeArray(WriteStream<Buffer> ws, Iterator<?> it,
+                                Handler<AsyncResult<Void>> fut) {
+    ObjectMapper mapper = DatabindCodec.mapper();
+    BufferOutputStream out = new BufferOutputStream();
+    JsonGenerator gen;
+    try {
+      gen = mapper.getFactory().createGenerator(out);
+      gen.writeStartArray();
+    } catch (IOException | RuntimeException e) {
+      fut.handle(Future.failedFuture(e));
+      return;
+    }
+    writeElements(ws, it, mapper, gen, out, fut);
+  }
+
+  private static void writeElements(WriteStream<Buffer> ws, Iterator<?> it,
+                                    ObjectMapper mapper, JsonGenerator gen,
+                                    BufferOutputStream out,
+                                    Handler<AsyncResult<Void>> fut) {
+    try {
+      while (it.hasNext()) {
+        mapper.writeValue(gen, it.next());
+        gen.flush();
+        if (out.size() >= CHUNK_SIZE) {
+          ws.write(out.take());
+          if (ws.writeQueueFull()) {
+            ws.drainHandler(x -> writeElements(ws, it, mapper, gen, out, fut));
+            return;
+          }
+        }
+      }
+      gen.writeEndArray();
+      gen.close();
+      ws.drainHandler(null);
+      ws.write(out.take());
+    } catch (IOException | RuntimeException e) {
+      // such as a bean that cannot be serialized or a response that is reset
+      ws.drainHandler(null);
+      fut.handle(Future.failedFuture(e));
+      return;
+    }
+    fut.handle(Future.succeededFuture());
+  }
+}
@@ -0,0 +1,19 @@
+package org.folio.okapi.util;
+
+/**
+ * Stores values as JSON, as earlier versions of Okapi do. Values stored by
+ * {@link DeflateValueCodec} are read too, so that nodes with either codec
+ * can share a map.
+ */
+public class JsonValueCodec implements ValueCodec {
+
+  @Override
+  public String encode(String json) {
+    return json;
+  }
+
+  @Override
+  public String decode(String stored) {
+    return DeflateValueCodec.isDeflated(stored) ? DeflateValueCodec.inflate(stored) : stored;
+  }
+}
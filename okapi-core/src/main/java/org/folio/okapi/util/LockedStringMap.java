@@ -2,15 +2,27 @@ package org.folio.okapi.util;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.Json;
 import io.vertx.core.shareddata.AsyncMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.ExtendedAsyncResult;
@@ -19,6 +31,13 @@ import org.folio.okapi.common.Messages;
 import org.folio.okapi.common.OkapiLogger;
 import org.folio.okapi.common.Success;
 
+/**
+ * Map of strings, or of maps of strings by secondary-level key, shared by
+ * the nodes of a cluster. When not clustered, values are kept as they are
+ * in a local map instead: no encoding, no compare-and-swap, and callbacks
+ * are called before the method returns. Entries of a local map are replaced
+ * on update, never modified, so values read must not be modified either.
+ */
 public class LockedStringMap {
 
   static class StringMap {
@@ -28,8 +47,19 @@ public class LockedStringMap {
   }
 
   private AsyncMap<String, String> list = null;
+  private ConcurrentMap<String, Object> local = null;
   private Vertx vertx = null;
-  private static final int DELAY = 10; // ms in recursing for retry of map
+  private String mapName;
+  // first retry of a conflicting update after up to RETRY_MIN_MS; doubled for
+  // each retry up to RETRY_MAX_MS; at most RETRY_LIMIT retries
+  private static final long RETRY_MIN_MS = 2;
+  private static final long RETRY_MAX_MS = 500;
+  private static final int RETRY_LIMIT = 20;
+  // updates waiting per primary-level key on this node; one runs at a time
+  private final Map<String, Deque<Runnable>> waiting = new HashMap<>();
+  private static final int PARALLEL_DECODE_MIN = 500; // values
+  private static ValueCodec defaultCodec = new JsonValueCodec();
+  private ValueCodec codec = defaultCodec;
   protected final Logger logger = OkapiLogger.get();
   private final Messages messages = Messages.getInstance();
 
@@ -41,6 +71,12 @@ public class LockedStringMap {
    */
   public void init(Vertx vertx, String mapName, Handler<ExtendedAsyncResult<Void>> fut) {
     this.vertx = vertx;
+    this.mapName = mapName;
+    if (AsyncMapFactory.isLocal(vertx, mapName)) {
+      local = AsyncMapFactory.createLocal(vertx, mapName);
+      fut.handle(new Success<>());
+      return;
+    }
     AsyncMapFactory.<String, String>create(vertx, mapName, res -> {
       if (res.succeeded()) {
         this.list = res.result();
@@ -51,7 +87,151 @@ public class LockedStringMap {
     });
   }
 
+  /**
+   * Set codec for values written by maps created from now on. Values of any
+   * codec are read.
+   * @param codec value codec
+   */
+  public static void setDefaultCodec(ValueCodec codec) {
+    defaultCodec = codec;
+  }
+
+  public void setCodec(ValueCodec codec) {
+    this.codec = codec;
+  }
+
+  private String decode(String stored) {
+    return stored == null ? null : codec.decode(stored);
+  }
+
+  protected boolean isLocal() {
+    return local != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> inner(Object val) {
+    return (Map<String, Object>) val;
+  }
+
+  private static String asString(Object val) {
+    if (val instanceof Map) {
+      StringMap stringMap = new StringMap();
+      for (Map.Entry<String, Object> e : inner(val).entrySet()) {
+        stringMap.strings.put(e.getKey(), asString(e.getValue()));
+      }
+      return Json.encode(stringMap);
+    }
+    return val instanceof String ? (String) val : Json.encode(val);
+  }
+
+  /**
+   * Get value from local map.
+   * @param k primary-level key
+   * @param k2 secondary-level key; null for none
+   * @return value; null if not found
+   */
+  protected Object getLocal(String k, String k2) {
+    Object val = local.get(k);
+    if (k2 == null || val == null) {
+      return val;
+    }
+    return inner(val).get(k2);
+  }
+
+  /**
+   * Get values of primary-level key from local map.
+   * @param k primary-level key
+   * @return values in order of insertion; null if not found
+   */
+  protected Collection<Object> getLocalValues(String k) {
+    Object val = local.get(k);
+    return val == null ? null : inner(val).values();
+  }
+
+  /**
+   * Get all entries from local map.
+   * @return entries sorted by key
+   */
+  protected SortedMap<String, Object> getLocalEntries() {
+    return new TreeMap<>(local);
+  }
+
+  /**
+   * Get values of all entries from local map.
+   * @return values of secondary-level keys, ordered by primary-level key
+   */
+  protected List<Object> getLocalEntryValues() {
+    List<Object> values = new ArrayList<>();
+    for (Object val : getLocalEntries().values()) {
+      values.addAll(inner(val).values());
+    }
+    return values;
+  }
+
+  /**
+   * Update value in local map.
+   * @param allowReplace true: both insert and replace; false: insert only
+   * @param k primary-level key
+   * @param k2 secondary-level key
+   * @param value new value; not to be modified after this call
+   * @param fut async result
+   */
+  protected void addOrReplaceLocal(boolean allowReplace, String k, String k2, Object value,
+                                   Handler<ExtendedAsyncResult<Void>> fut) {
+    if (k2 == null) {
+      local.put(k, value);
+      fut.handle(new Success<>());
+      return;
+    }
+    AtomicReference<ExtendedAsyncResult<Void>> result = new AtomicReference<>();
+    local.compute(k, (key, oldVal) -> {
+      Map<String, Object> m = new LinkedHashMap<>();
+      if (oldVal != null) {
+        m.putAll(inner(oldVal));
+      }
+      if (!allowReplace && m.containsKey(k2)) {
+        result.set(new Failure<>(ErrorType.USER, messages.getMessage("11400", k2)));
+        return oldVal;
+      }
+      m.put(k2, value);
+      result.set(new Success<>());
+      return Collections.unmodifiableMap(m);
+    });
+    fut.handle(result.get());
+  }
+
+  private void removeLocal(String k, String k2, Handler<ExtendedAsyncResult<Boolean>> fut) {
+    if (k2 == null) {
+      if (local.remove(k) == null) {
+        fut.handle(new Failure<>(ErrorType.NOT_FOUND, k));
+      } else {
+        fut.handle(new Success<>(true));
+      }
+      return;
+    }
+    AtomicReference<ExtendedAsyncResult<Boolean>> result
+        = new AtomicReference<>(new Failure<>(ErrorType.NOT_FOUND, k));
+    local.computeIfPresent(k, (key, oldVal) -> {
+      Map<String, Object> m = new LinkedHashMap<>(inner(oldVal));
+      if (m.remove(k2) == null) {
+        result.set(new Failure<>(ErrorType.NOT_FOUND, k + "/" + k2));
+        return oldVal;
+      }
+      result.set(new Success<>(m.isEmpty()));
+      return m.isEmpty() ? null : Collections.unmodifiableMap(m);
+    });
+    fut.handle(result.get());
+  }
+
+  /**
+   * Get number of entries.
+   * @param fut async result with number of primary-level keys
+   */
   public void size(Handler<AsyncResult<Integer>> fut) {
+    if (local != null) {
+      fut.handle(Future.succeededFuture(local.size()));
+      return;
+    }
     list.size(fut);
   }
 
@@ -62,11 +242,20 @@ public class LockedStringMap {
    * @param fut async result with value if successful
    */
   public void getString(String k, String k2, Handler<ExtendedAsyncResult<String>> fut) {
+    if (local != null) {
+      Object val = getLocal(k, k2);
+      if (val == null) {
+        fut.handle(new Failure<>(ErrorType.NOT_FOUND, k2 == null ? k : k + "/" + k2));
+      } else {
+        fut.handle(new Success<>(asString(val)));
+      }
+      return;
+    }
     list.get(k, resGet -> {
       if (resGet.failed()) {
         fut.handle(new Failure<>(ErrorType.INTERNAL, resGet.cause()));
       } else {
-        String val = resGet.result();
+        String val = decode(resGet.result());
         if (k2 == null) {
           if (val == null) {
             fut.handle(new Failure<>(ErrorType.NOT_FOUND, k));
@@ -97,11 +286,24 @@ public class LockedStringMap {
    * @param fut async result with values if successful
    */
   public void getString(String k, Handler<ExtendedAsyncResult<Collection<String>>> fut) {
+    if (local != null) {
+      Collection<Object> values = getLocalValues(k);
+      if (values == null) {
+        fut.handle(new Failure<>(ErrorType.NOT_FOUND, k));
+      } else {
+        List<String> l = new ArrayList<>(values.size());
+        for (Object val : values) {
+          l.add(asString(val));
+        }
+        fut.handle(new Success<>(l));
+      }
+      return;
+    }
     list.get(k, resGet -> {
       if (resGet.failed()) {
         fut.handle(new Failure<>(ErrorType.INTERNAL, resGet.cause()));
       } else {
-        String val = resGet.result();
+        String val = decode(resGet.result());
         StringMap map;
         if (val != null) {
           map = Json.decodeValue(val, StringMap.class);
@@ -118,6 +320,12 @@ public class LockedStringMap {
    * @param fut async result with values if successful
    */
   public void getKeys(Handler<ExtendedAsyncResult<Collection<String>>> fut) {
+    if (local != null) {
+      List<String> keys = new ArrayList<>(local.keySet());
+      Collections.sort(keys);
+      fut.handle(new Success<>(keys));
+      return;
+    }
     list.keys(res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(ErrorType.INTERNAL, res.cause()));
@@ -129,6 +337,52 @@ public class LockedStringMap {
     });
   }
 
+  /**
+   * Get all entries from shared map in one map operation.
+   * @param fut async result with entries sorted by key if successful
+   */
+  public void getEntries(Handler<ExtendedAsyncResult<SortedMap<String, String>>> fut) {
+    if (local != null) {
+      SortedMap<String, String> entries = new TreeMap<>();
+      for (Map.Entry<String, Object> e : local.entrySet()) {
+        entries.put(e.getKey(), asString(e.getValue()));
+      }
+      fut.handle(new Success<>(entries));
+      return;
+    }
+    list.entries(res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(ErrorType.INTERNAL, res.cause()));
+      } else {
+        SortedMap<String, String> entries = new TreeMap<>();
+        for (Map.Entry<String, String> e : res.result().entrySet()) {
+          entries.put(e.getKey(), decode(e.getValue()));
+        }
+        fut.handle(new Success<>(entries));
+      }
+    });
+  }
+
+  /**
+   * Decode JSON values. Large collections are decoded in parallel.
+   * @param values JSON values
+   * @param clazz type to decode to
+   * @param <T> type
+   * @return decoded values in the order of values
+   */
+  static <T> List<T> decodeValues(Collection<String> values, Class<T> clazz) {
+    if (values.size() < PARALLEL_DECODE_MIN) {
+      List<T> l = new ArrayList<>(values.size());
+      for (String s : values) {
+        l.add(Json.decodeValue(s, clazz));
+      }
+      return l;
+    }
+    return values.parallelStream()
+        .map(s -> Json.decodeValue(s, clazz))
+        .collect(Collectors.toList());
+  }
+
   /**
    * Update value in shared map.
    * @param allowReplace true: both insert and replace; false: insert only
@@ -139,34 +393,49 @@ public class LockedStringMap {
    */
   public void addOrReplace(boolean allowReplace, String k, String k2, String value,
                            Handler<ExtendedAsyncResult<Void>> fut) {
+    if (local != null) {
+      addOrReplaceLocal(allowReplace, k, k2, value, fut);
+      return;
+    }
+    serialize(k, done -> addOrReplace(allowReplace, k, k2, value, 0, done), fut);
+  }
+
+  private void addOrReplace(boolean allowReplace, String k, String k2, String value,
+                            int attempt, Handler<ExtendedAsyncResult<Void>> fut) {
     list.get(k, resGet -> {
       if (resGet.failed()) {
         fut.handle(new Failure<>(ErrorType.INTERNAL, resGet.cause()));
       } else {
         String oldVal = resGet.result();
         String newVal;
-        if (k2 == null) {
-          newVal = value;
-        } else {
-          StringMap smap = new StringMap();
-          if (oldVal != null) {
-            StringMap oldList = Json.decodeValue(oldVal, StringMap.class);
-            smap.strings.putAll(oldList.strings);
-          }
-          if (!allowReplace && smap.strings.containsKey(k2)) {
-            fut.handle(new Failure<>(ErrorType.USER, messages.getMessage("11400", k2)));
-            return;
+        try {
+          if (k2 == null) {
+            newVal = codec.encode(value);
+          } else {
+            StringMap smap = new StringMap();
+            if (oldVal != null) {
+              StringMap oldList = Json.decodeValue(decode(oldVal), StringMap.class);
+              smap.strings.putAll(oldList.strings);
+            }
+            if (!allowReplace && smap.strings.containsKey(k2)) {
+              fut.handle(new Failure<>(ErrorType.USER, messages.getMessage("11400", k2)));
+              return;
+            }
+            smap.strings.put(k2, value);
+            newVal = codec.encode(Json.encode(smap));
           }
-          smap.strings.put(k2, value);
-          newVal = Json.encodePrettily(smap);
+        } catch (RuntimeException e) { // corrupt value
+          fut.handle(new Failure<>(ErrorType.INTERNAL, e));
+          return;
         }
-        addOrReplace2(allowReplace, k, k2, value, oldVal, newVal, fut);
+        addOrReplace2(allowReplace, k, k2, value, oldVal, newVal, attempt, fut);
       } // get success
     });
   }
 
   private void addOrReplace2(boolean allowReplace, String k, String k2, String value,
-                             String oldVal, String newVal, Handler<ExtendedAsyncResult<Void>> fut) {
+                             String oldVal, String newVal, int attempt,
+                             Handler<ExtendedAsyncResult<Void>> fut) {
 
     if (oldVal == null) { // new entry
       list.putIfAbsent(k, newVal, resPut -> {
@@ -174,8 +443,8 @@ public class LockedStringMap {
           if (resPut.result() == null) {
             fut.handle(new Success<>());
           } else { // Someone messed with it, try again
-            vertx.setTimer(DELAY, res
-                -> addOrReplace(allowReplace, k, k2, value, fut));
+            retry(k, attempt, fut,
+                () -> addOrReplace(allowReplace, k, k2, value, attempt + 1, fut));
           }
         } else {
           fut.handle(new Failure<>(ErrorType.INTERNAL, resPut.cause()));
@@ -187,8 +456,8 @@ public class LockedStringMap {
           if (Boolean.TRUE.equals(resRepl.result())) {
             fut.handle(new Success<>());
           } else {
-            vertx.setTimer(DELAY, res
-                -> addOrReplace(allowReplace, k, k2, value, fut));
+            retry(k, attempt, fut,
+                () -> addOrReplace(allowReplace, k, k2, value, attempt + 1, fut));
           }
         } else {
           fut.handle(new Failure<>(ErrorType.INTERNAL, resRepl.cause()));
@@ -209,6 +478,15 @@ public class LockedStringMap {
    */
   public void remove(String k, String k2,
                      Handler<ExtendedAsyncResult<Boolean>> fut) {
+    if (local != null) {
+      removeLocal(k, k2, fut);
+      return;
+    }
+    serialize(k, done -> remove(k, k2, 0, done), fut);
+  }
+
+  private void remove(String k, String k2, int attempt,
+                      Handler<ExtendedAsyncResult<Boolean>> fut) {
 
     list.get(k, resGet -> {
       if (resGet.failed()) {
@@ -221,19 +499,24 @@ public class LockedStringMap {
         }
         StringMap stringMap = new StringMap();
         if (k2 != null) {
-          stringMap = Json.decodeValue(val, StringMap.class);
+          try {
+            stringMap = Json.decodeValue(decode(val), StringMap.class);
+          } catch (RuntimeException e) { // corrupt value
+            fut.handle(new Failure<>(ErrorType.INTERNAL, e));
+            return;
+          }
           if (!stringMap.strings.containsKey(k2)) {
             fut.handle(new Failure<>(ErrorType.NOT_FOUND, k + "/" + k2));
             return;
           }
           stringMap.strings.remove(k2);
         }
-        remove2(k, k2, stringMap, val, fut);
+        remove2(k, k2, stringMap, val, attempt, fut);
       }
     });
   }
 
-  private void remove2(String k, String k2, StringMap stringMap, String val,
+  private void remove2(String k, String k2, StringMap stringMap, String val, int attempt,
                        Handler<ExtendedAsyncResult<Boolean>> fut) {
 
     if (stringMap.strings.isEmpty()) {
@@ -242,20 +525,20 @@ public class LockedStringMap {
           if (Boolean.TRUE.equals(resDel.result())) {
             fut.handle(new Success<>(true));
           } else {
-            vertx.setTimer(DELAY, res -> remove(k, k2, fut));
+            retry(k, attempt, fut, () -> remove(k, k2, attempt + 1, fut));
           }
         } else {
           fut.handle(new Failure<>(ErrorType.INTERNAL, resDel.cause()));
         }
       });
     } else { // list was not empty, remove value
-      String newVal = Json.encodePrettily(stringMap);
+      String newVal = codec.encode(Json.encode(stringMap));
       list.replaceIfPresent(k, val, newVal, resPut -> {
         if (resPut.succeeded()) {
           if (Boolean.TRUE.equals(resPut.result())) {
             fut.handle(new Success<>(false));
           } else {
-            vertx.setTimer(DELAY, res -> remove(k, k2, fut));
+            retry(k, attempt, fut, () -> remove(k, k2, attempt + 1, fut));
           }
         } else {
           fut.handle(new Failure<>(ErrorType.INTERNAL, resPut.cause()));
@@ -264,4 +547,83 @@ public class LockedStringMap {
     }
   }
 
+  /**
+   * Run updates of a primary-level key one at a time on this node, so that
+   * they do not conflict with each other. The next update runs once the
+   * update completes, fails or throws.
+   * @param k primary-level key
+   * @param update update to run; calls its handler when done
+   * @param fut result of update
+   * @param <T> result type
+   */
+  private <T> void serialize(String k, Handler<Handler<ExtendedAsyncResult<T>>> update,
+                             Handler<ExtendedAsyncResult<T>> fut) {
+    Runnable run = () -> {
+      AtomicBoolean done = new AtomicBoolean();
+      Handler<ExtendedAsyncResult<T>> complete = res -> {
+        if (done.compareAndSet(false, true)) {
+          complete(k, res, fut);
+        }
+      };
+      try {
+        update.handle(complete);
+      } catch (RuntimeException e) {
+        if (done.get()) {
+          throw e; // thrown by fut
+        }
+        complete.handle(new Failure<>(ErrorType.INTERNAL, e));
+      }
+    };
+    synchronized (waiting) {
+      Deque<Runnable> q = waiting.get(k);
+      if (q != null) {
+        q.add(run);
+        return;
+      }
+      waiting.put(k, new ArrayDeque<>());
+    }
+    run.run();
+  }
+
+  private <T> void complete(String k, ExtendedAsyncResult<T> res,
+                            Handler<ExtendedAsyncResult<T>> fut) {
+    Runnable next;
+    synchronized (waiting) {
+      Deque<Runnable> q = waiting.get(k);
+      next = q.poll();
+      if (next == null) {
+        waiting.remove(k);
+      }
+    }
+    try {
+      fut.handle(res);
+    } finally {
+      // a failing handler must not hold up later updates of the key
+      if (next != null) {
+        next.run();
+      }
+    }
+  }
+
+  /**
+   * Retry update that conflicted with an update by another node after
+   * exponential backoff with jitter.
+   * @param k primary-level key
+   * @param attempt number of retries so far
+   * @param fut result; failed when there are too many retries
+   * @param again update to retry
+   * @param <T> result type
+   */
+  private <T> void retry(String k, int attempt, Handler<ExtendedAsyncResult<T>> fut,
+                         Runnable again) {
+    DropwizardHelper.markEvent("sharedmap." + mapName + ".conflict");
+    if (attempt >= RETRY_LIMIT) {
+      DropwizardHelper.markEvent("sharedmap." + mapName + ".giveup");
+      fut.handle(new Failure<>(ErrorType.INTERNAL, messages.getMessage("11401", k)));
+      return;
+    }
+    long max = Math.min(RETRY_MAX_MS, RETRY_MIN_MS << Math.min(attempt, 16));
+    long delay = max / 2 + ThreadLocalRandom.current().nextLong(max / 2 + 1);
+    vertx.setTimer(Math.max(1, delay), id -> again.run());
+  }
 }
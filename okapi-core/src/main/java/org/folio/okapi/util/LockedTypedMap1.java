@@ -1,10 +1,11 @@
 package org.folio.okapi.util;
 
 import io.vertx.core.Handler;
-import io.vertx.core.Promise;
 import io.vertx.core.json.Json;
-import java.util.Collection;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.ExtendedAsyncResult;
 import org.folio.okapi.common.Failure;
@@ -21,11 +22,19 @@ public class LockedTypedMap1<T> extends LockedStringMap {
 
   public void add(String k, T value, Handler<ExtendedAsyncResult<Void>> fut) {
     String json = Json.encode(value);
+    if (isLocal()) {
+      addOrReplaceLocal(false, k, null, Json.decodeValue(json, clazz), fut);
+      return;
+    }
     addOrReplace(false, k, null, json, fut);
   }
 
   public void put(String k, T value, Handler<ExtendedAsyncResult<Void>> fut) {
     String json = Json.encode(value);
+    if (isLocal()) {
+      addOrReplaceLocal(true, k, null, Json.decodeValue(json, clazz), fut);
+      return;
+    }
     addOrReplace(true, k, null, json, fut);
   }
 
@@ -35,6 +44,15 @@ public class LockedTypedMap1<T> extends LockedStringMap {
    * @param fut result with value if successful
    */
   public void get(String k, Handler<ExtendedAsyncResult<T>> fut) {
+    if (isLocal()) {
+      Object val = getLocal(k, null);
+      if (val == null) {
+        fut.handle(new Failure<>(ErrorType.NOT_FOUND, k));
+      } else {
+        fut.handle(new Success<>(clazz.cast(val)));
+      }
+      return;
+    }
     getString(k, null, res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
@@ -46,31 +64,32 @@ public class LockedTypedMap1<T> extends LockedStringMap {
 
   /**
    * Get all records in the map. Returns them in a LinkedHashMap, so they come
-   * in well defined order.
+   * in well defined order. The records are read in one map operation.
    *
    * @param fut callback with the result, or some failure.
    */
   public void getAll(Handler<ExtendedAsyncResult<LinkedHashMap<String, T>>> fut) {
-    getKeys(keyRes -> {
-      if (keyRes.failed()) {
-        fut.handle(new Failure<>(keyRes.getType(), keyRes.cause()));
+    if (isLocal()) {
+      LinkedHashMap<String, T> results = new LinkedHashMap<>();
+      for (Map.Entry<String, Object> e : getLocalEntries().entrySet()) {
+        results.put(e.getKey(), clazz.cast(e.getValue()));
+      }
+      fut.handle(new Success<>(results));
+      return;
+    }
+    getEntries(res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
         return;
       }
-      Collection<String> keys = keyRes.result();
+      Map<String, String> entries = res.result();
+      List<T> values = decodeValues(entries.values(), clazz);
       LinkedHashMap<String, T> results = new LinkedHashMap<>();
-      CompList<LinkedHashMap<String,T>> futures = new CompList<>(ErrorType.INTERNAL);
-      for (String key : keys) {
-        Promise<String> promise = Promise.promise();
-        getString(key, null, res -> {
-          if (res.succeeded()) {
-            T t = Json.decodeValue(res.result(), clazz);
-            results.put(key, t);
-          }
-          promise.handle(res);
-        });
-        futures.add(promise);
+      Iterator<T> it = values.iterator();
+      for (String key : entries.keySet()) {
+        results.put(key, it.next());
       }
-      futures.all(results, fut);
+      fut.handle(new Success<>(results));
     });
   }
 
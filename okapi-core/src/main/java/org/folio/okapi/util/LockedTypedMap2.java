@@ -2,8 +2,11 @@ package org.folio.okapi.util;
 
 import io.vertx.core.Handler;
 import io.vertx.core.json.Json;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.ExtendedAsyncResult;
 import org.folio.okapi.common.Failure;
 import org.folio.okapi.common.Success;
@@ -18,14 +21,30 @@ public class LockedTypedMap2<T> extends LockedStringMap {
 
   public void add(String k, String k2, T value, Handler<ExtendedAsyncResult<Void>> fut) {
     String json = Json.encode(value);
+    if (isLocal()) {
+      addOrReplaceLocal(false, k, k2, Json.decodeValue(json, clazz), fut);
+      return;
+    }
     addOrReplace(false, k, k2, json, fut);
   }
 
   public void put(String k, String k2, T value, Handler<ExtendedAsyncResult<Void>> fut) {
     String json = Json.encode(value);
+    if (isLocal()) {
+      addOrReplaceLocal(true, k, k2, Json.decodeValue(json, clazz), fut);
+      return;
+    }
     addOrReplace(true, k, k2, json, fut);
   }
 
+  private List<T> cast(Collection<Object> values) {
+    List<T> l = new ArrayList<>(values.size());
+    for (Object val : values) {
+      l.add(clazz.cast(val));
+    }
+    return l;
+  }
+
   /**
    * get and deserialize value from shared map.
    * @param k primary-level key
@@ -33,6 +52,15 @@ public class LockedTypedMap2<T> extends LockedStringMap {
    * @param fut async result with deserialized value on success
    */
   public void get(String k, String k2, Handler<ExtendedAsyncResult<T>> fut) {
+    if (isLocal()) {
+      Object val = getLocal(k, k2);
+      if (val == null) {
+        fut.handle(new Failure<>(ErrorType.NOT_FOUND, k + "/" + k2));
+      } else {
+        fut.handle(new Success<>(clazz.cast(val)));
+      }
+      return;
+    }
     getString(k, k2, res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
@@ -48,6 +76,15 @@ public class LockedTypedMap2<T> extends LockedStringMap {
    * @param fut async result with deserialized values on success
    */
   public void get(String k, Handler<ExtendedAsyncResult<List<T>>> fut) {
+    if (isLocal()) {
+      Collection<Object> values = getLocalValues(k);
+      if (values == null) {
+        fut.handle(new Failure<>(ErrorType.NOT_FOUND, k));
+      } else {
+        fut.handle(new Success<>(cast(values)));
+      }
+      return;
+    }
     getString(k, res -> {
       if (res.failed()) {
         fut.handle(new Failure<>(res.getType(), res.cause()));
@@ -60,4 +97,26 @@ public class LockedTypedMap2<T> extends LockedStringMap {
       }
     });
   }
+
+  /**
+   * Get and deserialize all values from shared map in one map operation.
+   * @param fut async result with values, ordered by primary-level key, on success
+   */
+  public void getAll(Handler<ExtendedAsyncResult<List<T>>> fut) {
+    if (isLocal()) {
+      fut.handle(new Success<>(cast(getLocalEntryValues())));
+      return;
+    }
+    getEntries(res -> {
+      if (res.failed()) {
+        fut.handle(new Failure<>(res.getType(), res.cause()));
+        return;
+      }
+      List<String> values = new ArrayList<>();
+      for (String val : res.result().values()) {
+        values.addAll(Json.decodeValue(val, StringMap.class).strings.values());
+      }
+      fut.handle(new Success<>(decodeValues(values, clazz)));
+    });
+  }
 }
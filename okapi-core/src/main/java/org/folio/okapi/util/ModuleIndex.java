@@ -0,0 +1,165 @@
+package org.folio.okapi.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.folio.okapi.bean.InterfaceDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.common.ModuleId;
+
+/**
+ * Local in-memory index of module descriptors with secondary indexes by
+ * product, by provided interface and by required interface. Module
+ * descriptors are immutable once created, so an entry is only ever added or
+ * removed. Lookups return modules ordered by module ID. Not thread safe; to be
+ * used from one Vert.x context.
+ */
+public class ModuleIndex {
+
+  private final Map<String, ModuleDescriptor> modules = new TreeMap<>();
+  private final Map<String, Set<String>> byProduct = new HashMap<>();
+  private final Map<String, Set<String>> byProvided = new HashMap<>();
+  private final Map<String, Set<String>> byRequired = new HashMap<>();
+
+  private static void addKey(Map<String, Set<String>> index, String key, String id) {
+    index.computeIfAbsent(key, k -> new TreeSet<>()).add(id);
+  }
+
+  private static void removeKey(Map<String, Set<String>> index, String key, String id) {
+    Set<String> ids = index.get(key);
+    if (ids != null) {
+      ids.remove(id);
+      if (ids.isEmpty()) {
+        index.remove(key);
+      }
+    }
+  }
+
+  private static void addInterfaces(Map<String, Set<String>> index,
+                                    InterfaceDescriptor[] interfaces, String id) {
+    for (InterfaceDescriptor i : interfaces) {
+      addKey(index, i.getId(), id);
+    }
+  }
+
+  private static void removeInterfaces(Map<String, Set<String>> index,
+                                       InterfaceDescriptor[] interfaces, String id) {
+    for (InterfaceDescriptor i : interfaces) {
+      removeKey(index, i.getId(), id);
+    }
+  }
+
+  /**
+   * Add module to index. Does nothing if module is already there.
+   * @param md module descriptor
+   */
+  public void add(ModuleDescriptor md) {
+    String id = md.getId();
+    if (modules.putIfAbsent(id, md) != null) {
+      return;
+    }
+    addKey(byProduct, md.getProduct(), id);
+    addInterfaces(byProvided, md.getProvidesList(), id);
+    addInterfaces(byRequired, md.getRequiresList(), id);
+  }
+
+  /**
+   * Remove module from index. Does nothing if module is not there.
+   * @param id module ID
+   */
+  public void remove(String id) {
+    ModuleDescriptor md = modules.remove(id);
+    if (md == null) {
+      return;
+    }
+    removeKey(byProduct, md.getProduct(), id);
+    removeInterfaces(byProvided, md.getProvidesList(), id);
+    removeInterfaces(byRequired, md.getRequiresList(), id);
+  }
+
+  /**
+   * Remove all modules from index.
+   */
+  public void clear() {
+    modules.clear();
+    byProduct.clear();
+    byProvided.clear();
+    byRequired.clear();
+  }
+
+  public int size() {
+    return modules.size();
+  }
+
+  /**
+   * Return modules that provide an interface.
+   * @param interfaceId interface ID (without version)
+   * @return new list of modules; empty if no module provides it
+   */
+  public List<ModuleDescriptor> getProviders(String interfaceId) {
+    Set<String> ids = byProvided.get(interfaceId);
+    if (ids == null) {
+      return new ArrayList<>();
+    }
+    List<ModuleDescriptor> mdl = new ArrayList<>(ids.size());
+    for (String id : ids) {
+      mdl.add(modules.get(id));
+    }
+    return mdl;
+  }
+
+  private static Collection<String> smallest(Collection<String> a, Collection<String> b) {
+    if (a == null) {
+      return b;
+    }
+    if (b == null || a.size() <= b.size()) {
+      return a;
+    }
+    return b;
+  }
+
+  private static Collection<String> interfaceIds(Map<String, Set<String>> index, String iface) {
+    if (iface == null) {
+      return null;
+    }
+    Set<String> ids = index.get(iface.split("=")[0]);
+    return ids == null ? Collections.emptySet() : ids;
+  }
+
+  /**
+   * Return candidate modules for a query. The smallest of the secondary
+   * indexes given is used. The result is a superset of the modules that
+   * satisfy all conditions, so the caller must still filter the result.
+   * @param filter module ID or product prefix; null for no filter
+   * @param provide provided interface, optionally with =version; null for any
+   * @param require required interface, optionally with =version; null for any
+   * @param skipModules module IDs to leave out; null for none
+   * @return new list of modules
+   */
+  public List<ModuleDescriptor> lookup(String filter, String provide, String require,
+                                       Collection<String> skipModules) {
+    Collection<String> ids = null;
+    if (filter != null) {
+      Set<String> pids = byProduct.get(new ModuleId(filter).getProduct());
+      ids = pids == null ? Collections.emptySet() : pids;
+    }
+    ids = smallest(ids, interfaceIds(byProvided, provide));
+    ids = smallest(ids, interfaceIds(byRequired, require));
+    if (ids == null) {
+      ids = modules.keySet();
+    }
+    List<ModuleDescriptor> mdl = new ArrayList<>(ids.size());
+    for (String id : ids) {
+      if (skipModules == null || !skipModules.contains(id)) {
+        mdl.add(modules.get(id));
+      }
+    }
+    return mdl;
+  }
+}
@@ -3,13 +3,14 @@ package org.folio.okapi.util;
 import io.vertx.core.http.HttpServerRequest;
 import io.vertx.core.json.DecodeException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import org.folio.okapi.bean.InterfaceDescriptor;
 import org.folio.okapi.bean.ModuleDescriptor;
 import org.folio.okapi.common.Messages;
 import org.folio.okapi.common.ModuleId;
+import org.folio.okapi.service.ModuleStoreFilter;
 
 public class ModuleUtil {
   private ModuleUtil() {
@@ -33,6 +34,13 @@ public class ModuleUtil {
     options.setPurge(getParamBoolean(req, "purge", false));
     options.setTenantParameters(req.getParam("tenantParameters"));
     options.setInvoke(getParamBoolean(req, "invoke", true));
+    int parallel = getParamInteger(req, "parallel", 1);
+    if (parallel < 1) {
+      throw new DecodeException(messages.getMessage("11608", "parallel", "Must be at least 1"));
+    }
+    options.setParallel(parallel);
+    options.setTiming(getParamBoolean(req, "timing", false));
+    options.setAsync(getParamBoolean(req, "async", false));
     return options;
   }
 
@@ -55,6 +63,73 @@ public class ModuleUtil {
     throw new DecodeException("Bad boolean for parameter " + name + ": " + v);
   }
 
+  /**
+   * Lookup non-negative integer query parameter in HTTP request.
+   * @param req HTTP server request
+   * @param name name of query parameter
+   * @param defValue default value if omitted
+   * @return integer value
+   */
+  public static int getParamInteger(HttpServerRequest req, String name, int defValue) {
+    String v = req.getParam(name);
+    if (v == null) {
+      return defValue;
+    }
+    try {
+      int i = Integer.parseInt(v);
+      if (i >= 0) {
+        return i;
+      }
+    } catch (NumberFormatException ex) {
+      throw new DecodeException(messages.getMessage("11608", name, ex.getMessage()));
+    }
+    throw new DecodeException(messages.getMessage("11608", name, v));
+  }
+
+  // query parameters of a module listing that a module store can answer
+  private static final List<String> STORE_PARAMS = Arrays.asList(
+      "provide", "require", "latest", "offset", "limit", "full", "preRelease", "npmSnapshot");
+
+  /**
+   * Produce module store filter from the query parameters of a module
+   * listing, if the store gives the same result as {@link #filter} would.
+   * @param req HTTP server request
+   * @return filter; null if the listing must be filtered with filter
+   */
+  public static ModuleStoreFilter storeFilter(HttpServerRequest req) {
+    for (String name : req.params().names()) {
+      if (!STORE_PARAMS.contains(name)) {
+        return null;
+      }
+    }
+    final String provide = req.getParam("provide");
+    final String require = req.getParam("require");
+    if ((provide != null && provide.contains("=")) || (require != null && require.contains("="))
+        || !getParamBoolean(req, "preRelease", true)
+        || !getParamBoolean(req, "npmSnapshot", true)) {
+      return null;
+    }
+    int latest = 0;
+    final String latestStr = req.getParam("latest");
+    if (latestStr != null) {
+      try {
+        latest = Integer.parseInt(latestStr);
+      } catch (NumberFormatException ex) {
+        throw new DecodeException(messages.getMessage("11608", "latest", ex.getMessage()));
+      }
+      if (latest <= 0) {
+        return null;
+      }
+    }
+    return new ModuleStoreFilter()
+        .setProvides(provide)
+        .setRequires(require)
+        .setLatest(latest)
+        .setOffset(getParamInteger(req, "offset", 0))
+        .setLimit(getParamInteger(req, "limit", Integer.MAX_VALUE))
+        .setFull(getParamBoolean(req, "full", false));
+  }
+
   private static boolean interfaceCheck(
       InterfaceDescriptor[] interfaces, String interfaceStr, String scope) {
     if (interfaceStr == null) {
@@ -76,9 +151,10 @@ public class ModuleUtil {
   }
 
   /**
-   * Produce list of modules based on various filters.
+   * Produce list of modules based on various filters. The result is sorted
+   * and then paged with query parameters offset and limit.
    * @param req HTTP server request
-   * @param list list of modules to consider
+   * @param list list of modules to consider (not modified)
    * @param full true: force full view of each module; false: consider "full" query parameter
    * @param includeName whether to include module name property always
    * @return list of modules
@@ -98,26 +174,28 @@ public class ModuleUtil {
     final boolean preRelease = getParamBoolean(req, "preRelease", true);
     final boolean npmSnapshot = getParamBoolean(req, "npmSnapshot", true);
     final String scope = req.getParam("scope");
+    final int offset = getParamInteger(req, "offset", 0);
+    final int limit = getParamInteger(req, "limit", Integer.MAX_VALUE);
     if (!full) {
       full = getParamBoolean(req, "full", false);
     }
-    Iterator<ModuleDescriptor> iterator = list.iterator();
-    while (iterator.hasNext()) {
-      ModuleDescriptor md = iterator.next();
+    List<ModuleDescriptor> filtered = new ArrayList<>(list.size());
+    for (ModuleDescriptor md : list) {
       String id = md.getId();
-      ModuleId idThis = new ModuleId(id);
-      if ((filter != null && !idThis.hasPrefix(filter))
-          || (!npmSnapshot && idThis.hasNpmSnapshot())
-          || (!preRelease && idThis.hasPreRelease())
-          || !interfaceCheck(md.getRequires(), requireStr, scope)
-          || !interfaceCheck(md.getProvides(), provideStr, scope)) {
-        iterator.remove();
+      ModuleId idThis = ModuleId.of(id);
+      if ((filter == null || idThis.hasPrefix(filter))
+          && (npmSnapshot || !idThis.hasNpmSnapshot())
+          && (preRelease || !idThis.hasPreRelease())
+          && interfaceCheck(md.getRequires(), requireStr, scope)
+          && interfaceCheck(md.getProvides(), provideStr, scope)) {
+        filtered.add(md);
       }
     }
+    list = filtered;
     if (latestStr != null) {
       try {
-        int limit = Integer.parseInt(latestStr);
-        list = DepResolution.getLatestProducts(limit, list);
+        int latest = Integer.parseInt(latestStr);
+        list = DepResolution.getLatestProducts(latest, list);
       } catch (NumberFormatException ex) {
         throw new DecodeException(messages.getMessage("11608", "latest", ex.getMessage()));
       }
@@ -136,6 +214,10 @@ public class ModuleUtil {
     } else {
       Collections.sort(list);
     }
+    if (offset > 0 || limit < list.size()) {
+      int from = Math.min(offset, list.size());
+      list = list.subList(from, from + Math.min(limit, list.size() - from));
+    }
     if (full) {
       return list;
     }
@@ -0,0 +1,67 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Handler;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.function.BiConsumer;
+import org.folio.okapi.common.ExtendedAsyncResult;
+import org.folio.okapi.common.Success;
+
+/**
+ * Run an asynchronous task for each item of a collection with at most a
+ * given number of tasks running at a time. After a task fails, no more tasks
+ * are started; the result is reported once the running tasks are done.
+ * To be used from one Vert.x context.
+ * @param <T> item type
+ */
+public class ParallelTasks<T> {
+
+  private final Iterator<T> it;
+  private final int parallel;
+  private final BiConsumer<T, Handler<ExtendedAsyncResult<Void>>> task;
+  private final Handler<ExtendedAsyncResult<Void>> fut;
+  private int running;
+  private ExtendedAsyncResult<Void> failure;
+  private boolean done;
+
+  private ParallelTasks(Collection<T> items, int parallel,
+                        BiConsumer<T, Handler<ExtendedAsyncResult<Void>>> task,
+                        Handler<ExtendedAsyncResult<Void>> fut) {
+    this.it = items.iterator();
+    this.parallel = Math.max(1, parallel);
+    this.task = task;
+    this.fut = fut;
+  }
+
+  /**
+   * Run task for all items.
+   * @param items items to run task for, in order
+   * @param parallel max number of tasks running at a time
+   * @param task task for one item
+   * @param fut result: success if all tasks succeed; first failure otherwise
+   * @param <T> item type
+   */
+  public static <T> void run(Collection<T> items, int parallel,
+                             BiConsumer<T, Handler<ExtendedAsyncResult<Void>>> task,
+                             Handler<ExtendedAsyncResult<Void>> fut) {
+    new ParallelTasks<>(items, parallel, task, fut).next();
+  }
+
+  private void next() {
+    while (failure == null && running < parallel && it.hasNext()) {
+      T item = it.next();
+      running++;
+      task.accept(item, res -> {
+        running--;
+        if (res.failed() && failure == null) {
+          failure = res;
+        }
+        next();
+      });
+    }
+    if (running == 0 && !done && (failure != null || !it.hasNext())) {
+      done = true;
+      fut.handle(failure != null ? failure : new Success<>());
+    }
+  }
+}
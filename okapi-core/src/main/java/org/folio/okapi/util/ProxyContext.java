@@ -4,6 +4,7 @@ import com.codahale.metrics.Timer;
 import io.vertx.core.MultiMap;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.ext.web.RoutingContext;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
@@ -40,6 +41,8 @@ public class ProxyContext {
   // store handler response status code and headers
   private int handlerRes;
   private final MultiMap handlerHeaders = MultiMap.caseInsensitiveMultiMap();
+  // list to be streamed as JSON array by proxy, instead of a response body
+  private Collection<?> streamBody;
 
   private final Messages messages = Messages.getInstance();
 
@@ -124,10 +127,14 @@ public class ProxyContext {
    * Pass the response headers from an OkapiClient into the response of this
    * request. Only selected X-Something headers: X-Okapi-Trace, and a special
    * X-Tenant-Perms-Result, which is used in unit tests for the tenantPemissions
+   * Nothing is passed if the response headers have already been written.
    *
    * @param ok OkapiClient to take resp headers from
    */
   public void passOkapiTraceHeaders(OkapiClient ok) {
+    if (ctx.response().headWritten()) { // async install: response already sent
+      return;
+    }
     MultiMap respH = ok.getRespHeaders();
     for (Map.Entry<String, String> e : respH.entries()) {
       if (XOkapiHeaders.TRACE.equals(e.getKey())
@@ -197,6 +204,19 @@ public class ProxyContext {
     return handlerHeaders;
   }
 
+  public Collection<?> getStreamBody() {
+    return streamBody;
+  }
+
+  /**
+   * Set list to be returned as JSON array. Used by internal services for large
+   * lists; the proxy streams the elements to the client.
+   * @param streamBody list; null for none
+   */
+  public void setStreamBody(Collection<?> streamBody) {
+    this.streamBody = streamBody;
+  }
+
   /**
    * Log that HTTP request has been received.
    * @param ctx routing context
@@ -10,6 +10,9 @@ public class TenantInstallOptions {
   private boolean npmSnapshot = false;
   private boolean depCheck = true;
   private boolean invoke = true;
+  private int parallel = 1;
+  private boolean timing = false;
+  private boolean async = false;
 
   public void setPreRelease(boolean v) {
     preRelease = v;
@@ -74,4 +77,28 @@ public class TenantInstallOptions {
   public boolean getInvoke() {
     return invoke;
   }
+
+  public void setParallel(int v) {
+    parallel = v;
+  }
+
+  public int getParallel() {
+    return parallel;
+  }
+
+  public void setTiming(boolean v) {
+    timing = v;
+  }
+
+  public boolean getTiming() {
+    return timing;
+  }
+
+  public void setAsync(boolean v) {
+    async = v;
+  }
+
+  public boolean getAsync() {
+    return async;
+  }
 }
@@ -0,0 +1,127 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashed timing wheel for one-shot timers. Timers are put in buckets of
+ * tickMs; a single Vert.x periodic timer advances the wheel, rather than one
+ * Vert.x timer for each timer. A timer due more than a revolution ahead stays
+ * in its bucket until the wheel has come round to its deadline. The periodic
+ * timer only runs while there are timers. To be used from one Vert.x context.
+ */
+public class TimerWheel {
+
+  private static class Entry {
+    final String key;
+    final long deadline;
+    final Handler<Long> handler;
+    final int bucket;
+
+    Entry(String key, long deadline, Handler<Long> handler, int bucket) {
+      this.key = key;
+      this.deadline = deadline;
+      this.handler = handler;
+      this.bucket = bucket;
+    }
+  }
+
+  private final Vertx vertx;
+  private final long tickMs;
+  private final List<List<Entry>> buckets;
+  private final Map<String, Entry> entries = new HashMap<>();
+  private long lastTick;
+  private long periodicId = -1;
+
+  /**
+   * Construct timing wheel.
+   * @param vertx Vert.x handle
+   * @param tickMs resolution in milliseconds
+   * @param size number of buckets
+   */
+  public TimerWheel(Vertx vertx, long tickMs, int size) {
+    this.vertx = vertx;
+    this.tickMs = tickMs;
+    this.buckets = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      buckets.add(new LinkedList<>());
+    }
+    this.lastTick = System.currentTimeMillis() / tickMs;
+  }
+
+  /**
+   * Schedule timer. A timer with the same key is replaced.
+   * @param key timer key
+   * @param delayMs delay in milliseconds
+   * @param handler called when timer fires with the milliseconds it is late
+   */
+  public void schedule(String key, long delayMs, Handler<Long> handler) {
+    cancel(key);
+    long deadline = System.currentTimeMillis() + Math.max(0, delayMs);
+    long tick = Math.max(lastTick + 1, (deadline + tickMs - 1) / tickMs);
+    Entry e = new Entry(key, deadline, handler, (int) (tick % buckets.size()));
+    entries.put(key, e);
+    buckets.get(e.bucket).add(e);
+    if (periodicId == -1) {
+      periodicId = vertx.setPeriodic(tickMs, id -> advance(System.currentTimeMillis()));
+    }
+  }
+
+  /**
+   * Cancel timer.
+   * @param key timer key
+   * @return true if timer was scheduled; false otherwise
+   */
+  public boolean cancel(String key) {
+    Entry e = entries.remove(key);
+    if (e == null) {
+      return false;
+    }
+    buckets.get(e.bucket).remove(e);
+    return true;
+  }
+
+  public boolean contains(String key) {
+    return entries.containsKey(key);
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Fire timers due at or before a time.
+   * @param now time in milliseconds
+   */
+  void advance(long now) {
+    long nowTick = now / tickMs;
+    // no need to go round more than once
+    long from = Math.max(lastTick + 1, nowTick - buckets.size() + 1);
+    List<Entry> due = new LinkedList<>();
+    for (long tick = from; tick <= nowTick; tick++) {
+      Iterator<Entry> it = buckets.get((int) (tick % buckets.size())).iterator();
+      while (it.hasNext()) {
+        Entry e = it.next();
+        if (e.deadline <= now) {
+          it.remove();
+          entries.remove(e.key);
+          due.add(e);
+        }
+      }
+    }
+    lastTick = Math.max(lastTick, nowTick);
+    if (entries.isEmpty() && periodicId != -1) {
+      vertx.cancelTimer(periodicId);
+      periodicId = -1;
+    }
+    for (Entry e : due) {
+      e.handler.handle(now - e.deadline);
+    }
+  }
+}
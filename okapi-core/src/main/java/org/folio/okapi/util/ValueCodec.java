@@ -0,0 +1,43 @@
+package org.folio.okapi.util;
+
+/**
+ * Encoding of the values of a shared map. The users of the map see JSON
+ * strings; a codec may store them in a more compact form.
+ */
+public interface ValueCodec {
+
+  /**
+   * Encode value for storage.
+   * @param json value as JSON
+   * @return stored value
+   */
+  String encode(String json);
+
+  /**
+   * Decode stored value. Must accept the values of the other codecs,
+   * including plain JSON as stored by earlier versions of Okapi, so that a
+   * codec can be enabled in a running cluster. Earlier versions only read
+   * plain JSON, so a codec that stores anything else may only be enabled
+   * when all nodes have been upgraded.
+   * @param stored stored value
+   * @return value as JSON
+   */
+  String decode(String stored);
+
+  /**
+   * Return codec by name.
+   * @param name "json" or "deflate"
+   * @return codec
+   * @throws IllegalArgumentException for unknown name
+   */
+  static ValueCodec create(String name) {
+    switch (name) {
+      case "json":
+        return new JsonValueCodec();
+      case "deflate":
+        return new DeflateValueCodec();
+      default:
+        throw new IllegalArgumentException("Unknown shared map codec: " + name);
+    }
+  }
+}
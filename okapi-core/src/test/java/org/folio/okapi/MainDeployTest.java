@@ -6,6 +6,10 @@ import guru.nidi.ramltester.restassured3.RestAssuredClient;
 import io.restassured.RestAssured;
 import io.restassured.response.Response;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
@@ -136,6 +140,51 @@ public class MainDeployTest {
     });
   }
 
+  @Test
+  public void testDevModeHttp2(TestContext context) {
+    async = context.async();
+
+    String[] args = {"dev"};
+
+    MainDeploy d = new MainDeploy();
+    d.init(args, res -> {
+      vertx = res.succeeded() ? res.result() : null;
+      Assert.assertTrue("main1 " + res.cause(), res.succeeded());
+
+      // h2c with prior knowledge
+      HttpClient client = vertx.createHttpClient(new HttpClientOptions()
+          .setProtocolVersion(HttpVersion.HTTP_2)
+          .setHttp2ClearTextUpgrade(false));
+      client.get(port, "localhost", "/_/version", context.asyncAssertSuccess(res1 -> {
+        context.assertEquals(HttpVersion.HTTP_2, res1.version());
+        context.assertEquals(200, res1.statusCode());
+        client.close();
+        async.complete();
+      })).end();
+    });
+  }
+
+  @Test
+  public void testTlsKeyWithoutCert() {
+    JsonObject conf = new JsonObject().put("tls_key_path", "key.pem");
+    try {
+      MainVerticle.createServerOptions(conf);
+      Assert.fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("tls_key_path and tls_cert_path must be given together",
+          e.getMessage());
+    }
+    conf = new JsonObject().put("tls_cert_path", "cert.pem");
+    try {
+      MainVerticle.createServerOptions(conf);
+      Assert.fail("expected IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      Assert.assertEquals("tls_key_path and tls_cert_path must be given together",
+          e.getMessage());
+    }
+    Assert.assertFalse(MainVerticle.createServerOptions(new JsonObject()).isSsl());
+  }
+
   @Test
   public void testDeploymentMode(TestContext context) {
     async = context.async();
@@ -1021,7 +1021,7 @@ public class ModuleTenantsTest {
       .get("/_/discovery/modules")
       .then()
       .statusCode(200).log().ifValidationFails()
-      .body(equalTo("[ ]"));
+      .body(equalTo("[]"));
     Assert.assertTrue("raml: " + c.getLastReport().toString(),
       c.getLastReport().isEmpty());
 
@@ -1255,7 +1255,7 @@ public class ModuleTenantsTest {
       .get("/_/discovery/modules")
       .then()
       .statusCode(200).log().ifValidationFails()
-      .body(equalTo("[ ]"));
+      .body(equalTo("[]"));
     Assert.assertTrue("raml: " + c.getLastReport().toString(),
       c.getLastReport().isEmpty());
   }
@@ -1390,7 +1390,7 @@ public class ModuleTenantsTest {
       .get("/_/discovery/modules")
       .then()
       .statusCode(200).log().ifValidationFails()
-      .body(equalTo("[ ]"));
+      .body(equalTo("[]"));
     Assert.assertTrue("raml: " + c.getLastReport().toString(),
       c.getLastReport().isEmpty());
   }
@@ -1490,7 +1490,7 @@ public class ModuleTenantsTest {
       .get("/_/discovery/modules")
       .then()
       .statusCode(200).log().ifValidationFails()
-      .body(equalTo("[ ]"));
+      .body(equalTo("[]"));
     Assert.assertTrue("raml: " + c.getLastReport().toString(),
       c.getLastReport().isEmpty());
   }
@@ -2605,4 +2605,332 @@ public class ModuleTenantsTest {
 
   }
 
+  @Test
+  public void testInstallParallel() {
+    RestAssured.port = port;
+    RestAssuredClient c;
+    Response r;
+
+    final String[] docs = {
+      "{\"id\" : \"mod-a-1.0.0\", \"provides\" : [ {\"id\" : \"int-a\", \"version\" : \"1.0\"} ]}",
+      "{\"id\" : \"mod-b-1.0.0\", \"provides\" : [ {\"id\" : \"int-b\", \"version\" : \"1.0\"} ]}",
+      "{\"id\" : \"mod-c-1.0.0\", \"requires\" : [ {\"id\" : \"int-a\", \"version\" : \"1.0\"},"
+        + " {\"id\" : \"int-b\", \"version\" : \"1.0\"} ]}"
+    };
+    for (String doc : docs) {
+      c = api.createRestAssured3();
+      c.given()
+        .header("Content-Type", "application/json")
+        .body(doc).post("/_/proxy/modules").then().statusCode(201);
+      Assert.assertTrue(
+        "raml: " + c.getLastReport().toString(),
+        c.getLastReport().isEmpty());
+    }
+
+    c = api.createRestAssured3();
+    c.given()
+      .header("Content-Type", "application/json")
+      .body("{\"id\" : \"roskilde\"}").post("/_/proxy/tenants")
+      .then().statusCode(201);
+    Assert.assertTrue(
+      "raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    c = api.createRestAssured3();
+    c.given()
+      .header("Content-Type", "application/json")
+      .body("[ {\"id\" : \"mod-c\", \"action\" : \"enable\"} ]")
+      .post("/_/proxy/tenants/roskilde/install?parallel=0")
+      .then().statusCode(400);
+
+    c = api.createRestAssured3();
+    r = c.given()
+      .header("Content-Type", "application/json")
+      .body("[ {\"id\" : \"mod-c\", \"action\" : \"enable\"} ]")
+      .post("/_/proxy/tenants/roskilde/install?parallel=2&timing=true")
+      .then().statusCode(200).log().ifValidationFails().extract().response();
+    Assert.assertTrue(
+      "raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+    JsonArray ar = new JsonArray(r.asString());
+    Assert.assertEquals(3, ar.size());
+    Assert.assertEquals("mod-c-1.0.0", ar.getJsonObject(2).getString("id"));
+    for (int i = 0; i < ar.size(); i++) {
+      Assert.assertEquals("enable", ar.getJsonObject(i).getString("action"));
+      Assert.assertNotNull(ar.getJsonObject(i).getLong("invokeTime"));
+      Assert.assertNull(ar.getJsonObject(i).getLong("deployTime"));
+    }
+
+    c = api.createRestAssured3();
+    c.given()
+      .get("/_/proxy/tenants/roskilde/modules")
+      .then().statusCode(200).body(equalTo("[ {" + LS
+      + "  \"id\" : \"mod-a-1.0.0\"" + LS
+      + "}, {" + LS
+      + "  \"id\" : \"mod-b-1.0.0\"" + LS
+      + "}, {" + LS
+      + "  \"id\" : \"mod-c-1.0.0\"" + LS
+      + "} ]"));
+    Assert.assertTrue(
+      "raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+  }
+
+  @Test
+  public void testInstallAsync() throws InterruptedException {
+    RestAssured.port = port;
+    RestAssuredClient c;
+    Response r;
+
+    final String[] docs = {
+      "{\"id\" : \"mod-a-1.0.0\", \"provides\" : [ {\"id\" : \"int-a\", \"version\" : \"1.0\"} ]}",
+      "{\"id\" : \"mod-b-1.0.0\", \"requires\" : [ {\"id\" : \"int-a\", \"version\" : \"1.0\"} ]}"
+    };
+    for (String doc : docs) {
+      c = api.createRestAssured3();
+      c.given()
+        .header("Content-Type", "application/json")
+        .body(doc).post("/_/proxy/modules").then().statusCode(201);
+      Assert.assertTrue(
+        "raml: " + c.getLastReport().toString(),
+        c.getLastReport().isEmpty());
+    }
+
+    c = api.createRestAssured3();
+    c.given()
+      .header("Content-Type", "application/json")
+      .body("{\"id\" : \"roskilde\"}").post("/_/proxy/tenants")
+      .then().statusCode(201);
+    Assert.assertTrue(
+      "raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    c = api.createRestAssured3();
+    c.given()
+      .get("/_/proxy/tenants/roskilde/install")
+      .then().statusCode(200).body(equalTo("[ ]"));
+    Assert.assertTrue(
+      "raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    // dependency problems are reported right away
+    c = api.createRestAssured3();
+    c.given()
+      .header("Content-Type", "application/json")
+      .body("[ {\"id\" : \"mod-x\", \"action\" : \"enable\"} ]")
+      .post("/_/proxy/tenants/roskilde/install?async=true")
+      .then().statusCode(400);
+
+    c = api.createRestAssured3();
+    r = c.given()
+      .header("Content-Type", "application/json")
+      .body("[ {\"id\" : \"mod-b\", \"action\" : \"enable\"} ]")
+      .post("/_/proxy/tenants/roskilde/install?async=true&timing=true")
+      .then().statusCode(202).log().ifValidationFails().extract().response();
+    Assert.assertTrue(
+      "raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+    JsonObject job = new JsonObject(r.asString());
+    String location = r.getHeader("Location");
+    Assert.assertEquals("/_/proxy/tenants/roskilde/install/" + job.getString("id"), location);
+    Assert.assertEquals("roskilde", job.getString("tenant"));
+    Assert.assertEquals(2, job.getJsonArray("modules").size());
+
+    for (int i = 0; i < 100 && !job.getBoolean("complete"); i++) {
+      Thread.sleep(100);
+      c = api.createRestAssured3();
+      r = c.given().get(location)
+        .then().statusCode(200).log().ifValidationFails().extract().response();
+      Assert.assertTrue(
+        "raml: " + c.getLastReport().toString(),
+        c.getLastReport().isEmpty());
+      job = new JsonObject(r.asString());
+    }
+    Assert.assertTrue(job.getBoolean("complete"));
+    Assert.assertNull(job.getString("message"));
+    Assert.assertNotNull(job.getString("endDate"));
+    JsonArray ar = job.getJsonArray("modules");
+    Assert.assertEquals(2, ar.size());
+    for (int i = 0; i < ar.size(); i++) {
+      Assert.assertEquals("done", ar.getJsonObject(i).getString("stage"));
+      Assert.assertNotNull(ar.getJsonObject(i).getLong("invokeTime"));
+    }
+
+    c = api.createRestAssured3();
+    r = c.given()
+      .get("/_/proxy/tenants/roskilde/install")
+      .then().statusCode(200).log().ifValidationFails().extract().response();
+    Assert.assertTrue(
+      "raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+    ar = new JsonArray(r.asString());
+    Assert.assertEquals(1, ar.size());
+    Assert.assertEquals(job.getString("id"), ar.getJsonObject(0).getString("id"));
+
+    c = api.createRestAssured3();
+    c.given()
+      .get("/_/proxy/tenants/roskilde/install/foo")
+      .then().statusCode(404).body(equalTo("Install job foo not found"));
+    Assert.assertTrue(
+      "raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    c = api.createRestAssured3();
+    c.given()
+      .get("/_/proxy/tenants/foo/install/" + job.getString("id"))
+      .then().statusCode(404);
+
+    c = api.createRestAssured3();
+    c.given()
+      .get("/_/proxy/tenants/roskilde/modules")
+      .then().statusCode(200).body(equalTo("[ {" + LS
+      + "  \"id\" : \"mod-a-1.0.0\"" + LS
+      + "}, {" + LS
+      + "  \"id\" : \"mod-b-1.0.0\"" + LS
+      + "} ]"));
+
+    // jobs go with the tenant
+    c = api.createRestAssured3();
+    c.given()
+      .delete("/_/proxy/tenants/roskilde")
+      .then().statusCode(204);
+    Assert.assertTrue(
+      "raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+    c = api.createRestAssured3();
+    c.given()
+      .header("Content-Type", "application/json")
+      .body("{\"id\" : \"roskilde\"}").post("/_/proxy/tenants")
+      .then().statusCode(201);
+    c = api.createRestAssured3();
+    c.given()
+      .get("/_/proxy/tenants/roskilde/install")
+      .then().statusCode(200).body(equalTo("[ ]"));
+    Assert.assertTrue(
+      "raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+  }
+
+  @Test
+  public void testInstallBulk() {
+    RestAssured.port = port;
+    RestAssuredClient c;
+    Response r;
+
+    final String[] docs = {
+      "{\"id\" : \"mod-a-1.0.0\", \"provides\" : [ {\"id\" : \"int-a\", \"version\" : \"1.0\"} ]}",
+      "{\"id\" : \"mod-b-1.0.0\", \"requires\" : [ {\"id\" : \"int-a\", \"version\" : \"1.0\"} ]}"
+    };
+    for (String doc : docs) {
+      c = api.createRestAssured3();
+      c.given()
+        .header("Content-Type", "application/json")
+        .body(doc).post("/_/proxy/modules").then().statusCode(201);
+      Assert.assertTrue(
+        "raml: " + c.getLastReport().toString(),
+        c.getLastReport().isEmpty());
+    }
+
+    for (String tenant : new String[] {"roskilde", "odense"}) {
+      c = api.createRestAssured3();
+      c.given()
+        .header("Content-Type", "application/json")
+        .body("{\"id\" : \"" + tenant + "\"}").post("/_/proxy/tenants")
+        .then().statusCode(201);
+      Assert.assertTrue(
+        "raml: " + c.getLastReport().toString(),
+        c.getLastReport().isEmpty());
+    }
+
+    c = api.createRestAssured3();
+    c.given()
+      .header("Content-Type", "application/json")
+      .body("[ {\"id\" : \"mod-a\", \"action\" : \"enable\"} ]")
+      .post("/_/proxy/tenants/odense/install")
+      .then().statusCode(200);
+    Assert.assertTrue(
+      "raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    c = api.createRestAssured3();
+    c.given()
+      .header("Content-Type", "application/json")
+      .body("[ {\"id\" : \"mod-b\", \"action\" : \"enable\"} ]")
+      .post("/_/proxy/install")
+      .then().statusCode(400);
+
+    c = api.createRestAssured3();
+    r = c.given()
+      .header("Content-Type", "application/json")
+      .body("[ {\"id\" : \"mod-b\", \"action\" : \"enable\"} ]")
+      .post("/_/proxy/install?tenants=roskilde,odense,aarhus&parallel=2")
+      .then().statusCode(200).log().ifValidationFails().extract().response();
+    Assert.assertTrue(
+      "raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+    JsonArray ar = new JsonArray(r.asString());
+    Assert.assertEquals(3, ar.size());
+
+    JsonObject res = ar.getJsonObject(0);
+    Assert.assertEquals("roskilde", res.getString("tenant"));
+    Assert.assertNull(res.getString("message"));
+    Assert.assertEquals(2, res.getJsonArray("modules").size());
+    Assert.assertEquals("mod-a-1.0.0", res.getJsonArray("modules").getJsonObject(0).getString("id"));
+    Assert.assertEquals("mod-b-1.0.0", res.getJsonArray("modules").getJsonObject(1).getString("id"));
+
+    res = ar.getJsonObject(1);
+    Assert.assertEquals("odense", res.getString("tenant"));
+    Assert.assertNull(res.getString("message"));
+    Assert.assertEquals(1, res.getJsonArray("modules").size());
+    Assert.assertEquals("mod-b-1.0.0", res.getJsonArray("modules").getJsonObject(0).getString("id"));
+
+    res = ar.getJsonObject(2);
+    Assert.assertEquals("aarhus", res.getString("tenant"));
+    Assert.assertNotNull(res.getString("message"));
+    Assert.assertNull(res.getJsonArray("modules"));
+
+    for (String tenant : new String[] {"roskilde", "odense"}) {
+      c = api.createRestAssured3();
+      c.given()
+        .get("/_/proxy/tenants/" + tenant + "/modules")
+        .then().statusCode(200).body(equalTo("[ {" + LS
+        + "  \"id\" : \"mod-a-1.0.0\"" + LS
+        + "}, {" + LS
+        + "  \"id\" : \"mod-b-1.0.0\"" + LS
+        + "} ]"));
+    }
+
+    // aalborg and esbjerg start alike; roskilde is in their target state
+    for (String tenant : new String[] {"aalborg", "esbjerg"}) {
+      c = api.createRestAssured3();
+      c.given()
+        .header("Content-Type", "application/json")
+        .body("{\"id\" : \"" + tenant + "\"}").post("/_/proxy/tenants")
+        .then().statusCode(201);
+      Assert.assertTrue(
+        "raml: " + c.getLastReport().toString(),
+        c.getLastReport().isEmpty());
+    }
+    c = api.createRestAssured3();
+    r = c.given()
+      .header("Content-Type", "application/json")
+      .body("[ {\"id\" : \"mod-b\", \"action\" : \"enable\"} ]")
+      .post("/_/proxy/install?tenants=aalborg,roskilde,esbjerg&simulate=true")
+      .then().statusCode(200).log().ifValidationFails().extract().response();
+    Assert.assertTrue(
+      "raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+    ar = new JsonArray(r.asString());
+    Assert.assertEquals(3, ar.size());
+    for (int i : new int[] {0, 2}) {
+      JsonArray modules = ar.getJsonObject(i).getJsonArray("modules");
+      Assert.assertEquals(2, modules.size());
+      Assert.assertEquals("enable", modules.getJsonObject(0).getString("action"));
+      Assert.assertEquals("enable", modules.getJsonObject(1).getString("action"));
+    }
+    JsonArray modules = ar.getJsonObject(1).getJsonArray("modules");
+    Assert.assertEquals(1, modules.size());
+    Assert.assertEquals("mod-b-1.0.0", modules.getJsonObject(0).getString("id"));
+    Assert.assertEquals("uptodate", modules.getJsonObject(0).getString("action"));
+  }
 }
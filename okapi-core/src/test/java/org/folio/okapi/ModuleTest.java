@@ -2,6 +2,7 @@ package org.folio.okapi;
 
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -18,6 +19,7 @@ import guru.nidi.ramltester.RamlLoaders;
 import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpClient;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
@@ -44,10 +46,15 @@ import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.json.Json;
 import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.InterfaceDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
 import org.folio.okapi.common.HttpClientLegacy;
 import org.folio.okapi.common.OkapiLogger;
 import org.folio.okapi.common.UrlDecoder;
 import org.folio.okapi.common.XOkapiHeaders;
+import org.folio.okapi.service.ModuleStore;
+import org.folio.okapi.service.ModuleStoreFilter;
+import org.folio.okapi.service.impl.Storage;
 
 @java.lang.SuppressWarnings({"squid:S1192"})
 @RunWith(Parameterized.class)
@@ -249,7 +256,7 @@ public class ModuleTest {
     Assert.assertNull("locationSample5Deployment", locationSampleDeployment);
     Assert.assertNull("locationHeaderDeployment", locationHeaderDeployment);
 
-    String emptyListDoc = "[ ]";
+    String emptyListDoc = "[]";
 
     given().get("/_/deployment/modules").then()
       .log().ifValidationFails().statusCode(200)
@@ -1439,6 +1446,91 @@ public class ModuleTest {
     async.complete();
   }
 
+  /**
+   * Test that a permissions module with _tenantPermissions 2.0 gets the
+   * permissions of all modules of an install wave in one call.
+   *
+   * @param context
+   */
+  @Test
+  public void testSystemInterfacesBatchPerms(TestContext context) {
+    async = context.async();
+    checkDbIsEmpty("testSystemInterfacesBatchPerms starting", context);
+
+    final String locTenant = createTenant();
+
+    final String testHdrJar = "../okapi-test-header-module/target/okapi-test-header-module-fat.jar";
+    final String docHdrModule = "{" + LS
+      + "  \"id\" : \"header-2\"," + LS
+      + "  \"name\" : \"header-module\"," + LS
+      + "  \"provides\" : [ {" + LS
+      + "    \"id\" : \"_tenantPermissions\"," + LS
+      + "    \"version\" : \"2.0\"," + LS
+      + "    \"interfaceType\" : \"system\"," + LS
+      + "    \"handlers\" : [ {" + LS
+      + "      \"methods\" : [ \"POST\" ]," + LS
+      + "      \"path\" : \"/_/tenantPermissions\"," + LS
+      + "      \"permissionsRequired\" : [ ]" + LS
+      + "    } ]" + LS
+      + "  } ]," + LS
+      + "  \"launchDescriptor\" : {" + LS
+      + "    \"exec\" : \"java -Dport=%p -jar " + testHdrJar + "\"" + LS
+      + "  }" + LS
+      + "}";
+    final String locHdrModule = createModule(docHdrModule);
+    locationHeaderDeployment = deployModule("header-2");
+
+    // the permissions module gets its own permissions as a list
+    Headers headers = given()
+      .header("Content-Type", "application/json")
+      .body("[ {\"id\" : \"header-2\", \"action\" : \"enable\"} ]")
+      .post("/_/proxy/tenants/" + okapiTenant + "/install")
+      .then()
+      .statusCode(200)
+      .log().ifValidationFails()
+      .extract().headers();
+    List<Header> list = headers.getList("X-Tenant-Perms-Result");
+    Assert.assertEquals(1, list.size());
+    Assert.assertTrue(list.get(0).getValue().startsWith("[ {"));
+    Assert.assertThat(list.get(0).getValue(), containsString("header-2"));
+
+    final String[] locModules = new String[2];
+    final String[] modIds = {"perm-a-1.0.0", "perm-b-1.0.0"};
+    for (int i = 0; i < modIds.length; i++) {
+      locModules[i] = createModule("{" + LS
+        + "  \"id\" : \"" + modIds[i] + "\"," + LS
+        + "  \"permissionSets\" : [ {" + LS
+        + "    \"permissionName\" : \"" + modIds[i] + ".all\"" + LS
+        + "  } ]" + LS
+        + "}");
+    }
+
+    // both modules are in the same wave, so there is one call for both
+    headers = given()
+      .header("Content-Type", "application/json")
+      .body("[ {\"id\" : \"perm-a\", \"action\" : \"enable\"},"
+        + " {\"id\" : \"perm-b\", \"action\" : \"enable\"} ]")
+      .post("/_/proxy/tenants/" + okapiTenant + "/install?parallel=2")
+      .then()
+      .statusCode(200)
+      .log().ifValidationFails()
+      .extract().headers();
+    list = headers.getList("X-Tenant-Perms-Result");
+    Assert.assertEquals(1, list.size());
+    Assert.assertThat(list.get(0).getValue(), containsString("perm-a-1.0.0.all"));
+    Assert.assertThat(list.get(0).getValue(), containsString("perm-b-1.0.0.all"));
+
+    given().delete(locTenant).then().log().ifValidationFails().statusCode(204);
+    for (String loc : locModules) {
+      given().delete(loc).then().log().ifValidationFails().statusCode(204);
+    }
+    given().delete(locationHeaderDeployment).then().log().ifValidationFails().statusCode(204);
+    locationHeaderDeployment = null;
+    given().delete(locHdrModule).then().log().ifValidationFails().statusCode(204);
+    checkDbIsEmpty("testSystemInterfacesBatchPerms done", context);
+    async.complete();
+  }
+
   /**
    * Test the various ways we can interact with /_/discovery/nodes.
    *
@@ -1594,7 +1686,7 @@ public class ModuleTest {
     c = api.createRestAssured3();
     c.given().get("/_/deployment/modules")
       .then().statusCode(200)
-      .body(equalTo("[ ]"));
+      .body(equalTo("[]"));
     Assert.assertTrue("raml: " + c.getLastReport().toString(),
       c.getLastReport().isEmpty());
 
@@ -1607,7 +1699,7 @@ public class ModuleTest {
     c = api.createRestAssured3();
     c.given().get("/_/discovery/modules")
       .then().statusCode(200)
-      .body(equalTo("[ ]"));
+      .body(equalTo("[]"));
     Assert.assertTrue("raml: " + c.getLastReport().toString(),
       c.getLastReport().isEmpty());
 
@@ -1696,6 +1788,23 @@ public class ModuleTest {
     Assert.assertTrue("raml: " + c.getLastReport().toString(),
       c.getLastReport().isEmpty());
 
+    final String tableDoc = "{" + LS
+      + "  \"instances\" : 1," + LS
+      + "  \"sharedInstances\" : 1," + LS
+      + "  \"consistent\" : true" + LS
+      + "}";
+    c = api.createRestAssured3();
+    c.given().get("/_/discovery/table").then().statusCode(200)
+      .body(equalTo(tableDoc));
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    c = api.createRestAssured3();
+    c.given().post("/_/discovery/table").then().statusCode(200)
+      .body(equalTo(tableDoc));
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
     c = api.createRestAssured3();
     c.given().get(locationSampleDeployment).then().statusCode(200)
       .body(equalTo(doc2));
@@ -1703,12 +1812,20 @@ public class ModuleTest {
       c.getLastReport().isEmpty());
 
     c = api.createRestAssured3();
-    c.given().get("/_/deployment/modules")
+    c.given().get("/_/deployment/modules?pretty=true")
       .then().statusCode(200)
       .body(equalTo("[ " + doc2 + " ]"));
     Assert.assertTrue("raml: " + c.getLastReport().toString(),
       c.getLastReport().isEmpty());
 
+    c = api.createRestAssured3();
+    r = c.given().get("/_/deployment/modules")
+      .then().statusCode(200).extract().response();
+    Assert.assertEquals(new JsonArray("[ " + doc2 + " ]"), new JsonArray(r.body().asString()));
+    Assert.assertFalse(r.body().asString().contains("\n"));
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
     c = api.createRestAssured3();
     c.given().header("Content-Type", "application/json")
       .body(doc2).post("/_/discovery/modules")
@@ -1724,7 +1841,7 @@ public class ModuleTest {
       c.getLastReport().isEmpty());
 
     c = api.createRestAssured3();
-    c.given().get("/_/discovery/modules")
+    c.given().get("/_/discovery/modules?pretty=true")
       .then().statusCode(200)
       .log().ifValidationFails()
       .body(equalTo("[ " + doc2 + " ]"));
@@ -1831,7 +1948,7 @@ public class ModuleTest {
     c = api.createRestAssured3();
     c.given().get("/_/deployment/modules")
       .then().statusCode(200)
-      .body(equalTo("[ ]"));
+      .body(equalTo("[]"));
     Assert.assertTrue("raml: " + c.getLastReport().toString(),
       c.getLastReport().isEmpty());
 
@@ -2662,6 +2779,220 @@ public class ModuleTest {
       .statusCode(200).log().ifValidationFails().extract().response();
     Assert.assertTrue(c.getLastReport().isEmpty());
 
+    c = api.createRestAssured3();
+    r = c.given()
+      .get("/_/proxy/modules?filter=sample&offset=2&limit=3")
+      .then()
+      .statusCode(200).log().ifValidationFails().extract().response();
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+    JsonArray page = new JsonArray(r.body().asString());
+    Assert.assertEquals(3, page.size());
+    Assert.assertEquals("sample-1.2.2", page.getJsonObject(0).getString("id"));
+    Assert.assertEquals("sample-1.2.4", page.getJsonObject(2).getString("id"));
+
+    c = api.createRestAssured3();
+    c.given()
+      .get("/_/proxy/modules?filter=sample&offset=9&limit=3&order=desc&orderBy=id")
+      .then()
+      .statusCode(200).log().ifValidationFails()
+      .body(equalTo("[ {" + LS
+        + "  \"id\" : \"sample-1.2.0\"," + LS
+        + "  \"name\" : \"sample module 0\"" + LS
+        + "} ]"));
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    c = api.createRestAssured3();
+    c.given()
+      .get("/_/proxy/modules?offset=20")
+      .then()
+      .statusCode(200).log().ifValidationFails()
+      .body(equalTo("[ ]"));
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    c = api.createRestAssured3();
+    c.given()
+      .get("/_/proxy/modules?filter=sample&latest=1&limit=5")
+      .then()
+      .statusCode(200).log().ifValidationFails()
+      .body(equalTo("[ {" + LS
+        + "  \"id\" : \"sample-1.2.9\"," + LS
+        + "  \"name\" : \"sample module 9\"" + LS
+        + "} ]"));
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    // answered by the module store, if there is one; after the okapi module
+    c = api.createRestAssured3();
+    c.given()
+      .get("/_/proxy/modules?latest=1&offset=1&limit=5")
+      .then()
+      .statusCode(200).log().ifValidationFails()
+      .body(equalTo("[ {" + LS
+        + "  \"id\" : \"sample-1.2.9\"," + LS
+        + "  \"name\" : \"sample module 9\"" + LS
+        + "} ]"));
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    c = api.createRestAssured3();
+    r = c.given()
+      .get("/_/proxy/modules?offset=9&full=true")
+      .then()
+      .statusCode(200).log().ifValidationFails().extract().response();
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+    page = new JsonArray(r.body().asString());
+    Assert.assertEquals(2, page.size());
+    Assert.assertEquals("sample-1.2.8", page.getJsonObject(0).getString("id"));
+    Assert.assertNotNull(page.getJsonObject(0).getJsonArray("requires"));
+
+    given()
+      .get("/_/proxy/modules?latest=x")
+      .then()
+      .statusCode(400);
+
+    given()
+      .get("/_/proxy/modules?limit=x")
+      .then()
+      .statusCode(400);
+
+    given()
+      .get("/_/proxy/modules?offset=-1")
+      .then()
+      .statusCode(400);
+
+    async.complete();
+  }
+
+  @Test
+  public void testConditionalGet(TestContext context) {
+    async = context.async();
+
+    RestAssuredClient c;
+    Response r;
+
+    c = api.createRestAssured3();
+    r = c.given().get("/_/proxy/modules")
+      .then().statusCode(200).log().ifValidationFails().extract().response();
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+    final String etagEmpty = r.getHeader("ETag");
+    Assert.assertNotNull(etagEmpty);
+    Assert.assertNotNull(r.getHeader("Last-Modified"));
+
+    c = api.createRestAssured3();
+    c.given().header("If-None-Match", etagEmpty).get("/_/proxy/modules")
+      .then().statusCode(304).header("ETag", etagEmpty).body(equalTo(""));
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    // query is part of the tag
+    c = api.createRestAssured3();
+    c.given().header("If-None-Match", etagEmpty).get("/_/proxy/modules?full=true")
+      .then().statusCode(200);
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    final String docSampleModule = "{" + LS
+      + "  \"id\" : \"sample-1.0.0\"," + LS
+      + "  \"name\" : \"sample module\"" + LS
+      + "}";
+    given().header("Content-Type", "application/json")
+      .body(docSampleModule).post("/_/proxy/modules")
+      .then().statusCode(201);
+
+    c = api.createRestAssured3();
+    r = c.given().header("If-None-Match", etagEmpty).get("/_/proxy/modules")
+      .then().statusCode(200).extract().response();
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+    final String etagModules = r.getHeader("ETag");
+    Assert.assertNotEquals(etagEmpty, etagModules);
+
+    c = api.createRestAssured3();
+    c.given().header("If-None-Match", "\"other\", W/" + etagModules)
+      .get("/_/proxy/modules")
+      .then().statusCode(304);
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    c = api.createRestAssured3();
+    r = c.given().get("/_/proxy/tenants")
+      .then().statusCode(200).extract().response();
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+    final String etagTenants = r.getHeader("ETag");
+    Assert.assertNotNull(etagTenants);
+    Assert.assertNotNull(r.getHeader("Last-Modified"));
+
+    c = api.createRestAssured3();
+    c.given().header("If-None-Match", etagTenants).get("/_/proxy/tenants")
+      .then().statusCode(304).header("ETag", etagTenants).body(equalTo(""));
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    given().header("Content-Type", "application/json")
+      .body("{\"id\" : \"roskilde\"}").post("/_/proxy/tenants")
+      .then().statusCode(201);
+
+    c = api.createRestAssured3();
+    c.given().header("If-None-Match", etagTenants).get("/_/proxy/tenants")
+      .then().statusCode(200).header("ETag", not(etagTenants))
+      .body(containsString("roskilde"));
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    c = api.createRestAssured3();
+    r = c.given().get("/_/proxy/tenants/roskilde/modules")
+      .then().statusCode(200).body(equalTo("[ ]")).extract().response();
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+    final String etagTenant = r.getHeader("ETag");
+
+    c = api.createRestAssured3();
+    c.given().header("If-None-Match", etagTenant).get("/_/proxy/tenants/roskilde/modules")
+      .then().statusCode(304);
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    given().header("Content-Type", "application/json")
+      .body("{\"id\" : \"sample-1.0.0\"}").post("/_/proxy/tenants/roskilde/modules")
+      .then().statusCode(201);
+
+    c = api.createRestAssured3();
+    c.given().header("If-None-Match", etagTenant).get("/_/proxy/tenants/roskilde/modules")
+      .then().statusCode(200).header("ETag", not(etagTenant));
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    c = api.createRestAssured3();
+    r = c.given().get("/_/discovery/modules")
+      .then().statusCode(200).body(equalTo("[]")).extract().response();
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+    final String etagDiscovery = r.getHeader("ETag");
+
+    c = api.createRestAssured3();
+    c.given().header("If-None-Match", etagDiscovery).get("/_/discovery/modules")
+      .then().statusCode(304);
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
+    given().header("Content-Type", "application/json")
+      .body("{\"instId\" : \"sample-inst\", \"srvcId\" : \"sample-1.0.0\","
+        + " \"url\" : \"http://localhost:9231\"}")
+      .post("/_/discovery/modules")
+      .then().statusCode(201);
+
+    c = api.createRestAssured3();
+    c.given().header("If-None-Match", etagDiscovery).get("/_/discovery/modules")
+      .then().statusCode(200).header("ETag", not(etagDiscovery));
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+      c.getLastReport().isEmpty());
+
     async.complete();
   }
 
@@ -2736,4 +3067,196 @@ public class ModuleTest {
     async.await(1000);
     conf.remove("okapiVersion");
   }
+
+  private int waitForStatus(int port, String path, int status) throws InterruptedException {
+    int got = 0;
+    for (int i = 0; i < 100 && got != status; i++) {
+      if (i > 0) {
+        Thread.sleep(100);
+      }
+      got = given().port(port).get(path).getStatusCode();
+    }
+    return got;
+  }
+
+  @Test
+  public void testSharedDatabase(TestContext context) throws InterruptedException {
+    if (!"postgres".equals(conf.getString("storage"))) {
+      return;
+    }
+    // a second node, not clustered, on the same database
+    final int port2 = 9240;
+    Vertx vertx2 = Vertx.vertx();
+    JsonObject conf2 = conf.copy()
+        .put("port", Integer.toString(port2))
+        .put("host", "127.0.0.1") // node ID distinct from that of the first node
+        .put("nodename", "node2");
+    conf2.remove("postgres_db_init");
+    async = context.async();
+    vertx2.deployVerticle(MainVerticle.class.getName(),
+        new DeploymentOptions().setConfig(conf2), context.asyncAssertSuccess(x -> async.complete()));
+    async.await();
+    async = context.async();
+
+    given().header("Content-Type", "application/json")
+        .body("{\"id\" : \"mod-shared-1.0.0\", \"name\" : \"shared\"}")
+        .post("/_/proxy/modules").then().statusCode(201);
+    Assert.assertEquals(200, waitForStatus(port2, "/_/proxy/modules/mod-shared-1.0.0", 200));
+
+    given().header("Content-Type", "application/json")
+        .body("{\"id\" : \"shared\"}")
+        .post("/_/proxy/tenants").then().statusCode(201);
+    Assert.assertEquals(200, waitForStatus(port2, "/_/proxy/tenants/shared", 200));
+    given().header("Content-Type", "application/json")
+        .body("{\"id\" : \"mod-shared-1.0.0\"}")
+        .post("/_/proxy/tenants/shared/modules").then().statusCode(201);
+    Assert.assertEquals(200,
+        waitForStatus(port2, "/_/proxy/tenants/shared/modules/mod-shared-1.0.0", 200));
+
+    // deployed on the first node, proxied through the second
+    final String testModJar = "../okapi-test-module/target/okapi-test-module-fat.jar";
+    given().header("Content-Type", "application/json")
+        .body(new JsonObject()
+            .put("id", "mod-shared-sample-1.0.0")
+            .put("provides", new JsonArray().add(new JsonObject()
+                .put("id", "sample").put("version", "1.0")
+                .put("handlers", new JsonArray().add(new JsonObject()
+                    .put("methods", new JsonArray().add("GET"))
+                    .put("pathPattern", "/testb")))))
+            .put("launchDescriptor", new JsonObject()
+                .put("exec", "java -Dport=%p -jar " + testModJar))
+            .encode())
+        .post("/_/proxy/modules").then().statusCode(201);
+    given().header("Content-Type", "application/json")
+        .body("{\"srvcId\" : \"mod-shared-sample-1.0.0\", \"nodeId\" : \"localhost\"}")
+        .post("/_/discovery/modules").then().statusCode(201);
+    given().header("Content-Type", "application/json")
+        .body("{\"id\" : \"mod-shared-sample-1.0.0\"}")
+        .post("/_/proxy/tenants/shared/modules").then().statusCode(201);
+    Assert.assertEquals(200,
+        waitForStatus(port2, "/_/proxy/tenants/shared/modules/mod-shared-sample-1.0.0", 200));
+    int got = 0;
+    for (int i = 0; i < 100 && got != 200; i++) {
+      if (i > 0) {
+        Thread.sleep(100);
+      }
+      got = given().port(port2).header("X-Okapi-Tenant", "shared").get("/testb").getStatusCode();
+    }
+    Assert.assertEquals(200, got);
+    given().port(port2).header("X-Okapi-Tenant", "shared").get("/testb")
+        .then().statusCode(200).body(containsString("It works"));
+    given().delete("/_/discovery/modules/mod-shared-sample-1.0.0").then().statusCode(204);
+    given().port(port2).delete("/_/proxy/tenants/shared/modules/mod-shared-sample-1.0.0")
+        .then().statusCode(204);
+    given().port(port2).delete("/_/proxy/modules/mod-shared-sample-1.0.0").then().statusCode(204);
+
+    // and back: node2 makes the changes
+    given().port(port2).delete("/_/proxy/tenants/shared").then().statusCode(204);
+    Assert.assertEquals(404, waitForStatus(port, "/_/proxy/tenants/shared", 404));
+    given().port(port2).delete("/_/proxy/modules/mod-shared-1.0.0").then().statusCode(204);
+    Assert.assertEquals(404, waitForStatus(port, "/_/proxy/modules/mod-shared-1.0.0", 404));
+
+    vertx2.close(context.asyncAssertSuccess(x -> async.complete()));
+    async.await();
+  }
+
+  @Test
+  public void testModuleStoreInsertList(TestContext context) {
+    if ("inmemory".equals(conf.getString("storage"))) {
+      return;
+    }
+    // more than one statement's worth of modules
+    List<ModuleDescriptor> list = new LinkedList<>();
+    for (int i = 0; i < 2500; i++) {
+      ModuleDescriptor md = new ModuleDescriptor();
+      md.setId("mod-batch-1.0." + i);
+      list.add(md);
+    }
+    ModuleStore store = new Storage(vertx, conf.getString("storage"), conf).getModuleStore();
+    Async async1 = context.async();
+    store.insertList(list, res -> {
+      context.assertTrue(res.succeeded());
+      store.getAll(res2 -> {
+        context.assertTrue(res2.succeeded());
+        context.assertEquals(2500, res2.result().size());
+        async1.complete();
+      });
+    });
+    async1.await();
+    // all or nothing
+    ModuleDescriptor md = new ModuleDescriptor();
+    md.setId("mod-batch-2.0.0");
+    List<ModuleDescriptor> list2 = new LinkedList<>();
+    list2.add(md);
+    list2.add(list.get(0));
+    Async async2 = context.async();
+    store.insertList(list2, res -> {
+      context.assertTrue(res.failed());
+      store.getAll(res2 -> {
+        context.assertEquals(2500, res2.result().size());
+        async2.complete();
+      });
+    });
+    async2.await();
+  }
+
+  @Test
+  public void testModuleStoreFiltered(TestContext context) {
+    if ("inmemory".equals(conf.getString("storage"))) {
+      return;
+    }
+    InterfaceDescriptor[] circ = {new InterfaceDescriptor("circulation", "1.0")};
+    List<ModuleDescriptor> list = new LinkedList<>();
+    for (String id : new String[] {"mod-circ-1.10.0", "mod-circ-1.9.0",
+        "mod-circ-1.10.0-SNAPSHOT.2", "mod-circ-storage-1.0.0", "mod-users-2.0.0", "mod-zz"}) {
+      ModuleDescriptor md = new ModuleDescriptor();
+      md.setId(id);
+      if (id.startsWith("mod-circ-1")) {
+        md.setProvides(circ);
+      }
+      list.add(md);
+    }
+    ModuleStore store = new Storage(vertx, conf.getString("storage"), conf).getModuleStore();
+    Async async1 = context.async();
+    store.insertList(list, res -> {
+      context.assertTrue(res.succeeded());
+      async1.complete();
+    });
+    async1.await();
+
+    String[][] expected = {
+        {"mod-circ-1.9.0", "mod-circ-1.10.0-SNAPSHOT.2", "mod-circ-1.10.0"},
+        {"mod-circ-1.10.0"},
+        {"mod-circ-1.10.0-SNAPSHOT.2", "mod-circ-1.10.0"},
+        {"mod-circ-storage-1.0.0", "mod-users-2.0.0"},
+        {"mod-circ-1.9.0", "mod-circ-1.10.0-SNAPSHOT.2", "mod-circ-1.10.0"},
+        {"mod-zz"}
+    };
+    ModuleStoreFilter[] filters = {
+        new ModuleStoreFilter().setProduct("mod-circ"),
+        new ModuleStoreFilter().setProvides("circulation").setLatest(1),
+        new ModuleStoreFilter().setProvides("circulation").setOffset(1),
+        new ModuleStoreFilter().setOffset(3).setLimit(2),
+        new ModuleStoreFilter().setProvides("circulation").setFull(false),
+        new ModuleStoreFilter().setProduct("mod-zz")
+    };
+    for (int i = 0; i < filters.length; i++) {
+      String[] ids = expected[i];
+      boolean full = filters[i].getFull();
+      Async async2 = context.async();
+      store.getFiltered(filters[i], res -> {
+        context.assertTrue(res.succeeded());
+        List<String> got = new LinkedList<>();
+        for (ModuleDescriptor md : res.result()) {
+          got.add(md.getId());
+          if (!full) {
+            context.assertNull(md.getProvides());
+          }
+        }
+        context.assertEquals(Arrays.asList(ids), got);
+        async2.complete();
+      });
+      async2.await();
+    }
+  }
 }
@@ -0,0 +1,174 @@
+package org.folio.okapi;
+
+import static org.hamcrest.Matchers.equalTo;
+
+import guru.nidi.ramltester.RamlDefinition;
+import guru.nidi.ramltester.RamlLoaders;
+import guru.nidi.ramltester.restassured3.RestAssuredClient;
+import io.restassured.RestAssured;
+import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.OkapiLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@java.lang.SuppressWarnings({"squid:S1192"})
+@RunWith(VertxUnitRunner.class)
+public class ReplicaTest {
+
+  private final Logger logger = OkapiLogger.get();
+  private Vertx vertx;
+  private Vertx replicaVertx;
+  private final int port = 9230;
+  private final int replicaPort = 9231;
+  private static RamlDefinition api;
+
+  @BeforeClass
+  public static void setUpBeforeClass() throws Exception {
+    api = RamlLoaders.fromFile("src/main/raml").load("okapi.raml");
+  }
+
+  @Before
+  public void setUp(TestContext context) {
+    logger.debug("starting ReplicaTest");
+    vertx = Vertx.vertx();
+    replicaVertx = Vertx.vertx();
+    DeploymentOptions opt = new DeploymentOptions()
+        .setConfig(new JsonObject().put("port", Integer.toString(port)));
+    DeploymentOptions replicaOpt = new DeploymentOptions()
+        .setConfig(new JsonObject()
+            .put("port", Integer.toString(replicaPort))
+            .put("mode", "replica")
+            .put("replica_source", "http://localhost:" + port)
+            .put("replica_wait", "1000"));
+    Async async = context.async();
+    vertx.deployVerticle(MainVerticle.class.getName(), opt, res -> {
+      context.assertTrue(res.succeeded());
+      replicaVertx.deployVerticle(MainVerticle.class.getName(), replicaOpt, res2 -> {
+        context.assertTrue(res2.succeeded());
+        async.complete();
+      });
+    });
+  }
+
+  @After
+  public void tearDown(TestContext context) {
+    Async async = context.async();
+    replicaVertx.close(x -> {
+      if (vertx == null) {
+        async.complete();
+      } else {
+        vertx.close(y -> async.complete());
+      }
+    });
+  }
+
+  private int waitForStatus(String path, int status) throws InterruptedException {
+    int got = 0;
+    for (int i = 0; i < 100; i++) {
+      got = RestAssured.given().port(replicaPort).get(path).getStatusCode();
+      if (got == status) {
+        break;
+      }
+      Thread.sleep(100);
+    }
+    return got;
+  }
+
+  @Test
+  public void testReplica() throws InterruptedException {
+    RestAssured.port = port;
+    RestAssuredClient c;
+
+    c = api.createRestAssured3();
+    c.given().get("/_/replication/snapshot").then().statusCode(200);
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+        c.getLastReport().isEmpty());
+    String epoch = RestAssured.given().get("/_/replication/snapshot")
+        .then().extract().path("epoch");
+
+    c = api.createRestAssured3();
+    c.given().get("/_/replication/changes?epoch=" + epoch + "&since=0")
+        .then().statusCode(200);
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+        c.getLastReport().isEmpty());
+
+    c = api.createRestAssured3();
+    c.given().get("/_/replication/changes?epoch=other&since=0")
+        .then().statusCode(400);
+    Assert.assertTrue("raml: " + c.getLastReport().toString(),
+        c.getLastReport().isEmpty());
+
+    RestAssured.given().get("/_/replication/changes?epoch=" + epoch + "&since=x")
+        .then().statusCode(400);
+
+    // wait that times out, unless a change comes in first
+    int seq = RestAssured.given().get("/_/replication/changes?epoch=" + epoch + "&since=0")
+        .then().extract().path("seq");
+    RestAssured.given()
+        .get("/_/replication/changes?epoch=" + epoch + "&since=" + seq + "&wait=200")
+        .then().statusCode(200).body("epoch", equalTo(epoch));
+
+    // snapshot: the super tenant of the full node
+    Assert.assertEquals(200, waitForStatus("/_/proxy/tenants/supertenant", 200));
+
+    // incremental: module and tenant created on the full node
+    RestAssured.given()
+        .header("Content-Type", "application/json")
+        .body("{\"id\" : \"mod-a-1.0.0\", \"name\" : \"a\"}")
+        .post("/_/proxy/modules").then().statusCode(201);
+    RestAssured.given()
+        .header("Content-Type", "application/json")
+        .body("{\"id\" : \"roskilde\", \"name\" : \"Roskilde\"}")
+        .post("/_/proxy/tenants").then().statusCode(201);
+    Assert.assertEquals(200, waitForStatus("/_/proxy/modules/mod-a-1.0.0", 200));
+    Assert.assertEquals(200, waitForStatus("/_/proxy/tenants/roskilde", 200));
+
+    RestAssured.given()
+        .header("Content-Type", "application/json")
+        .body("{\"id\" : \"mod-a-1.0.0\"}")
+        .post("/_/proxy/tenants/roskilde/modules").then().statusCode(201);
+    for (int i = 0; i < 100; i++) {
+      if (RestAssured.given().port(replicaPort)
+          .get("/_/proxy/tenants/roskilde/modules").asString().contains("mod-a-1.0.0")) {
+        break;
+      }
+      Thread.sleep(100);
+    }
+    RestAssured.given().port(replicaPort).get("/_/proxy/tenants/roskilde/modules/mod-a-1.0.0")
+        .then().statusCode(200);
+
+    RestAssured.given().delete("/_/proxy/tenants/roskilde").then().statusCode(204);
+    Assert.assertEquals(404, waitForStatus("/_/proxy/tenants/roskilde", 404));
+
+    // replica is read-only
+    RestAssured.given().port(replicaPort)
+        .header("Content-Type", "application/json")
+        .body("{\"id\" : \"other\"}")
+        .post("/_/proxy/tenants").then().statusCode(403);
+    RestAssured.given().port(replicaPort)
+        .delete("/_/proxy/modules/mod-a-1.0.0").then().statusCode(403);
+
+    // last known state is served when the full node is gone
+    CountDownLatch latch = new CountDownLatch(1);
+    vertx.close(x -> latch.countDown());
+    Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    vertx = null;
+    Thread.sleep(1500);
+    RestAssured.given().port(replicaPort).get("/_/proxy/modules/mod-a-1.0.0")
+        .then().statusCode(200);
+    RestAssured.given().port(replicaPort).get("/_/proxy/tenants/supertenant")
+        .then().statusCode(200);
+  }
+}
@@ -1,6 +1,7 @@
 package org.folio.okapi.bean;
 
 import io.vertx.core.json.DecodeException;
+import java.util.Arrays;
 import org.apache.logging.log4j.Logger;
 import org.folio.okapi.common.OkapiLogger;
 import org.junit.Test;
@@ -158,6 +159,26 @@ public class RoutingEntryTest {
     assertFalse(RoutingEntry.fastMatch("{id1}/*/{id2}", "//"));
   }
 
+  @Test
+  public void testPathParameters() {
+    RoutingEntry t = new RoutingEntry();
+    assertNull(t.getPathParameters("/a"));
+
+    t.setPathPattern("/_/proxy/tenants/{tenantId}/modules/{moduleId}");
+    assertEquals(Arrays.asList("t1", "mod%2F1.0.0"),
+        t.getPathParameters("/_/proxy/tenants/t1/modules/mod%2F1.0.0?full=true"));
+    assertNull(t.getPathParameters("/_/proxy/tenants/t1/modules"));
+    assertNull(t.getPathParameters("/_/proxy/tenants//modules/m"));
+
+    t.setPathPattern("/_/version");
+    assertEquals(0, t.getPathParameters("/_/version").size());
+
+    t.setPathPattern("/{id1}/*/{id2}");
+    assertEquals(Arrays.asList("a", "d"), t.getPathParameters("/a/b/c/d"));
+    assertEquals(Arrays.asList("a", "d"), t.getPathParameters("/a//d"));
+    assertNull(t.getPathParameters("/a/d"));
+  }
+
   @Test
   public void testInvalidPatterns() {
     RoutingEntry t = new RoutingEntry();
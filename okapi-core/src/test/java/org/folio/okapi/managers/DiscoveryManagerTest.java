@@ -1,9 +1,16 @@
 package org.folio.okapi.managers;
 
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.spi.cluster.hazelcast.HazelcastClusterManager;
 
+import java.util.Arrays;
+import org.folio.okapi.bean.DeploymentDescriptor;
+import org.folio.okapi.bean.NodeDescriptor;
+import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.util.TestBase;
 import org.junit.Assert;
 import org.junit.Test;
@@ -17,6 +24,122 @@ public class DiscoveryManagerTest extends TestBase {
     DiscoveryManager discoveryManager = new DiscoveryManager(null);
     discoveryManager.init(Vertx.vertx(), asyncAssertSuccess(context, then -> {
       Assert.assertEquals(true, discoveryManager.isLeader());
+      Assert.assertEquals(true, discoveryManager.isOwner("tenant_module-1.0.0_1"));
     }));
   }
+
+  @Test
+  public void resyncTwice(TestContext context) {
+    // clustered, so that reading the deployments map is asynchronous
+    Vertx vertx;
+    {
+      Async async = context.async();
+      Vertx[] v = {null};
+      Vertx.clusteredVertx(new VertxOptions().setClusterManager(new HazelcastClusterManager()),
+          context.asyncAssertSuccess(res -> {
+            v[0] = res;
+            async.complete();
+          }));
+      async.await();
+      vertx = v[0];
+    }
+    DiscoveryManager discoveryManager = new DiscoveryManager(null);
+    {
+      Async async = context.async();
+      discoveryManager.init(vertx, res -> {
+        context.assertTrue(res.succeeded());
+        async.complete();
+      });
+      async.await();
+    }
+    DeploymentDescriptor dd = new DeploymentDescriptor("inst1", "mod-1.0.0",
+        "http://localhost:9131", null, null);
+    {
+      Async async = context.async();
+      discoveryManager.add(dd, res -> {
+        context.assertTrue(res.succeeded());
+        async.complete();
+      });
+      async.await();
+    }
+    Async async = context.async(2);
+    vertx.runOnContext(x -> {
+      for (int i = 0; i < 2; i++) {
+        discoveryManager.resyncTable(res -> {
+          context.assertTrue(res.succeeded());
+          context.assertEquals(1, discoveryManager.getTable().size());
+          async.countDown();
+        });
+      }
+    });
+    async.await();
+    vertx.close(context.asyncAssertSuccess());
+  }
+
+  @Test
+  public void liveInstances(TestContext context) {
+    DiscoveryManager discoveryManager = new DiscoveryManager(null);
+    {
+      Async async = context.async();
+      discoveryManager.init(Vertx.vertx(), res -> async.complete());
+      async.await();
+    }
+    NodeDescriptor nd = new NodeDescriptor();
+    nd.setNodeId("node1");
+    nd.setNodeName("name1");
+    nd.setUrl("http://localhost:9130");
+    {
+      Async async = context.async();
+      discoveryManager.addNode(nd, res -> async.complete());
+      async.await();
+    }
+    DeploymentDescriptor dd1 = new DeploymentDescriptor("inst1", "mod-1.0.0", null);
+    dd1.setNodeId("node1");
+    DeploymentDescriptor dd2 = new DeploymentDescriptor("inst2", "mod-1.0.0", null);
+    dd2.setNodeId("name1");
+    for (DeploymentDescriptor dd : Arrays.asList(dd1, dd2)) {
+      Async async = context.async();
+      discoveryManager.add(dd, res -> {
+        context.assertTrue(res.succeeded());
+        async.complete();
+      });
+      async.await();
+    }
+    {
+      Async async = context.async();
+      discoveryManager.getNonEmpty("mod-1.0.0", res -> {
+        context.assertTrue(res.succeeded());
+        context.assertEquals(2, res.result().size());
+        async.complete();
+      });
+      async.await();
+    }
+    discoveryManager.nodeLeft("node1");
+    {
+      Async async = context.async();
+      discoveryManager.getNonEmpty("mod-1.0.0", res -> {
+        context.assertTrue(res.succeeded());
+        context.assertEquals(0, res.result().size());
+        async.complete();
+      });
+      async.await();
+    }
+    for (String instId : Arrays.asList("inst1", "inst2")) {
+      Async async = context.async();
+      discoveryManager.remove("mod-1.0.0", instId, res -> {
+        context.assertTrue(res.succeeded());
+        async.complete();
+      });
+      async.await();
+    }
+    {
+      Async async = context.async();
+      discoveryManager.getNonEmpty("mod-1.0.0", res -> {
+        context.assertTrue(res.failed());
+        context.assertEquals(ErrorType.NOT_FOUND, res.getType());
+        async.complete();
+      });
+      async.await();
+    }
+  }
 }
@@ -0,0 +1,87 @@
+package org.folio.okapi.managers;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.LinkedList;
+import java.util.List;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.service.impl.TenantStoreNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class ReplicationManagerTest {
+
+  private Vertx vertx;
+
+  @Before
+  public void setUp(TestContext context) {
+    vertx = Vertx.vertx();
+  }
+
+  @After
+  public void tearDown(TestContext context) {
+    vertx.close(context.asyncAssertSuccess());
+  }
+
+  @Test
+  public void testModuleList(TestContext context) {
+    ModuleManager mm = new ModuleManager(null);
+    TenantManager tm = new TenantManager(mm, new TenantStoreNull());
+    mm.setTenantManager(tm);
+    DiscoveryManager dm = new DiscoveryManager(null);
+    {
+      Async async = context.async();
+      mm.init(vertx, res1 -> tm.init(vertx, res2 -> dm.init(vertx, res3 -> async.complete())));
+      async.await();
+    }
+    ReplicationManager rm = new ReplicationManager(mm, tm, dm);
+    rm.init(vertx);
+    JsonObject snapshot;
+    {
+      Async async = context.async();
+      JsonObject[] s = {null};
+      rm.getSnapshot(res -> {
+        context.assertTrue(res.succeeded());
+        s[0] = res.result();
+        async.complete();
+      });
+      async.await();
+      snapshot = s[0];
+    }
+    List<ModuleDescriptor> list = new LinkedList<>();
+    for (int i = 0; i < 3; i++) {
+      ModuleDescriptor md = new ModuleDescriptor();
+      md.setId("mod-list-1.0." + i);
+      list.add(md);
+    }
+    {
+      Async async = context.async();
+      mm.createList(list, true, true, true, res -> {
+        context.assertTrue(res.succeeded());
+        async.complete();
+      });
+      async.await();
+    }
+    // one change for the list, with all of its modules
+    String epoch = snapshot.getString("epoch");
+    long seq = snapshot.getLong("seq");
+    Async async = context.async();
+    rm.getChanges(epoch, seq, 5000, res -> {
+      context.assertTrue(res.succeeded());
+      context.assertEquals(seq + 1, res.result().getLong("seq"));
+      JsonArray modules = res.result().getJsonArray(ReplicationManager.MODULES);
+      context.assertEquals(3, modules.size());
+      context.assertEquals("mod-list-1.0.2",
+          modules.getJsonObject(2).getJsonObject("value").getString("id"));
+      async.complete();
+    });
+    async.await();
+  }
+}
@@ -1,15 +1,26 @@
 package org.folio.okapi.managers;
 
+import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.spi.cluster.hazelcast.HazelcastClusterManager;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
+import org.folio.okapi.bean.InstallJob;
 import org.folio.okapi.bean.Tenant;
 import org.folio.okapi.bean.TenantDescriptor;
 import org.folio.okapi.common.ErrorType;
+import org.folio.okapi.common.ExtendedAsyncResult;
+import org.folio.okapi.common.Success;
 import org.folio.okapi.service.impl.TenantStoreNull;
 import org.folio.okapi.util.LockedTypedMap1Faulty;
+import org.folio.okapi.util.LockedTypedMap2;
 import org.folio.okapi.util.TestBase;
 import org.junit.After;
 import org.junit.Assert;
@@ -257,4 +268,132 @@ public class TenantManagerTest extends TestBase {
       Assert.assertEquals(0, tenantManager.getTimers().size());
     }));
   }
+
+  private static InstallJob incompleteJob(String id, String nodeId) {
+    InstallJob job = new InstallJob();
+    job.setId(id);
+    job.setTenant("tenant");
+    job.setComplete(false);
+    job.setStartDate(Instant.now().toString());
+    job.setNodeId(nodeId);
+    return job;
+  }
+
+  private static void insertTenant(TestContext context, TenantManager tm) {
+    TenantDescriptor td = new TenantDescriptor();
+    td.setId("tenant");
+    Async async = context.async();
+    tm.insert(new Tenant(td), res -> {
+      context.assertTrue(res.succeeded());
+      async.complete();
+    });
+    async.await();
+  }
+
+  @Test
+  public void testInstallJobInterrupted(TestContext context) {
+    List<InstallJob> saved = new LinkedList<>();
+    TenantManager tm = new TenantManager(null, new TenantStoreNull() {
+      @Override
+      public void listInstallJobs(Handler<ExtendedAsyncResult<List<InstallJob>>> fut) {
+        fut.handle(new Success<>(Collections.singletonList(incompleteJob("job1", null))));
+      }
+
+      @Override
+      public void updateInstallJob(InstallJob job, Handler<ExtendedAsyncResult<Void>> fut) {
+        saved.add(job);
+        fut.handle(new Success<>());
+      }
+    });
+    {
+      Async async = context.async();
+      tm.init(vertx, res -> {
+        context.assertTrue(res.succeeded());
+        async.complete();
+      });
+      async.await();
+    }
+    context.assertEquals(1, saved.size());
+    context.assertTrue(saved.get(0).getComplete());
+    insertTenant(context, tm);
+    Async async = context.async();
+    tm.listInstallJobs("tenant", res -> {
+      context.assertTrue(res.succeeded());
+      context.assertEquals(1, res.result().size());
+      InstallJob job = res.result().get(0);
+      context.assertTrue(job.getComplete());
+      context.assertNotNull(job.getEndDate());
+      context.assertEquals("Install interrupted by restart of Okapi", job.getMessage());
+      async.complete();
+    });
+    async.await();
+  }
+
+  @Test
+  public void testInstallJobNodeLeft(TestContext context) {
+    // clustered: jobs already in the shared map are not read from the store
+    HazelcastClusterManager mgr = new HazelcastClusterManager();
+    Vertx clusteredVertx;
+    {
+      Async async = context.async();
+      Vertx[] v = {null};
+      Vertx.clusteredVertx(new VertxOptions().setClusterManager(mgr),
+          context.asyncAssertSuccess(res -> {
+            v[0] = res;
+            async.complete();
+          }));
+      async.await();
+      clusteredVertx = v[0];
+    }
+    LockedTypedMap2<InstallJob> jobs = new LockedTypedMap2<>(InstallJob.class);
+    {
+      Async async = context.async();
+      jobs.init(clusteredVertx, "installJobs", res -> {
+        context.assertTrue(res.succeeded());
+        async.complete();
+      });
+      async.await();
+    }
+    for (InstallJob job : Arrays.asList(incompleteJob("gone", "node-that-left"),
+        incompleteJob("live", mgr.getNodeID()))) {
+      Async async = context.async();
+      jobs.add(job.getTenant(), job.getId(), job, res -> {
+        context.assertTrue(res.succeeded());
+        async.complete();
+      });
+      async.await();
+    }
+    TenantManager tm = new TenantManager(null, new TenantStoreNull());
+    tm.setClusterManager(mgr);
+    {
+      Async async = context.async();
+      tm.init(clusteredVertx, res -> {
+        context.assertTrue(res.succeeded());
+        async.complete();
+      });
+      async.await();
+    }
+    insertTenant(context, tm);
+    {
+      Async async = context.async();
+      tm.getInstallJob("tenant", "gone", res -> {
+        context.assertTrue(res.succeeded());
+        context.assertTrue(res.result().getComplete());
+        context.assertEquals("Install interrupted by restart of Okapi",
+            res.result().getMessage());
+        async.complete();
+      });
+      async.await();
+    }
+    {
+      Async async = context.async();
+      tm.getInstallJob("tenant", "live", res -> {
+        context.assertTrue(res.succeeded());
+        context.assertFalse(res.result().getComplete());
+        async.complete();
+      });
+      async.await();
+    }
+    clusteredVertx.close(context.asyncAssertSuccess());
+  }
 }
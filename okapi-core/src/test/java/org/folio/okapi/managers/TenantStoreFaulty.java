@@ -3,6 +3,7 @@ package org.folio.okapi.managers;
 import io.vertx.core.Handler;
 import java.util.List;
 import java.util.SortedMap;
+import org.folio.okapi.bean.InstallJob;
 import org.folio.okapi.bean.Tenant;
 import org.folio.okapi.bean.TenantDescriptor;
 import org.folio.okapi.common.ErrorType;
@@ -48,5 +49,19 @@ public class TenantStoreFaulty implements TenantStore {
   public void init(boolean reset, Handler<ExtendedAsyncResult<Void>> fut) {
     fut.handle(new Failure<>(code, msg));
   }
-  
+
+  @Override
+  public void updateInstallJob(InstallJob job, Handler<ExtendedAsyncResult<Void>> fut) {
+    fut.handle(new Failure<>(code, msg));
+  }
+
+  @Override
+  public void listInstallJobs(Handler<ExtendedAsyncResult<List<InstallJob>>> fut) {
+    fut.handle(new Failure<>(code, msg));
+  }
+
+  @Override
+  public void deleteInstallJob(String id, Handler<ExtendedAsyncResult<Void>> fut) {
+    fut.handle(new Failure<>(code, msg));
+  }
 }
@@ -0,0 +1,68 @@
+package org.folio.okapi.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.folio.okapi.bean.InterfaceDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ModuleStoreFilterTest {
+
+  private static ModuleDescriptor md(String id, InterfaceDescriptor[] provides,
+                                     InterfaceDescriptor[] requires) {
+    ModuleDescriptor md = new ModuleDescriptor();
+    md.setId(id);
+    if (provides != null) {
+      md.setProvides(provides);
+    }
+    md.setRequires(requires);
+    return md;
+  }
+
+  private static String ids(List<ModuleDescriptor> mdl) {
+    List<String> l = new ArrayList<>();
+    for (ModuleDescriptor md : mdl) {
+      l.add(md.getId());
+    }
+    return String.join(" ", l);
+  }
+
+  @Test
+  public void testApply() {
+    InterfaceDescriptor[] circ = {new InterfaceDescriptor("circulation", "1.0")};
+    InterfaceDescriptor[] users = {new InterfaceDescriptor("users", "2.0")};
+
+    List<ModuleDescriptor> list = new ArrayList<>();
+    list.add(md("mod-users-2.0.0", users, null));
+    list.add(md("mod-circ-1.1.0", circ, users));
+    list.add(md("mod-circ-1.0.0", circ, users));
+    list.add(md("mod-circ-1.1.0-SNAPSHOT.1", circ, users));
+    list.add(md("mod-other-1.0.0", null, null));
+
+    Assert.assertEquals("mod-circ-1.0.0 mod-circ-1.1.0-SNAPSHOT.1 mod-circ-1.1.0"
+        + " mod-other-1.0.0 mod-users-2.0.0", ids(new ModuleStoreFilter().apply(list)));
+    Assert.assertEquals("mod-circ-1.0.0 mod-circ-1.1.0-SNAPSHOT.1 mod-circ-1.1.0",
+        ids(new ModuleStoreFilter().setProduct("mod-circ").apply(list)));
+    Assert.assertEquals("", ids(new ModuleStoreFilter().setProduct("mod").apply(list)));
+    Assert.assertEquals("mod-users-2.0.0",
+        ids(new ModuleStoreFilter().setProvides("users").apply(list)));
+    Assert.assertEquals("mod-circ-1.0.0 mod-circ-1.1.0-SNAPSHOT.1 mod-circ-1.1.0",
+        ids(new ModuleStoreFilter().setRequires("users").apply(list)));
+    Assert.assertEquals("", ids(new ModuleStoreFilter().setRequires("circulation").apply(list)));
+    Assert.assertEquals("mod-circ-1.1.0 mod-other-1.0.0 mod-users-2.0.0",
+        ids(new ModuleStoreFilter().setLatest(1).apply(list)));
+    Assert.assertEquals("mod-circ-1.1.0-SNAPSHOT.1 mod-circ-1.1.0",
+        ids(new ModuleStoreFilter().setProvides("circulation").setLatest(2).apply(list)));
+    Assert.assertEquals("mod-circ-1.1.0-SNAPSHOT.1 mod-circ-1.1.0",
+        ids(new ModuleStoreFilter().setOffset(1).setLimit(2).apply(list)));
+    Assert.assertEquals("", ids(new ModuleStoreFilter().setOffset(10).apply(list)));
+
+    List<ModuleDescriptor> view = new ModuleStoreFilter().setProvides("users")
+        .setFull(false).apply(list);
+    Assert.assertEquals("mod-users-2.0.0", ids(view));
+    Assert.assertNull(view.get(0).getProvides());
+    Assert.assertEquals(1, new ModuleStoreFilter().apply(list).get(4).getProvides().length);
+    Assert.assertEquals(5, list.size());
+  }
+}
@@ -1,5 +1,9 @@
 package org.folio.okapi.service.impl;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -21,7 +25,11 @@ import io.vertx.ext.mongo.UpdateOptions;
 import io.vertx.ext.mongo.WriteOption;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
 import java.util.List;
+import org.bson.BsonDocument;
 import org.folio.okapi.bean.DeploymentDescriptor;
 import org.folio.okapi.common.ErrorType;
 import org.junit.Test;
@@ -37,8 +45,72 @@ public class MongoUtilTest {
     }
   }
   
+  class FakeReadStream implements ReadStream<JsonObject> {
+
+    private final List<JsonObject> docs;
+    private Handler<Throwable> exceptionHandler;
+    private Handler<Void> endHandler;
+    private boolean paused;
+    int docsRead = 0;
+    boolean ended;
+
+    FakeReadStream(List<JsonObject> docs) {
+      this.docs = docs;
+    }
+
+    @Override
+    public ReadStream<JsonObject> exceptionHandler(Handler<Throwable> handler) {
+      exceptionHandler = handler;
+      return this;
+    }
+
+    @Override
+    public ReadStream<JsonObject> handler(Handler<JsonObject> handler) {
+      if (docs == null) {
+        exceptionHandler.handle(new RuntimeException("find failed"));
+        return this;
+      }
+      for (JsonObject doc : docs) {
+        if (paused) {
+          return this;
+        }
+        docsRead++;
+        handler.handle(doc);
+      }
+      ended = true;
+      endHandler.handle(null);
+      return this;
+    }
+
+    @Override
+    public ReadStream<JsonObject> pause() {
+      paused = true;
+      return this;
+    }
+
+    @Override
+    public ReadStream<JsonObject> resume() {
+      return this;
+    }
+
+    @Override
+    public ReadStream<JsonObject> fetch(long amount) {
+      return this;
+    }
+
+    @Override
+    public ReadStream<JsonObject> endHandler(Handler<Void> handler) {
+      endHandler = handler;
+      return this;
+    }
+  }
+
   class FakeMongoClient implements MongoClient {
 
+    int bulkOperations = 0;
+    List<String> removedIds = new LinkedList<>();
+    FakeReadStream stream;
+
     @Override
     public MongoClient save(String collection, JsonObject document, Handler<AsyncResult<String>> resultHandler) {
       throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
@@ -88,7 +160,18 @@ public class MongoUtilTest {
 
     @Override
     public MongoClient bulkWriteWithOptions(String collection, List<BulkOperation> operations, BulkWriteOptions bulkWriteOptions, Handler<AsyncResult<MongoClientBulkWriteResult>> resultHandler) {
-      throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+      if ("ok".equals(collection) || ("partial".equals(collection) && bulkOperations == 0)) {
+        bulkOperations += operations.size();
+        resultHandler.handle(Future.succeededFuture(new MongoClientBulkWriteResult()));
+      } else if ("duplicate".equals(collection)) {
+        BulkWriteError error = new BulkWriteError(11000, "duplicate key", new BsonDocument(), 10);
+        resultHandler.handle(Future.failedFuture(new MongoBulkWriteException(
+            BulkWriteResult.unacknowledged(), Collections.singletonList(error), null,
+            new ServerAddress())));
+      } else {
+        resultHandler.handle(Future.failedFuture("bulkWrite failed"));
+      }
+      return this;
     }
 
     @Override
@@ -109,7 +192,20 @@ public class MongoUtilTest {
 
     @Override
     public ReadStream<JsonObject> findBatchWithOptions(String collection, JsonObject query, FindOptions options) {
-      throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+      if ("ok".equals(collection)) {
+        List<JsonObject> docs = new LinkedList<>();
+        docs.add(new JsonObject().put("_id", "1").put("instId", "1").put("srvcId", "a-1.0.0"));
+        docs.add(new JsonObject().put("_id", "2").put("instId", "2").put("srvcId", "a-1.0.0"));
+        return new FakeReadStream(docs);
+      }
+      if ("bad".equals(collection)) {
+        List<JsonObject> docs = new LinkedList<>();
+        docs.add(new JsonObject().put("_id", "1").put("instId", new JsonObject()));
+        docs.add(new JsonObject().put("_id", "2").put("instId", "2"));
+        stream = new FakeReadStream(docs);
+        return stream;
+      }
+      return new FakeReadStream(null);
     }
 
     @Override
@@ -154,7 +250,12 @@ public class MongoUtilTest {
 
     @Override
     public MongoClient removeDocuments(String collection, JsonObject query, Handler<AsyncResult<MongoClientDeleteResult>> resultHandler) {
-      throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+      JsonArray ids = query.getJsonObject("_id").getJsonArray("$in");
+      for (int i = 0; i < ids.size(); i++) {
+        removedIds.add(ids.getString(i));
+      }
+      resultHandler.handle(Future.succeededFuture(new MongoClientDeleteResult()));
+      return this;
     }
 
     @Override
@@ -529,4 +630,98 @@ public class MongoUtilTest {
     });
   }
 
+  @Test
+  public void testGetAllStream(TestContext context) {
+    MongoClient cli = new FakeMongoClient();
+    MongoUtil<DeploymentDescriptor> util = new MongoUtil<>("ok", cli);
+    util.getAll(DeploymentDescriptor.class, res -> {
+      context.assertTrue(res.succeeded());
+      context.assertEquals(2, res.result().size());
+      context.assertEquals("2", res.result().get(1).getInstId());
+    });
+  }
+
+  @Test
+  public void testGetAllDecodeFailure(TestContext context) {
+    FakeMongoClient cli = new FakeMongoClient();
+    MongoUtil<DeploymentDescriptor> util = new MongoUtil<>("bad", cli);
+    util.getAll(DeploymentDescriptor.class, res -> {
+      context.assertTrue(res.failed());
+      context.assertEquals(1, cli.stream.docsRead);
+    });
+    // read to the end, so that the cursor is closed
+    context.assertEquals(2, cli.stream.docsRead);
+    context.assertTrue(cli.stream.ended);
+  }
+
+  @Test
+  public void testInsertList(TestContext context) {
+    FakeMongoClient cli = new FakeMongoClient();
+    List<DeploymentDescriptor> list = new ArrayList<>();
+    for (int i = 0; i < 2500; i++) {
+      DeploymentDescriptor dd = new DeploymentDescriptor();
+      dd.setInstId(Integer.toString(i));
+      list.add(dd);
+    }
+    MongoUtil<DeploymentDescriptor> util = new MongoUtil<>("ok", cli);
+    util.insertList(list, DeploymentDescriptor::getInstId, res -> {
+      context.assertTrue(res.succeeded());
+      context.assertEquals(2500, cli.bulkOperations);
+    });
+    util.addList(list, DeploymentDescriptor::getInstId, res -> {
+      context.assertTrue(res.succeeded());
+      context.assertEquals(5000, cli.bulkOperations);
+    });
+    MongoUtil<DeploymentDescriptor> util2 = new MongoUtil<>("collection", cli);
+    util2.insertList(list, DeploymentDescriptor::getInstId, res -> {
+      context.assertTrue(res.failed());
+      context.assertEquals("bulkWrite failed", res.cause().getMessage());
+      // nothing is known to be written, so nothing is removed
+      context.assertEquals(0, cli.removedIds.size());
+    });
+  }
+
+  @Test
+  public void testInsertListPartial(TestContext context) {
+    FakeMongoClient cli = new FakeMongoClient();
+    List<DeploymentDescriptor> list = new ArrayList<>();
+    for (int i = 0; i < 2500; i++) {
+      DeploymentDescriptor dd = new DeploymentDescriptor();
+      dd.setInstId(Integer.toString(i));
+      list.add(dd);
+    }
+    MongoUtil<DeploymentDescriptor> util = new MongoUtil<>("partial", cli);
+    // first batch written, second fails: only the first is removed
+    util.insertList(list, DeploymentDescriptor::getInstId, res -> {
+      context.assertTrue(res.failed());
+      context.assertEquals("bulkWrite failed", res.cause().getMessage());
+      context.assertEquals(1000, cli.removedIds.size());
+      context.assertEquals("999", cli.removedIds.get(999));
+    });
+    // upserts are kept
+    cli.removedIds.clear();
+    util.addList(list, DeploymentDescriptor::getInstId, res -> {
+      context.assertTrue(res.failed());
+      context.assertEquals(0, cli.removedIds.size());
+    });
+  }
+
+  @Test
+  public void testInsertListDuplicate(TestContext context) {
+    FakeMongoClient cli = new FakeMongoClient();
+    List<DeploymentDescriptor> list = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      DeploymentDescriptor dd = new DeploymentDescriptor();
+      dd.setInstId(Integer.toString(i));
+      list.add(dd);
+    }
+    MongoUtil<DeploymentDescriptor> util = new MongoUtil<>("duplicate", cli);
+    // the existing document at index 10 and those after it are kept
+    util.insertList(list, DeploymentDescriptor::getInstId, res -> {
+      context.assertTrue(res.failed());
+      context.assertEquals(10, cli.removedIds.size());
+      context.assertEquals("9", cli.removedIds.get(9));
+    });
+  }
+
 }
@@ -0,0 +1,57 @@
+package org.folio.okapi.util;
+
+import java.util.Arrays;
+import java.util.List;
+import org.folio.okapi.bean.InterfaceDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.common.ModuleId;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AvailableModulesTest {
+
+  private static ModuleDescriptor md(String id, InterfaceDescriptor... provides) {
+    ModuleDescriptor md = new ModuleDescriptor();
+    md.setId(id);
+    md.setProvides(provides);
+    return md;
+  }
+
+  @Test
+  public void testIndex() {
+    InterfaceDescriptor int10 = new InterfaceDescriptor("int", "1.0");
+    InterfaceDescriptor int20 = new InterfaceDescriptor("int", "2.0");
+    InterfaceDescriptor timer = new InterfaceDescriptor("_timer", "1.0");
+    timer.setInterfaceType("system");
+
+    AvailableModules available = new AvailableModules(Arrays.asList(
+        md("moduleA-1.0.0", int10),
+        md("moduleA-1.10.0", int20),
+        md("moduleA-1.9.0", int10),
+        md("moduleA-2.0.0-SNAPSHOT.1", int20),
+        md("moduleB-1.0.0", int10, timer)));
+    Assert.assertEquals(5, available.size());
+    Assert.assertTrue(available.containsKey("moduleA-1.9.0"));
+    Assert.assertNull(available.get("moduleA-3.0.0"));
+
+    List<ModuleDescriptor> l = available.getProviders("int");
+    Assert.assertEquals(5, l.size());
+    Assert.assertEquals("moduleB-1.0.0", l.get(0).getId());
+    Assert.assertEquals("moduleA-2.0.0-SNAPSHOT.1", l.get(1).getId());
+    Assert.assertEquals("moduleA-1.10.0", l.get(2).getId());
+    Assert.assertEquals("moduleA-1.9.0", l.get(3).getId());
+    Assert.assertEquals("moduleA-1.0.0", l.get(4).getId());
+    Assert.assertTrue(available.getProviders("_timer").isEmpty());
+    Assert.assertTrue(available.getProviders("other").isEmpty());
+
+    l = available.getProduct("moduleA");
+    Assert.assertEquals(4, l.size());
+    Assert.assertEquals("moduleA-2.0.0-SNAPSHOT.1", l.get(0).getId());
+    Assert.assertEquals("moduleA-1.0.0", l.get(3).getId());
+    Assert.assertTrue(available.getProduct("moduleC").isEmpty());
+
+    Assert.assertEquals("moduleA-2.0.0-SNAPSHOT.1", available.getLatest(new ModuleId("moduleA")));
+    Assert.assertEquals("moduleA-3.0.0", available.getLatest(new ModuleId("moduleA-3.0.0")));
+    Assert.assertEquals("moduleC", available.getLatest(new ModuleId("moduleC")));
+  }
+}
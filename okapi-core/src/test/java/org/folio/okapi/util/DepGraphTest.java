@@ -0,0 +1,107 @@
+package org.folio.okapi.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.folio.okapi.bean.InterfaceDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DepGraphTest {
+
+  private ModuleDescriptor mdA100;
+  private ModuleDescriptor mdA110;
+  private ModuleDescriptor mdA200;
+  private ModuleDescriptor mdB;
+  private ModuleDescriptor mdC;
+  private ModuleDescriptor mdO;
+
+  private static ModuleDescriptor md(String id, InterfaceDescriptor[] provides,
+                                     InterfaceDescriptor[] requires) {
+    ModuleDescriptor md = new ModuleDescriptor();
+    md.setId(id);
+    if (provides != null) {
+      md.setProvides(provides);
+    }
+    md.setRequires(requires);
+    return md;
+  }
+
+  @Before
+  public void setUp() {
+    InterfaceDescriptor[] int10a = {new InterfaceDescriptor("int", "1.0")};
+    InterfaceDescriptor[] int11a = {new InterfaceDescriptor("int", "1.1")};
+    InterfaceDescriptor[] int20a = {new InterfaceDescriptor("int", "2.0")};
+    InterfaceDescriptor[] otherA = {new InterfaceDescriptor("other", "1.0")};
+
+    mdA100 = md("moduleA-1.0.0", int10a, null);
+    mdA110 = md("moduleA-1.1.0", int11a, null);
+    mdA200 = md("moduleA-2.0.0", int20a, null);
+    mdB = md("moduleB-1.0.0", null, int10a);
+    mdC = md("moduleC-1.0.0", int10a, null);
+    mdO = md("moduleO-1.0.0", otherA, null);
+  }
+
+  @Test
+  public void testCheck() {
+    DepGraph graph = new DepGraph(Arrays.asList(mdA100, mdB, mdO));
+    Assert.assertTrue(graph.isConsistent());
+
+    Assert.assertEquals("", graph.check(mdA100, mdA110));
+    Assert.assertEquals("", graph.check(mdO, null));
+    Assert.assertEquals(" Missing dependency: moduleB-1.0.0 requires int: 1.0",
+        graph.check(mdA100, null));
+    Assert.assertEquals(" Incompatible version for module moduleB-1.0.0 interface int."
+        + " Need 1.0. Have 2.0/moduleA-2.0.0", graph.check(mdA100, mdA200));
+    Assert.assertEquals("Interface int is provided by moduleA-1.0.0 and moduleC-1.0.0. ",
+        graph.check(null, mdC));
+    Assert.assertEquals("", graph.check(mdA100, mdC));
+    Assert.assertEquals("Module moduleB-1.0.0 already provided", graph.check(null, mdB));
+  }
+
+  @Test
+  public void testCommit() {
+    DepGraph graph = new DepGraph(Collections.emptyList());
+    graph.commit(null, mdA100);
+    graph.commit(null, mdB);
+    Assert.assertTrue(graph.isConsistent());
+    Assert.assertEquals(" Missing dependency: moduleB-1.0.0 requires int: 1.0",
+        graph.check(mdA100, null));
+
+    // commit without check: B is left without int
+    graph.commit("moduleA-1.0.0", null);
+    Assert.assertFalse(graph.isConsistent());
+    // problems that were there already are not reported when disabling
+    Assert.assertEquals("", graph.check(mdB, null));
+    Assert.assertEquals(" Missing dependency: moduleB-1.0.0 requires int: 1.0",
+        graph.check(null, mdO));
+
+    graph.commit(null, mdA110);
+    Assert.assertTrue(graph.isConsistent());
+    Assert.assertEquals("", graph.check(null, mdO));
+    Assert.assertEquals(" Missing dependency: moduleB-1.0.0 requires int: 1.0",
+        graph.check(mdA110, null));
+
+    graph.commit("moduleB-1.0.0", null);
+    graph.commit("moduleA-1.1.0", mdA200);
+    Assert.assertTrue(graph.isConsistent());
+    Assert.assertEquals("", graph.check(mdA200, null));
+  }
+
+  @Test
+  public void testOptional() {
+    ModuleDescriptor mdP = md("moduleP-1.0.0", null, null);
+    mdP.setOptional(new InterfaceDescriptor[] {new InterfaceDescriptor("other", "2.0")});
+    DepGraph graph = new DepGraph(Collections.singletonList(mdP));
+    Assert.assertTrue(graph.isConsistent());
+
+    // optional interface need not be provided, but must match if it is
+    Assert.assertEquals("", graph.check(null, mdA100));
+    Assert.assertEquals(" Incompatible version for module moduleP-1.0.0 interface other."
+        + " Need 2.0. Have 1.0/moduleO-1.0.0", graph.check(null, mdO));
+
+    graph.commit(null, mdO);
+    Assert.assertFalse(graph.isConsistent());
+  }
+}
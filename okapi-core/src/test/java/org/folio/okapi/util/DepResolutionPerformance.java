@@ -0,0 +1,93 @@
+package org.folio.okapi.util;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.InterfaceDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.bean.TenantModuleDescriptor;
+import org.folio.okapi.common.OkapiLogger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Install simulation against a registry the size of a long-running FOLIO
+ * registry: many products, each with many versions, each version requiring
+ * interfaces of a few other products.
+ */
+public class DepResolutionPerformance {
+
+  private final Logger logger = OkapiLogger.get();
+
+  private static final int PRODUCTS = 300;
+  private static final int VERSIONS = 50;
+  private static final int REQUIRES = 3;
+  private static final int ROUNDS = 5;
+
+  private final Map<String, ModuleDescriptor> modsAvailable = new HashMap<>();
+
+  @Before
+  public void setUp() {
+    for (int p = 0; p < PRODUCTS; p++) {
+      for (int v = 0; v < VERSIONS; v++) {
+        ModuleDescriptor md = new ModuleDescriptor();
+        md.setId("mod-p" + p + "-1." + v + ".0");
+        InterfaceDescriptor[] provides = {new InterfaceDescriptor("int-p" + p, "1." + v)};
+        md.setProvides(provides);
+        int n = Math.min(p, REQUIRES);
+        InterfaceDescriptor[] requires = new InterfaceDescriptor[n];
+        for (int r = 0; r < n; r++) {
+          requires[r] = new InterfaceDescriptor("int-p" + (p - 1 - r * 7 % p), "1.0");
+        }
+        md.setRequires(requires);
+        modsAvailable.put(md.getId(), md);
+      }
+    }
+  }
+
+  private List<TenantModuleDescriptor> installAll() {
+    List<TenantModuleDescriptor> tml = new LinkedList<>();
+    for (int p = PRODUCTS - 1; p >= 0; p--) {
+      TenantModuleDescriptor tm = new TenantModuleDescriptor();
+      tm.setAction(TenantModuleDescriptor.Action.enable);
+      tm.setId("mod-p" + p);
+      tml.add(tm);
+    }
+    return tml;
+  }
+
+  private long simulate(AvailableModules available) {
+    List<TenantModuleDescriptor> tml = installAll();
+    long start = System.nanoTime();
+    if (available == null) {
+      DepResolution.installSimulate(modsAvailable, new HashMap<>(), tml,
+          res -> Assert.assertTrue(res.succeeded()));
+    } else {
+      DepResolution.installSimulate(available, new HashMap<>(), tml,
+          res -> Assert.assertTrue(res.succeeded()));
+    }
+    long elapsed = System.nanoTime() - start;
+    Assert.assertEquals(PRODUCTS, tml.size());
+    for (TenantModuleDescriptor tm : tml) {
+      Assert.assertTrue(tm.getId(), tm.getId().endsWith("-1." + (VERSIONS - 1) + ".0"));
+    }
+    return elapsed / 1000000;
+  }
+
+  @Test
+  public void testInstallSimulate() {
+    logger.info("registry with {} modules", modsAvailable.size());
+    for (int i = 0; i < ROUNDS; i++) {
+      logger.info("installSimulate, index built per call: {} ms", simulate(null));
+    }
+    long start = System.nanoTime();
+    AvailableModules available = new AvailableModules(modsAvailable.values());
+    logger.info("index built in {} ms", (System.nanoTime() - start) / 1000000);
+    for (int i = 0; i < ROUNDS; i++) {
+      logger.info("installSimulate, shared index: {} ms", simulate(available));
+    }
+  }
+}
@@ -1018,4 +1018,60 @@ public class DepResolutionTest {
     }
   }
 
+  private static TenantModuleDescriptor tm(String id, TenantModuleDescriptor.Action action) {
+    TenantModuleDescriptor tm = new TenantModuleDescriptor();
+    tm.setId(id);
+    tm.setAction(action);
+    return tm;
+  }
+
+  @Test
+  public void testInstallWaves(TestContext context) {
+    ModuleDescriptor mdO = new ModuleDescriptor();
+    mdO.setId("moduleO-1.0.0");
+    mdO.setProvides(new InterfaceDescriptor[] {new InterfaceDescriptor("other", "1.0")});
+
+    InterfaceDescriptor perms = new InterfaceDescriptor("_tenantPermissions", "1.0");
+    perms.setInterfaceType("system");
+    ModuleDescriptor mdP = new ModuleDescriptor();
+    mdP.setId("moduleP-1.0.0");
+    mdP.setProvides(new InterfaceDescriptor[] {perms});
+
+    Map<String, ModuleDescriptor> modsAvailable = new HashMap<>();
+    for (ModuleDescriptor md : new ModuleDescriptor[] {mdA100, mdA110, mdE100, mdD100, mdO, mdP}) {
+      modsAvailable.put(md.getId(), md);
+    }
+
+    List<TenantModuleDescriptor> tml = new LinkedList<>();
+    tml.add(tm("moduleA-1.0.0", TenantModuleDescriptor.Action.enable));
+    tml.add(tm("moduleO-1.0.0", TenantModuleDescriptor.Action.enable));
+    tml.add(tm("moduleE-1.0.0", TenantModuleDescriptor.Action.enable));
+    tml.add(tm("moduleD-1.0.0", TenantModuleDescriptor.Action.enable));
+    tml.add(tm("moduleX-1.0.0", TenantModuleDescriptor.Action.uptodate));
+
+    List<List<TenantModuleDescriptor>> waves = DepResolution.installWaves(tml, modsAvailable);
+    context.assertEquals(2, waves.size());
+    context.assertEquals(2, waves.get(0).size());
+    context.assertEquals("moduleA-1.0.0", waves.get(0).get(0).getId());
+    context.assertEquals("moduleO-1.0.0", waves.get(0).get(1).getId());
+    context.assertEquals(2, waves.get(1).size());
+    context.assertEquals("moduleE-1.0.0", waves.get(1).get(0).getId());
+    context.assertEquals("moduleD-1.0.0", waves.get(1).get(1).getId());
+
+    // upgrade of provider after its dependents are disabled; permissions module alone
+    tml.clear();
+    tml.add(tm("moduleE-1.0.0", TenantModuleDescriptor.Action.disable));
+    TenantModuleDescriptor up = tm("moduleA-1.1.0", TenantModuleDescriptor.Action.enable);
+    up.setFrom("moduleA-1.0.0");
+    tml.add(up);
+    tml.add(tm("moduleP-1.0.0", TenantModuleDescriptor.Action.enable));
+    tml.add(tm("moduleO-1.0.0", TenantModuleDescriptor.Action.enable));
+    waves = DepResolution.installWaves(tml, modsAvailable);
+    context.assertEquals(4, waves.size());
+    context.assertEquals("moduleE-1.0.0", waves.get(0).get(0).getId());
+    context.assertEquals("moduleA-1.1.0", waves.get(1).get(0).getId());
+    context.assertEquals("moduleP-1.0.0", waves.get(2).get(0).getId());
+    context.assertEquals("moduleO-1.0.0", waves.get(3).get(0).getId());
+  }
+
 }
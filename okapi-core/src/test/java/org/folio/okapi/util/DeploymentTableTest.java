@@ -0,0 +1,52 @@
+package org.folio.okapi.util;
+
+import java.util.Arrays;
+import java.util.List;
+import org.folio.okapi.bean.DeploymentDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeploymentTableTest {
+
+  private static DeploymentDescriptor dd(String instId, String srvcId, String url) {
+    return new DeploymentDescriptor(instId, srvcId, url, null, null);
+  }
+
+  @Test
+  public void testTable() {
+    DeploymentTable empty = new DeploymentTable();
+    Assert.assertEquals(0, empty.size());
+    Assert.assertNull(empty.get("mod-b-1.0.0"));
+    Assert.assertSame(empty, empty.without("mod-b-1.0.0", "i1"));
+
+    DeploymentTable t1 = empty.with(dd("i1", "mod-b-1.0.0", "http://localhost:9131"));
+    Assert.assertEquals(0, empty.size());
+    Assert.assertEquals(1, t1.size());
+
+    DeploymentTable t2 = t1
+        .with(dd("i2", "mod-b-1.0.0", "http://localhost:9132"))
+        .with(dd("i3", "mod-a-1.0.0", "http://localhost:9133"))
+        .with(dd("i1", "mod-b-1.0.0", "http://localhost:9134"));
+    Assert.assertEquals(3, t2.size());
+    Assert.assertEquals("http://localhost:9134", t2.get("mod-b-1.0.0", "i1").getUrl());
+    Assert.assertNull(t2.get("mod-b-1.0.0", "i3"));
+    List<DeploymentDescriptor> all = t2.getAll();
+    Assert.assertEquals("i3", all.get(0).getInstId());
+    Assert.assertEquals(2, t2.get("mod-b-1.0.0").size());
+
+    DeploymentTable t3 = new DeploymentTable(Arrays.asList(
+        dd("i1", "mod-b-1.0.0", "http://localhost:9134"),
+        dd("i3", "mod-a-1.0.0", "http://localhost:9133"),
+        dd("i2", "mod-b-1.0.0", "http://localhost:9132")));
+    Assert.assertTrue(t2.sameRoutes(t3));
+    Assert.assertTrue(t3.sameRoutes(t2));
+    Assert.assertFalse(t1.sameRoutes(t2));
+    Assert.assertFalse(t3.with(dd("i2", "mod-b-1.0.0", "http://localhost:9135")).sameRoutes(t2));
+
+    DeploymentTable t4 = t3.without("mod-a-1.0.0", "i3");
+    Assert.assertEquals(2, t4.size());
+    Assert.assertNull(t4.get("mod-a-1.0.0"));
+    Assert.assertEquals(3, t3.size());
+    Assert.assertSame(t4, t4.without("mod-b-1.0.0", "i3"));
+  }
+}
@@ -0,0 +1,114 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.streams.WriteStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.folio.okapi.bean.DeploymentDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JsonStreamerTest {
+
+  // collects writes; reports queue full until drained by the test
+  private static class TestStream implements WriteStream<Buffer> {
+    Buffer buffer = Buffer.buffer();
+    int writes;
+    boolean full;
+    boolean reset;
+    Handler<Void> drainHandler;
+
+    @Override
+    public WriteStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+      return this;
+    }
+
+    @Override
+    public Future<Void> write(Buffer data) {
+      if (reset) {
+        throw new IllegalStateException("Response has already been written");
+      }
+      buffer.appendBuffer(data);
+      writes++;
+      return Future.succeededFuture();
+    }
+
+    @Override
+    public void write(Buffer data, Handler<AsyncResult<Void>> handler) {
+      handler.handle(write(data));
+    }
+
+    @Override
+    public void end(Handler<AsyncResult<Void>> handler) {
+      handler.handle(Future.succeededFuture());
+    }
+
+    @Override
+    public WriteStream<Buffer> setWriteQueueMaxSize(int maxSize) {
+      return this;
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+      return full;
+    }
+
+    @Override
+    public WriteStream<Buffer> drainHandler(Handler<Void> handler) {
+      drainHandler = handler;
+      return this;
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    TestStream ws = new TestStream();
+    JsonStreamer.writeArray(ws, Collections.emptyIterator(),
+        res -> Assert.assertTrue(res.succeeded()));
+    Assert.assertEquals("[]", ws.buffer.toString());
+  }
+
+  @Test
+  public void testBackPressure() {
+    List<DeploymentDescriptor> list = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      list.add(new DeploymentDescriptor("inst" + i, "module-" + i, "http://localhost:" + i,
+          null, null));
+    }
+    TestStream ws = new TestStream();
+    ws.full = true;
+    List<AsyncResult<Void>> results = new ArrayList<>();
+    JsonStreamer.writeArray(ws, list.iterator(), results::add);
+    Assert.assertEquals(1, ws.writes);
+    Assert.assertTrue(results.isEmpty());
+    Assert.assertNotNull(ws.drainHandler);
+
+    ws.full = false;
+    ws.drainHandler.handle(null);
+    Assert.assertEquals(1, results.size());
+    Assert.assertTrue(results.get(0).succeeded());
+    Assert.assertTrue(ws.writes > 2);
+    Assert.assertNull(ws.drainHandler);
+
+    Assert.assertEquals(new JsonArray(Json.encode(list)), new JsonArray(ws.buffer));
+    Assert.assertEquals(Json.encode(list), ws.buffer.toString());
+  }
+
+  @Test
+  public void testWriteFails() {
+    TestStream ws = new TestStream();
+    ws.reset = true;
+    List<AsyncResult<Void>> results = new ArrayList<>();
+    JsonStreamer.writeArray(ws, Collections.singletonList("a").iterator(), results::add);
+    Assert.assertEquals(1, results.size());
+    Assert.assertTrue(results.get(0).failed());
+    Assert.assertEquals("Response has already been written",
+        results.get(0).cause().getMessage());
+  }
+}
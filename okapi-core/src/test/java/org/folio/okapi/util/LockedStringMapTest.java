@@ -1,10 +1,18 @@
 package org.folio.okapi.util;
 
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.spi.cluster.hazelcast.HazelcastClusterManager;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.EnvEntry;
 import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.OkapiLogger;
 import org.junit.After;
@@ -186,4 +194,265 @@ public class LockedStringMapTest {
     async.complete();
   }
 
+
+  @Test
+  public void testGetAll(TestContext context) {
+    final int n = 600; // decoded in parallel
+    LockedTypedMap1<EnvEntry> map1 = new LockedTypedMap1<>(EnvEntry.class);
+    LockedTypedMap2<EnvEntry> map2 = new LockedTypedMap2<>(EnvEntry.class);
+    {
+      Async async = context.async();
+      map1.init(vertx, "map1", res1 -> map2.init(vertx, "map2", res2 -> {
+        context.assertTrue(res2.succeeded());
+        async.complete();
+      }));
+      async.await();
+    }
+    {
+      Async async = context.async();
+      map1.getAll(res -> {
+        context.assertTrue(res.succeeded());
+        context.assertTrue(res.result().isEmpty());
+        async.complete();
+      });
+      async.await();
+    }
+    {
+      Async async = context.async();
+      CompList<Void> futures = new CompList<>(ErrorType.INTERNAL);
+      for (int i = 0; i < n; i++) {
+        EnvEntry e = new EnvEntry();
+        e.setName("n" + i);
+        e.setValue("v" + i);
+        Promise<Void> p1 = Promise.promise();
+        map1.add(e.getName(), e, p1::handle);
+        futures.add(p1);
+        Promise<Void> p2 = Promise.promise();
+        map2.add("k" + (i % 2), e.getName(), e, p2::handle);
+        futures.add(p2);
+      }
+      futures.all(res -> {
+        context.assertTrue(res.succeeded());
+        async.complete();
+      });
+      async.await();
+    }
+    {
+      Async async = context.async();
+      map1.getAll(res -> {
+        context.assertTrue(res.succeeded());
+        LinkedHashMap<String, EnvEntry> m = res.result();
+        context.assertEquals(n, m.size());
+        String prev = "";
+        for (Map.Entry<String, EnvEntry> e : m.entrySet()) {
+          context.assertTrue(prev.compareTo(e.getKey()) < 0);
+          context.assertEquals(e.getKey(), e.getValue().getName());
+          prev = e.getKey();
+        }
+        async.complete();
+      });
+      async.await();
+    }
+    {
+      Async async = context.async();
+      map2.getAll(res -> {
+        context.assertTrue(res.succeeded());
+        List<EnvEntry> l = res.result();
+        context.assertEquals(n, l.size());
+        // primary-level key k0 first
+        context.assertTrue(l.get(0).getName().matches("n[0-9]*[02468]"));
+        context.assertTrue(l.get(n / 2).getName().matches("n[0-9]*[13579]"));
+        async.complete();
+      });
+      async.await();
+    }
+  }
+
+  @Test
+  public void testLocalValues(TestContext context) {
+    LockedTypedMap1<EnvEntry> map1 = new LockedTypedMap1<>(EnvEntry.class);
+    LockedTypedMap2<EnvEntry> map2 = new LockedTypedMap2<>(EnvEntry.class);
+    map1.init(vertx, "local1", res -> context.assertTrue(res.succeeded()));
+    map2.init(vertx, "local2", res -> context.assertTrue(res.succeeded()));
+    context.assertTrue(map1.isLocal());
+
+    EnvEntry e = new EnvEntry();
+    e.setName("n1");
+    e.setValue("v1");
+    // local maps complete before returning
+    map1.add("n1", e, res -> context.assertTrue(res.succeeded()));
+    map2.add("k1", "n1", e, res -> context.assertTrue(res.succeeded()));
+    map2.add("k1", "n1", e, res -> context.assertEquals(ErrorType.USER, res.getType()));
+    // value is copied when written
+    e.setValue("v2");
+    map1.get("n1", res1 -> map1.get("n1", res2 -> {
+      context.assertEquals("v1", res1.result().getValue());
+      context.assertTrue(res1.result() == res2.result());
+    }));
+    map2.get("k1", "n1", res -> context.assertEquals("v1", res.result().getValue()));
+    map2.put("k1", "n2", e, res -> context.assertTrue(res.succeeded()));
+    map2.get("k1", res -> context.assertEquals(2, res.result().size()));
+    map2.getString("k1", "n2", res ->
+        context.assertEquals("v2", new JsonObject(res.result()).getString("value")));
+    map2.remove("k1", "n1", res -> context.assertFalse(res.result()));
+    map2.remove("k1", "n1", res -> context.assertEquals(ErrorType.NOT_FOUND, res.getType()));
+    map2.remove("k1", "n2", res -> context.assertTrue(res.result()));
+    map2.getAll(res -> context.assertTrue(res.result().isEmpty()));
+    map1.remove("n1", res -> context.assertTrue(res.result()));
+    map1.get("n1", res -> context.assertEquals(ErrorType.NOT_FOUND, res.getType()));
+  }
+
+  @Test
+  public void testConcurrentUpdates(TestContext context) {
+    final int n = 30;
+    {
+      Async async = context.async();
+      map.init(vertx, "concurrent", res -> async.complete());
+      async.await();
+    }
+    {
+      Async async = context.async();
+      CompList<Void> futures = new CompList<>(ErrorType.INTERNAL);
+      for (int i = 0; i < n; i++) {
+        Promise<Void> p = Promise.promise();
+        map.addOrReplace(false, "srvc", "inst" + i, "v" + i, p::handle);
+        futures.add(p);
+      }
+      futures.all(res -> {
+        context.assertTrue(res.succeeded());
+        async.complete();
+      });
+      async.await();
+    }
+    {
+      Async async = context.async();
+      CompList<Void> futures = new CompList<>(ErrorType.INTERNAL);
+      for (int i = 0; i < n; i += 2) {
+        Promise<Boolean> p = Promise.promise();
+        map.remove("srvc", "inst" + i, p::handle);
+        futures.add(p);
+      }
+      futures.all(res -> {
+        context.assertTrue(res.succeeded());
+        async.complete();
+      });
+      async.await();
+    }
+    {
+      Async async = context.async();
+      map.getString("srvc", res -> {
+        context.assertTrue(res.succeeded());
+        context.assertEquals(n / 2, res.result().size());
+        async.complete();
+      });
+      async.await();
+    }
+  }
+
+  @Test
+  public void testCodecs(TestContext context) {
+    LockedStringMap deflateMap = new LockedStringMap();
+    deflateMap.setCodec(new DeflateValueCodec());
+    {
+      Async async = context.async();
+      map.init(vertx, "codecs", res1 -> deflateMap.init(vertx, "codecs", res2 -> async.complete()));
+      async.await();
+    }
+    {
+      Async async = context.async();
+      map.addOrReplace(false, "k1", "k2", "json", res1 -> {
+        context.assertTrue(res1.succeeded());
+        deflateMap.addOrReplace(false, "k1", "k3", "deflate", res2 -> {
+          context.assertTrue(res2.succeeded());
+          async.complete();
+        });
+      });
+      async.await();
+    }
+    for (LockedStringMap m : new LockedStringMap[] {map, deflateMap}) {
+      Async async = context.async();
+      m.getString("k1", res -> {
+        context.assertTrue(res.succeeded());
+        context.assertEquals("[json, deflate]", res.result().toString());
+        async.complete();
+      });
+      async.await();
+    }
+    {
+      Async async = context.async();
+      map.remove("k1", "k3", res -> {
+        context.assertTrue(res.succeeded());
+        context.assertFalse(res.result());
+        async.complete();
+      });
+      async.await();
+    }
+    {
+      Async async = context.async();
+      deflateMap.getString("k1", "k2", res -> {
+        context.assertTrue(res.succeeded());
+        context.assertEquals("json", res.result());
+        async.complete();
+      });
+      async.await();
+    }
+  }
+
+  @Test
+  public void testCorruptValue(TestContext context) {
+    // clustered, so that updates are serialized per key
+    Vertx clustered;
+    {
+      Async async = context.async();
+      Vertx[] v = {null};
+      Vertx.clusteredVertx(new VertxOptions().setClusterManager(new HazelcastClusterManager()),
+          context.asyncAssertSuccess(res -> {
+            v[0] = res;
+            async.complete();
+          }));
+      async.await();
+      clustered = v[0];
+    }
+    {
+      Async async = context.async();
+      map.init(clustered, "corrupt", res -> {
+        context.assertTrue(res.succeeded());
+        async.complete();
+      });
+      async.await();
+    }
+    {
+      // not a map of secondary-level keys
+      Async async = context.async();
+      map.addOrReplace(false, "k1", null, "not JSON", res -> {
+        context.assertTrue(res.succeeded());
+        async.complete();
+      });
+      async.await();
+    }
+    {
+      Async async = context.async(2);
+      map.addOrReplace(true, "k1", "k2", "v", res -> {
+        context.assertTrue(res.failed());
+        context.assertEquals(ErrorType.INTERNAL, res.getType());
+        async.countDown();
+      });
+      map.remove("k1", "k2", res -> {
+        context.assertTrue(res.failed());
+        context.assertEquals(ErrorType.INTERNAL, res.getType());
+        async.countDown();
+      });
+      async.await(10000);
+    }
+    {
+      // the key is not held up by the failed updates
+      Async async = context.async();
+      map.addOrReplace(true, "k1", null, "{}", res -> {
+        context.assertTrue(res.succeeded());
+        async.complete();
+      });
+      async.await(10000);
+    }
+    clustered.close(context.asyncAssertSuccess());
+  }
 }
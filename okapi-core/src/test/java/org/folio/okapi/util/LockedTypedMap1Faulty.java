@@ -2,6 +2,7 @@ package org.folio.okapi.util;
 
 import io.vertx.core.Handler;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import org.folio.okapi.common.ErrorType;
 import org.folio.okapi.common.ExtendedAsyncResult;
 import org.folio.okapi.common.Failure;
@@ -57,4 +58,13 @@ public class LockedTypedMap1Faulty<T> extends LockedTypedMap1<T> {
     super.getKeys(fut);
   }
 
+  @Override
+  public void getAll(Handler<ExtendedAsyncResult<LinkedHashMap<String, T>>> fut) {
+    if (getKeysError != null) {
+      fut.handle(new Failure<>(ErrorType.INTERNAL, getKeysError));
+      return;
+    }
+    super.getAll(fut);
+  }
+
 }
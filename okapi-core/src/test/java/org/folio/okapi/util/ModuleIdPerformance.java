@@ -0,0 +1,81 @@
+package org.folio.okapi.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.common.ModuleId;
+import org.folio.okapi.common.OkapiLogger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Sorting of module IDs of the size of a long-running FOLIO registry, with
+ * the IDs parsed for each comparison, parsed once and interned.
+ */
+public class ModuleIdPerformance {
+
+  private final Logger logger = OkapiLogger.get();
+
+  private static final int IDS = 20000;
+  private static final int ROUNDS = 5;
+
+  private final List<String> ids = new ArrayList<>();
+
+  @Before
+  public void setUp() {
+    Random random = new Random(1);
+    for (int i = 0; i < IDS; i++) {
+      String id = "mod-p" + random.nextInt(200) + "-" + random.nextInt(30)
+          + "." + random.nextInt(20) + "." + random.nextInt(10);
+      if (random.nextInt(4) == 0) {
+        id += "-SNAPSHOT." + random.nextInt(1000);
+      }
+      ids.add(id);
+    }
+  }
+
+  private long sortParsing() {
+    List<String> l = new ArrayList<>(ids);
+    long start = System.nanoTime();
+    l.sort((a, b) -> new ModuleId(a).compareTo(new ModuleId(b)));
+    return (System.nanoTime() - start) / 1000000;
+  }
+
+  private long sortInterned() {
+    List<String> l = new ArrayList<>(ids);
+    long start = System.nanoTime();
+    l.sort(ModuleId::compare);
+    return (System.nanoTime() - start) / 1000000;
+  }
+
+  private long sortParsed() {
+    List<ModuleId> l = new ArrayList<>(ids.size());
+    for (String id : ids) {
+      l.add(ModuleId.of(id));
+    }
+    long start = System.nanoTime();
+    Collections.sort(l);
+    long elapsed = (System.nanoTime() - start) / 1000000;
+    for (int i = 1; i < l.size(); i++) {
+      Assert.assertTrue(l.get(i - 1).compareTo(l.get(i)) <= 0);
+    }
+    return elapsed;
+  }
+
+  @Test
+  public void testSort() {
+    logger.info("sorting {} module IDs", ids.size());
+    for (int i = 0; i < ROUNDS; i++) {
+      logger.info("parsed per comparison: {} ms", sortParsing());
+    }
+    for (int i = 0; i < ROUNDS; i++) {
+      logger.info("interned: {} ms", sortInterned());
+    }
+    for (int i = 0; i < ROUNDS; i++) {
+      logger.info("ModuleId list: {} ms", sortParsed());
+    }
+  }
+}
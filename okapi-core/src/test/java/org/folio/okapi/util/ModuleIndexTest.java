@@ -0,0 +1,90 @@
+package org.folio.okapi.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import org.folio.okapi.bean.InterfaceDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ModuleIndexTest {
+
+  private static ModuleDescriptor md(String id, InterfaceDescriptor[] provides,
+                                     InterfaceDescriptor[] requires) {
+    ModuleDescriptor md = new ModuleDescriptor();
+    md.setId(id);
+    if (provides != null) {
+      md.setProvides(provides);
+    }
+    md.setRequires(requires);
+    return md;
+  }
+
+  private static TreeSet<String> ids(List<ModuleDescriptor> mdl) {
+    TreeSet<String> s = new TreeSet<>();
+    for (ModuleDescriptor md : mdl) {
+      s.add(md.getId());
+    }
+    return s;
+  }
+
+  private static TreeSet<String> set(String... ids) {
+    return new TreeSet<>(Arrays.asList(ids));
+  }
+
+  @Test
+  public void testLookup() {
+    InterfaceDescriptor[] circ = {new InterfaceDescriptor("circulation", "1.0")};
+    InterfaceDescriptor[] users = {new InterfaceDescriptor("users", "2.0")};
+
+    ModuleIndex index = new ModuleIndex();
+    index.add(md("mod-circ-1.0.0", circ, users));
+    index.add(md("mod-circ-1.1.0", circ, users));
+    index.add(md("mod-users-2.0.0", users, null));
+    index.add(md("mod-other-1.0.0", null, null));
+    index.add(md("mod-other-1.0.0", circ, null)); // ignored: already there
+    Assert.assertEquals(4, index.size());
+
+    Assert.assertEquals(set("mod-circ-1.0.0", "mod-circ-1.1.0", "mod-users-2.0.0",
+        "mod-other-1.0.0"), ids(index.lookup(null, null, null, null)));
+    Assert.assertEquals(set("mod-circ-1.0.0", "mod-circ-1.1.0"),
+        ids(index.lookup(null, "circulation", null, null)));
+    Assert.assertEquals(set("mod-circ-1.0.0", "mod-circ-1.1.0"),
+        ids(index.lookup(null, "circulation=1.0", null, null)));
+    Assert.assertEquals(set("mod-circ-1.0.0", "mod-circ-1.1.0"),
+        ids(index.lookup(null, null, "users", null)));
+    Assert.assertEquals(set("mod-users-2.0.0"),
+        ids(index.lookup(null, "users", null, null)));
+    Assert.assertEquals(set("mod-circ-1.0.0", "mod-circ-1.1.0"),
+        ids(index.lookup("mod-circ-1", null, null, null)));
+    // candidates come from the smallest index; caller does the rest
+    Assert.assertEquals(set("mod-users-2.0.0"),
+        ids(index.lookup("mod-circ", "users", null, null)));
+    Assert.assertEquals(set(), ids(index.lookup("mod-none", null, null, null)));
+    Assert.assertEquals(set(), ids(index.lookup(null, "none", null, null)));
+    Assert.assertEquals(set("mod-circ-1.1.0"),
+        ids(index.lookup(null, "circulation", null, Collections.singleton("mod-circ-1.0.0"))));
+
+    List<ModuleDescriptor> providers = index.getProviders("circulation");
+    Assert.assertEquals(2, providers.size());
+    Assert.assertEquals("mod-circ-1.0.0", providers.get(0).getId());
+    Assert.assertEquals("mod-circ-1.1.0", providers.get(1).getId());
+    Assert.assertTrue(index.getProviders("circulation=1.0").isEmpty());
+    Assert.assertTrue(index.getProviders("none").isEmpty());
+
+    index.remove("mod-circ-1.0.0");
+    index.remove("mod-circ-1.0.0");
+    Assert.assertEquals(3, index.size());
+    Assert.assertEquals(set("mod-circ-1.1.0"),
+        ids(index.lookup(null, "circulation", null, null)));
+    index.remove("mod-circ-1.1.0");
+    Assert.assertEquals(set(), ids(index.lookup(null, "circulation", null, null)));
+    Assert.assertEquals(set(), ids(index.lookup(null, null, "users", null)));
+
+    index.clear();
+    Assert.assertEquals(0, index.size());
+    Assert.assertTrue(index.lookup(null, null, null, null).isEmpty());
+  }
+}
@@ -0,0 +1,54 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Handler;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import org.folio.okapi.common.ErrorType;
+import org.folio.okapi.common.ExtendedAsyncResult;
+import org.folio.okapi.common.Failure;
+import org.folio.okapi.common.Success;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelTasksTest {
+
+  @Test
+  public void testRun() {
+    List<Handler<ExtendedAsyncResult<Void>>> running = new LinkedList<>();
+    List<Integer> started = new LinkedList<>();
+    List<ExtendedAsyncResult<Void>> result = new LinkedList<>();
+
+    ParallelTasks.run(Arrays.asList(1, 2, 3, 4), 2, (i, fut) -> {
+      started.add(i);
+      running.add(fut);
+    }, result::add);
+    Assert.assertEquals(Arrays.asList(1, 2), started);
+
+    running.remove(0).handle(new Success<>());
+    Assert.assertEquals(Arrays.asList(1, 2, 3), started);
+    running.remove(0).handle(new Failure<>(ErrorType.USER, "2 failed"));
+    // no more tasks started after a failure
+    Assert.assertEquals(Arrays.asList(1, 2, 3), started);
+    Assert.assertTrue(result.isEmpty());
+    running.remove(0).handle(new Success<>());
+    Assert.assertEquals(1, result.size());
+    Assert.assertTrue(result.get(0).failed());
+    Assert.assertEquals("2 failed", result.get(0).cause().getMessage());
+
+    result.clear();
+    started.clear();
+    ParallelTasks.run(Arrays.asList(1, 2, 3), 1, (i, fut) -> {
+      started.add(i);
+      fut.handle(new Success<>());
+    }, result::add);
+    Assert.assertEquals(Arrays.asList(1, 2, 3), started);
+    Assert.assertEquals(1, result.size());
+    Assert.assertTrue(result.get(0).succeeded());
+
+    result.clear();
+    ParallelTasks.run(new LinkedList<Integer>(), 3, (i, fut) -> Assert.fail(), result::add);
+    Assert.assertEquals(1, result.size());
+    Assert.assertTrue(result.get(0).succeeded());
+  }
+}
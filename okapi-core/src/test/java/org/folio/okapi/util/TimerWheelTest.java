@@ -0,0 +1,80 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+@RunWith(VertxUnitRunner.class)
+public class TimerWheelTest {
+
+  private Vertx vertx;
+
+  @Before
+  public void setUp(TestContext context) {
+    vertx = Vertx.vertx();
+  }
+
+  @After
+  public void tearDown(TestContext context) {
+    vertx.close(context.asyncAssertSuccess());
+  }
+
+  @Test
+  public void testSchedule(TestContext context) {
+    Async async = context.async();
+    vertx.runOnContext(x -> {
+      // 4 buckets of 5 ms: all but the first timer are more than a revolution ahead
+      TimerWheel wheel = new TimerWheel(vertx, 5, 4);
+      List<String> fired = new LinkedList<>();
+      long start = System.currentTimeMillis();
+      wheel.schedule("a", 60, late -> {
+        context.assertTrue(late >= 0);
+        context.assertTrue(System.currentTimeMillis() - start >= 60);
+        fired.add("a");
+        context.assertEquals(0, wheel.size());
+        context.assertEquals(Arrays.asList("b", "d", "a"), fired);
+        async.complete();
+      });
+      wheel.schedule("b", 1, late -> fired.add("b"));
+      wheel.schedule("c", 30, late -> fired.add("c"));
+      wheel.schedule("d", 40, late -> fired.add("wrong"));
+      wheel.schedule("d", 40, late -> fired.add("d")); // replaces
+      context.assertEquals(4, wheel.size());
+      context.assertTrue(wheel.contains("c"));
+      context.assertTrue(wheel.cancel("c"));
+      context.assertFalse(wheel.cancel("c"));
+      context.assertFalse(wheel.contains("c"));
+      context.assertEquals(3, wheel.size());
+    });
+  }
+
+  @Test
+  public void testReschedule(TestContext context) {
+    Async async = context.async();
+    vertx.runOnContext(x -> {
+      TimerWheel wheel = new TimerWheel(vertx, 2, 8);
+      List<Long> fired = new LinkedList<>();
+      wheel.schedule("a", 5, new Handler<Long>() {
+        @Override
+        public void handle(Long late) {
+          fired.add(late);
+          if (fired.size() < 3) {
+            wheel.schedule("a", 5, this);
+          } else {
+            context.assertEquals(0, wheel.size());
+            async.complete();
+          }
+        }
+      });
+    });
+  }
+}
@@ -0,0 +1,114 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.json.Json;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.logging.log4j.Logger;
+import org.folio.okapi.bean.InterfaceDescriptor;
+import org.folio.okapi.bean.LaunchDescriptor;
+import org.folio.okapi.bean.ModuleDescriptor;
+import org.folio.okapi.bean.Permission;
+import org.folio.okapi.bean.RoutingEntry;
+import org.folio.okapi.common.OkapiLogger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Size and encode/decode time of shared map values for module descriptors
+ * shaped like those of FOLIO backend modules: a few interfaces with CRUD
+ * handlers, permission sets and a Docker launch descriptor.
+ */
+public class ValueCodecPerformance {
+
+  private final Logger logger = OkapiLogger.get();
+
+  private static final int MODULES = 2000;
+  private static final int INTERFACES = 6;
+  private static final int ROUNDS = 5;
+
+  private final List<String> values = new ArrayList<>();
+
+  private static RoutingEntry handler(String method, String path, String perm) {
+    RoutingEntry re = new RoutingEntry();
+    re.setMethods(new String[] {method});
+    re.setPathPattern(path);
+    re.setPermissionsRequired(new String[] {perm});
+    re.setModulePermissions(new String[] {"users.collection.get", "configuration.entries.get"});
+    return re;
+  }
+
+  @Before
+  public void setUp() {
+    for (int m = 0; m < MODULES; m++) {
+      ModuleDescriptor md = new ModuleDescriptor();
+      md.setId("mod-p" + m + "-1." + (m % 17) + ".0");
+      md.setName("Module number " + m + " of the test platform");
+      InterfaceDescriptor[] provides = new InterfaceDescriptor[INTERFACES];
+      List<Permission> perms = new ArrayList<>();
+      for (int i = 0; i < INTERFACES; i++) {
+        String name = "p" + m + "-records" + i;
+        provides[i] = new InterfaceDescriptor(name, "1." + i);
+        String path = "/" + name.replace('-', '/');
+        provides[i].setHandlers(new RoutingEntry[] {
+            handler("GET", path, name + ".collection.get"),
+            handler("POST", path, name + ".item.post"),
+            handler("GET", path + "/{id}", name + ".item.get"),
+            handler("PUT", path + "/{id}", name + ".item.put"),
+            handler("DELETE", path + "/{id}", name + ".item.delete")});
+        for (String op : new String[] {"collection.get", "item.post", "item.get",
+            "item.put", "item.delete"}) {
+          Permission p = new Permission();
+          p.setPermissionName(name + "." + op);
+          p.setDisplayName("Records " + i + " - " + op.replace('.', ' '));
+          p.setDescription("Allows " + op + " of records " + i);
+          perms.add(p);
+        }
+      }
+      md.setProvides(provides);
+      md.setRequires(new InterfaceDescriptor[] {
+          new InterfaceDescriptor("users", "15.0"),
+          new InterfaceDescriptor("configuration", "2.0")});
+      md.setPermissionSets(perms.toArray(new Permission[0]));
+      LaunchDescriptor ld = new LaunchDescriptor();
+      ld.setDockerImage("folioorg/mod-p" + m + ":1." + (m % 17) + ".0");
+      ld.setDockerPull(false);
+      md.setLaunchDescriptor(ld);
+      values.add(Json.encode(md));
+    }
+  }
+
+  private void measure(String name, ValueCodec codec) {
+    long bytes = 0;
+    List<String> stored = new ArrayList<>(values.size());
+    long start = System.nanoTime();
+    for (String v : values) {
+      stored.add(codec.encode(v));
+    }
+    long encodeMs = (System.nanoTime() - start) / 1000000;
+    for (String s : stored) {
+      bytes += s.length();
+    }
+    start = System.nanoTime();
+    for (String s : stored) {
+      Assert.assertNotNull(codec.decode(s));
+    }
+    long decodeMs = (System.nanoTime() - start) / 1000000;
+    start = System.nanoTime();
+    for (String s : stored) {
+      Json.decodeValue(codec.decode(s), ModuleDescriptor.class);
+    }
+    long mdMs = (System.nanoTime() - start) / 1000000;
+    logger.info("{}: {} bytes, encode {} ms, decode {} ms, decode to ModuleDescriptor {} ms",
+        name, bytes, encodeMs, decodeMs, mdMs);
+  }
+
+  @Test
+  public void testCodecs() {
+    logger.info("{} module descriptors", values.size());
+    for (int i = 0; i < ROUNDS; i++) {
+      measure("json", new JsonValueCodec());
+      measure("deflate", new DeflateValueCodec());
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package org.folio.okapi.util;
+
+import io.vertx.core.json.DecodeException;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ValueCodecTest {
+
+  private static final String JSON = "{\"strings\":{\"inst1\":\"{\\\"srvcId\\\":\\\"mod-1.0.0\\\"}\"}}";
+
+  @Test
+  public void testJson() {
+    ValueCodec codec = ValueCodec.create("json");
+    Assert.assertEquals(JSON, codec.encode(JSON));
+    Assert.assertEquals(JSON, codec.decode(JSON));
+    Assert.assertEquals(JSON, codec.decode(new DeflateValueCodec().encode(JSON)));
+  }
+
+  @Test
+  public void testDeflate() {
+    ValueCodec codec = ValueCodec.create("deflate");
+    String stored = codec.encode(JSON);
+    Assert.assertTrue(stored.startsWith("~z"));
+    Assert.assertEquals(JSON, codec.decode(stored));
+    Assert.assertEquals(JSON, codec.decode(JSON)); // legacy value
+    Assert.assertEquals("æøå", codec.decode(codec.encode("æøå")));
+
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < 10000; i++) {
+      b.append(JSON);
+    }
+    String large = b.toString();
+    stored = codec.encode(large);
+    Assert.assertTrue(stored.length() < large.length() / 10);
+    Assert.assertEquals(large, codec.decode(stored));
+
+    try {
+      codec.decode("~z!!");
+      Assert.fail();
+    } catch (DecodeException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Bad shared map value"));
+    }
+    try {
+      codec.decode(stored.substring(0, stored.length() / 2));
+      Assert.fail();
+    } catch (DecodeException e) {
+      Assert.assertTrue(e.getMessage(), e.getMessage().contains("shared map value"));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknown() {
+    ValueCodec.create("smile");
+  }
+}